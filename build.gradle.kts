@@ -1,5 +1,6 @@
 plugins {
     id("com.github.johnrengelman.shadow") version "8.1.1"
+    id("me.champeau.jmh") version "0.7.2"
     id("java")
     kotlin("jvm") version "1.9.24"
 }
@@ -19,9 +20,19 @@ dependencies {
     compileOnly("org.projectlombok:lombok:1.18.24")
     annotationProcessor("org.projectlombok:lombok:1.18.24")
     implementation(kotlin("stdlib-jdk8"))
+
+    testImplementation(platform("org.junit:junit-bom:5.10.2"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
 tasks {
+    test {
+        useJUnitPlatform()
+        // LauncherMain.VITA_DIR is derived from user.home, keep the tests' files out of the real one
+        systemProperty("user.home", layout.buildDirectory.dir("test-home").get().asFile.absolutePath)
+    }
+
     build {
         finalizedBy("shadowJar")
     }
@@ -50,4 +61,15 @@ tasks {
 
 kotlin {
     jvmToolchain(11)
+}
+
+// Benchmarks of the launcher's I/O paths: ./gradlew jmh, results in build/results/jmh
+jmh {
+    jmhVersion.set("1.37")
+    warmupIterations.set(2)
+    iterations.set(5)
+    fork.set(1)
+    // LauncherMain.VITA_DIR is derived from user.home, keep the benchmarks' files out of the real one
+    jvmArgsAppend.add("-Duser.home=" + layout.buildDirectory.dir("jmh-home").get().asFile.absolutePath)
+    resultFormat.set("JSON")
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.tonic.launcher.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JDK install extraction, as JDKManager runs it: strip the top-level folder and sync the
+ * files before the install is committed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ArchiveExtractBenchmark {
+    @Param({"tar.gz", "zip"})
+    public String format;
+
+    private Path dir;
+    private Path archive;
+    private Path target;
+
+    @Setup(Level.Trial)
+    public void createArchive() throws IOException {
+        dir = Files.createTempDirectory("extract-bench");
+        archive = dir.resolve("jdk." + format);
+        BenchmarkFiles.writeJdkArchive(archive, format.equals("zip"));
+    }
+
+    @Setup(Level.Invocation)
+    public void createTarget() throws IOException {
+        target = Files.createTempDirectory(dir, "jdk");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteTarget() throws IOException {
+        StagedInstall.deleteRecursive(target);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteArchive() throws IOException {
+        StagedInstall.deleteRecursive(dir);
+    }
+
+    @Benchmark
+    public int extract() throws IOException {
+        try (InputStream in = Files.newInputStream(archive)) {
+            ArchiveExtractor extractor = new ArchiveExtractor(target, 1, true);
+            return format.equals("zip") ? extractor.extractZip(in, null) : extractor.extractTarGz(in, null);
+        }
+    }
+}
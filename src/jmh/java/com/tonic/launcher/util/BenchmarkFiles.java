@@ -0,0 +1,92 @@
+package com.tonic.launcher.util;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Synthetic archives for the benchmarks, shaped like the real downloads.
+ */
+final class BenchmarkFiles {
+    // A JDK 11 archive is one large lib/modules image plus a few hundred small files
+    static final int JDK_MODULES_BYTES = 128 * 1024 * 1024;
+    static final int JDK_SMALL_FILES = 400;
+    static final int VITALITE_JAR_BYTES = 48 * 1024 * 1024;
+
+    private BenchmarkFiles() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Writes a JDK-like archive with a top-level jdk folder, as the installer expects.
+     * @param zip zip for Windows, otherwise tar.gz
+     */
+    static void writeJdkArchive(Path archive, boolean zip) throws IOException {
+        Random random = new Random(42);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(archive), 64 * 1024)) {
+            if (zip) {
+                try (ZipOutputStream zos = new ZipOutputStream(out)) {
+                    for (int i = 0; i <= JDK_SMALL_FILES; i++) {
+                        byte[] data = jdkFile(random, i);
+                        zos.putNextEntry(new ZipEntry(jdkFileName(i)));
+                        zos.write(data);
+                        zos.closeEntry();
+                    }
+                }
+            } else {
+                try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(out, 64 * 1024))) {
+                    tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+                    for (int i = 0; i <= JDK_SMALL_FILES; i++) {
+                        byte[] data = jdkFile(random, i);
+                        TarArchiveEntry entry = new TarArchiveEntry(jdkFileName(i));
+                        entry.setSize(data.length);
+                        tar.putArchiveEntry(entry);
+                        tar.write(data);
+                        tar.closeArchiveEntry();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a VitaLite release zip holding one jar of incompressible data, like a real jar.
+     */
+    static void writeVitaLiteZip(Path archive) throws IOException {
+        Random random = new Random(7);
+        byte[] jar = new byte[VITALITE_JAR_BYTES];
+        random.nextBytes(jar);
+        try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(archive), 64 * 1024))) {
+            zos.putNextEntry(new ZipEntry("VitaLite.jar"));
+            zos.write(jar);
+            zos.closeEntry();
+        }
+    }
+
+    private static String jdkFileName(int index) {
+        return index == 0 ? "jdk-11.0.99+1/lib/modules" : "jdk-11.0.99+1/lib/file" + index + ".so";
+    }
+
+    /**
+     * Half random, half repeated bytes, which compresses about as well as JDK files do.
+     */
+    private static byte[] jdkFile(Random random, int index) {
+        byte[] data = new byte[index == 0 ? JDK_MODULES_BYTES : 4 * 1024 + random.nextInt(60 * 1024)];
+        for (int offset = 0; offset < data.length; offset += 8192) {
+            int length = Math.min(4096, data.length - offset);
+            byte[] chunk = new byte[length];
+            random.nextBytes(chunk);
+            System.arraycopy(chunk, 0, data, offset, length);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,133 @@
+package com.tonic.launcher.util;
+
+import com.tonic.launcher.LauncherMain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LauncherConfig as the launcher uses it: loaded and read on every launch, written field
+ * by field from the settings panel, and turned into VitaLite's program arguments.
+ *
+ * The {@code legacy} benchmarks go through ConfigManager the way LauncherConfig used to,
+ * with a Commons Configuration lookup and conversion per getter and a save per setter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LauncherConfigBenchmark {
+    private static final String FILE_NAME = "LauncherConfigBench";
+
+    private Path file;
+    private LauncherConfig config;
+    private ConfigManager legacy;
+
+    @Setup
+    public void fillConfig() {
+        file = LauncherMain.VITA_DIR.resolve(FILE_NAME);
+        config = new LauncherConfig(file);
+        config.setRsDump(true);
+        config.setRsDumpPath("/tmp/rsdump");
+        config.setNoPlugins(true);
+        config.setMin(true);
+        config.setIncognito(true);
+        config.setProxy(true);
+        config.setProxyData("127.0.0.1:1080");
+        config.setLoginType("Jagex");
+        config.setLoginString("account");
+        config.setMaxMemoryEnabled(true);
+        config.setMaxMemoryValue(2048);
+        config.setJvmArgs(LauncherConfig.getDefaultJvmArgs());
+        config.save();
+        legacy = new ConfigManager(FILE_NAME);
+    }
+
+    /**
+     * Reading the settings a launch needs from a freshly loaded config.
+     */
+    @Benchmark
+    public void load(Blackhole blackhole) {
+        read(new LauncherConfig(file), blackhole);
+    }
+
+    @Benchmark
+    public void legacyLoad(Blackhole blackhole) {
+        readLegacy(new ConfigManager(FILE_NAME), blackhole);
+    }
+
+    /**
+     * The same reads from a config that is already loaded.
+     */
+    @Benchmark
+    public void read(Blackhole blackhole) {
+        read(config, blackhole);
+    }
+
+    @Benchmark
+    public void legacyRead(Blackhole blackhole) {
+        readLegacy(legacy, blackhole);
+    }
+
+    /**
+     * One edit in the settings panel, written out.
+     */
+    @Benchmark
+    public void save() {
+        config.setMaxMemoryValue(config.getMaxMemoryValue() == 2048 ? 4096 : 2048);
+        config.save();
+    }
+
+    @Benchmark
+    public void legacySave() {
+        legacy.setProperty("maxMemoryValue", legacy.getIntOrDefault("maxMemoryValue", 768) == 2048 ? 4096 : 2048);
+    }
+
+    /**
+     * What the settings panel's Launch button builds, see LauncherSettingsPanel.buildCliArguments.
+     */
+    @Benchmark
+    public List<String> buildCliArguments() {
+        return CliArguments.build(config);
+    }
+
+    private static void read(LauncherConfig config, Blackhole blackhole) {
+        blackhole.consume(config.getJvmArgs());
+        blackhole.consume(config.isMaxMemoryEnabled());
+        blackhole.consume(config.getMaxMemoryValue());
+        blackhole.consume(config.isAutoMemory());
+        blackhole.consume(config.isAppCdsEnabled());
+        blackhole.consume(config.isStandbyEnabled());
+        blackhole.consume(config.isTelemetryEnabled());
+        blackhole.consume(CliArguments.build(config));
+    }
+
+    private static void readLegacy(ConfigManager config, Blackhole blackhole) {
+        blackhole.consume(config.getStringList("jvmArgs"));
+        blackhole.consume(config.getBooleanOrDefault("maxMemoryEnabled", false));
+        blackhole.consume(config.getIntOrDefault("maxMemoryValue", 768));
+        blackhole.consume(config.getBooleanOrDefault("autoMemory", false));
+        blackhole.consume(!config.hasProperty("appCds") || config.getBoolean("appCds"));
+        blackhole.consume(config.getBooleanOrDefault("standby", false));
+        blackhole.consume(config.getBooleanOrDefault("telemetry", false));
+        // CliArguments.build's reads
+        blackhole.consume(config.getBooleanOrDefault("rsDump", false));
+        blackhole.consume(config.getStringOrDefault("rsDumpPath", ""));
+        blackhole.consume(config.getBooleanOrDefault("noPlugins", false));
+        blackhole.consume(config.getBooleanOrDefault("min", false));
+        blackhole.consume(config.getBooleanOrDefault("noMusic", false));
+        blackhole.consume(config.getBooleanOrDefault("incognito", false));
+        blackhole.consume(config.getBooleanOrDefault("proxy", false));
+        blackhole.consume(config.getStringOrDefault("proxyData", ""));
+        blackhole.consume(config.getStringOrDefault("loginType", "Legacy"));
+        blackhole.consume(config.getStringOrDefault("loginString", ""));
+    }
+}
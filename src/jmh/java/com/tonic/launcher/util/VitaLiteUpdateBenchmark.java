@@ -0,0 +1,93 @@
+package com.tonic.launcher.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.tonic.launcher.LauncherMain;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VitaLite release install from a local HTTP server, through both of UpdateProcessor's paths:
+ * extracting the jar off the response stream, and downloading the zip before extracting it.
+ * The server answers range requests, so the download takes the segmented path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VitaLiteUpdateBenchmark {
+    @Param({"stream", "download"})
+    public String path;
+
+    private Path dir;
+    private byte[] zip;
+    private String sha256;
+    private HttpServer server;
+    private String url;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        Files.createDirectories(LauncherMain.VITA_DIR);
+        dir = Files.createTempDirectory("update-bench");
+        Path archive = dir.resolve("VitaLite.zip");
+        BenchmarkFiles.writeVitaLiteZip(archive);
+        zip = Files.readAllBytes(archive);
+        sha256 = StagedInstall.sha256(archive);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/VitaLite.zip", this::serve);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/VitaLite.zip";
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        server.stop(0);
+        StagedInstall.deleteRecursive(dir);
+    }
+
+    @Benchmark
+    public String install() throws IOException {
+        if (path.equals("stream")) {
+            return UpdateProcessor.streamVitaLite(url, sha256, null);
+        }
+        return UpdateProcessor.downloadAndExtractVitaLite(url, "VitaLite-bench.zip", sha256, null);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        int start = 0;
+        int end = zip.length - 1;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring("bytes=".length()).split("-", -1);
+            start = Integer.parseInt(bounds[0]);
+            if (!bounds[1].isEmpty()) {
+                end = Math.min(end, Integer.parseInt(bounds[1]));
+            }
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + zip.length);
+        }
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().set("ETag", "\"" + sha256 + "\"");
+        exchange.sendResponseHeaders(range != null ? 206 : 200, end - start + 1);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(zip, start, end - start + 1);
+        }
+    }
+}
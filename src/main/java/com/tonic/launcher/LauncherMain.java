@@ -1,14 +1,15 @@
 package com.tonic.launcher;
 
 import com.tonic.launcher.ui.LauncherSettingsPanel;
+import com.tonic.launcher.ui.MonitorWindow;
 import com.tonic.launcher.ui.SplashScreen;
 import com.tonic.launcher.util.*;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
-import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class LauncherMain {
@@ -20,11 +21,51 @@ public class LauncherMain {
     private static SplashScreen splash;
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].startsWith("--store-")) {
+            System.exit(runStoreCommand(args));
+        }
+        if (args.length > 0 && args[0].equals("--headless")) {
+            // No settings panel and no splash, nothing on this path may load java.awt
+            startHeadless(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--supervise")) {
+            // Headless, keeps every profile's client running
+            try {
+                startSupervisor(args.length > 1 ? Path.of(args[1]) : LaunchProfile.DEFAULT_FILE);
+            } catch (Exception e) {
+                e.printStackTrace();
+                LaunchTrace.finish("error: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--batch")) {
+            // Launches every profile instead of showing the settings panel
+            Path profiles = args.length > 1 ? Path.of(args[1]) : LaunchProfile.DEFAULT_FILE;
+            SwingUtilities.invokeLater(() -> {
+                splash = new SplashScreen();
+                splash.setVisible(true);
+                new Thread(() -> {
+                    try {
+                        performBatchSequence(profiles);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        LaunchTrace.finish("error: " + e.getMessage());
+                        splash.setError("An error occurred: " + e.getMessage());
+                    }
+                }).start();
+            });
+            return;
+        }
+
+        // Time spent in the settings panel, until Launch is pressed
+        LaunchTrace.Span settings = LaunchTrace.beginWait("settings");
         SwingUtilities.invokeLater(() -> {
             LauncherSettingsPanel settingsPanel = new LauncherSettingsPanel();
-            setFrameIcon(settingsPanel);
 
             settingsPanel.setLaunchCallback(cliArgs -> {
+                settings.close();
                 System.out.println("Launching with arguments: " + String.join(" ", cliArgs));
                 startLaunchSequence(cliArgs);
             });
@@ -39,60 +80,273 @@ public class LauncherMain {
             splash.setVisible(true);
             new Thread(() -> {
                 try {
-                    performLoadingSequence(cliArgs);
+                    performLoadingSequence(cliArgs, splash);
                 } catch (Exception e) {
                     e.printStackTrace();
+                    LaunchTrace.finish("error: " + e.getMessage());
                     splash.setError("An error occurred: " + e.getMessage());
                 }
             }).start();
         });
     }
 
-    private static void performLoadingSequence(List<String> cliArgs) throws Exception {
-        // JDK: 0-40% overall
-        JDKManager.ensureJDK(splash);
+    /**
+     * Launches VitaLite from the command line without a window:
+     * {@code --headless [--progress-file <file>] [-- <VitaLite arguments>]}.
+     * Without VitaLite arguments they are built from the saved settings.
+     */
+    private static void startHeadless(String[] args) {
+        Path progressFile = null;
+        List<String> cliArgs = null;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--progress-file") && i + 1 < args.length) {
+                progressFile = Path.of(args[++i]);
+            } else if (args[i].equals("--")) {
+                cliArgs = new ArrayList<>(Arrays.asList(args).subList(i + 1, args.length));
+                break;
+            } else {
+                System.err.println("Unknown option " + args[i] + ", expected --headless [--progress-file <file>] [-- <VitaLite arguments>]");
+                System.exit(2);
+            }
+        }
+        if (cliArgs == null) {
+            cliArgs = CliArguments.build(LauncherConfig.get());
+        }
+
+        ConsoleProgress progress = new ConsoleProgress(progressFile);
+        System.out.println("Launching with arguments: " + String.join(" ", cliArgs));
+        try {
+            performLoadingSequence(cliArgs, progress);
+        } catch (Exception e) {
+            e.printStackTrace();
+            LaunchTrace.finish("error: " + e.getMessage());
+            progress.setError("An error occurred: " + e.getMessage());
+            System.exit(1);
+        }
+    }
 
-        // Updates: 40-70% overall
-        splash.setProgress(0, 40, "Checking for updates...");
-        if(!UpdateProcessor.process(splash))
+    /**
+     * Prepares the JDK and VitaLite and launches the client.
+     * @param progress the splash screen, or console output for headless launches
+     */
+    private static void performLoadingSequence(List<String> cliArgs, ProgressListener progress) throws Exception {
+        // JDK install and VitaLite update run concurrently, see LaunchPipeline
+        LaunchPipeline.Result result = new LaunchPipeline(progress).run();
+        if(!result.isUpToDate())
         {
             cliArgs.add("--targetBootstrap");
-            cliArgs.add(Versioning.getLiveVitaLiteVersion().split("_")[0]);
+            cliArgs.add(result.getLiveVitaLiteVersion().split("_")[0]);
         }
 
-        // Launching: 70-99% overall (stay at 99% until callback confirms launch)
-        splash.setProgress(100, 99, "Launching VitaLite...");
+        // Launching: stay at 99% until callback confirms launch
+        progress.setStageProgress(LaunchStage.LAUNCH, 0, "Launching VitaLite...");
 
         // Load JVM args from config
-        LauncherConfig config = new LauncherConfig();
-        List<String> jvmArgs = new java.util.ArrayList<>(config.getJvmArgs());
+        LauncherConfig config = LauncherConfig.get();
+        // Memory from the host's plan, otherwise -Xmx if max memory is enabled
+        MemoryPlanner.Allocation memory = null;
+        if (config.isAutoMemory()) {
+            MemoryPlanner.Plan plan = MemoryPlanner.plan(MemoryPlanner.Host.detect(), List.of(LaunchProfile.single()));
+            System.out.println("Memory plan: " + plan.describe());
+            memory = plan.getAllocations().get(0);
+        }
+        List<String> jvmArgs = LaunchProfile.single().buildJvmArgs(config, memory, 1);
 
-        // Add -Xmx if max memory is enabled
-        if (config.isMaxMemoryEnabled()) {
-            jvmArgs.add("-Xmx" + config.getMaxMemoryValue() + "m");
+        // A parked standby JVM takes the launch as it is, without the per-launch arguments below
+        List<String> standbyArgs = new java.util.ArrayList<>(jvmArgs);
+        StandbyManager.Standby standby = null;
+        if (config.isStandbyEnabled()) {
+            standby = StandbyManager.find(standbyArgs);
+            LaunchTrace.note("standby", standby != null ? "handoff" : "cold");
+        } else {
+            StandbyManager.stop();
         }
 
-        JVMLauncher.launchExternalJar(jvmArgs, cliArgs, () -> {
+        // Class data sharing archive for the client JVM, built after the first launch
+        CdsManager cds = config.isAppCdsEnabled() && standby == null ? new CdsManager() : null;
+        if (cds != null) {
+            jvmArgs.addAll(cds.getJvmArgs(jvmArgs));
+        }
+
+        // With telemetry the launcher stays open as the client's monitor
+        boolean monitor = config.isTelemetryEnabled() && standby == null;
+        long launchStart = System.nanoTime();
+        Process process = JVMLauncher.launchExternalJar(jvmArgs, cliArgs, () -> {
             // Only reaches 100% when VitaLite confirms it's ready
-            splash.setProgress(100, 100, "Launch complete!");
+            progress.setProgress(100, 100, "Launch complete!");
+            if (cds != null) {
+                cds.recordLaunch((System.nanoTime() - launchStart) / 1_000_000);
+            }
+            LaunchTrace.finish("ok");
             try {
                 Thread.sleep(500);
             } catch (InterruptedException e) {
             }
+
+            if (cds != null && cds.needsArchive()) {
+                // The client is up, finish the archive out of sight before exiting
+                if (splash != null) {
+                    SwingUtilities.invokeLater(() -> splash.dispose());
+                }
+                try {
+                    cds.buildArchive();
+                } catch (IOException e) {
+                    System.err.println("Failed to build the AppCDS archive: " + e.getMessage());
+                }
+            }
+            if (config.isStandbyEnabled()) {
+                // Ready for the next launch, started once this client no longer competes for the CPU
+                StandbyManager.start(standbyArgs);
+            }
+            if (monitor) {
+                if (splash != null) {
+                    showMonitor();
+                } else {
+                    System.out.println("Recording client telemetry until it exits");
+                }
+                return;
+            }
             System.exit(0);
+        }, standby, monitor ? "default" : null);
+        if (monitor && process != null) {
+            process.onExit().thenRun(() -> System.exit(0));
+        }
+    }
+
+    /**
+     * Prepares the JDK and VitaLite once, then launches a client per profile with
+     * {@link BatchLauncher}, and exits when all of them are ready or have failed.
+     */
+    private static void performBatchSequence(Path profilesFile) throws Exception {
+        List<LaunchProfile> profiles = LaunchProfile.load(profilesFile);
+        LaunchPipeline.Result result = new LaunchPipeline(splash).run();
+        List<String> commonArgs = new java.util.ArrayList<>();
+        if(!result.isUpToDate())
+        {
+            commonArgs.add("--targetBootstrap");
+            commonArgs.add(result.getLiveVitaLiteVersion().split("_")[0]);
+        }
+
+        LauncherConfig config = LauncherConfig.get();
+        CdsManager cds = config.isAppCdsEnabled() ? new CdsManager() : null;
+        MemoryPlanner.Plan memory = null;
+        if (config.isAutoMemory()) {
+            memory = MemoryPlanner.plan(MemoryPlanner.Host.detect(), profiles);
+            System.out.println("Memory plan: " + memory.describe());
+            if (memory.isOvercommitted()) {
+                System.err.println("Warning: " + profiles.size() + " clients do not fit in " + memory.getBudgetMb()
+                        + " MB, they get the minimum heap");
+            }
+        }
+        BatchLauncher batch = new BatchLauncher(profiles, config.getBatchMaxBoots(), config.getBatchStagger());
+        splash.setStageProgress(LaunchStage.LAUNCH, 0, "Launching " + profiles.size() + " clients...");
+        List<BatchLauncher.Result> results = batch.run(config, commonArgs, cds, memory, (settled, total, status) -> {
+            System.out.println(status);
+            splash.setStageProgress(LaunchStage.LAUNCH, settled * 100 / total, status);
+        });
+
+        BatchLauncher.printReport(results);
+        long failed = results.stream().filter(r -> r.getFailure() != null).count();
+        splash.setProgress(100, 100, (results.size() - failed) + " of " + results.size() + " clients ready");
+        LaunchTrace.note("clients", String.valueOf(results.size()));
+        LaunchTrace.finish(failed == 0 ? "ok" : failed + " failed");
+
+        if (cds != null && cds.needsArchive() && results.get(0).getFailure() == null) {
+            SwingUtilities.invokeLater(() -> splash.dispose());
+            try {
+                cds.buildArchive();
+            } catch (IOException e) {
+                System.err.println("Failed to build the AppCDS archive: " + e.getMessage());
+            }
+        }
+        Thread.sleep(500);
+
+        if (config.isTelemetryEnabled() && failed < results.size()) {
+            // Monitor until the last client exits
+            showMonitor();
+            java.util.concurrent.CompletableFuture<?>[] exits = results.stream()
+                    .filter(r -> r.getProcess() != null)
+                    .map(r -> r.getProcess().onExit())
+                    .toArray(java.util.concurrent.CompletableFuture[]::new);
+            java.util.concurrent.CompletableFuture.allOf(exits).thenRun(() -> System.exit(0));
+            return;
+        }
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * Prepares the JDK and VitaLite once, then hands every profile to a {@link Supervisor}.
+     * A newer VitaLite is picked up when the supervisor is restarted.
+     */
+    private static void startSupervisor(Path profilesFile) throws Exception {
+        List<LaunchProfile> profiles = LaunchProfile.load(profilesFile);
+        LaunchPipeline.Result result = new LaunchPipeline(null).run();
+        List<String> commonArgs = new java.util.ArrayList<>();
+        if(!result.isUpToDate())
+        {
+            commonArgs.add("--targetBootstrap");
+            commonArgs.add(result.getLiveVitaLiteVersion().split("_")[0]);
+        }
+
+        LauncherConfig config = LauncherConfig.get();
+        CdsManager cds = config.isAppCdsEnabled() ? new CdsManager() : null;
+        MemoryPlanner.Plan memory = null;
+        if (config.isAutoMemory()) {
+            memory = MemoryPlanner.plan(MemoryPlanner.Host.detect(), profiles);
+            System.out.println("Memory plan: " + memory.describe());
+        }
+        LaunchTrace.note("clients", String.valueOf(profiles.size()));
+        LaunchTrace.finish("supervising");
+        new Supervisor(profiles, config, commonArgs, cds, memory).start();
+    }
+
+    /**
+     * Replaces the splash with the telemetry monitor, see {@link MonitorWindow}.
+     */
+    private static void showMonitor() {
+        SwingUtilities.invokeLater(() -> {
+            splash.dispose();
+            new MonitorWindow().setVisible(true);
         });
     }
 
-    private static void setFrameIcon(JFrame frame) {
+    /**
+     * Maintenance commands for the {@link ArtifactStore}:
+     * {@code --store-list}, {@code --store-prune [maxMB]} and {@code --store-remove <key>}.
+     * @return process exit code
+     */
+    private static int runStoreCommand(String[] args) {
         try {
-            BufferedImage icon = ImageIO.read(
-                    LauncherMain.class.getResourceAsStream("/com/tonic/launcher/window_icon.png")
-            );
-            if (icon != null) {
-                frame.setIconImage(icon);
+            switch (args[0]) {
+                case "--store-list":
+                    long total = 0;
+                    for (ArtifactStore.Entry entry : ArtifactStore.list()) {
+                        System.out.printf("%-40s %8d MB  %s  %s%s%n", entry.getKey(), entry.getSize() / (1024 * 1024),
+                                entry.getSha256().substring(0, 12), new java.util.Date(entry.getLastUsed()),
+                                entry.isVerified() ? "" : "  (unverified)");
+                        total += entry.getSize();
+                    }
+                    System.out.println("Total: " + (total / (1024 * 1024)) + " MB of " + (ArtifactStore.getMaxSize() / (1024 * 1024)) + " MB");
+                    return 0;
+                case "--store-prune":
+                    long maxBytes = args.length > 1 ? Long.parseLong(args[1]) * 1024 * 1024 : ArtifactStore.getMaxSize();
+                    long freed = ArtifactStore.prune(maxBytes);
+                    System.out.println("Freed " + (freed / (1024 * 1024)) + " MB");
+                    return 0;
+                case "--store-remove":
+                    if (args.length < 2) {
+                        System.err.println("Usage: --store-remove <key>");
+                        return 2;
+                    }
+                    System.out.println(ArtifactStore.remove(args[1]) ? "Removed " + args[1] : args[1] + " is not stored");
+                    return 0;
+                default:
+                    System.err.println("Unknown command " + args[0] + ", expected --store-list, --store-prune [maxMB] or --store-remove <key>");
+                    return 2;
             }
-        } catch (IOException e) {
-            System.err.println("Failed to load window icon: " + e.getMessage());
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Artifact store command failed: " + e.getMessage());
+            return 1;
         }
     }
 }
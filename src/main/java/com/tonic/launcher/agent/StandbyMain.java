@@ -0,0 +1,222 @@
+package com.tonic.launcher.agent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Enumeration;
+import java.util.Properties;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Main class of a standby JVM, started by the launcher's {@code StandbyManager}.
+ *
+ * It preloads VitaLite's classes, then parks on a loopback socket and publishes the port
+ * and a random token in {@code standby.properties}. A launcher hands over VitaLite's program
+ * arguments, and this JVM becomes the client by calling VitaLite's main method with them.
+ * Only one standby runs at a time, it holds {@code standby.lock} until the handoff.
+ *
+ * This class runs next to VitaLite's classes, so it only uses the JDK.
+ */
+public class StandbyMain {
+    public static final String STATE_FILE = "standby.properties";
+    public static final String LOCK_FILE = "standby.lock";
+    public static final String HANDOFF = "HANDOFF";
+    public static final String SHUTDOWN = "SHUTDOWN";
+
+    // An unused standby gives its memory back eventually
+    private static final int IDLE_TIMEOUT_MILLIS = 12 * 60 * 60 * 1000;
+    private static final int REQUEST_TIMEOUT_MILLIS = 5000;
+    private static final int MAX_ARGS = 1024;
+
+    /**
+     * @param args standby directory, standby key, VitaLite jar to run, class path to report to the client
+     */
+    public static void main(String[] args) throws Throwable {
+        Path dir = Path.of(args[0]);
+        String key = args[1];
+        String jarPath = args[2];
+        String clientClassPath = args[3];
+
+        FileChannel lockChannel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = lockChannel.tryLock();
+        if (lock == null) {
+            System.out.println("Standby: another standby JVM is running, exiting");
+            return;
+        }
+
+        long start = System.nanoTime();
+        String mainClass;
+        int loaded;
+        try (JarFile jar = new JarFile(jarPath)) {
+            mainClass = jar.getManifest().getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+            loaded = preload(jar);
+        }
+        Method main = Class.forName(mainClass, false, StandbyMain.class.getClassLoader()).getMethod("main", String[].class);
+
+        String token = newToken();
+        String[] programArgs = null;
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+            publish(dir, key, token, server.getLocalPort());
+            System.out.println("Standby: preloaded " + loaded + " classes in " + (System.nanoTime() - start) / 1_000_000
+                    + " ms, waiting on port " + server.getLocalPort());
+
+            while (programArgs == null) {
+                try (Socket socket = server.accept()) {
+                    programArgs = serve(socket, token, dir);
+                } catch (SocketTimeoutException e) {
+                    System.out.println("Standby: not used for " + IDLE_TIMEOUT_MILLIS / 60_000 + " minutes, exiting");
+                    unpublish(dir, token);
+                    return;
+                } catch (IOException e) {
+                    System.out.println("Standby: request failed: " + e.getMessage());
+                }
+            }
+        }
+
+        unpublish(dir, token);
+        lock.release();
+        lockChannel.close();
+
+        // What the client would see when started with java -jar
+        System.setProperty("java.class.path", clientClassPath);
+        System.out.println("Standby: handing over to " + mainClass);
+        try {
+            main.invoke(null, (Object) programArgs);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Loads, without initializing, every class in the jar. Static initializers still run
+     * in the client, when it first uses a class.
+     * @return number of classes loaded
+     */
+    private static int preload(JarFile jar) {
+        ClassLoader loader = StandbyMain.class.getClassLoader();
+        int loaded = 0;
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            // Skips META-INF (versioned classes) and module-info/package-info
+            if (!name.endsWith(".class") || name.startsWith("META-INF/") || name.contains("-")) {
+                continue;
+            }
+            try {
+                Class.forName(name.substring(0, name.length() - ".class".length()).replace('/', '.'), false, loader);
+                loaded++;
+            } catch (ClassNotFoundException | LinkageError e) {
+                // Optional dependencies the client never touches
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Answers one request.
+     * @return the client's program arguments for a handoff, null to keep waiting
+     */
+    private static String[] serve(Socket socket, String token, Path dir) throws IOException {
+        socket.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+        String command = in.readUTF();
+        String given = in.readUTF();
+        if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), given.getBytes(StandardCharsets.UTF_8))) {
+            out.writeUTF("ERR bad token");
+            out.flush();
+            return null;
+        }
+
+        if (SHUTDOWN.equals(command)) {
+            out.writeUTF("OK");
+            out.writeLong(ProcessHandle.current().pid());
+            out.flush();
+            unpublish(dir, token);
+            System.out.println("Standby: shut down by the launcher");
+            System.exit(0);
+        }
+        if (!HANDOFF.equals(command)) {
+            out.writeUTF("ERR unknown command " + command);
+            out.flush();
+            return null;
+        }
+
+        int count = in.readInt();
+        if (count < 0 || count > MAX_ARGS) {
+            out.writeUTF("ERR bad argument count " + count);
+            out.flush();
+            return null;
+        }
+        String[] programArgs = new String[count];
+        for (int i = 0; i < count; i++) {
+            programArgs[i] = in.readUTF();
+        }
+        out.writeUTF("OK");
+        out.writeLong(ProcessHandle.current().pid());
+        out.flush();
+        return programArgs;
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b));
+        }
+        return token.toString();
+    }
+
+    private static void publish(Path dir, String key, String token, int port) throws IOException {
+        Properties state = new Properties();
+        state.setProperty("key", key);
+        state.setProperty("token", token);
+        state.setProperty("port", String.valueOf(port));
+        state.setProperty("pid", String.valueOf(ProcessHandle.current().pid()));
+
+        Path temp = dir.resolve(STATE_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            state.store(out, "VitaLite standby JVM");
+        }
+        Files.move(temp, dir.resolve(STATE_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Removes the state file, unless a newer standby has replaced it already.
+     */
+    private static void unpublish(Path dir, String token) {
+        Path file = dir.resolve(STATE_FILE);
+        try {
+            Properties state = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                state.load(in);
+            }
+            if (token.equals(state.getProperty("token"))) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.tonic.launcher.agent;
+
+import java.awt.EventQueue;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Java agent the launcher adds to a client with
+ * {@code -javaagent:agent.jar=<launcherCom port>;<interval ms>;<token>;<instance id>}.
+ *
+ * It connects to the launcher channel and streams one JSON object per line: a
+ * {@code hello} with the instance's identity, then a {@code metrics} sample every interval.
+ * Samples double as heartbeats, and {@code edtLag} tells how long the client's event
+ * dispatch thread took to run a posted task, so a frozen UI shows up too.
+ * It stops when the launcher goes away. Runs inside the client, so it only uses the JDK.
+ */
+public class TelemetryAgent {
+    public static final String HELLO = "hello";
+    public static final String METRICS = "metrics";
+
+    // Set while a probe task waits on the event queue
+    private static volatile long edtPostedAt = 0;
+    private static volatile long edtLastLag = -1;
+    private static boolean edtStarted = false;
+
+    public static void premain(String args) {
+        String[] parts = args.split(";", 4);
+        int port = Integer.parseInt(parts[0]);
+        long interval = Long.parseLong(parts[1]);
+        String token = parts[2];
+        String id = parts.length > 3 ? parts[3] : "";
+
+        Thread thread = new Thread(() -> run(port, interval, token, id), "VitaLauncherTelemetry");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private static void run(int port, long interval, String token, String id) {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            out.write("{\"type\":\"" + HELLO + "\",\"token\":" + quote(token) + ",\"id\":" + quote(id)
+                    + ",\"pid\":" + ProcessHandle.current().pid()
+                    + ",\"javaVersion\":" + quote(System.getProperty("java.version"))
+                    + ",\"processors\":" + Runtime.getRuntime().availableProcessors() + "}\n");
+            out.flush();
+
+            while (true) {
+                out.write(sample());
+                out.flush();
+                Thread.sleep(interval);
+            }
+        } catch (IOException | InterruptedException e) {
+            // The launcher exited or closed the channel, nothing left to report to
+        }
+    }
+
+    private static String sample() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcMillis += Math.max(0, gc.getCollectionTime());
+        }
+
+        long cpuNanos = -1;
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean) {
+            cpuNanos = ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+        }
+
+        return "{\"type\":\"" + METRICS + "\""
+                + ",\"time\":" + System.currentTimeMillis()
+                + ",\"uptime\":" + ManagementFactory.getRuntimeMXBean().getUptime()
+                + ",\"heapUsed\":" + heap.getUsed()
+                + ",\"heapCommitted\":" + heap.getCommitted()
+                + ",\"heapMax\":" + heap.getMax()
+                + ",\"nonHeapUsed\":" + nonHeap.getUsed()
+                + ",\"gcCount\":" + gcCount
+                + ",\"gcMillis\":" + gcMillis
+                + ",\"cpuMillis\":" + (cpuNanos >= 0 ? cpuNanos / 1_000_000 : -1)
+                + ",\"threads\":" + ManagementFactory.getThreadMXBean().getThreadCount()
+                + ",\"classes\":" + ManagementFactory.getClassLoadingMXBean().getLoadedClassCount()
+                + ",\"edtLag\":" + edtLag()
+                + "}\n";
+    }
+
+    /**
+     * Posts a probe task to the event queue and reports how long the previous one took, or
+     * how long the current one has been waiting.
+     * @return lag in ms, or -1 before the client started its UI
+     */
+    private static long edtLag() {
+        if (!edtStarted) {
+            // The client has to initialize AWT itself, the agent must not do it first
+            if (!isEdtRunning()) {
+                return -1;
+            }
+            edtStarted = true;
+        }
+
+        long now = System.currentTimeMillis();
+        long posted = edtPostedAt;
+        if (posted != 0) {
+            return Math.max(edtLastLag, now - posted);
+        }
+        edtPostedAt = now;
+        EventQueue.invokeLater(() -> {
+            edtLastLag = System.currentTimeMillis() - edtPostedAt;
+            edtPostedAt = 0;
+        });
+        return edtLastLag;
+    }
+
+    private static boolean isEdtRunning() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        Thread[] threads = new Thread[root.activeCount() * 2];
+        int count = root.enumerate(threads);
+        for (int i = 0; i < count; i++) {
+            if (threads[i].getName().startsWith("AWT-EventQueue")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -1,12 +1,23 @@
 package com.tonic.launcher.ui;
 
+import com.tonic.launcher.util.CliArguments;
+import com.tonic.launcher.util.JDKManager;
+import com.tonic.launcher.util.JvmArgValidator;
+import com.tonic.launcher.util.JvmFlagCatalog;
+import com.tonic.launcher.util.JvmProfile;
+import com.tonic.launcher.util.LaunchProfile;
 import com.tonic.launcher.util.LauncherConfig;
+import com.tonic.launcher.util.MemoryPlanner;
+import com.tonic.launcher.util.RuntimeDiscovery;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import javax.swing.DefaultListModel;
@@ -15,6 +26,7 @@ import javax.swing.SpinnerNumberModel;
 
 public class LauncherSettingsPanel extends JFrame {
     private static final int WIDTH = 500;
+    // Fits a 768 pixel screen, the options scroll
     private static final int HEIGHT = 650;
 
     private static final Color BACKGROUND_COLOR = new Color(30, 35, 45);
@@ -23,7 +35,9 @@ public class LauncherSettingsPanel extends JFrame {
     private static final Color LABEL_COLOR = new Color(150, 160, 180);
     private static final Color BUTTON_COLOR = new Color(70, 130, 200);
     private static final Color BUTTON_HOVER_COLOR = new Color(90, 150, 220);
-    private final LauncherConfig config = new LauncherConfig();
+    private static final Color ERROR_COLOR = new Color(235, 90, 90);
+    private static final Color WARNING_COLOR = new Color(230, 180, 70);
+    private final LauncherConfig config = LauncherConfig.get();
 
     // Checkboxes
     private JCheckBox noPluginsCheckbox;
@@ -33,18 +47,24 @@ public class LauncherSettingsPanel extends JFrame {
     private JCheckBox rsdumpCheckbox;
     private JCheckBox proxyCheckbox;
     private JCheckBox mouseHookCheckbox;
+    private JCheckBox standbyCheckbox;
+    private JCheckBox telemetryCheckbox;
 
     // Text fields
     private JTextField rsdumpField;
     private JTextField proxyField;
     private JTextField loginField;
 
-    // Combo box
+    // Combo boxes
     private JComboBox<String> loginTypeCombo;
+    private JComboBox<RuntimeDiscovery.Policy> runtimeCombo;
+    private JComboBox<JvmProfile> jvmProfileCombo;
 
     // Memory settings
     private JCheckBox maxMemoryCheckbox;
     private JSpinner maxMemorySpinner;
+    private JCheckBox autoMemoryCheckbox;
+    private JLabel memoryPlanLabel;
 
     // Login hint label
     private JLabel loginHintLabel;
@@ -52,6 +72,13 @@ public class LauncherSettingsPanel extends JFrame {
     // JVM Args
     private DefaultListModel<String> jvmArgsListModel;
     private JList<String> jvmArgsList;
+    private JLabel jvmArgsStatusLabel;
+    // Problems of the list as shown, refreshed on every change
+    private List<JvmArgValidator.Problem> jvmArgProblems = List.of();
+    // Flags of the JDK the launch would use, null until loaded or if it is not installed
+    private JvmFlagCatalog flagCatalog;
+    // Only the latest load applies when the Java choice changes during one
+    private int catalogLoads;
 
     // Launch callback
     private LaunchCallback launchCallback;
@@ -65,11 +92,14 @@ public class LauncherSettingsPanel extends JFrame {
         setLocationRelativeTo(null);
         setResizable(false);
         setUndecorated(true);
+        WindowIcon.apply(this);
 
         initComponents();
 
         // Make window rounded
         setShape(new java.awt.geom.RoundRectangle2D.Double(0, 0, WIDTH, HEIGHT, 20, 20));
+
+        loadFlagCatalog();
     }
 
     private void initComponents() {
@@ -87,7 +117,11 @@ public class LauncherSettingsPanel extends JFrame {
         settingsWrapper.setBackground(BACKGROUND_COLOR);
         settingsWrapper.setBorder(new EmptyBorder(0, 0, 10, 0));
         JPanel settingsPanel = createSettingsPanel();
-        settingsWrapper.add(settingsPanel, BorderLayout.NORTH);
+        JScrollPane settingsScroll = new JScrollPane(settingsPanel, ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED,
+                ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+        settingsScroll.setBorder(BorderFactory.createEmptyBorder());
+        settingsScroll.getViewport().setBackground(PANEL_COLOR);
+        settingsWrapper.add(settingsScroll, BorderLayout.CENTER);
         mainPanel.add(settingsWrapper, BorderLayout.CENTER);
 
         // Launch button panel
@@ -208,7 +242,7 @@ public class LauncherSettingsPanel extends JFrame {
     }
 
     private JPanel createSettingsPanel() {
-        JPanel panel = new JPanel();
+        JPanel panel = new ScrollablePanel();
         panel.setBackground(PANEL_COLOR);
         panel.setBorder(new EmptyBorder(20, 30, 20, 30));
         panel.setLayout(new BorderLayout(20, 0));
@@ -222,6 +256,8 @@ public class LauncherSettingsPanel extends JFrame {
         noMusicCheckbox = createStyledCheckbox("Disable Music", "Prevent the loading of music tracks");
         incognitoCheckbox = createStyledCheckbox("Incognito Mode", "Visually display as 'RuneLite' instead of 'VitaLite'");
         mouseHookCheckbox = createStyledCheckbox("Disable RL DLL", "Disable RuneLites mouse hook DLL from loading or being called.");
+        telemetryCheckbox = createStyledCheckbox("Monitor Clients", "Keep the launcher open with live heap, GC, CPU and thread stats of the clients, also logged to the telemetry folder");
+        standbyCheckbox = createStyledCheckbox("Standby JVM", "Keep a pre-started client JVM in the background so the next launch starts instantly");
 
         //load default states
         noPluginsCheckbox.setSelected(config.isNoPlugins());
@@ -229,6 +265,8 @@ public class LauncherSettingsPanel extends JFrame {
         noMusicCheckbox.setSelected(config.isNoMusic());
         incognitoCheckbox.setSelected(config.isIncognito());
         mouseHookCheckbox.setSelected(config.isMouseHook());
+        standbyCheckbox.setSelected(config.isStandbyEnabled());
+        telemetryCheckbox.setSelected(config.isTelemetryEnabled());
 
         //listeners
         noPluginsCheckbox.addActionListener(e -> config.setNoPlugins(noPluginsCheckbox.isSelected()));
@@ -236,12 +274,16 @@ public class LauncherSettingsPanel extends JFrame {
         noMusicCheckbox.addActionListener(e -> config.setNoMusic(noMusicCheckbox.isSelected()));
         incognitoCheckbox.addActionListener(e -> config.setIncognito(incognitoCheckbox.isSelected()));
         mouseHookCheckbox.addActionListener(e -> config.setMouseHook(mouseHookCheckbox.isSelected()));
+        standbyCheckbox.addActionListener(e -> config.setStandbyEnabled(standbyCheckbox.isSelected()));
+        telemetryCheckbox.addActionListener(e -> config.setTelemetryEnabled(telemetryCheckbox.isSelected()));
 
         booleanOptionsPanel.add(noPluginsCheckbox);
         booleanOptionsPanel.add(minCheckbox);
         booleanOptionsPanel.add(noMusicCheckbox);
         booleanOptionsPanel.add(incognitoCheckbox);
         booleanOptionsPanel.add(mouseHookCheckbox);
+        booleanOptionsPanel.add(standbyCheckbox);
+        booleanOptionsPanel.add(telemetryCheckbox);
 
         // Memory settings panel
         JPanel memoryPanel = createMemoryPanel();
@@ -292,6 +334,12 @@ public class LauncherSettingsPanel extends JFrame {
         topSection.add(booleanOptionsPanel);
         topSection.add(Box.createVerticalStrut(15));
         topSection.add(memoryPanel);
+        topSection.add(Box.createVerticalStrut(3));
+        topSection.add(createMemoryPlanPanel());
+        topSection.add(Box.createVerticalStrut(10));
+        topSection.add(createRuntimePanel());
+        topSection.add(Box.createVerticalStrut(5));
+        topSection.add(createJvmProfilePanel());
         topSection.add(Box.createVerticalStrut(20));
 
         panel.add(topSection, BorderLayout.NORTH);
@@ -314,9 +362,11 @@ public class LauncherSettingsPanel extends JFrame {
         maxMemoryCheckbox.setFocusPainted(false);
         maxMemoryCheckbox.setToolTipText("Set maximum JVM memory (-Xmx)");
         maxMemoryCheckbox.setSelected(config.isMaxMemoryEnabled());
+        maxMemoryCheckbox.setEnabled(!config.isAutoMemory());
         maxMemoryCheckbox.addActionListener(e -> {
             config.setMaxMemoryEnabled(maxMemoryCheckbox.isSelected());
             maxMemorySpinner.setEnabled(maxMemoryCheckbox.isSelected());
+            validateJvmArgs();
         });
 
         int memoryValue = config.getMaxMemoryValue();
@@ -331,9 +381,10 @@ public class LauncherSettingsPanel extends JFrame {
         maxMemorySpinner = new JSpinner(spinnerModel);
         maxMemorySpinner.setFont(new Font("Arial", Font.PLAIN, 12));
         maxMemorySpinner.setPreferredSize(new Dimension(80, 25));
-        maxMemorySpinner.setEnabled(config.isMaxMemoryEnabled());
+        maxMemorySpinner.setEnabled(config.isMaxMemoryEnabled() && !config.isAutoMemory());
         maxMemorySpinner.addChangeListener(e -> {
             config.setMaxMemoryValue((Integer) maxMemorySpinner.getValue());
+            validateJvmArgs();
         });
 
         // Style spinner
@@ -352,8 +403,121 @@ public class LauncherSettingsPanel extends JFrame {
 
         panel.add(maxMemoryCheckbox);
         panel.add(Box.createHorizontalStrut(10));
+        // Automatic plan, replaces the manual value while selected
+        autoMemoryCheckbox = new JCheckBox("Auto");
+        autoMemoryCheckbox.setFont(new Font("Arial", Font.PLAIN, 13));
+        autoMemoryCheckbox.setForeground(TEXT_COLOR);
+        autoMemoryCheckbox.setBackground(PANEL_COLOR);
+        autoMemoryCheckbox.setFocusPainted(false);
+        autoMemoryCheckbox.setToolTipText("Plan -Xmx, -Xms, metaspace and code cache from this computer's memory and the number of clients");
+        autoMemoryCheckbox.setSelected(config.isAutoMemory());
+        autoMemoryCheckbox.addActionListener(e -> {
+            config.setAutoMemory(autoMemoryCheckbox.isSelected());
+            maxMemoryCheckbox.setEnabled(!autoMemoryCheckbox.isSelected());
+            maxMemorySpinner.setEnabled(maxMemoryCheckbox.isSelected() && !autoMemoryCheckbox.isSelected());
+            updateMemoryPlanText();
+            validateJvmArgs();
+        });
+
         panel.add(maxMemorySpinner);
         panel.add(mbLabel);
+        panel.add(Box.createHorizontalStrut(20));
+        panel.add(autoMemoryCheckbox);
+
+        return panel;
+    }
+
+    private JPanel createMemoryPlanPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(PANEL_COLOR);
+        panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 32));
+
+        memoryPlanLabel = new JLabel();
+        memoryPlanLabel.setFont(new Font("Arial", Font.ITALIC, 11));
+        memoryPlanLabel.setForeground(LABEL_COLOR);
+        updateMemoryPlanText();
+
+        panel.add(memoryPlanLabel, BorderLayout.WEST);
+
+        return panel;
+    }
+
+    private void updateMemoryPlanText() {
+        if (memoryPlanLabel == null) return;
+
+        if (!autoMemoryCheckbox.isSelected()) {
+            memoryPlanLabel.setText(" ");
+            return;
+        }
+
+        MemoryPlanner.Host host = MemoryPlanner.Host.detect();
+        String text = MemoryPlanner.plan(host, List.of(LaunchProfile.single())).describe();
+        try {
+            // The batch launch (--batch) plans for every profile
+            if (Files.isRegularFile(LaunchProfile.DEFAULT_FILE)) {
+                text += "<br>Batch of " + MemoryPlanner.plan(host, LaunchProfile.load(LaunchProfile.DEFAULT_FILE)).describe();
+            }
+        } catch (IOException e) {
+            text += "<br>" + e.getMessage();
+        }
+        memoryPlanLabel.setText("<html>" + text + "</html>");
+    }
+
+    private JPanel createRuntimePanel() {
+        runtimeCombo = new JComboBox<>(RuntimeDiscovery.Policy.values());
+        runtimeCombo.setToolTipText("Which Java runs VitaLite, installed runtimes are found on JAVA_HOME, PATH and the usual install folders");
+        runtimeCombo.setSelectedItem(config.getRuntimePolicy());
+        runtimeCombo.addActionListener(e -> {
+            config.setRuntimePolicy((RuntimeDiscovery.Policy) runtimeCombo.getSelectedItem());
+            // Another JDK has other flags
+            loadFlagCatalog();
+        });
+        return createComboPanel("Java:", runtimeCombo, value -> ((RuntimeDiscovery.Policy) value).getLabel());
+    }
+
+    private JPanel createJvmProfilePanel() {
+        jvmProfileCombo = new JComboBox<>(JvmProfile.values());
+        jvmProfileCombo.setToolTipText("GC and JIT settings sized from this computer's cores, memory and the number of clients");
+        jvmProfileCombo.setSelectedItem(config.getJvmProfile());
+        jvmProfileCombo.addActionListener(e -> config.setJvmProfile((JvmProfile) jvmProfileCombo.getSelectedItem()));
+        return createComboPanel("JVM Profile:", jvmProfileCombo, value -> ((JvmProfile) value).getLabel());
+    }
+
+    /**
+     * A labelled row with a combo box styled like the login type.
+     * @param labels display text of an item
+     */
+    private JPanel createComboPanel(String text, JComboBox<?> combo, java.util.function.Function<Object, String> labels) {
+        JPanel panel = new JPanel(new BorderLayout(10, 0));
+        panel.setBackground(PANEL_COLOR);
+        panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 30));
+
+        JLabel label = new JLabel(text);
+        label.setFont(new Font("Arial", Font.PLAIN, 13));
+        label.setForeground(TEXT_COLOR);
+        label.setPreferredSize(new Dimension(120, 25));
+
+        combo.setFont(new Font("Arial", Font.PLAIN, 12));
+        combo.setBackground(new Color(50, 55, 65));
+        combo.setForeground(TEXT_COLOR);
+        combo.setFocusable(false);
+        combo.setPreferredSize(new Dimension(200, 30));
+        combo.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                if (value != null) {
+                    setText(labels.apply(value));
+                }
+                setBackground(isSelected ? new Color(70, 130, 200) : new Color(50, 55, 65));
+                setForeground(TEXT_COLOR);
+                setBorder(new EmptyBorder(5, 8, 5, 8));
+                return this;
+            }
+        });
+
+        panel.add(label, BorderLayout.WEST);
+        panel.add(combo, BorderLayout.CENTER);
 
         return panel;
     }
@@ -479,6 +643,9 @@ public class LauncherSettingsPanel extends JFrame {
         jvmArgsList.setSelectionBackground(new Color(70, 130, 200));
         jvmArgsList.setSelectionForeground(Color.WHITE);
         jvmArgsList.setBorder(new EmptyBorder(5, 5, 5, 5));
+        jvmArgsList.setCellRenderer(new JvmArgRenderer());
+        // The renderer's tooltips explain each problem
+        ToolTipManager.sharedInstance().registerComponent(jvmArgsList);
 
         // Scroll pane for list
         JScrollPane scrollPane = new JScrollPane(jvmArgsList);
@@ -502,6 +669,15 @@ public class LauncherSettingsPanel extends JFrame {
         buttonsPanel.add(removeButton);
         buttonsPanel.add(resetButton);
 
+        jvmArgsStatusLabel = new JLabel(" ");
+        jvmArgsStatusLabel.setFont(new Font("Arial", Font.ITALIC, 11));
+        jvmArgsStatusLabel.setForeground(LABEL_COLOR);
+
+        JPanel bottomPanel = new JPanel(new BorderLayout(0, 6));
+        bottomPanel.setBackground(PANEL_COLOR);
+        bottomPanel.add(jvmArgsStatusLabel, BorderLayout.NORTH);
+        bottomPanel.add(buttonsPanel, BorderLayout.SOUTH);
+
         // Assemble panel
         JPanel topPanel = new JPanel(new BorderLayout());
         topPanel.setBackground(PANEL_COLOR);
@@ -509,8 +685,9 @@ public class LauncherSettingsPanel extends JFrame {
 
         panel.add(topPanel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
-        panel.add(buttonsPanel, BorderLayout.SOUTH);
+        panel.add(bottomPanel, BorderLayout.SOUTH);
 
+        validateJvmArgs();
         return panel;
     }
 
@@ -544,10 +721,62 @@ public class LauncherSettingsPanel extends JFrame {
                 JOptionPane.PLAIN_MESSAGE
         );
 
-        if (input != null && !input.trim().isEmpty()) {
-            jvmArgsListModel.addElement(input.trim());
-            saveJvmArgsToConfig();
+        if (input == null || input.trim().isEmpty()) {
+            return;
+        }
+        // Several arguments pasted at once, split before each option
+        List<String> added = new ArrayList<>();
+        for (String arg : input.trim().split("\\s+(?=-)")) {
+            if (!added.contains(arg)) {
+                added.add(arg);
+            }
+        }
+
+        List<String> args = getJvmArgs();
+        List<String> merged = new ArrayList<>(args);
+        for (String arg : added) {
+            putJvmArg(merged, arg);
+        }
+        StringBuilder errors = new StringBuilder();
+        for (JvmArgValidator.Problem problem : JvmArgValidator.validate(config, merged, flagCatalog)) {
+            if (problem.isError() && added.contains(problem.getArg())) {
+                errors.append(problem).append('\n');
+            }
+        }
+        if (errors.length() > 0) {
+            int confirm = JOptionPane.showConfirmDialog(
+                    this,
+                    errors + "\nThe client will not launch with this. Add anyway?",
+                    "Invalid JVM Argument",
+                    JOptionPane.YES_NO_OPTION,
+                    JOptionPane.WARNING_MESSAGE
+            );
+            if (confirm != JOptionPane.YES_OPTION) {
+                return;
+            }
+        }
+
+        jvmArgsListModel.clear();
+        for (String arg : merged) {
+            jvmArgsListModel.addElement(arg);
         }
+        saveJvmArgsToConfig();
+    }
+
+    /**
+     * Adds {@code arg}, or replaces the argument it overrides in place, e.g. {@code -Xmx2g}
+     * replaces {@code -Xmx1g} and {@code -XX:-UseStringDeduplication} replaces
+     * {@code -XX:+UseStringDeduplication}.
+     */
+    private static void putJvmArg(List<String> args, String arg) {
+        String key = JvmArgValidator.dedupKey(arg);
+        for (int i = 0; i < args.size(); i++) {
+            if (JvmArgValidator.dedupKey(args.get(i)).equals(key)) {
+                args.set(i, arg);
+                return;
+            }
+        }
+        args.add(arg);
     }
 
     private void removeSelectedJvmArg() {
@@ -584,11 +813,84 @@ public class LauncherSettingsPanel extends JFrame {
     }
 
     private void saveJvmArgsToConfig() {
+        config.setJvmArgs(getJvmArgs());
+        validateJvmArgs();
+    }
+
+    private List<String> getJvmArgs() {
         List<String> args = new ArrayList<>();
         for (int i = 0; i < jvmArgsListModel.size(); i++) {
             args.add(jvmArgsListModel.getElementAt(i));
         }
-        config.setJvmArgs(args);
+        return args;
+    }
+
+    /**
+     * Reads the flags of the JDK the launch would use off the EDT, the first read of a JDK
+     * starts it once.
+     */
+    private void loadFlagCatalog() {
+        int load = ++catalogLoads;
+        Thread thread = new Thread(() -> {
+            Path java = JDKManager.findJavaExecutable();
+            JvmFlagCatalog catalog = java != null ? JvmFlagCatalog.get(java) : null;
+            SwingUtilities.invokeLater(() -> {
+                if (load == catalogLoads) {
+                    flagCatalog = catalog;
+                    validateJvmArgs();
+                }
+            });
+        }, "JvmFlagCatalog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void validateJvmArgs() {
+        if (jvmArgsStatusLabel == null) return;
+
+        jvmArgProblems = JvmArgValidator.validate(config, getJvmArgs(), flagCatalog);
+        long errors = jvmArgProblems.stream().filter(JvmArgValidator.Problem::isError).count();
+        long warnings = jvmArgProblems.size() - errors;
+        if (errors > 0 || warnings > 0) {
+            jvmArgsStatusLabel.setText(errors + " error(s), " + warnings + " warning(s) - hover an argument for details");
+            jvmArgsStatusLabel.setForeground(errors > 0 ? ERROR_COLOR : WARNING_COLOR);
+        } else {
+            jvmArgsStatusLabel.setText(flagCatalog != null
+                    ? "All arguments valid for " + flagCatalog.getJava()
+                    : "Flags are checked once the JDK is installed");
+            jvmArgsStatusLabel.setForeground(LABEL_COLOR);
+        }
+        jvmArgsStatusLabel.setToolTipText(jvmArgsStatusLabel.getText());
+        jvmArgsList.repaint();
+    }
+
+    /**
+     * Colors arguments with problems, their messages are the tooltip.
+     */
+    private class JvmArgRenderer extends DefaultListCellRenderer {
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+            super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+            StringBuilder tooltip = new StringBuilder();
+            boolean error = false;
+            for (JvmArgValidator.Problem problem : jvmArgProblems) {
+                if (problem.getIndex() == index) {
+                    error |= problem.isError();
+                    tooltip.append(tooltip.length() == 0 ? "<html>" : "<br>")
+                            .append(problem.getSeverity() == JvmArgValidator.Severity.ERROR ? "Error: " : "Warning: ")
+                            .append(escape(problem.getMessage()));
+                }
+            }
+            if (tooltip.length() > 0 && !isSelected) {
+                setForeground(error ? ERROR_COLOR : WARNING_COLOR);
+            }
+            setToolTipText(tooltip.length() > 0 ? tooltip + "</html>" : null);
+            return this;
+        }
+
+        private String escape(String text) {
+            return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+        }
     }
 
     private JCheckBox createStyledCheckbox(String text, String tooltip) {
@@ -642,6 +944,37 @@ public class LauncherSettingsPanel extends JFrame {
         return new FieldPanelComponents(panel, checkbox, textField);
     }
 
+    /**
+     * Scrolls vertically and follows the width of the window.
+     */
+    private static class ScrollablePanel extends JPanel implements Scrollable {
+        @Override
+        public Dimension getPreferredScrollableViewportSize() {
+            return getPreferredSize();
+        }
+
+        @Override
+        public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return 16;
+        }
+
+        @Override
+        public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportWidth() {
+            return true;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportHeight() {
+            // Fill a taller viewport, scroll in a shorter one
+            return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+        }
+    }
+
     private static class FieldPanelComponents {
         JPanel panel;
         JCheckBox checkbox;
@@ -686,6 +1019,24 @@ public class LauncherSettingsPanel extends JFrame {
     }
 
     private void onLaunch() {
+        // Edits are saved after a short delay, write them before the launch can exit
+        config.save();
+        List<String> errors = new ArrayList<>();
+        for (JvmArgValidator.Problem problem : jvmArgProblems) {
+            if (problem.isError()) {
+                errors.add(problem.toString());
+            }
+        }
+        if (!errors.isEmpty()) {
+            // The JVM would refuse to start, no point in a launch
+            JOptionPane.showMessageDialog(
+                    this,
+                    "Fix the JVM arguments before launching:\n" + String.join("\n", errors),
+                    "Invalid JVM Arguments",
+                    JOptionPane.ERROR_MESSAGE
+            );
+            return;
+        }
         List<String> args = buildCliArguments();
 
         if (launchCallback != null) {
@@ -696,45 +1047,8 @@ public class LauncherSettingsPanel extends JFrame {
     }
 
     public List<String> buildCliArguments() {
-        List<String> args = new ArrayList<>();
-
-        if (rsdumpCheckbox.isSelected() && !rsdumpField.getText().trim().isEmpty()) {
-            args.add("--rsdump");
-            args.add(rsdumpField.getText().trim());
-        }
-
-        if (noPluginsCheckbox.isSelected()) {
-            args.add("-noPlugins");
-        }
-
-        if (minCheckbox.isSelected()) {
-            args.add("-min");
-        }
-
-        if (noMusicCheckbox.isSelected()) {
-            args.add("-noMusic");
-        }
-
-        if (incognitoCheckbox.isSelected()) {
-            args.add("-incognito");
-        }
-
-        if (proxyCheckbox.isSelected() && !proxyField.getText().trim().isEmpty()) {
-            args.add("--proxy");
-            args.add(proxyField.getText().trim());
-        }
-
-        if (!loginField.getText().trim().isEmpty()) {
-            String loginType = (String) loginTypeCombo.getSelectedItem();
-            if ("Legacy".equals(loginType)) {
-                args.add("--legacyLogin");
-            } else if ("Jagex".equals(loginType)) {
-                args.add("--jagexLogin");
-            }
-            args.add(loginField.getText().trim());
-        }
-
-        return args;
+        // Every field is saved as it changes
+        return CliArguments.build(config);
     }
 
     public void setLaunchCallback(LaunchCallback callback) {
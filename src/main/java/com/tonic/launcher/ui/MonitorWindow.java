@@ -0,0 +1,189 @@
+package com.tonic.launcher.ui;
+
+import com.tonic.launcher.util.TelemetryHub;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Live view of the clients' telemetry, one row per client, refreshed every sample
+ * interval. Heap trend is the growth of heap use per minute over the sample buffer; a
+ * client that keeps growing is highlighted.
+ */
+public class MonitorWindow extends JFrame {
+    private static final int WIDTH = 900;
+    private static final int HEIGHT = 400;
+    // MB per minute, sustained over the buffer
+    private static final double LEAK_TREND = 5.0;
+
+    private static final Color BACKGROUND_COLOR = new Color(30, 35, 45);
+    private static final Color PANEL_COLOR = new Color(40, 45, 55);
+    private static final Color TEXT_COLOR = Color.WHITE;
+    private static final Color LABEL_COLOR = new Color(150, 160, 180);
+    private static final Color WARNING_COLOR = new Color(220, 160, 60);
+    private static final Color EXITED_COLOR = new Color(100, 105, 115);
+
+    private static final String[] COLUMNS = {
+            "Client", "PID", "Heap MB", "Max MB", "Trend MB/min", "Non-heap MB", "GC ms", "CPU %", "Threads", "Classes", "Up"
+    };
+    private static final Class<?>[] COLUMN_CLASSES = {
+            String.class, Long.class, Long.class, Long.class, Double.class, Long.class, Long.class, Long.class,
+            Integer.class, Integer.class, String.class
+    };
+
+    private final InstanceTableModel model = new InstanceTableModel();
+    private final JLabel summaryLabel = new JLabel();
+
+    public MonitorWindow() {
+        setTitle("VitaLite Monitor");
+        setSize(WIDTH, HEIGHT);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLocationRelativeTo(null);
+        WindowIcon.apply(this);
+
+        JPanel panel = new JPanel(new BorderLayout(0, 10));
+        panel.setBackground(BACKGROUND_COLOR);
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        JTable table = new JTable(model);
+        table.setBackground(PANEL_COLOR);
+        table.setForeground(TEXT_COLOR);
+        table.setGridColor(BACKGROUND_COLOR);
+        table.setFont(new Font("Arial", Font.PLAIN, 12));
+        table.setRowHeight(22);
+        table.setAutoCreateRowSorter(true);
+        table.getTableHeader().setBackground(BACKGROUND_COLOR);
+        table.getTableHeader().setForeground(LABEL_COLOR);
+        table.getTableHeader().setFont(new Font("Arial", Font.BOLD, 12));
+        // Number columns would otherwise get JTable's own renderer and miss the row colors
+        InstanceRenderer renderer = new InstanceRenderer();
+        table.setDefaultRenderer(Object.class, renderer);
+        table.setDefaultRenderer(Number.class, renderer);
+
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.getViewport().setBackground(PANEL_COLOR);
+        scrollPane.setBorder(BorderFactory.createEmptyBorder());
+
+        summaryLabel.setFont(new Font("Arial", Font.ITALIC, 11));
+        summaryLabel.setForeground(LABEL_COLOR);
+
+        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(summaryLabel, BorderLayout.SOUTH);
+        setContentPane(panel);
+
+        Timer timer = new Timer((int) TelemetryHub.INTERVAL_MILLIS, e -> refresh());
+        timer.setInitialDelay(0);
+        timer.start();
+    }
+
+    private void refresh() {
+        model.update(TelemetryHub.getInstances());
+
+        int running = 0;
+        long heap = 0;
+        for (TelemetryHub.Instance instance : model.instances) {
+            TelemetryHub.Sample latest = instance.getLatest();
+            if (instance.isConnected()) {
+                running++;
+                heap += latest != null ? latest.getHeapUsed() : 0;
+            }
+        }
+        summaryLabel.setText(running + " of " + model.instances.size() + " clients running, "
+                + heap / (1024 * 1024) + " MB heap in use. Closing this window leaves the clients running.");
+    }
+
+    private static String formatUptime(long millis) {
+        long minutes = millis / 60_000;
+        return minutes >= 60 ? (minutes / 60) + "h " + (minutes % 60) + "m" : minutes + "m";
+    }
+
+    private static class InstanceTableModel extends AbstractTableModel {
+        private List<TelemetryHub.Instance> instances = new ArrayList<>();
+
+        void update(List<TelemetryHub.Instance> instances) {
+            this.instances = instances;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return instances.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return COLUMN_CLASSES[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            TelemetryHub.Instance instance = instances.get(row);
+            TelemetryHub.Sample latest = instance.getLatest();
+            if (column == 0) {
+                return instance.getId() + (instance.isConnected() ? "" : " (exited)");
+            }
+            if (column == 1) {
+                return instance.getPid();
+            }
+            if (latest == null) {
+                return null;
+            }
+            switch (column) {
+                case 2:
+                    return latest.getHeapUsed() / (1024 * 1024);
+                case 3:
+                    return latest.getHeapMax() / (1024 * 1024);
+                case 4:
+                    return Math.round(instance.getHeapTrend() * 10) / 10.0;
+                case 5:
+                    return latest.getNonHeapUsed() / (1024 * 1024);
+                case 6:
+                    return latest.getGcMillis();
+                case 7:
+                    // Unknown until the second sample
+                    double cpu = instance.getCpuPercent();
+                    return cpu < 0 ? null : Math.round(cpu);
+                case 8:
+                    return latest.getThreads();
+                case 9:
+                    return latest.getClasses();
+                default:
+                    return formatUptime(latest.getUptime());
+            }
+        }
+    }
+
+    private class InstanceRenderer extends DefaultTableCellRenderer {
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus,
+                                                       int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            TelemetryHub.Instance instance = model.instances.get(table.convertRowIndexToModel(row));
+            setBackground(isSelected ? BACKGROUND_COLOR : PANEL_COLOR);
+            if (!instance.isConnected()) {
+                setForeground(EXITED_COLOR);
+            } else if (instance.getHeapTrend() > LEAK_TREND) {
+                setForeground(WARNING_COLOR);
+            } else {
+                setForeground(TEXT_COLOR);
+            }
+            setHorizontalAlignment(column == 0 ? LEFT : RIGHT);
+            return this;
+        }
+    }
+}
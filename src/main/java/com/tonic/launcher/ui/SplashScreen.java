@@ -1,33 +1,126 @@
 package com.tonic.launcher.ui;
 
+import com.tonic.launcher.util.LaunchStage;
+import com.tonic.launcher.util.ProgressListener;
+
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
-
-public class SplashScreen extends JWindow {
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Launch progress window.
+ *
+ * Progress can be reported from any thread and as often as a download loop likes: each update
+ * replaces an immutable {@link State} and marks the splash dirty, and one Swing timer repaints
+ * at most {@link #MAX_FPS} times a second while it is. The icon, title and version never
+ * change, they are drawn once into an image that every frame starts from.
+ */
+public class SplashScreen extends JWindow implements ProgressListener {
     private static final int WIDTH = 500;
     private static final int HEIGHT = 350;
     private static final int PROGRESS_BAR_HEIGHT = 30;
     private static final int CORNER_RADIUS = 20;
+    private static final int MAX_FPS = 30;
+
+    // Layout, the window has a fixed size
+    private static final int BAR_WIDTH = 460;
+    private static final int BAR_X = (WIDTH - BAR_WIDTH) / 2;
+    private static final int STAGE_BAR_Y = 155;
+    private static final int OVERALL_BAR_Y = STAGE_BAR_Y + PROGRESS_BAR_HEIGHT + 30;
+    private static final int STAGES_Y = OVERALL_BAR_Y + PROGRESS_BAR_HEIGHT + 25;
+    private static final int BG_ICON_SIZE = 300;
 
     private static final Color BACKGROUND_COLOR = new Color(30, 35, 45);
     private static final Color PROGRESS_BG_COLOR = new Color(45, 52, 65);
     private static final Color PROGRESS_FILL_COLOR = new Color(70, 130, 200);
     private static final Color PROGRESS_BORDER_COLOR = new Color(90, 150, 220);
+    private static final Color OVERALL_FILL_COLOR = new Color(100, 180, 100);
+    private static final Color STAGE_DONE_COLOR = new Color(120, 200, 120);
+    private static final Color SUBTITLE_COLOR = new Color(150, 160, 180);
+    private static final Color SHADOW_COLOR = new Color(0, 0, 0, 150);
     private static final Color TEXT_COLOR = Color.WHITE;
     private static final Color TITLE_COLOR = new Color(150, 200, 255);
     private static final Color ERROR_COLOR = new Color(220, 60, 60);
+    private static final Color ERROR_HOVER_COLOR = new Color(240, 80, 80);
+
+    private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 48);
+    private static final Font SUBTITLE_FONT = new Font("Arial", Font.PLAIN, 14);
+    private static final Font STATUS_FONT = new Font("Arial", Font.BOLD, 11);
+    private static final Font STAGE_FONT = new Font("Arial", Font.PLAIN, 10);
+    private static final BasicStroke BORDER_STROKE = new BasicStroke(2);
+    private static final BasicStroke CLOSE_STROKE = new BasicStroke(3);
+    private static final GradientPaint STAGE_GLOSS = new GradientPaint(
+            BAR_X, STAGE_BAR_Y, new Color(90, 150, 220, 100),
+            BAR_X, STAGE_BAR_Y + PROGRESS_BAR_HEIGHT, new Color(70, 130, 200, 0));
+    private static final GradientPaint OVERALL_GLOSS = new GradientPaint(
+            BAR_X, OVERALL_BAR_Y, new Color(120, 200, 120, 100),
+            BAR_X, OVERALL_BAR_Y + PROGRESS_BAR_HEIGHT, new Color(100, 180, 100, 0));
 
     private final SplashPanel splashPanel;
-    private int stageProgress = 0;  // Progress of current stage (0-100)
-    private int overallProgress = 0; // Overall progress (0-100)
-    private String stageText = "Initializing...";
-    private boolean isError = false;
+    private final AtomicReference<State> state = new AtomicReference<>(State.INITIAL);
+    // Set by every update, cleared by the frame that paints it
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final Timer frameTimer;
     private final JButton closeButton;
 
+    /**
+     * Everything a frame shows, replaced as a whole so a frame never mixes two updates.
+     */
+    private static final class State {
+        static final State INITIAL = new State(0, 0, "Initializing...", false, Collections.emptyMap());
+
+        final int stageProgress;   // Progress of current stage (0-100)
+        final int overallProgress; // Overall progress (0-100)
+        final String stageText;
+        final boolean error;
+        final Map<LaunchStage, Integer> stages;
+
+        State(int stageProgress, int overallProgress, String stageText, boolean error, Map<LaunchStage, Integer> stages) {
+            this.stageProgress = clamp(stageProgress);
+            this.overallProgress = clamp(overallProgress);
+            this.stageText = stageText;
+            this.error = error;
+            this.stages = stages;
+        }
+
+        State withProgress(int stageProgress, int overallProgress, String stageText) {
+            return new State(stageProgress, overallProgress, stageText, error, stages);
+        }
+
+        /**
+         * Stages run concurrently, so the overall progress is derived from the weighted
+         * progress of every stage.
+         */
+        State withStage(LaunchStage stage, int progress, String text) {
+            Map<LaunchStage, Integer> updated = new EnumMap<>(LaunchStage.class);
+            updated.putAll(stages);
+            updated.put(stage, clamp(progress));
+            int overall = 0;
+            for (Map.Entry<LaunchStage, Integer> entry : updated.entrySet()) {
+                overall += entry.getKey().getWeight() * entry.getValue();
+            }
+            return new State(progress, overall / 100, text, error, Collections.unmodifiableMap(updated));
+        }
+
+        State withError(String message) {
+            return new State(stageProgress, overallProgress, message, true, stages);
+        }
+
+        private static int clamp(int progress) {
+            return Math.max(0, Math.min(100, progress));
+        }
+    }
+
     public SplashScreen() {
         JLayeredPane layeredPane = new JLayeredPane();
         layeredPane.setPreferredSize(new Dimension(WIDTH, HEIGHT));
@@ -48,33 +141,50 @@ public class SplashScreen extends JWindow {
 
         // Make window rounded (works on Java 11+)
         setShape(new RoundRectangle2D.Double(0, 0, WIDTH, HEIGHT, CORNER_RADIUS, CORNER_RADIUS));
+
+        // Any number of updates between two frames cost one repaint
+        frameTimer = new Timer(1000 / MAX_FPS, e -> {
+            if (dirty.getAndSet(false)) {
+                splashPanel.repaint();
+            }
+        });
+        frameTimer.start();
+    }
+
+    private void update(UnaryOperator<State> change) {
+        state.updateAndGet(change);
+        dirty.set(true);
     }
 
     /**
      * Set the stage progress (0-100) for the current operation
      */
     public void setStageProgress(int progress, String text) {
-        this.stageProgress = Math.max(0, Math.min(100, progress));
-        this.stageText = text;
-        SwingUtilities.invokeLater(splashPanel::repaint);
+        update(current -> current.withProgress(progress, current.overallProgress, text));
     }
 
     /**
      * Set the overall progress (0-100) for the entire launcher process
      */
     public void setOverallProgress(int progress) {
-        this.overallProgress = Math.max(0, Math.min(100, progress));
-        SwingUtilities.invokeLater(splashPanel::repaint);
+        update(current -> current.withProgress(current.stageProgress, progress, current.stageText));
     }
 
     /**
      * Set both stage and overall progress
      */
+    @Override
     public void setProgress(int stageProgress, int overallProgress, String text) {
-        this.stageProgress = Math.max(0, Math.min(100, stageProgress));
-        this.overallProgress = Math.max(0, Math.min(100, overallProgress));
-        this.stageText = text;
-        SwingUtilities.invokeLater(splashPanel::repaint);
+        update(current -> current.withProgress(stageProgress, overallProgress, text));
+    }
+
+    /**
+     * Report progress (0-100) for one pipeline stage. Stages run concurrently, so the
+     * overall progress is derived from the weighted progress of every stage.
+     */
+    @Override
+    public void setStageProgress(LaunchStage stage, int progress, String text) {
+        update(current -> current.withStage(stage, progress, text));
     }
 
     // Deprecated - kept for backwards compatibility
@@ -83,20 +193,25 @@ public class SplashScreen extends JWindow {
         setStageProgress(progress, text);
     }
 
+    @Override
     public void setError(String message) {
-        this.stageText = message;
-        this.isError = true;
+        update(current -> current.withError(message));
         SwingUtilities.invokeLater(() -> {
             closeButton.setVisible(true);
             closeButton.repaint();
-            splashPanel.repaint();
             revalidate();
             repaint();
         });
     }
 
     public boolean isError() {
-        return isError;
+        return state.get().error;
+    }
+
+    @Override
+    public void dispose() {
+        frameTimer.stop();
+        super.dispose();
     }
 
     private JButton createCloseButton() {
@@ -112,7 +227,7 @@ public class SplashScreen extends JWindow {
 
                 // Draw X
                 g2d.setColor(getForeground());
-                g2d.setStroke(new BasicStroke(3));
+                g2d.setStroke(CLOSE_STROKE);
                 int padding = 12;
                 g2d.drawLine(padding, padding, getWidth() - padding, getHeight() - padding);
                 g2d.drawLine(getWidth() - padding, padding, padding, getHeight() - padding);
@@ -130,7 +245,7 @@ public class SplashScreen extends JWindow {
 
         button.addMouseListener(new java.awt.event.MouseAdapter() {
             public void mouseEntered(java.awt.event.MouseEvent evt) {
-                button.setBackground(new Color(240, 80, 80));
+                button.setBackground(ERROR_HOVER_COLOR);
                 button.repaint();
             }
             public void mouseExited(java.awt.event.MouseEvent evt) {
@@ -146,10 +261,15 @@ public class SplashScreen extends JWindow {
 
     private class SplashPanel extends JPanel {
         private BufferedImage splashIcon;
+        // Background, icon, title and version, drawn at the screen's scale
+        private BufferedImage staticLayer;
+        private double staticLayerScale;
 
         public SplashPanel() {
             setBackground(BACKGROUND_COLOR);
             setPreferredSize(new Dimension(WIDTH, HEIGHT));
+            // Every frame covers the whole panel
+            setOpaque(true);
             loadImages();
         }
 
@@ -163,135 +283,154 @@ public class SplashScreen extends JWindow {
 
         @Override
         protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
             Graphics2D g2d = (Graphics2D) g;
+            // One snapshot per frame, updates keep coming in while it paints
+            State frame = state.get();
+
+            g2d.drawImage(getStaticLayer(g2d.getTransform()), 0, 0, WIDTH, HEIGHT, null);
 
             // Enable anti-aliasing
             g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
             g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2d.setStroke(BORDER_STROKE);
+            g2d.setFont(STATUS_FONT);
+            FontMetrics statusMetrics = g2d.getFontMetrics();
 
-            int centerX = getWidth() / 2;
+            // === STAGE PROGRESS BAR (Top) ===
+            paintBar(g2d, STAGE_BAR_Y, frame.stageProgress, PROGRESS_FILL_COLOR, STAGE_GLOSS);
+            paintBarText(g2d, statusMetrics, STAGE_BAR_Y, frame.stageText, frame.error ? ERROR_COLOR : TEXT_COLOR);
 
-            // Draw large splash icon in background with transparency
-            if (splashIcon != null) {
-                int bgIconSize = 300;
-                int bgIconX = centerX - bgIconSize / 2;
-                int bgIconY = (getHeight() / 2) - bgIconSize / 2;
+            // === OVERALL PROGRESS BAR (Bottom) ===
+            paintBar(g2d, OVERALL_BAR_Y, frame.overallProgress, OVERALL_FILL_COLOR, OVERALL_GLOSS);
+            paintBarText(g2d, statusMetrics, OVERALL_BAR_Y, "Overall Progress: " + frame.overallProgress + "%", TEXT_COLOR);
+
+            // === PER-STAGE PROGRESS (concurrent pipeline stages) ===
+            paintStages(g2d, frame.stages, BAR_X, STAGES_Y, BAR_WIDTH);
+        }
 
-                g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.15f));
-                g2d.drawImage(splashIcon, bgIconX, bgIconY, bgIconSize, bgIconSize, null);
-                g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f));
+        /**
+         * @param transform the frame's transform, a HiDPI screen scales it
+         */
+        private BufferedImage getStaticLayer(AffineTransform transform) {
+            double scale = Math.max(1, transform.getScaleX());
+            if (staticLayer == null || staticLayerScale != scale) {
+                staticLayer = renderStaticLayer(scale);
+                staticLayerScale = scale;
             }
+            return staticLayer;
+        }
 
-            int y = 60;
-
-            // Draw title "VitaLite"
-            g2d.setColor(TITLE_COLOR);
-            Font titleFont = new Font("Arial", Font.BOLD, 48);
-            g2d.setFont(titleFont);
-            FontMetrics titleMetrics = g2d.getFontMetrics(titleFont);
-            String title = "VitaLite";
-            int titleWidth = titleMetrics.stringWidth(title);
-            g2d.drawString(title, centerX - titleWidth / 2, y);
-            y += 45;
-
-            // Draw version
-            g2d.setColor(new Color(150, 160, 180));
-            Font subtitleFont = new Font("Arial", Font.PLAIN, 14);
-            g2d.setFont(subtitleFont);
-            String subtitle = "Launcher v2.3";
-            FontMetrics subtitleMetrics = g2d.getFontMetrics(subtitleFont);
-            int subtitleWidth = subtitleMetrics.stringWidth(subtitle);
-            g2d.drawString(subtitle, centerX - subtitleWidth / 2, y);
-            y += 50;
+        private BufferedImage renderStaticLayer(double scale) {
+            int width = (int) Math.ceil(WIDTH * scale);
+            int height = (int) Math.ceil(HEIGHT * scale);
+            GraphicsConfiguration configuration = getGraphicsConfiguration();
+            // An image in the screen's format is copied without conversion
+            BufferedImage image = configuration != null
+                    ? configuration.createCompatibleImage(width, height)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
 
-            // === STAGE PROGRESS BAR (Top) ===
-            int barWidth = 460;
-            int barX = centerX - barWidth / 2;
-            int barY = y;
+            Graphics2D g2d = image.createGraphics();
+            try {
+                g2d.scale(scale, scale);
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                // Scaled once, so it can afford the smooth filter
+                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+
+                g2d.setColor(BACKGROUND_COLOR);
+                g2d.fillRect(0, 0, WIDTH, HEIGHT);
+
+                int centerX = WIDTH / 2;
+
+                // Draw large splash icon in background with transparency
+                if (splashIcon != null) {
+                    int bgIconX = centerX - BG_ICON_SIZE / 2;
+                    int bgIconY = (HEIGHT / 2) - BG_ICON_SIZE / 2;
+
+                    g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.15f));
+                    g2d.drawImage(splashIcon, bgIconX, bgIconY, BG_ICON_SIZE, BG_ICON_SIZE, null);
+                    g2d.setComposite(AlphaComposite.SrcOver);
+                }
+
+                // Draw title "VitaLite"
+                g2d.setColor(TITLE_COLOR);
+                g2d.setFont(TITLE_FONT);
+                String title = "VitaLite";
+                g2d.drawString(title, centerX - g2d.getFontMetrics().stringWidth(title) / 2, 60);
+
+                // Draw version
+                g2d.setColor(SUBTITLE_COLOR);
+                g2d.setFont(SUBTITLE_FONT);
+                String subtitle = "Launcher v2.3";
+                g2d.drawString(subtitle, centerX - g2d.getFontMetrics().stringWidth(subtitle) / 2, 105);
+            } finally {
+                g2d.dispose();
+            }
+            return image;
+        }
 
-            // Draw stage progress bar background
+        private void paintBar(Graphics2D g2d, int barY, int progress, Color fill, GradientPaint gloss) {
+            // Draw progress bar background
             g2d.setColor(PROGRESS_BG_COLOR);
-            g2d.fillRoundRect(barX, barY, barWidth, PROGRESS_BAR_HEIGHT, 15, 15);
+            g2d.fillRoundRect(BAR_X, barY, BAR_WIDTH, PROGRESS_BAR_HEIGHT, 15, 15);
 
-            // Draw stage progress bar border
+            // Draw progress bar border
             g2d.setColor(PROGRESS_BORDER_COLOR);
-            g2d.setStroke(new BasicStroke(2));
-            g2d.drawRoundRect(barX, barY, barWidth, PROGRESS_BAR_HEIGHT, 15, 15);
+            g2d.drawRoundRect(BAR_X, barY, BAR_WIDTH, PROGRESS_BAR_HEIGHT, 15, 15);
 
-            // Draw stage progress fill
-            if (stageProgress > 0) {
-                int fillWidth = (int) ((barWidth - 4) * (stageProgress / 100.0));
-                g2d.setColor(PROGRESS_FILL_COLOR);
-                g2d.fillRoundRect(barX + 2, barY + 2, fillWidth, PROGRESS_BAR_HEIGHT - 4, 12, 12);
+            // Draw progress fill
+            if (progress > 0) {
+                int fillWidth = (int) ((BAR_WIDTH - 4) * (progress / 100.0));
+                g2d.setColor(fill);
+                g2d.fillRoundRect(BAR_X + 2, barY + 2, fillWidth, PROGRESS_BAR_HEIGHT - 4, 12, 12);
 
                 // Add gradient effect
-                GradientPaint gradient = new GradientPaint(
-                        barX, barY, new Color(90, 150, 220, 100),
-                        barX, barY + PROGRESS_BAR_HEIGHT, new Color(70, 130, 200, 0)
-                );
-                g2d.setPaint(gradient);
-                g2d.fillRoundRect(barX + 2, barY + 2, fillWidth, PROGRESS_BAR_HEIGHT / 2, 12, 12);
+                g2d.setPaint(gloss);
+                g2d.fillRoundRect(BAR_X + 2, barY + 2, fillWidth, PROGRESS_BAR_HEIGHT / 2, 12, 12);
             }
+        }
 
-            // Draw stage text in center of progress bar
-            Color statusColor = isError ? ERROR_COLOR : TEXT_COLOR;
-            g2d.setColor(statusColor);
-            Font statusFont = new Font("Arial", Font.BOLD, 11);
-            g2d.setFont(statusFont);
-            FontMetrics statusMetrics = g2d.getFontMetrics(statusFont);
-            int textWidth = statusMetrics.stringWidth(stageText);
-            int textX = centerX - textWidth / 2;
-            int textY = barY + (PROGRESS_BAR_HEIGHT / 2) + (statusMetrics.getAscent() / 2) - 2;
-
-            // Draw text shadow for better visibility
-            g2d.setColor(new Color(0, 0, 0, 150));
-            g2d.drawString(stageText, textX + 1, textY + 1);
-            g2d.setColor(statusColor);
-            g2d.drawString(stageText, textX, textY);
-
-            y = barY + PROGRESS_BAR_HEIGHT + 30;
-
-            // === OVERALL PROGRESS BAR (Bottom) ===
-            int overallBarY = y;
-
-            // Draw overall progress bar background
-            g2d.setColor(PROGRESS_BG_COLOR);
-            g2d.fillRoundRect(barX, overallBarY, barWidth, PROGRESS_BAR_HEIGHT, 15, 15);
-
-            // Draw overall progress bar border
-            g2d.setColor(PROGRESS_BORDER_COLOR);
-            g2d.setStroke(new BasicStroke(2));
-            g2d.drawRoundRect(barX, overallBarY, barWidth, PROGRESS_BAR_HEIGHT, 15, 15);
-
-            // Draw overall progress fill
-            if (overallProgress > 0) {
-                int fillWidth = (int) ((barWidth - 4) * (overallProgress / 100.0));
-                g2d.setColor(new Color(100, 180, 100)); // Different color for overall
-                g2d.fillRoundRect(barX + 2, overallBarY + 2, fillWidth, PROGRESS_BAR_HEIGHT - 4, 12, 12);
+        /**
+         * Draws {@code text} centered in the bar at {@code barY}, with a shadow for better visibility.
+         */
+        private void paintBarText(Graphics2D g2d, FontMetrics metrics, int barY, String text, Color color) {
+            int textX = WIDTH / 2 - metrics.stringWidth(text) / 2;
+            int textY = barY + (PROGRESS_BAR_HEIGHT / 2) + (metrics.getAscent() / 2) - 2;
+
+            g2d.setColor(SHADOW_COLOR);
+            g2d.drawString(text, textX + 1, textY + 1);
+            g2d.setColor(color);
+            g2d.drawString(text, textX, textY);
+        }
 
-                // Add gradient effect
-                GradientPaint gradient = new GradientPaint(
-                        barX, overallBarY, new Color(120, 200, 120, 100),
-                        barX, overallBarY + PROGRESS_BAR_HEIGHT, new Color(100, 180, 100, 0)
-                );
-                g2d.setPaint(gradient);
-                g2d.fillRoundRect(barX + 2, overallBarY + 2, fillWidth, PROGRESS_BAR_HEIGHT / 2, 12, 12);
+        private void paintStages(Graphics2D g2d, Map<LaunchStage, Integer> stages, int x, int y, int width) {
+            if (stages.isEmpty()) {
+                return;
             }
 
-            // Draw "Overall Progress: X%" text
-            g2d.setColor(TEXT_COLOR);
-            g2d.setFont(statusFont);
-            String overallText = "Overall Progress: " + overallProgress + "%";
-            int overallTextWidth = statusMetrics.stringWidth(overallText);
-            int overallTextX = centerX - overallTextWidth / 2;
-            int overallTextY = overallBarY + (PROGRESS_BAR_HEIGHT / 2) + (statusMetrics.getAscent() / 2) - 2;
-
-            g2d.setColor(new Color(0, 0, 0, 150));
-            g2d.drawString(overallText, overallTextX + 1, overallTextY + 1);
-            g2d.setColor(TEXT_COLOR);
-            g2d.drawString(overallText, overallTextX, overallTextY);
+            g2d.setFont(STAGE_FONT);
+            FontMetrics metrics = g2d.getFontMetrics();
+            int gap = 10;
+            int cellWidth = (width - gap * (stages.size() - 1)) / stages.size();
+            int cellX = x;
+
+            for (Map.Entry<LaunchStage, Integer> entry : stages.entrySet()) {
+                int progress = entry.getValue();
+                String label = entry.getKey().getLabel() + (progress >= 100 ? " - done" : " - " + progress + "%");
+
+                g2d.setColor(progress >= 100 ? STAGE_DONE_COLOR : SUBTITLE_COLOR);
+                g2d.drawString(label, cellX + (cellWidth - metrics.stringWidth(label)) / 2, y);
+
+                g2d.setColor(PROGRESS_BG_COLOR);
+                g2d.fillRoundRect(cellX, y + 5, cellWidth, 6, 6, 6);
+                if (progress > 0) {
+                    g2d.setColor(progress >= 100 ? OVERALL_FILL_COLOR : PROGRESS_FILL_COLOR);
+                    g2d.fillRoundRect(cellX, y + 5, (int) (cellWidth * (progress / 100.0)), 6, 6, 6);
+                }
+                cellX += cellWidth + gap;
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+package com.tonic.launcher.ui;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Sets the launcher icon on its windows. Kept out of LauncherMain, whose headless
+ * launches must not load any AWT classes.
+ */
+final class WindowIcon {
+    private WindowIcon() {
+        // Utility class - prevent instantiation
+    }
+
+    static void apply(JFrame frame) {
+        try {
+            BufferedImage icon = ImageIO.read(
+                    WindowIcon.class.getResourceAsStream("/com/tonic/launcher/window_icon.png")
+            );
+            if (icon != null) {
+                frame.setIconImage(icon);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to load window icon: " + e.getMessage());
+        }
+    }
+}
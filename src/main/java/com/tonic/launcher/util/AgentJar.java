@@ -0,0 +1,106 @@
+package com.tonic.launcher.util;
+
+import com.tonic.launcher.LauncherMain;
+import com.tonic.launcher.agent.TelemetryAgent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Packs the launcher's {@code com.tonic.launcher.agent} classes into a small jar under
+ * {@code VITA_DIR/agent}. Those classes run inside the client JVM, next to VitaLite, where
+ * the launcher jar and its libraries must not be on the class path. The jar is also the
+ * {@link TelemetryAgent} java agent.
+ */
+public final class AgentJar {
+    private static final Path AGENT_DIR = LauncherMain.VITA_DIR.resolve("agent");
+
+    // Every class file of the agent package, nested classes included
+    private static final String[] CLASSES = {
+            "com/tonic/launcher/agent/StandbyMain.class",
+            "com/tonic/launcher/agent/TelemetryAgent.class"
+    };
+
+    private AgentJar() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Writes the agent jar if this launcher version has not written it yet.
+     * @return path of the jar
+     * @throws IOException if the classes cannot be read or the jar cannot be written
+     */
+    public static synchronized Path get() throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Premain-Class", TelemetryAgent.class.getName());
+
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        MessageDigest digest = StagedInstall.newSha256();
+        ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+        manifest.write(manifestBytes);
+        digest.update(manifestBytes.toByteArray());
+        for (String name : CLASSES) {
+            try (InputStream in = AgentJar.class.getResourceAsStream("/" + name)) {
+                if (in == null) {
+                    throw new IOException("Agent class " + name + " is missing from the launcher");
+                }
+                byte[] bytes = in.readAllBytes();
+                classes.put(name, bytes);
+                digest.update(bytes);
+            }
+        }
+
+        // Named by content, so launchers of different versions each find their own
+        Path jar = AGENT_DIR.resolve("agent-" + StagedInstall.hex(digest.digest()).substring(0, 16) + ".jar");
+        if (Files.isRegularFile(jar)) {
+            return jar;
+        }
+
+        Files.createDirectories(AGENT_DIR);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(buffer, manifest)) {
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                out.putNextEntry(new JarEntry(entry.getKey()));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+
+        Path temp = jar.resolveSibling(jar.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            buffer.writeTo(out);
+        }
+        StagedInstall.commitFile(temp, jar);
+        deleteOthers(jar);
+        return jar;
+    }
+
+    private static void deleteOthers(Path keep) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(AGENT_DIR, "agent-*.jar")) {
+            for (Path file : stream) {
+                if (!file.equals(keep)) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException ignored) {
+                        // Still in use by a running client
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to clean up old agent jars: " + e.getMessage());
+        }
+    }
+}
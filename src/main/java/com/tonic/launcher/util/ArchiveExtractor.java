@@ -0,0 +1,418 @@
+package com.tonic.launcher.util;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extracts JDK-sized archives with parallel file writes.
+ *
+ * A single thread decompresses the archive and hands each small entry's payload to a pool
+ * of writer threads, so the per-file open/write/close cost (the bulk of a JDK install on
+ * slow or antivirus-scanned disks) is paid in parallel. Entries larger than
+ * {@link #INLINE_THRESHOLD} are streamed to disk on the decompression thread instead of
+ * being buffered. Entries are written straight to their final path with the leading
+ * path components stripped, and every directory is created exactly once.
+ *
+ * Nothing is written outside the target directory: entry names are checked, symbolic links
+ * must point inside it, and no entry is written through a link the archive created. Link
+ * targets are followed the way the OS does, one name at a time, so a target cannot leave
+ * the directory through another link's {@code ..}. JDK archives are extracted while they
+ * download, before their checksum can be verified.
+ */
+public class ArchiveExtractor {
+    private static final int INLINE_THRESHOLD = 1024 * 1024;
+    private static final int MAX_IN_FLIGHT_BYTES = 32 * 1024 * 1024;
+
+    private final Path targetDir;
+    private final int stripComponents;
+    private final int writerThreads;
+    private final boolean sync;
+
+    /**
+     * Receives progress from the decompression thread.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param consumed compressed archive bytes consumed so far
+         * @param entries entries extracted so far
+         */
+        void update(long consumed, int entries);
+    }
+
+    /**
+     * @param targetDir directory the archive content ends up in
+     * @param stripComponents number of leading path components to drop, e.g. 1 for {@code jdk-11.0.19+7/}
+     */
+    public ArchiveExtractor(Path targetDir, int stripComponents) {
+        this(targetDir, stripComponents, Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())));
+    }
+
+    /**
+     * @param targetDir directory the archive content ends up in
+     * @param stripComponents number of leading path components to drop
+     * @param writerThreads number of file writer threads
+     */
+    public ArchiveExtractor(Path targetDir, int stripComponents, int writerThreads) {
+        this(targetDir, stripComponents, writerThreads, false);
+    }
+
+    /**
+     * @param targetDir directory the archive content ends up in
+     * @param stripComponents number of leading path components to drop
+     * @param writerThreads number of file writer threads
+     * @param sync force every file to disk before the extraction reports success
+     */
+    public ArchiveExtractor(Path targetDir, int stripComponents, int writerThreads, boolean sync) {
+        this.targetDir = targetDir.toAbsolutePath().normalize();
+        this.stripComponents = stripComponents;
+        this.writerThreads = writerThreads;
+        this.sync = sync;
+    }
+
+    /**
+     * @param targetDir directory the archive content ends up in
+     * @param stripComponents number of leading path components to drop
+     * @param sync force every file to disk before the extraction reports success
+     */
+    public ArchiveExtractor(Path targetDir, int stripComponents, boolean sync) {
+        this(targetDir, stripComponents, Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())), sync);
+    }
+
+    /**
+     * Extracts a gzip compressed tar archive, keeping the owner execute bit.
+     * @param archive compressed archive stream, read to its end but not closed
+     * @param listener progress listener (can be null)
+     * @return number of entries extracted
+     * @throws IOException if reading or writing fails
+     */
+    public int extractTarGz(InputStream archive, Listener listener) throws IOException {
+        ProgressInputStream counter = new ProgressInputStream(new BufferedInputStream(archive, 64 * 1024), bytes -> {});
+        try (Extraction extraction = new Extraction()) {
+            GZIPInputStream gzis = new GZIPInputStream(counter, 64 * 1024);
+            TarArchiveInputStream tais = new TarArchiveInputStream(gzis);
+
+            TarArchiveEntry entry;
+            while ((entry = tais.getNextTarEntry()) != null) {
+                Path destPath = resolve(entry.getName());
+                if (destPath != null) {
+                    if (entry.isDirectory()) {
+                        extraction.directory(destPath);
+                    } else if (entry.isSymbolicLink()) {
+                        extraction.symlink(destPath, entry.getLinkName());
+                    } else {
+                        boolean executable = entry.getMode() != 0 && (entry.getMode() & 0100) != 0;
+                        extraction.file(destPath, tais, entry.getSize(), executable);
+                    }
+                }
+                if (listener != null) {
+                    listener.update(counter.getCount(), extraction.entries);
+                }
+            }
+
+            // Drain the tar padding and gzip trailer, a piped download must never block on a full pipe
+            drain(counter);
+            return extraction.finish();
+        }
+    }
+
+    /**
+     * Extracts a zip archive in a single pass over the stream.
+     * @param archive archive stream, read to its end but not closed
+     * @param listener progress listener (can be null)
+     * @return number of entries extracted
+     * @throws IOException if reading or writing fails
+     */
+    public int extractZip(InputStream archive, Listener listener) throws IOException {
+        ProgressInputStream counter = new ProgressInputStream(new BufferedInputStream(archive, 64 * 1024), bytes -> {});
+        try (Extraction extraction = new Extraction()) {
+            ZipInputStream zis = new ZipInputStream(counter);
+
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                Path destPath = resolve(entry.getName());
+                if (destPath != null) {
+                    if (entry.isDirectory()) {
+                        extraction.directory(destPath);
+                    } else {
+                        extraction.file(destPath, zis, entry.getSize(), false);
+                    }
+                }
+                zis.closeEntry();
+                if (listener != null) {
+                    listener.update(counter.getCount(), extraction.entries);
+                }
+            }
+
+            drain(counter);
+            return extraction.finish();
+        }
+    }
+
+    /**
+     * Maps an entry name to its final path, or null if stripping leaves nothing.
+     */
+    private Path resolve(String name) throws IOException {
+        String[] parts = name.replace('\\', '/').split("/");
+        StringBuilder relative = new StringBuilder();
+        int skipped = 0;
+        for (String part : parts) {
+            if (part.isEmpty() || part.equals(".")) {
+                continue;
+            }
+            if (skipped < stripComponents) {
+                skipped++;
+                continue;
+            }
+            if (relative.length() > 0) {
+                relative.append('/');
+            }
+            relative.append(part);
+        }
+        if (relative.length() == 0) {
+            return null;
+        }
+
+        Path path = targetDir.resolve(relative.toString()).normalize();
+        if (!path.startsWith(targetDir)) {
+            throw new IOException("Archive entry escapes the target directory: " + name);
+        }
+        return path;
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+            // discard
+        }
+    }
+
+    /**
+     * State of one extraction: the writer pool, the directories made so far and the pending writes.
+     */
+    private class Extraction implements AutoCloseable {
+        private final ExecutorService writers = Executors.newFixedThreadPool(writerThreads, new WriterThreadFactory());
+        private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT_BYTES);
+        // Only touched by the decompression thread
+        private final Set<Path> directories = new HashSet<>();
+        private final Set<Path> links = new HashSet<>();
+        private final Set<Path> files = new HashSet<>();
+        // Paths that link targets pass through, they must not become links themselves
+        private final Set<Path> traversed = new HashSet<>();
+        private final List<Future<?>> writes = new ArrayList<>();
+        private int entries = 0;
+
+        void directory(Path path) throws IOException {
+            checkNotThroughLink(path);
+            ensureDirectory(path);
+            entries++;
+        }
+
+        void symlink(Path path, String target) throws IOException {
+            // A file may still be waiting for its writer, which would then follow the link
+            if (directories.contains(path) || files.contains(path)) {
+                throw new IOException("Archive link replaces an extracted entry: " + path);
+            }
+            if (traversed.contains(path)) {
+                throw new IOException("Archive link is on the path of another link's target: " + path);
+            }
+            // A later entry may replace a link, but not create one below another
+            checkNotThroughLink(path.getParent());
+            Path link = Path.of(target);
+            followLink(path, link, target);
+            ensureDirectory(path.getParent());
+            Files.deleteIfExists(path);
+            Files.createSymbolicLink(path, link);
+            links.add(path);
+            entries++;
+        }
+
+        void file(Path path, InputStream in, long size, boolean executable) throws IOException {
+            checkNotThroughLink(path);
+            ensureDirectory(path.getParent());
+            files.add(path);
+            checkWrites();
+
+            if (size > INLINE_THRESHOLD) {
+                // Too large to buffer, stream it from the decompression thread
+                Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+                written(path, executable);
+            } else if (size >= 0) {
+                submit(path, in.readNBytes((int) size), executable);
+            } else {
+                // Size not in the local header: buffer up to the threshold, stream the rest if it is larger
+                ByteArrayOutputStream head = new ByteArrayOutputStream();
+                byte[] chunk = new byte[8192];
+                int read;
+                while (head.size() <= INLINE_THRESHOLD && (read = in.read(chunk)) != -1) {
+                    head.write(chunk, 0, read);
+                }
+                if (head.size() <= INLINE_THRESHOLD) {
+                    submit(path, head.toByteArray(), executable);
+                } else {
+                    try (OutputStream out = Files.newOutputStream(path)) {
+                        head.writeTo(out);
+                        in.transferTo(out);
+                    }
+                    written(path, executable);
+                }
+            }
+            entries++;
+        }
+
+        private void submit(Path path, byte[] payload, boolean executable) throws IOException {
+            acquire(payload.length);
+            writes.add(writers.submit(() -> {
+                try {
+                    Files.write(path, payload);
+                    written(path, executable);
+                } finally {
+                    inFlight.release(payload.length);
+                }
+                return null;
+            }));
+        }
+
+        /**
+         * Waits for every pending write.
+         * @return number of entries extracted
+         */
+        int finish() throws IOException {
+            for (Future<?> write : writes) {
+                await(write);
+            }
+            writes.clear();
+            return entries;
+        }
+
+        @Override
+        public void close() {
+            writers.shutdownNow();
+        }
+
+        /**
+         * Refuses a path that is, or lies below, a link extracted earlier: writing through it
+         * would follow the link instead of creating the entry.
+         */
+        private void checkNotThroughLink(Path path) throws IOException {
+            if (links.isEmpty()) {
+                return;
+            }
+            for (Path current = path; current != null && current.startsWith(targetDir); current = current.getParent()) {
+                if (links.contains(current)) {
+                    throw new IOException("Archive entry is written through a link: " + path);
+                }
+            }
+        }
+
+        /**
+         * Walks a link's target from the link's directory the way the OS resolves it: a
+         * {@code ..} after a link goes up from the link's target, not from the link. Every
+         * step must stay inside the target directory and only the last name may be a link.
+         */
+        private void followLink(Path path, Path link, String target) throws IOException {
+            if (link.isAbsolute() || target.startsWith("/") || target.startsWith("\\")) {
+                throw new IOException("Archive link points outside the target directory: " + path + " -> " + target);
+            }
+            List<Path> walked = new ArrayList<>();
+            Path current = path.getParent();
+            for (Path name : link) {
+                if (name.toString().isEmpty() || name.toString().equals(".")) {
+                    continue;
+                }
+                if (links.contains(current)) {
+                    throw new IOException("Archive link points through another link: " + path + " -> " + target);
+                }
+                current = name.toString().equals("..") ? current.getParent() : current.resolve(name);
+                if (current == null || !current.startsWith(targetDir)) {
+                    throw new IOException("Archive link points outside the target directory: " + path + " -> " + target);
+                }
+                walked.add(current);
+            }
+            if (!walked.isEmpty()) {
+                traversed.addAll(walked.subList(0, walked.size() - 1));
+            }
+        }
+
+        private void ensureDirectory(Path dir) throws IOException {
+            if (dir != null && directories.add(dir)) {
+                Files.createDirectories(dir);
+                // Parents were created along with it
+                for (Path parent = dir.getParent(); parent != null && parent.startsWith(targetDir); parent = parent.getParent()) {
+                    directories.add(parent);
+                }
+            }
+        }
+
+        private void acquire(int bytes) throws IOException {
+            try {
+                inFlight.acquire(bytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Extraction was interrupted", e);
+            }
+        }
+
+        /**
+         * Surfaces a failed write early instead of after the whole archive was read.
+         */
+        private void checkWrites() throws IOException {
+            while (!writes.isEmpty() && writes.get(0).isDone()) {
+                await(writes.remove(0));
+            }
+        }
+
+        private void await(Future<?> write) throws IOException {
+            try {
+                write.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Extraction was interrupted", e);
+            }
+        }
+    }
+
+    private void written(Path path, boolean executable) throws IOException {
+        if (executable) {
+            path.toFile().setExecutable(true);
+        }
+        if (sync) {
+            StagedInstall.fsync(path);
+        }
+    }
+
+    private static class WriterThreadFactory implements java.util.concurrent.ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ArchiveWriter-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
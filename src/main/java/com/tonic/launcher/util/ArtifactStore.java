@@ -0,0 +1,390 @@
+package com.tonic.launcher.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.tonic.launcher.LauncherMain;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Content-addressed store for downloaded artifacts under {@code VITA_DIR/store}.
+ *
+ * Blobs are kept once per SHA-256 in {@code blobs/<first two hex digits>/<sha256>}, and
+ * {@code index.json} maps logical artifact keys such as {@code jdk/11.0.19+7/linux-x64}
+ * or {@code vitalite/1.2.3} to a digest. Installing an artifact that is already in the
+ * store is a local copy instead of a download, and keys sharing content share the blob.
+ * The store is capped in size and evicts the least recently used artifacts first.
+ * The index is only changed under a file lock, so several launchers can share the store.
+ */
+public final class ArtifactStore
+{
+    private static final Path ROOT = LauncherMain.VITA_DIR.resolve("store");
+    private static final Path BLOBS = ROOT.resolve("blobs");
+    private static final Path INDEX_FILE = ROOT.resolve("index.json");
+    private static final Path LOCK_FILE = ROOT.resolve("index.lock");
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private ArtifactStore() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * An artifact in the index.
+     */
+    public static class Entry
+    {
+        private String key;
+        private String sha256;
+        private long size;
+        private long lastUsed;
+        private boolean verified;
+
+        public String getKey()
+        {
+            return key;
+        }
+
+        public String getSha256()
+        {
+            return sha256;
+        }
+
+        public long getSize()
+        {
+            return size;
+        }
+
+        public long getLastUsed()
+        {
+            return lastUsed;
+        }
+
+        /**
+         * @return whether the content was checked against a published checksum when it was stored
+         */
+        public boolean isVerified()
+        {
+            return verified;
+        }
+
+        public Path getBlob()
+        {
+            return blobPath(sha256);
+        }
+    }
+
+    /**
+     * Looks up an artifact and marks it as used.
+     * @param key artifact key
+     * @return the entry, or null if the artifact is not stored
+     */
+    public static synchronized Entry find(String key)
+    {
+        try
+        {
+            return locked(index -> {
+                Entry entry = index.get(key);
+                if(entry == null)
+                {
+                    return null;
+                }
+                if(!Files.isRegularFile(entry.getBlob()))
+                {
+                    index.remove(key);
+                    writeIndex(index);
+                    return null;
+                }
+                entry.lastUsed = System.currentTimeMillis();
+                writeIndex(index);
+                return entry;
+            });
+        }
+        catch (IOException e)
+        {
+            System.err.println("Artifact store lookup for " + key + " failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Adds a file to the store under a key, then evicts down to the configured size cap.
+     * @param key artifact key
+     * @param file file to store
+     * @param sha256 SHA-256 of the file if already known, otherwise null
+     * @param verified whether the content was checked against a published checksum
+     * @param move move the file into the store instead of linking or copying it
+     * @return the stored entry
+     * @throws IOException if the file cannot be stored
+     */
+    public static synchronized Entry put(String key, Path file, String sha256, boolean verified, boolean move) throws IOException
+    {
+        String digest = sha256 != null ? sha256.toLowerCase() : StagedInstall.sha256(file);
+        Path blob = blobPath(digest);
+
+        Entry stored = locked(index -> {
+            if(Files.isRegularFile(blob))
+            {
+                // Same content under another key, or stored before
+                if(move)
+                {
+                    Files.delete(file);
+                }
+            }
+            else
+            {
+                Files.createDirectories(blob.getParent());
+                Path temp = blob.resolveSibling(digest + ".tmp");
+                if(move)
+                {
+                    Files.move(file, temp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                else
+                {
+                    link(file, temp);
+                }
+                StagedInstall.commitFile(temp, blob);
+            }
+
+            Entry entry = new Entry();
+            entry.key = key;
+            entry.sha256 = digest;
+            entry.size = Files.size(blob);
+            entry.lastUsed = System.currentTimeMillis();
+            entry.verified = verified || (index.containsKey(key) && index.get(key).verified && digest.equals(index.get(key).sha256));
+            index.put(key, entry);
+            writeIndex(index);
+            return entry;
+        });
+
+        prune(getMaxSize(), key);
+        return stored;
+    }
+
+    /**
+     * Places a stored blob at {@code target}, as a hard link where the file system allows it.
+     * Blobs are never written in place, so sharing the inode is safe.
+     * @param entry stored artifact
+     * @param target file to create, replaced if it exists
+     * @throws IOException if neither linking nor copying works
+     */
+    public static void materialize(Entry entry, Path target) throws IOException
+    {
+        Files.deleteIfExists(target);
+        link(entry.getBlob(), target);
+    }
+
+    /**
+     * @return every stored artifact, most recently used first
+     * @throws IOException if the index cannot be read
+     */
+    public static synchronized List<Entry> list() throws IOException
+    {
+        List<Entry> entries = new ArrayList<>(readIndex().values());
+        entries.sort(Comparator.comparingLong(Entry::getLastUsed).reversed());
+        return entries;
+    }
+
+    /**
+     * Removes an artifact from the index, and its blob if no other key uses it.
+     * @param key artifact key
+     * @return true if the artifact was stored
+     * @throws IOException if the index cannot be updated
+     */
+    public static synchronized boolean remove(String key) throws IOException
+    {
+        return locked(index -> {
+            Entry removed = index.remove(key);
+            if(removed == null)
+            {
+                return false;
+            }
+            writeIndex(index);
+            deleteUnreferenced(index);
+            return true;
+        });
+    }
+
+    /**
+     * Evicts least recently used artifacts until the store fits in {@code maxBytes}, and
+     * removes blobs nothing refers to.
+     * @param maxBytes size cap
+     * @return number of bytes freed
+     * @throws IOException if the index cannot be updated
+     */
+    public static synchronized long prune(long maxBytes) throws IOException
+    {
+        return prune(maxBytes, null);
+    }
+
+    /**
+     * @return the size cap from the launcher config in bytes
+     */
+    public static long getMaxSize()
+    {
+        return LauncherConfig.get().getStoreMaxSize() * 1024L * 1024L;
+    }
+
+    private static long prune(long maxBytes, String keep) throws IOException
+    {
+        return locked(index -> {
+            long freed = deleteUnreferenced(index);
+
+            List<Entry> entries = new ArrayList<>(index.values());
+            entries.sort(Comparator.comparingLong(Entry::getLastUsed));
+            long total = totalSize(index);
+            for(Entry entry : entries)
+            {
+                if(total <= maxBytes)
+                {
+                    break;
+                }
+                if(entry.key.equals(keep))
+                {
+                    continue;
+                }
+                index.remove(entry.key);
+                total = totalSize(index);
+                System.out.println("Evicted " + entry.key + " from the artifact store");
+            }
+
+            writeIndex(index);
+            return freed + deleteUnreferenced(index);
+        });
+    }
+
+    /**
+     * Size of the distinct blobs the index refers to.
+     */
+    private static long totalSize(Map<String, Entry> index)
+    {
+        Map<String, Long> blobs = new HashMap<>();
+        for(Entry entry : index.values())
+        {
+            blobs.put(entry.sha256, entry.size);
+        }
+        return blobs.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Deletes blobs (and leftover temp files) that no index entry refers to.
+     * @return number of bytes freed
+     */
+    private static long deleteUnreferenced(Map<String, Entry> index) throws IOException
+    {
+        if(!Files.isDirectory(BLOBS))
+        {
+            return 0;
+        }
+
+        Set<String> referenced = new HashSet<>();
+        for(Entry entry : index.values())
+        {
+            referenced.add(entry.sha256);
+        }
+
+        long freed = 0;
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(BLOBS))
+        {
+            for(Path shard : shards)
+            {
+                if(!Files.isDirectory(shard))
+                {
+                    continue;
+                }
+                try (DirectoryStream<Path> blobs = Files.newDirectoryStream(shard))
+                {
+                    for(Path blob : blobs)
+                    {
+                        if(!referenced.contains(blob.getFileName().toString()))
+                        {
+                            freed += Files.size(blob);
+                            Files.delete(blob);
+                        }
+                    }
+                }
+            }
+        }
+        return freed;
+    }
+
+    private static Path blobPath(String sha256)
+    {
+        return BLOBS.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    private static void link(Path source, Path target) throws IOException
+    {
+        try
+        {
+            Files.createLink(target, source);
+        }
+        catch (IOException | UnsupportedOperationException e)
+        {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Runs a read-modify-write of the index while holding the store's file lock.
+     */
+    private static <T> T locked(IndexTask<T> task) throws IOException
+    {
+        Files.createDirectories(ROOT);
+        try (FileChannel channel = FileChannel.open(LOCK_FILE, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock())
+        {
+            return task.run(readIndex());
+        }
+    }
+
+    private static Map<String, Entry> readIndex() throws IOException
+    {
+        if(!Files.isRegularFile(INDEX_FILE))
+        {
+            return new HashMap<>();
+        }
+
+        try
+        {
+            Map<String, Entry> index = GSON.fromJson(Files.readString(INDEX_FILE),
+                    new TypeToken<Map<String, Entry>>(){}.getType());
+            return index != null ? index : new HashMap<>();
+        }
+        catch (RuntimeException e)
+        {
+            // A corrupt index forgets the artifacts, prune then reclaims their blobs
+            System.err.println("Artifact store index is corrupt, starting over: " + e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    private static void writeIndex(Map<String, Entry> index) throws IOException
+    {
+        Path temp = INDEX_FILE.resolveSibling(INDEX_FILE.getFileName() + ".tmp");
+        Files.writeString(temp, GSON.toJson(index), StandardCharsets.UTF_8);
+        StagedInstall.commitFile(temp, INDEX_FILE);
+    }
+
+    @FunctionalInterface
+    private interface IndexTask<T>
+    {
+        T run(Map<String, Entry> index) throws IOException;
+    }
+}
@@ -0,0 +1,210 @@
+package com.tonic.launcher.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Launches one client per {@link LaunchProfile}.
+ *
+ * At most {@code maxBoots} clients boot at the same time: a slot is taken before a client
+ * is started and given back when it reports "Done" over the launcher channel, exits, or
+ * does not report within {@link JVMLauncher#READY_TIMEOUT_MILLIS}. Starts are also spaced at least
+ * {@code staggerMillis} apart, so clients do not all hit the CPU and disk at once.
+ */
+public class BatchLauncher {
+    /**
+     * How one client of the batch went.
+     */
+    public static class Result {
+        private final String profile;
+        private volatile long readyMillis = -1;
+        private volatile String failure;
+        private volatile Process process;
+
+        private Result(String profile) {
+            this.profile = profile;
+        }
+
+        public String getProfile() {
+            return profile;
+        }
+
+        /**
+         * @return time from process start to "Done", or -1 if the client did not report
+         */
+        public long getReadyMillis() {
+            return readyMillis;
+        }
+
+        /**
+         * @return the client process, or null if it did not start
+         */
+        public Process getProcess() {
+            return process;
+        }
+
+        /**
+         * @return why the client did not report, or null
+         */
+        public String getFailure() {
+            return failure;
+        }
+    }
+
+    /**
+     * Progress of the batch, called from launcher threads.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void onProgress(int settled, int total, String status);
+    }
+
+    private final List<LaunchProfile> profiles;
+    private final int maxBoots;
+    private final long staggerMillis;
+
+    /**
+     * @param profiles      clients to launch, in order
+     * @param maxBoots      clients allowed to boot at the same time
+     * @param staggerMillis minimum time between two starts
+     */
+    public BatchLauncher(List<LaunchProfile> profiles, int maxBoots, long staggerMillis) {
+        this.profiles = profiles;
+        this.maxBoots = Math.max(1, maxBoots);
+        this.staggerMillis = Math.max(0, staggerMillis);
+    }
+
+    /**
+     * Launches every profile and waits until each client is ready or has failed.
+     * @param config      launcher settings the profiles build on
+     * @param commonArgs  program arguments added for every client, e.g. {@code --targetBootstrap}
+     * @param cds         AppCDS for the clients, or null
+     * @param memory      memory plan with one allocation per profile, or null for the -Xmx settings
+     * @param listener    progress listener, or null
+     * @return one result per profile, in launch order
+     */
+    public List<Result> run(LauncherConfig config, List<String> commonArgs, CdsManager cds, MemoryPlanner.Plan memory,
+                            Listener listener) throws InterruptedException {
+        int total = profiles.size();
+        List<Result> results = new ArrayList<>();
+        Semaphore slots = new Semaphore(maxBoots);
+        CountDownLatch settled = new CountDownLatch(total);
+        AtomicInteger settledCount = new AtomicInteger();
+        ScheduledExecutorService timeouts = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "BatchTimeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Decided once: only the first client trains, see CdsManager
+        List<String> cdsArgs = Collections.emptyList();
+        boolean training = false;
+
+        try (LaunchTrace.Span ignored = LaunchTrace.begin("batch")) {
+            long lastStart = 0;
+            for (int i = 0; i < total; i++) {
+                LaunchProfile profile = profiles.get(i);
+                Result result = new Result(profile.getName());
+                results.add(result);
+
+                slots.acquire();
+                long wait = lastStart + staggerMillis - System.currentTimeMillis();
+                if (wait > 0) {
+                    Thread.sleep(wait);
+                }
+
+                List<String> jvmArgs = profile.buildJvmArgs(config, memory != null ? memory.getAllocations().get(i) : null, total);
+                if (cds != null) {
+                    if (i == 0) {
+                        cdsArgs = cds.getJvmArgs(jvmArgs);
+                        training = cds.needsArchive();
+                        jvmArgs.addAll(cdsArgs);
+                    } else if (!training) {
+                        jvmArgs.addAll(cdsArgs);
+                    }
+                }
+                List<String> cliArgs = profile.buildCliArgs(config);
+                cliArgs.addAll(commonArgs);
+
+                AtomicBoolean done = new AtomicBoolean();
+                Runnable settle = () -> {
+                    slots.release();
+                    if (listener != null) {
+                        listener.onProgress(settledCount.incrementAndGet(), total, describe(result));
+                    }
+                    settled.countDown();
+                };
+
+                if (listener != null) {
+                    listener.onProgress(settledCount.get(), total, "Starting " + profile.getName() + " (" + (i + 1) + "/" + total + ")");
+                }
+                LaunchTrace.Span span = LaunchTrace.begin("batch." + profile.getName());
+                long start = System.nanoTime();
+                lastStart = System.currentTimeMillis();
+                try {
+                    Process process = JVMLauncher.launchExternalJar(jvmArgs, cliArgs, () -> {
+                        if (done.compareAndSet(false, true)) {
+                            span.close();
+                            result.readyMillis = (System.nanoTime() - start) / 1_000_000;
+                            settle.run();
+                        }
+                    }, null, config.isTelemetryEnabled() ? profile.getName() : null);
+                    result.process = process;
+                    process.onExit().thenAccept(p -> {
+                        if (done.compareAndSet(false, true)) {
+                            span.close();
+                            result.failure = "exited with code " + p.exitValue() + " before it was ready";
+                            settle.run();
+                        }
+                    });
+                    timeouts.schedule(() -> {
+                        if (done.compareAndSet(false, true)) {
+                            span.close();
+                            result.failure = "not ready after " + JVMLauncher.READY_TIMEOUT_MILLIS / 1000 + " s";
+                            settle.run();
+                        }
+                    }, JVMLauncher.READY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (IOException e) {
+                    done.set(true);
+                    span.close();
+                    result.failure = "failed to start: " + e.getMessage();
+                    settle.run();
+                }
+            }
+
+            settled.await();
+        } finally {
+            timeouts.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Prints one line per client and a total.
+     */
+    public static void printReport(List<Result> results) {
+        int ready = 0;
+        for (Result result : results) {
+            System.out.println("  " + describe(result));
+            if (result.failure == null) {
+                ready++;
+            }
+        }
+        System.out.println("Batch launch: " + ready + " of " + results.size() + " clients ready");
+    }
+
+    private static String describe(Result result) {
+        return result.failure == null
+                ? result.profile + " ready in " + result.readyMillis + " ms"
+                : result.profile + " failed: " + result.failure;
+    }
+}
@@ -0,0 +1,281 @@
+package com.tonic.launcher.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.tonic.launcher.LauncherMain;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maintains an AppCDS archive for the launched VitaLite JVM, so the JDK and VitaLite
+ * classes are mapped from a prepared archive instead of being loaded and verified on
+ * every start.
+ *
+ * <ul>
+ *   <li>JDK 19 and later manage the archive themselves with {@code -XX:+AutoCreateSharedArchive}.</li>
+ *   <li>Older JDKs (the bundled JDK 11) get a training launch with {@code -XX:DumpLoadedClassList},
+ *       and once VitaLite reports it is up, the launcher dumps the listed classes with
+ *       {@code -Xshare:dump} before it exits. Later launches add {@code -XX:SharedArchiveFile}.</li>
+ * </ul>
+ *
+ * Archives are keyed by the installed VitaLite version and jar and the JDK, so an update of
+ * either starts over with a new training launch. The time to "Done" is kept for launches
+ * with and without the archive, and the difference is reported.
+ */
+public class CdsManager {
+    private static final Path CDS_DIR = LauncherMain.VITA_DIR.resolve("cds");
+    private static final Path STATE_FILE = CDS_DIR.resolve("cds.json");
+    private static final long DUMP_TIMEOUT_SECONDS = 180;
+    private static final int MAX_FAILURES = 3;
+    private static final int KEEP_SAMPLES = 10;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private enum Mode {
+        /** CDS is disabled or the user's JVM arguments already configure sharing */
+        NONE,
+        /** This launch writes a class list for a later dump */
+        TRAIN,
+        /** This launch maps the archive */
+        USE,
+        /** The JVM creates and validates the archive itself (JDK 19+) */
+        AUTO
+    }
+
+    private final Path javaExecutable;
+    private final String jarPath;
+    private final String key;
+    private final Path archive;
+    private final State state;
+    private Mode mode = Mode.NONE;
+    private Path classList;
+
+    /**
+     * Reads the CDS state for the installed JDK and VitaLite.jar.
+     */
+    public CdsManager() {
+        this.javaExecutable = JDKManager.getJavaExecutable();
+        // Must be the exact class path string of the launch, see JVMLauncher
+        this.jarPath = new File(LauncherMain.VITA_DIR + File.separator + "VitaLite.jar").getAbsolutePath();
+        this.key = computeKey();
+        this.archive = CDS_DIR.resolve("vitalite-" + key + ".jsa");
+        this.state = loadState(key);
+    }
+
+    /**
+     * Picks this launch's mode and returns the JVM arguments for it.
+     * @param userArgs JVM arguments already on the command line
+     * @return arguments to add, possibly none
+     */
+    public List<String> getJvmArgs(List<String> userArgs) {
+        List<String> args = new ArrayList<>();
+        for (String arg : userArgs) {
+            if (arg.startsWith("-Xshare") || arg.contains("SharedArchiveFile") || arg.contains("DumpLoadedClassList")
+                    || arg.contains("ArchiveClassesAtExit")) {
+                // The user configured sharing themselves
+                return args;
+            }
+        }
+
+        int feature = getFeatureVersion(JDKManager.getJavaHome());
+        if (feature >= 19) {
+            mode = Mode.AUTO;
+            args.add("-XX:+AutoCreateSharedArchive");
+            args.add("-XX:SharedArchiveFile=" + archive);
+        } else if (Files.isRegularFile(archive)) {
+            mode = Mode.USE;
+            args.add("-XX:SharedArchiveFile=" + archive);
+        } else if (feature >= 11 && state.failures < MAX_FAILURES) {
+            mode = Mode.TRAIN;
+            // Unique per launch, clients started together must not share a list
+            classList = CDS_DIR.resolve("vitalite-" + key + "." + System.nanoTime() + ".classlist");
+            args.add("-XX:DumpLoadedClassList=" + classList);
+        }
+
+        LaunchTrace.note("cds", mode.name().toLowerCase());
+        return args;
+    }
+
+    /**
+     * Records how long VitaLite took to report it is up and prints the measured delta.
+     * @param readyMillis time from process start to "Done"
+     */
+    public void recordLaunch(long readyMillis) {
+        List<Long> samples = mode == Mode.USE || mode == Mode.AUTO ? state.withArchive : state.withoutArchive;
+        samples.add(readyMillis);
+        while (samples.size() > KEEP_SAMPLES) {
+            samples.remove(0);
+        }
+        saveState();
+
+        if (!state.withArchive.isEmpty() && !state.withoutArchive.isEmpty()) {
+            long with = median(state.withArchive);
+            long without = median(state.withoutArchive);
+            System.out.println("AppCDS: ready in " + with + " ms with the archive, " + without + " ms without ("
+                    + (with - without) + " ms)");
+            LaunchTrace.note("cdsDeltaMs", String.valueOf(with - without));
+        }
+    }
+
+    /**
+     * @return true if this was a training launch and {@link #buildArchive()} should run
+     */
+    public boolean needsArchive() {
+        return mode == Mode.TRAIN;
+    }
+
+    /**
+     * Dumps the archive from this launch's class list. VitaLite keeps running and appending
+     * to the list, so a snapshot of the complete lines is dumped.
+     * @throws IOException if the dump fails
+     */
+    public void buildArchive() throws IOException {
+        Path snapshot = CDS_DIR.resolve("vitalite-" + key + ".classlist");
+        Path temp = CDS_DIR.resolve("vitalite-" + key + ".jsa.tmp");
+        try (LaunchTrace.Span ignored = LaunchTrace.begin("cds-dump")) {
+            String content = Files.readString(classList, StandardCharsets.UTF_8);
+            Files.writeString(snapshot, content.substring(0, content.lastIndexOf('\n') + 1), StandardCharsets.UTF_8);
+
+            List<String> command = new ArrayList<>();
+            command.add(javaExecutable.toString());
+            command.add("-Xshare:dump");
+            command.add("-XX:SharedClassListFile=" + snapshot);
+            command.add("-XX:SharedArchiveFile=" + temp);
+            command.add("-cp");
+            command.add(jarPath);
+
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(DUMP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("CDS dump timed out");
+            }
+            if (process.exitValue() != 0 || !Files.isRegularFile(temp)) {
+                throw new IOException("CDS dump failed with exit code " + process.exitValue());
+            }
+
+            StagedInstall.commitFile(temp, archive);
+            System.out.println("AppCDS archive created: " + archive);
+        } catch (IOException e) {
+            state.failures++;
+            saveState();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("CDS dump was interrupted", e);
+        } finally {
+            Files.deleteIfExists(temp);
+            Files.deleteIfExists(snapshot);
+            // The running client may still hold the list open, a later launch cleans it up
+            try {
+                Files.deleteIfExists(classList);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Identifies the VitaLite version and jar plus the JDK the archive belongs to.
+     */
+    private String computeKey() {
+        StringBuilder identity = new StringBuilder(Versioning.getVitaLiteVersion());
+        File jar = new File(jarPath);
+        identity.append('|').append(jar.length()).append('|').append(jar.lastModified());
+
+        Path javaHome = JDKManager.getJavaHome();
+        identity.append('|').append(javaHome.toAbsolutePath());
+        // Only the launcher's own JDK has an install marker
+        StagedInstall.Marker jdk = javaHome.startsWith(LauncherMain.JDK_DIR)
+                ? StagedInstall.readMarker(LauncherMain.JDK_DIR.resolve(StagedInstall.MARKER_FILE)) : null;
+        identity.append('|').append(jdk != null ? jdk.getSha256() : javaExecutable.toFile().lastModified());
+
+        byte[] digest = StagedInstall.newSha256().digest(identity.toString().getBytes(StandardCharsets.UTF_8));
+        return StagedInstall.hex(digest).substring(0, 16);
+    }
+
+    /**
+     * @return the JDK's feature version from its release file, e.g. 11, or 0 if unknown
+     */
+    static int getFeatureVersion(Path javaHome) {
+        try {
+            for (String line : Files.readAllLines(javaHome.resolve("release"), StandardCharsets.UTF_8)) {
+                if (line.startsWith("JAVA_VERSION=")) {
+                    return JavaRuntime.parseFeature(line.substring("JAVA_VERSION=".length()).replace("\"", "").trim());
+                }
+            }
+        } catch (IOException ignored) {
+        }
+        return 0;
+    }
+
+    private static long median(List<Long> samples) {
+        List<Long> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    /**
+     * Loads the state for {@code key}; a different key invalidates the old archive and samples.
+     */
+    private static State loadState(String key) {
+        State state = null;
+        try {
+            if (Files.isRegularFile(STATE_FILE)) {
+                state = GSON.fromJson(Files.readString(STATE_FILE), State.class);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Corrupt state only means starting over
+        }
+        if (state != null && key.equals(state.key)) {
+            return state;
+        }
+
+        try {
+            Files.createDirectories(CDS_DIR);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(CDS_DIR, "vitalite-*")) {
+                for (Path file : stream) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException ignored) {
+                        // A running client still has its class list open
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to clean up old CDS archives: " + e.getMessage());
+        }
+
+        State fresh = new State();
+        fresh.key = key;
+        return fresh;
+    }
+
+    private void saveState() {
+        try {
+            Files.createDirectories(CDS_DIR);
+            Path temp = STATE_FILE.resolveSibling("cds.json.tmp");
+            Files.writeString(temp, GSON.toJson(state), StandardCharsets.UTF_8);
+            StagedInstall.commitFile(temp, STATE_FILE);
+        } catch (IOException e) {
+            System.err.println("Failed to save CDS state: " + e.getMessage());
+        }
+    }
+
+    private static class State {
+        String key;
+        int failures = 0;
+        // Time to "Done" in ms
+        List<Long> withArchive = new ArrayList<>();
+        List<Long> withoutArchive = new ArrayList<>();
+    }
+}
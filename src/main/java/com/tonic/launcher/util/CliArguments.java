@@ -0,0 +1,67 @@
+package com.tonic.launcher.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds VitaLite's program arguments from the saved settings. Shared by the settings
+ * panel, launch profiles and headless launches, so all of them pass the same flags.
+ */
+public final class CliArguments {
+    private CliArguments() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * @return VitaLite's program arguments for the saved settings
+     */
+    public static List<String> build(LauncherConfig config) {
+        List<String> args = buildShared(config);
+        if (config.isProxy()) {
+            addProxy(args, config.getProxyData());
+        }
+        addLogin(args, config.getLoginType(), config.getLoginString());
+        return args;
+    }
+
+    /**
+     * @return the flags every client gets, without proxy and login
+     */
+    static List<String> buildShared(LauncherConfig config) {
+        List<String> args = new ArrayList<>();
+        if (config.isRsDump() && config.getRsDumpPath() != null && !config.getRsDumpPath().trim().isEmpty()) {
+            args.add("--rsdump");
+            args.add(config.getRsDumpPath().trim());
+        }
+        if (config.isNoPlugins()) {
+            args.add("-noPlugins");
+        }
+        if (config.isMin()) {
+            args.add("-min");
+        }
+        if (config.isNoMusic()) {
+            args.add("-noMusic");
+        }
+        if (config.isIncognito()) {
+            args.add("-incognito");
+        }
+        return args;
+    }
+
+    static void addProxy(List<String> args, String proxy) {
+        if (proxy != null && !proxy.trim().isEmpty()) {
+            args.add("--proxy");
+            args.add(proxy.trim());
+        }
+    }
+
+    /**
+     * Adds the login, Legacy unless the type is Jagex.
+     */
+    static void addLogin(List<String> args, String loginType, String login) {
+        if (login != null && !login.trim().isEmpty()) {
+            args.add("Jagex".equalsIgnoreCase(loginType) ? "--jagexLogin" : "--legacyLogin");
+            args.add(login.trim());
+        }
+    }
+}
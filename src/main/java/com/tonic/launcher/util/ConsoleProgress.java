@@ -0,0 +1,104 @@
+package com.tonic.launcher.util;
+
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Reports launch progress without a window, for {@code --headless} launches.
+ *
+ * Progress goes to stdout, one line per update. Downloads report every few hundred KB, so
+ * a stage prints at most once a second apart from its start and end. If a progress file
+ * is given, the latest state is also kept there as JSON for scripts to poll:
+ * {@code {"overall":42,"stage":"JDK","stageProgress":60,"text":"...","error":false,"time":...}}
+ */
+public class ConsoleProgress implements ProgressListener {
+    private static final long PRINT_INTERVAL_MILLIS = 1000;
+
+    private final Path progressFile;
+    private final Map<LaunchStage, Integer> stageProgress = new EnumMap<>(LaunchStage.class);
+    private final Map<LaunchStage, Long> lastPrinted = new EnumMap<>(LaunchStage.class);
+
+    /**
+     * @param progressFile file to keep the latest progress in (can be null)
+     */
+    public ConsoleProgress(Path progressFile) {
+        this.progressFile = progressFile;
+    }
+
+    @Override
+    public synchronized void setStageProgress(LaunchStage stage, int progress, String text) {
+        progress = Math.max(0, Math.min(100, progress));
+        stageProgress.put(stage, progress);
+
+        long now = System.currentTimeMillis();
+        Long last = lastPrinted.get(stage);
+        if (progress > 0 && progress < 100 && last != null && now - last < PRINT_INTERVAL_MILLIS) {
+            return;
+        }
+        lastPrinted.put(stage, now);
+        report(stage.getLabel(), progress, getOverall(), text, false);
+    }
+
+    @Override
+    public synchronized void setProgress(int stageProgress, int overallProgress, String text) {
+        report(null, Math.max(0, Math.min(100, stageProgress)), Math.max(0, Math.min(100, overallProgress)), text, false);
+    }
+
+    @Override
+    public synchronized void setError(String message) {
+        report(null, 0, getOverall(), message, true);
+    }
+
+    private int getOverall() {
+        int overall = 0;
+        for (Map.Entry<LaunchStage, Integer> entry : stageProgress.entrySet()) {
+            overall += entry.getKey().getWeight() * entry.getValue();
+        }
+        return Math.max(0, Math.min(100, overall / 100));
+    }
+
+    private void report(String stage, int progress, int overall, String text, boolean error) {
+        if (error) {
+            System.err.printf("[%3d%%] %s%n", overall, text);
+        } else if (stage != null) {
+            System.out.printf("[%3d%%] %s %d%% - %s%n", overall, stage, progress, text);
+        } else {
+            System.out.printf("[%3d%%] %s%n", overall, text);
+        }
+
+        if (progressFile != null) {
+            JsonObject state = new JsonObject();
+            state.addProperty("overall", overall);
+            state.addProperty("stage", stage);
+            state.addProperty("stageProgress", progress);
+            state.addProperty("text", text);
+            state.addProperty("error", error);
+            state.addProperty("time", System.currentTimeMillis());
+            write(state.toString());
+        }
+    }
+
+    /**
+     * Replaces the progress file in one step, so a reader never sees a partial write.
+     */
+    private void write(String json) {
+        Path temp = progressFile.resolveSibling(progressFile.getFileName() + ".tmp");
+        try {
+            Path parent = progressFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.writeString(temp, json + System.lineSeparator(), StandardCharsets.UTF_8);
+            Files.move(temp, progressFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to write progress file " + progressFile + ": " + e.getMessage());
+        }
+    }
+}
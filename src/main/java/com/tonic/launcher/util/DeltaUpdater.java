@@ -0,0 +1,507 @@
+package com.tonic.launcher.util;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Updates VitaLite.jar by downloading only the entries that changed.
+ *
+ * The release zip stores VitaLite.jar uncompressed, so the nested jar is a plain byte
+ * window inside the zip and can be read with HTTP range requests. The updater reads the
+ * jar's central directory (a few KB at the end), compares every entry's CRC and sizes with
+ * the installed jar, fetches the changed entries' raw (still compressed) bytes in a few
+ * coalesced ranges and rebuilds the jar from those and the unchanged local entries. Every
+ * entry of the result is checked against the CRC in the release's central directory.
+ *
+ * Anything the updater cannot handle (no range support, a compressed nested jar, zip64,
+ * too many changes) throws, and the caller falls back to the full download.
+ */
+class DeltaUpdater {
+    // End of central directory record plus the longest possible comment
+    private static final int EOCD_SEARCH = 22 + 65535;
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    // Fetching a gap is cheaper than another request below this size
+    private static final long MERGE_GAP = 64 * 1024;
+    private static final int MAX_RANGES = 32;
+    // Past this share of changed bytes the full download is about as cheap
+    private static final double MAX_CHANGED_RATIO = 0.7;
+
+    private final String url;
+    private final String userAgent;
+    private final Downloader.Progress progress;
+    private String resolvedUrl;
+    private String validator;
+    private long transferred = 0;
+    private long planTransferred = 0;
+    private int requests = 0;
+    // The zip's tail, fetched while opening, in absolute zip offsets
+    private long prefetchStart = -1;
+    private byte[] prefetched;
+
+    /**
+     * @param url release zip URL
+     * @param userAgent user agent to send
+     * @param progress receives fetched bytes against the planned total (can be null)
+     */
+    DeltaUpdater(String url, String userAgent, Downloader.Progress progress) {
+        this.url = url;
+        this.userAgent = userAgent;
+        this.progress = progress;
+    }
+
+    /**
+     * Builds the new VitaLite.jar from the installed one and the changed entries.
+     * @param installedJar currently installed jar
+     * @param target file to write the new jar to
+     * @throws IOException if a delta update is not possible, the caller should download the full zip
+     */
+    void update(Path installedJar, Path target) throws IOException {
+        // Locate VitaLite.jar inside the release zip
+        Remote outer = openRemote();
+        List<CentralEntry> outerEntries = readCentralDirectory(outer);
+        CentralEntry jarEntry = outerEntries.stream()
+                .filter(e -> e.name.endsWith("VitaLite.jar"))
+                .findFirst()
+                .orElseThrow(() -> new IOException("VitaLite.jar not found in the release zip"));
+        if (jarEntry.method != ZipEntry.STORED) {
+            throw new IOException("VitaLite.jar is compressed inside the release zip");
+        }
+        long jarStart = dataOffset(outer, jarEntry);
+        Remote remoteJar = new Remote(jarStart, jarEntry.compressedSize);
+
+        List<CentralEntry> remoteEntries = readCentralDirectory(remoteJar);
+        Map<String, CentralEntry> localEntries = new HashMap<>();
+        try (FileChannel local = FileChannel.open(installedJar, StandardOpenOption.READ)) {
+            for (CentralEntry entry : readCentralDirectory(new Local(local))) {
+                localEntries.put(entry.name, entry);
+            }
+
+            // Plan which records have to come from the release
+            List<CentralEntry> changed = new ArrayList<>();
+            long changedBytes = 0;
+            for (CentralEntry entry : remoteEntries) {
+                CentralEntry existing = localEntries.get(entry.name);
+                if (existing == null || !existing.sameContent(entry)) {
+                    changed.add(entry);
+                    changedBytes += entry.compressedSize;
+                }
+            }
+            if (changedBytes > jarEntry.compressedSize * MAX_CHANGED_RATIO) {
+                throw new IOException("Too many changes for a delta update (" + changed.size() + " entries)");
+            }
+
+            Fetched fetched = fetch(remoteJar, remoteEntries, changed);
+            rebuild(target, remoteEntries, localEntries, new Local(local), fetched);
+        }
+
+        verify(target, remoteEntries);
+        System.out.println("Delta update: " + (transferred / 1024) + " KB in " + requests + " requests instead of "
+                + (outer.size / 1024) + " KB");
+    }
+
+    /**
+     * @return bytes downloaded so far
+     */
+    long getTransferred() {
+        return transferred;
+    }
+
+    /**
+     * Downloads the local records (header and data) of the changed entries in coalesced ranges.
+     */
+    private Fetched fetch(Remote remoteJar, List<CentralEntry> remoteEntries, List<CentralEntry> changed) throws IOException {
+        // A record ends where the next one (or the central directory) begins
+        List<Long> starts = new ArrayList<>();
+        for (CentralEntry entry : remoteEntries) {
+            starts.add(entry.offset);
+        }
+        starts.add(remoteJar.centralDirectoryOffset);
+        starts.sort(Comparator.naturalOrder());
+
+        List<long[]> ranges = new ArrayList<>();
+        changed.sort(Comparator.comparingLong(e -> e.offset));
+        for (CentralEntry entry : changed) {
+            int next = java.util.Collections.binarySearch(starts, entry.offset) + 1;
+            long end = starts.get(next);
+            long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && entry.offset - last[1] <= MERGE_GAP) {
+                last[1] = end;
+            } else {
+                ranges.add(new long[]{entry.offset, end});
+            }
+        }
+        while (ranges.size() > MAX_RANGES) {
+            // Merge the two ranges with the smallest gap between them
+            int best = 0;
+            for (int i = 1; i < ranges.size() - 1; i++) {
+                if (ranges.get(i + 1)[0] - ranges.get(i)[1] < ranges.get(best + 1)[0] - ranges.get(best)[1]) {
+                    best = i;
+                }
+            }
+            ranges.get(best)[1] = ranges.remove(best + 1)[1];
+        }
+
+        long planned = ranges.stream().mapToLong(r -> r[1] - r[0]).sum();
+        Fetched fetched = new Fetched();
+        for (long[] range : ranges) {
+            fetched.add(range[0], remoteJar.read(range[0], (int) (range[1] - range[0]), planned));
+        }
+        return fetched;
+    }
+
+    /**
+     * Writes the new jar in the release's entry order, copying raw compressed data.
+     */
+    private static void rebuild(Path target, List<CentralEntry> remoteEntries, Map<String, CentralEntry> localEntries,
+                                Local local, Fetched fetched) throws IOException {
+        try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(target)) {
+            for (CentralEntry entry : remoteEntries) {
+                byte[] raw;
+                CentralEntry existing = localEntries.get(entry.name);
+                if (existing != null && existing.sameContent(entry)) {
+                    raw = local.read(dataOffset(local, existing), Math.toIntExact(existing.compressedSize));
+                } else {
+                    byte[] header = fetched.slice(entry.offset, 30);
+                    long dataStart = entry.offset + 30 + u16(header, 26) + u16(header, 28);
+                    raw = fetched.slice(dataStart, Math.toIntExact(entry.compressedSize));
+                }
+
+                ZipArchiveEntry archiveEntry = new ZipArchiveEntry(entry.name);
+                archiveEntry.setMethod(entry.method);
+                archiveEntry.setCrc(entry.crc);
+                archiveEntry.setSize(entry.size);
+                archiveEntry.setCompressedSize(entry.compressedSize);
+                archiveEntry.setTime(ZipUtil.dosToJavaTime(entry.dosTime));
+                out.addRawArchiveEntry(archiveEntry, new ByteArrayInputStream(raw));
+            }
+        }
+    }
+
+    /**
+     * Checks that the rebuilt jar holds exactly the release's entries with the release's CRCs.
+     */
+    private static void verify(Path jar, List<CentralEntry> expected) throws IOException {
+        Map<String, Long> crcs = new HashMap<>();
+        for (CentralEntry entry : expected) {
+            crcs.put(entry.name, entry.crc);
+        }
+
+        byte[] buffer = new byte[64 * 1024];
+        int count = 0;
+        try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                CRC32 crc = new CRC32();
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        crc.update(buffer, 0, read);
+                    }
+                }
+                Long expectedCrc = crcs.get(entry.getName());
+                if (expectedCrc == null || expectedCrc != crc.getValue()) {
+                    throw new IOException("Delta update produced a bad entry: " + entry.getName());
+                }
+                count++;
+            }
+        }
+        if (count != expected.size()) {
+            throw new IOException("Delta update produced " + count + " entries, expected " + expected.size());
+        }
+    }
+
+    private static long dataOffset(Source source, CentralEntry entry) throws IOException {
+        byte[] header = source.read(entry.offset, 30, 0);
+        if (i32(header, 0) != LOCAL_SIGNATURE) {
+            throw new IOException("No local header for " + entry.name);
+        }
+        return entry.offset + 30 + u16(header, 26) + u16(header, 28);
+    }
+
+    /**
+     * Reads the central directory from the end of an archive.
+     */
+    private static List<CentralEntry> readCentralDirectory(Source source) throws IOException {
+        int tailLength = (int) Math.min(source.size(), EOCD_SEARCH);
+        long tailStart = source.size() - tailLength;
+        byte[] tail = source.read(tailStart, tailLength, 0);
+
+        int eocd = -1;
+        for (int i = tail.length - 22; i >= 0; i--) {
+            if (i32(tail, i) == EOCD_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            throw new IOException("End of central directory not found");
+        }
+
+        int count = u16(tail, eocd + 10);
+        long size = u32(tail, eocd + 12);
+        long offset = u32(tail, eocd + 16);
+        if (count == 0xFFFF || size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) {
+            throw new IOException("Zip64 archives are not supported");
+        }
+        source.setCentralDirectoryOffset(offset);
+
+        byte[] directory = offset >= tailStart
+                ? java.util.Arrays.copyOfRange(tail, (int) (offset - tailStart), (int) (offset - tailStart + size))
+                : source.read(offset, Math.toIntExact(size), 0);
+
+        List<CentralEntry> entries = new ArrayList<>(count);
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            if (i32(directory, pos) != CENTRAL_SIGNATURE) {
+                throw new IOException("Corrupt central directory");
+            }
+            CentralEntry entry = new CentralEntry();
+            entry.method = u16(directory, pos + 10);
+            entry.dosTime = u32(directory, pos + 12);
+            entry.crc = u32(directory, pos + 16);
+            entry.compressedSize = u32(directory, pos + 20);
+            entry.size = u32(directory, pos + 24);
+            int nameLength = u16(directory, pos + 28);
+            int extraLength = u16(directory, pos + 30);
+            int commentLength = u16(directory, pos + 32);
+            entry.offset = u32(directory, pos + 42);
+            entry.name = new String(directory, pos + 46, nameLength, StandardCharsets.UTF_8);
+            entries.add(entry);
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    /**
+     * Requests the tail of the zip, which also resolves redirects and the total size.
+     */
+    private Remote openRemote() throws IOException {
+        Downloader.acquireConnection();
+        HttpURLConnection connection = null;
+        try {
+            connection = Downloader.open(url, userAgent, "bytes=-" + EOCD_SEARCH);
+            if (connection.getResponseCode() != 206) {
+                throw new IOException("Server does not support range requests: HTTP " + connection.getResponseCode());
+            }
+            long total = Downloader.parseTotal(connection.getHeaderField("Content-Range"));
+            if (total <= 0) {
+                throw new IOException("Unknown release zip size");
+            }
+            // Later requests go straight to the redirect target
+            resolvedUrl = connection.getURL().toString();
+            validator = Downloader.validator(connection);
+            requests++;
+
+            Remote remote = new Remote(0, total);
+            byte[] tail;
+            try (InputStream in = connection.getInputStream()) {
+                tail = in.readAllBytes();
+            }
+            transferred += tail.length;
+            prefetchStart = total - tail.length;
+            prefetched = tail;
+            return remote;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            Downloader.releaseConnection();
+        }
+    }
+
+    private static int u16(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8;
+    }
+
+    private static long u32(byte[] b, int i) {
+        return i32(b, i) & 0xFFFFFFFFL;
+    }
+
+    private static int i32(byte[] b, int i) {
+        return ByteBuffer.wrap(b, i, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+
+    /**
+     * One record of a central directory.
+     */
+    private static class CentralEntry {
+        String name;
+        int method;
+        long dosTime;
+        long crc;
+        long compressedSize;
+        long size;
+        long offset;
+
+        boolean sameContent(CentralEntry other) {
+            return method == other.method && crc == other.crc
+                    && compressedSize == other.compressedSize && size == other.size;
+        }
+    }
+
+    /**
+     * Random access to an archive's bytes.
+     */
+    private abstract static class Source {
+        long centralDirectoryOffset;
+
+        abstract long size();
+
+        /**
+         * @param planned total bytes planned for progress reporting, 0 for metadata reads
+         */
+        abstract byte[] read(long offset, int length, long planned) throws IOException;
+
+        void setCentralDirectoryOffset(long offset) {
+            centralDirectoryOffset = offset;
+        }
+    }
+
+    private static class Local extends Source {
+        private final FileChannel channel;
+
+        Local(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        long size() {
+            try {
+                return channel.size();
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+
+        byte[] read(long offset, int length) throws IOException {
+            return read(offset, length, 0);
+        }
+
+        @Override
+        byte[] read(long offset, int length, long planned) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of the installed jar");
+                }
+            }
+            return buffer.array();
+        }
+    }
+
+    /**
+     * A byte window of the remote zip, read with range requests.
+     */
+    private class Remote extends Source {
+        private final long base;
+        private final long size;
+
+        Remote(long base, long size) {
+            this.base = base;
+            this.size = size;
+        }
+
+        @Override
+        long size() {
+            return size;
+        }
+
+        @Override
+        byte[] read(long offset, int length, long planned) throws IOException {
+            if (offset < 0 || offset + length > size) {
+                throw new IOException("Range outside of the archive");
+            }
+            long start = base + offset;
+            if (prefetched != null && start >= prefetchStart && start + length <= prefetchStart + prefetched.length) {
+                int from = (int) (start - prefetchStart);
+                return java.util.Arrays.copyOfRange(prefetched, from, from + length);
+            }
+
+            Downloader.acquireConnection();
+            HttpURLConnection connection = null;
+            try {
+                connection = Downloader.open(resolvedUrl, userAgent, "bytes=" + start + "-" + (start + length - 1));
+                if (connection.getResponseCode() != 206) {
+                    throw new IOException("Range request failed: HTTP " + connection.getResponseCode());
+                }
+                String current = Downloader.validator(connection);
+                if (validator != null && current != null && !validator.equals(current)) {
+                    throw new IOException("Release zip changed during the delta update");
+                }
+                requests++;
+
+                byte[] bytes = new byte[length];
+                try (InputStream in = connection.getInputStream()) {
+                    int read = 0;
+                    while (read < length) {
+                        int n = in.read(bytes, read, length - read);
+                        if (n < 0) {
+                            throw new IOException("Range response ended early");
+                        }
+                        read += n;
+                        transferred += n;
+                        if (progress != null && planned > 0) {
+                            planTransferred += n;
+                            progress.update(planTransferred, planned);
+                        }
+                    }
+                }
+                return bytes;
+            } finally {
+                if (connection != null) {
+                    connection.disconnect();
+                }
+                Downloader.releaseConnection();
+            }
+        }
+    }
+
+    /**
+     * Downloaded ranges of the nested jar.
+     */
+    private static class Fetched {
+        private final List<Long> starts = new ArrayList<>();
+        private final List<byte[]> chunks = new ArrayList<>();
+
+        void add(long start, byte[] bytes) {
+            starts.add(start);
+            chunks.add(bytes);
+        }
+
+        byte[] slice(long offset, int length) throws IOException {
+            for (int i = 0; i < starts.size(); i++) {
+                long start = starts.get(i);
+                byte[] chunk = chunks.get(i);
+                if (offset >= start && offset + length <= start + chunk.length) {
+                    int from = (int) (offset - start);
+                    return java.util.Arrays.copyOfRange(chunk, from, from + length);
+                }
+            }
+            throw new IOException("Entry data was not fetched");
+        }
+    }
+}
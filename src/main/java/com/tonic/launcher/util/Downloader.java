@@ -0,0 +1,608 @@
+package com.tonic.launcher.util;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Download engine shared by the JDK and VitaLite downloads.
+ *
+ * Data is written through a {@link FileChannel} into {@code <destination>.part}, next to a
+ * small {@code .part.json} state file recording how far each byte range has come. When the
+ * server supports {@code Range} requests:
+ * - a dropped connection is retried from the last written byte instead of from scratch
+ * - an interrupted download is resumed by the next launch
+ * - large files are split into segments that are fetched in parallel
+ * The {@code .part} file is only moved to the destination once every segment completed.
+ *
+ * Downloads run concurrently (the JDK and VitaLite, see {@link LaunchPipeline}), so the
+ * {@link #MAX_CONNECTIONS} limit is shared by every download of the launcher, not per call.
+ */
+public class Downloader {
+    private static final int MAX_CONNECTIONS = 4;
+    private static final long SEGMENT_THRESHOLD = 16L * 1024 * 1024;
+    private static final long MIN_SEGMENT_SIZE = 8L * 1024 * 1024;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long STATE_SAVE_INTERVAL_MS = 1000;
+    private static final Gson GSON = new Gson();
+    // Open download connections across all downloads
+    private static final Semaphore CONNECTIONS = new Semaphore(MAX_CONNECTIONS, true);
+
+    /**
+     * Receives download progress. Calls are serialized, but may come from any download thread.
+     */
+    @FunctionalInterface
+    public interface Progress {
+        /**
+         * @param downloaded bytes present so far, including bytes resumed from a previous run
+         * @param total total size in bytes, or -1 if unknown
+         */
+        void update(long downloaded, long total);
+    }
+
+    /**
+     * Downloads a file, resuming a previous partial download of the same URL if there is one.
+     * @param url source URL
+     * @param destination file to write, replaced once the download completed
+     * @param userAgent user agent to send
+     * @param progress progress listener (can be null)
+     * @return the destination path
+     * @throws IOException if the download fails after retries
+     */
+    public static Path download(String url, Path destination, String userAgent, Progress progress) throws IOException {
+        return download(url, destination, userAgent, progress, null);
+    }
+
+    /**
+     * Downloads a file and feeds its bytes, in order, to a sink as they arrive, so the
+     * caller can consume the file while it downloads. A download with a sink is fetched
+     * as a single range; retries and bytes resumed from an earlier run are still fed to
+     * the sink in order. The sink is not closed.
+     * @param url source URL
+     * @param destination file to write, replaced once the download completed
+     * @param userAgent user agent to send
+     * @param progress progress listener (can be null)
+     * @param sink receives the file content in order (can be null)
+     * @return the destination path
+     * @throws IOException if the download or the sink fails
+     */
+    public static Path download(String url, Path destination, String userAgent, Progress progress, OutputStream sink) throws IOException {
+        Path partFile = destination.resolveSibling(destination.getFileName() + ".part");
+        Path stateFile = destination.resolveSibling(destination.getFileName() + ".part.json");
+        if (destination.getParent() != null) {
+            Files.createDirectories(destination.getParent());
+        }
+
+        try {
+            fetch(url, partFile, stateFile, userAgent, progress, sink);
+        } catch (ResourceChangedException e) {
+            Files.deleteIfExists(partFile);
+            Files.deleteIfExists(stateFile);
+            if (sink != null) {
+                // The sink already consumed bytes of the old file
+                throw e;
+            }
+            // The file on the server was replaced, start over once
+            System.out.println(e.getMessage() + ", restarting download");
+            fetch(url, partFile, stateFile, userAgent, progress, null);
+        }
+
+        Files.deleteIfExists(stateFile);
+        try {
+            Files.move(partFile, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partFile, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return destination;
+    }
+
+    private static void fetch(String url, Path partFile, Path stateFile, String userAgent, Progress progress, OutputStream sink) throws IOException {
+        Probe probe = probe(url, userAgent);
+        try {
+            State state = readState(stateFile);
+            if (state == null || !state.matches(url, probe) || !Files.exists(partFile)) {
+                Files.deleteIfExists(partFile);
+                state = probe.rangeSupported ? State.plan(url, probe, sink != null) : null;
+            } else {
+                System.out.println("Resuming download of " + partFile.getFileName() + " at "
+                        + (state.downloaded() / (1024 * 1024)) + " MB");
+            }
+
+            Download download = new Download(url, userAgent, partFile, stateFile, state, probe.total, progress, sink);
+            if (state == null) {
+                // No ranges: the probe's response is the whole file, nothing to resume later
+                Files.deleteIfExists(stateFile);
+                download.streamWhole(probe.handOver());
+            } else {
+                download.fetchSegments();
+            }
+        } finally {
+            probe.close();
+        }
+    }
+
+    /**
+     * Waits for one of the {@link #MAX_CONNECTIONS} download connections; every call must be
+     * followed by {@link #releaseConnection()}.
+     * @throws IOException if the thread was interrupted while waiting
+     */
+    static void acquireConnection() throws IOException {
+        try {
+            CONNECTIONS.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Download was interrupted", e);
+        }
+    }
+
+    static void releaseConnection() {
+        CONNECTIONS.release();
+    }
+
+    /**
+     * Opens a connection with the launcher's timeouts.
+     * @param url source URL
+     * @param userAgent user agent to send
+     * @param range byte range to request, e.g. {@code bytes=0-}, or null for the whole entity
+     * @return the connected connection
+     * @throws IOException if the connection fails
+     */
+    static HttpURLConnection open(String url, String userAgent, String range) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(30000); // 30 seconds
+        connection.setReadTimeout(30000);    // 30 seconds
+        connection.setRequestProperty("User-Agent", userAgent);
+        if (range != null) {
+            connection.setRequestProperty("Range", range);
+        }
+        connection.connect();
+        return connection;
+    }
+
+    /**
+     * Asks for the first byte to learn the size and whether ranges work. A server that ignores
+     * the range answers with the whole file, that response is kept open for the download.
+     */
+    private static Probe probe(String url, String userAgent) throws IOException {
+        acquireConnection();
+        Probe probe = new Probe();
+        probe.holdsConnection = true;
+        try {
+            probe.connection = open(url, userAgent, "bytes=0-0");
+            probe.validator = validator(probe.connection);
+            int code = probe.connection.getResponseCode();
+            if (code == 206) {
+                probe.total = parseTotal(probe.connection.getHeaderField("Content-Range"));
+                probe.rangeSupported = probe.total > 0;
+                if (probe.rangeSupported) {
+                    probe.close();
+                }
+            } else if (code == 200) {
+                probe.total = probe.connection.getContentLengthLong();
+            } else {
+                throw new IOException("Download failed: HTTP " + code);
+            }
+            return probe;
+        } catch (IOException | RuntimeException e) {
+            probe.close();
+            throw e;
+        }
+    }
+
+    static String validator(HttpURLConnection connection) {
+        String etag = connection.getHeaderField("ETag");
+        return etag != null ? etag : connection.getHeaderField("Last-Modified");
+    }
+
+    static long parseTotal(String contentRange) {
+        // bytes 0-0/123456
+        if (contentRange == null || !contentRange.contains("/")) {
+            return -1;
+        }
+        String total = contentRange.substring(contentRange.lastIndexOf('/') + 1).trim();
+        try {
+            return "*".equals(total) ? -1 : Long.parseLong(total);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static State readState(Path stateFile) {
+        if (!Files.isRegularFile(stateFile)) {
+            return null;
+        }
+        try {
+            return GSON.fromJson(Files.readString(stateFile), State.class);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static class Download {
+        private final String url;
+        private final String userAgent;
+        private final Path partFile;
+        private final Path stateFile;
+        private final State state;
+        private final long total;
+        private final Progress progress;
+        private final OutputStream sink;
+        private final AtomicLong downloaded = new AtomicLong();
+        private long lastStateSave = System.currentTimeMillis();
+        // Whether bytes go to the sink as they are written, only possible for one sequential range
+        private boolean liveSink;
+
+        Download(String url, String userAgent, Path partFile, Path stateFile, State state, long total, Progress progress, OutputStream sink) {
+            this.url = url;
+            this.userAgent = userAgent;
+            this.partFile = partFile;
+            this.stateFile = stateFile;
+            this.state = state;
+            this.total = total;
+            this.progress = progress;
+            this.sink = sink;
+        }
+
+        /**
+         * @param connection the probe's connection if it returned the whole file, otherwise null
+         */
+        void streamWhole(HttpURLConnection connection) throws IOException {
+            liveSink = sink != null;
+            if (connection == null) {
+                acquireConnection();
+                try {
+                    connection = open(url, userAgent, null);
+                } catch (IOException | RuntimeException e) {
+                    releaseConnection();
+                    throw e;
+                }
+            }
+            try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                if (connection.getResponseCode() != 200) {
+                    throw new IOException("Download failed: HTTP " + connection.getResponseCode());
+                }
+                try (InputStream in = connection.getInputStream()) {
+                    copy(in, channel, 0, Long.MAX_VALUE, null);
+                }
+                channel.force(true);
+            } finally {
+                connection.disconnect();
+                releaseConnection();
+            }
+        }
+
+        void fetchSegments() throws IOException {
+            downloaded.set(state.downloaded());
+            report();
+
+            if (sink != null && state.segments.size() == 1) {
+                // Replay what an earlier run already downloaded, then continue live
+                feedSink(state.segments.get(0).done);
+                liveSink = true;
+            }
+
+            List<Segment> pending = new ArrayList<>();
+            for (Segment segment : state.segments) {
+                if (!segment.isComplete()) {
+                    pending.add(segment);
+                }
+            }
+
+            if (pending.size() == 1) {
+                // A single range needs no pool and keeps every sink write on the calling thread
+                try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    try {
+                        fetchSegment(pending.get(0), channel);
+                    } finally {
+                        saveState(channel, true);
+                    }
+                    channel.force(true);
+                }
+            } else if (!pending.isEmpty()) {
+                fetchParallel(pending);
+            }
+
+            if (sink != null && !liveSink) {
+                // Segments arrived out of order, hand the finished file over in one go
+                feedSink(state.total);
+            }
+        }
+
+        private void fetchParallel(List<Segment> pending) throws IOException {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_CONNECTIONS, pending.size()), new DownloadThreadFactory());
+            try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                List<Future<?>> futures = new ArrayList<>();
+                for (Segment segment : pending) {
+                    futures.add(executor.submit(() -> {
+                        fetchSegment(segment, channel);
+                        return null;
+                    }));
+                }
+
+                try {
+                    for (Future<?> future : futures) {
+                        future.get();
+                    }
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Download was interrupted", e);
+                } finally {
+                    // Keep the progress of the segments that did finish for the next attempt
+                    saveState(channel, true);
+                }
+                channel.force(true);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        private void fetchSegment(Segment segment, FileChannel channel) throws IOException {
+            int attempt = 0;
+            while (!segment.isComplete()) {
+                long before = segment.done;
+                long backoff = 0;
+                acquireConnection();
+                HttpURLConnection connection = null;
+                try {
+                    connection = open(url, userAgent, "bytes=" + (segment.start + segment.done) + "-" + segment.end);
+                    if (connection.getResponseCode() != 206) {
+                        // The server ignored the range; the bytes on disk may belong to another entity
+                        throw new ResourceChangedException("Download failed: expected a partial response, got HTTP "
+                                + connection.getResponseCode());
+                    }
+                    String validator = validator(connection);
+                    if (state.validator != null && validator != null && !state.validator.equals(validator)) {
+                        throw new ResourceChangedException("Download failed: " + url + " changed while downloading");
+                    }
+                    try (InputStream in = connection.getInputStream()) {
+                        copy(in, channel, segment.start + segment.done, segment.remaining(), segment);
+                    }
+                    if (!segment.isComplete()) {
+                        throw new IOException("Connection closed early");
+                    }
+                } catch (ResourceChangedException e) {
+                    Files.deleteIfExists(stateFile);
+                    throw e;
+                } catch (SinkException e) {
+                    // The consumer failed, retrying the network would not help
+                    throw e;
+                } catch (IOException e) {
+                    // Any progress made resets the retry budget, only a stuck segment gives up
+                    attempt = segment.done > before ? 1 : attempt + 1;
+                    if (attempt >= MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    System.out.println("Download segment interrupted (" + e.getMessage() + "), resuming at "
+                            + (segment.start + segment.done) + " (attempt " + (attempt + 1) + "/" + MAX_ATTEMPTS + ")");
+                    backoff = 500L * attempt;
+                } finally {
+                    if (connection != null) {
+                        connection.disconnect();
+                    }
+                    releaseConnection();
+                }
+                // Backing off does not hold a connection another download could use
+                sleep(backoff);
+            }
+        }
+
+        private void feedSink(long length) throws IOException {
+            if (length <= 0) {
+                return;
+            }
+            try (InputStream in = Files.newInputStream(partFile)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long remaining = length;
+                int read;
+                while (remaining > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                    writeSink(buffer, read);
+                    remaining -= read;
+                }
+            }
+        }
+
+        private void writeSink(byte[] bytes, int length) throws SinkException {
+            try {
+                sink.write(bytes, 0, length);
+            } catch (IOException e) {
+                throw new SinkException(e);
+            }
+        }
+
+        private void copy(InputStream in, FileChannel channel, long position, long limit, Segment segment) throws IOException {
+            byte[] bytes = new byte[BUFFER_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            long written = 0;
+            int read;
+            while (written < limit && (read = in.read(bytes, 0, (int) Math.min(bytes.length, limit - written))) != -1) {
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                if (liveSink) {
+                    writeSink(bytes, read);
+                }
+                written += read;
+                if (segment != null) {
+                    segment.done += read;
+                }
+                downloaded.addAndGet(read);
+                report();
+                if (segment != null) {
+                    saveState(channel, false);
+                }
+            }
+        }
+
+        private void report() {
+            if (progress != null) {
+                synchronized (progress) {
+                    progress.update(downloaded.get(), total);
+                }
+            }
+        }
+
+        private synchronized void saveState(FileChannel channel, boolean force) {
+            long now = System.currentTimeMillis();
+            if (!force && now - lastStateSave < STATE_SAVE_INTERVAL_MS) {
+                return;
+            }
+            lastStateSave = now;
+            try {
+                // Bytes must reach the disk before the state file claims them
+                channel.force(false);
+                Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+                Files.writeString(temp, GSON.toJson(state), StandardCharsets.UTF_8);
+                Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                System.err.println("Failed to save download state: " + e.getMessage());
+            }
+        }
+
+        private static void sleep(long millis) throws IOException {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Download was interrupted", e);
+            }
+        }
+    }
+
+    private static class Probe {
+        boolean rangeSupported;
+        long total = -1;
+        String validator;
+        HttpURLConnection connection;
+        // Whether the probe still holds one of the shared connections
+        boolean holdsConnection;
+
+        /**
+         * @return the open 200 response, the caller takes over its connection; null if there is none
+         */
+        HttpURLConnection handOver() {
+            HttpURLConnection open = connection;
+            if (open != null) {
+                connection = null;
+                holdsConnection = false;
+            }
+            return open;
+        }
+
+        void close() {
+            if (connection != null) {
+                connection.disconnect();
+                connection = null;
+            }
+            if (holdsConnection) {
+                holdsConnection = false;
+                releaseConnection();
+            }
+        }
+    }
+
+    private static class State {
+        String url;
+        long total;
+        String validator;
+        List<Segment> segments = new ArrayList<>();
+
+        static State plan(String url, Probe probe, boolean sequential) {
+            State state = new State();
+            state.url = url;
+            state.total = probe.total;
+            state.validator = probe.validator;
+
+            int count = 1;
+            if (!sequential && probe.total >= SEGMENT_THRESHOLD) {
+                count = (int) Math.min(MAX_CONNECTIONS, probe.total / MIN_SEGMENT_SIZE);
+            }
+            long size = probe.total / count;
+            for (int i = 0; i < count; i++) {
+                Segment segment = new Segment();
+                segment.start = i * size;
+                segment.end = i == count - 1 ? probe.total - 1 : segment.start + size - 1;
+                state.segments.add(segment);
+            }
+            return state;
+        }
+
+        boolean matches(String url, Probe probe) {
+            return probe.rangeSupported
+                    && this.url != null && this.url.equals(url)
+                    && this.total == probe.total
+                    && (this.validator == null || probe.validator == null || this.validator.equals(probe.validator))
+                    && segments != null && !segments.isEmpty();
+        }
+
+        long downloaded() {
+            long done = 0;
+            for (Segment segment : segments) {
+                done += segment.done;
+            }
+            return done;
+        }
+    }
+
+    private static class Segment {
+        long start;
+        long end; // inclusive
+        volatile long done;
+
+        long remaining() {
+            return end - start + 1 - done;
+        }
+
+        boolean isComplete() {
+            return remaining() <= 0;
+        }
+    }
+
+    private static class ResourceChangedException extends IOException {
+        ResourceChangedException(String message) {
+            super(message);
+        }
+    }
+
+    private static class SinkException extends IOException {
+        SinkException(IOException cause) {
+            super("Download consumer failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    private static class DownloadThreadFactory implements java.util.concurrent.ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Downloader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,393 +1,596 @@
 package com.tonic.launcher.util;
 
-import com.tonic.launcher.ui.SplashScreen;
-
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.file.*;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.GZIPInputStream;
-import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 import static com.tonic.launcher.LauncherMain.*;
 
 public class JDKManager {
 
-    private static final String JDK_VERSION = "11.0.19+7";
-    private static final String JDK_VERSION_URL = "jdk-11.0.19%2B7"; // URL encoded
+    static final String JDK_VERSION = "11.0.19+7";
+    private static final String JDK_RELEASE = "jdk-" + JDK_VERSION;
+    // Bounded buffer between the download and the extraction thread
+    private static final int PIPE_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final long VERSION_CHECK_TIMEOUT_SECONDS = 30;
+    // Installed runtime picked by the runtime policy, null while the launcher's own JDK is used
+    private static volatile JavaRuntime systemRuntime;
 
     /**
      * Ensures JDK is installed, downloading if necessary
-     * @param splash The splash screen to update with progress (can be null)
+     * @param listener The listener to report progress to (can be null)
      * @return Path to java executable
      * @throws IOException if download or extraction fails
      */
-    public static Path ensureJDK(SplashScreen splash) throws IOException {
-        Path javaExecutable = getJavaExecutable();
+    public static Path ensureJDK(ProgressListener listener) throws IOException {
+        try (LaunchTrace.Span ignored = LaunchTrace.begin("jdk")) {
+            return checkJDK(listener);
+        }
+    }
+
+    private static Path checkJDK(ProgressListener listener) throws IOException {
+        JavaRuntime runtime = RuntimeDiscovery.select(LauncherConfig.get().getRuntimePolicy());
+        systemRuntime = runtime;
+        if (runtime != null) {
+            System.out.println("Using the installed " + runtime.describe());
+            LaunchTrace.note("jdk", "system-" + runtime.getFeature());
+            if (listener != null) {
+                listener.setStageProgress(LaunchStage.JDK, 100, "JDK " + runtime.getFeature() + " ready");
+            }
+            return runtime.getExecutable();
+        }
 
-        if (Files.exists(javaExecutable)) {
+        Path javaExecutable = getBundledExecutable();
+
+        // Only a finished install has a marker, a half-extracted JDK_DIR is reinstalled
+        StagedInstall.Marker marker = StagedInstall.readMarker(JDK_DIR.resolve(StagedInstall.MARKER_FILE));
+        if (marker == null) {
+            marker = adoptUnmarkedInstall(JDK_DIR);
+        }
+        if (marker != null && JDK_VERSION.equals(marker.getVersion()) && isInstalledBuildCurrent(marker)) {
             System.out.println("JDK found at " + JDK_DIR);
-            if (splash != null) {
-                splash.setProgress(100, 40, "JDK 11 ready");
+            if (listener != null) {
+                listener.setStageProgress(LaunchStage.JDK, 100, "JDK 11 ready");
             }
             return javaExecutable;
         }
 
-        System.out.println("JDK not found. Downloading JDK " + JDK_VERSION + "...");
-        downloadAndExtractJDK(splash);
-
-        if (!Files.exists(javaExecutable)) {
-            throw new IOException("JDK installation failed - Java executable not found after extraction");
+        try {
+            JdkArtifact artifact;
+            try (LaunchTrace.Span ignored = LaunchTrace.begin("jdk.resolve")) {
+                artifact = JdkArtifact.resolve(JDK_RELEASE);
+            }
+            if (Files.exists(JDK_DIR)) {
+                System.out.println("JDK at " + JDK_DIR + " is incomplete, outdated or not built for this platform. Reinstalling JDK "
+                        + JDK_VERSION + " for " + artifact.getPlatform() + "...");
+            } else {
+                System.out.println("JDK not found. Downloading JDK " + JDK_VERSION + " for " + artifact.getPlatform() + "...");
+            }
+            downloadAndExtractJDK(artifact, listener);
+        } catch (IOException e) {
+            // E.g. on Windows a client still running from JDK_DIR locks it, the JDK it runs still works
+            if (!Files.isRegularFile(javaExecutable) || !runs(javaExecutable)) {
+                throw e;
+            }
+            System.out.println("Could not reinstall the JDK (" + e.getMessage() + "), using the one at " + JDK_DIR);
+            LaunchTrace.note("jdk", "kept");
+            try {
+                StagedInstall.deleteRecursive(StagedInstall.stagingDir(JDK_DIR));
+            } catch (IOException ignored) {
+                // The next install clears it first
+            }
+            if (listener != null) {
+                listener.setStageProgress(LaunchStage.JDK, 100, "JDK 11 ready");
+            }
+            return javaExecutable;
         }
 
         System.out.println("JDK installed successfully!");
+        if (listener != null) {
+            listener.setStageProgress(LaunchStage.JDK, 100, "JDK 11 ready");
+        }
         return javaExecutable;
     }
 
     /**
-     * Overload for backward compatibility
+     * Launchers before the completion marker installed the same JDK without one. Such an
+     * install is kept if its release file names this version and its java runs, and it gets
+     * the marker now, instead of every user downloading the JDK again after an update.
+     * @param jdkDir the launcher's JDK directory
+     * @return the marker written for the install, or null if it is not adopted
      */
-    public static Path ensureJDK() throws IOException {
-        return ensureJDK(null);
-    }
+    static StagedInstall.Marker adoptUnmarkedInstall(Path jdkDir) {
+        Path home = isMac() ? jdkDir.resolve("Contents").resolve("Home") : jdkDir;
+        JavaRuntime installed = JavaRuntime.probe(home);
+        String version = JDK_VERSION.substring(0, JDK_VERSION.indexOf('+'));
+        if (installed == null || !version.equals(installed.getVersion()) || !runs(installed.getExecutable())) {
+            return null;
+        }
 
-    private static Path getJavaExecutable() {
-        String os = System.getProperty("os.name").toLowerCase();
-        String javaExe = os.contains("win") ? "java.exe" : "java";
-        if(os.contains("mac")) {
-            // On macOS, the java executable is located in Contents/Home/bin
-            return JDK_BIN_DIR_MAC.resolve(javaExe);
+        // No artifact: getInstalledPlatform assumes the build older launchers picked
+        StagedInstall.Marker marker = new StagedInstall.Marker(null, JDK_VERSION, null, false);
+        try {
+            StagedInstall.writeMarker(jdkDir.resolve(StagedInstall.MARKER_FILE), marker);
+        } catch (IOException e) {
+            System.err.println("Could not mark the JDK at " + jdkDir + " as installed: " + e.getMessage());
         }
-        return JDK_BIN_DIR.resolve(javaExe);
+        System.out.println("Kept the JDK " + JDK_VERSION + " installed by an earlier launcher at " + jdkDir);
+        return marker;
     }
 
-    private static void downloadAndExtractJDK(SplashScreen splash) throws IOException {
-        Files.createDirectories(JDK_DIR);
-
-        String downloadUrl = getDownloadURL();
-        Path tempFile = JDK_DIR.resolve("jdk-temp" + getArchiveExtension());
-
-        // Download with progress updates
-        downloadFile(downloadUrl, tempFile, splash);
+    /**
+     * @return whether {@code java -version} succeeds
+     */
+    private static boolean runs(Path java) {
+        try {
+            Process process = new ProcessBuilder(java.toString(), "-version")
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(VERSION_CHECK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
 
-        // Extract
-        extractArchive(tempFile, splash);
+    /**
+     * Whether the installed JDK is the build this host should run. The native build is
+     * accepted without asking Adoptium; anything else, like an x64 JDK left on an ARM host
+     * by older launchers, is checked against {@link JdkArtifact#resolve}.
+     */
+    private static boolean isInstalledBuildCurrent(StagedInstall.Marker marker) {
+        String installed = getInstalledPlatform(marker);
+        List<String> candidates = Platform.get().getCandidates();
+        if (installed.equals(candidates.get(0).replace('/', '-'))) {
+            return true;
+        }
 
-        // Clean up
-        Files.deleteIfExists(tempFile);
+        JdkArtifact artifact = JdkArtifact.resolve(JDK_RELEASE);
+        if (!artifact.isConfirmed()) {
+            // Offline, keep any build that runs here rather than failing to reinstall
+            return candidates.stream().anyMatch(candidate -> installed.equals(candidate.replace('/', '-')));
+        }
+        return installed.equals(artifact.getPlatform());
     }
 
-    private static String getDownloadURL() {
-        String os = System.getProperty("os.name").toLowerCase();
+    /**
+     * @return platform of the installed JDK, e.g. {@code linux-aarch64}
+     */
+    private static String getInstalledPlatform(StagedInstall.Marker marker) {
+        String artifact = marker.getArtifact();
+        if (artifact != null && artifact.startsWith("jdk-")) {
+            return artifact.substring("jdk-".length());
+        }
+        // Markers written before the platform was recorded, the build old launchers picked
         String arch = System.getProperty("os.arch").toLowerCase();
+        return Platform.get().getOs() + "-" + (arch.contains("64") ? "x64" : "x32");
+    }
 
-        String osType;
-        if (os.contains("win")) {
-            osType = "windows";
-        } else if (os.contains("mac")) {
-            osType = "mac";
-        } else {
-            osType = "linux";
+    /**
+     * Overload for backward compatibility
+     */
+    public static Path ensureJDK() throws IOException {
+        return ensureJDK(null);
+    }
+
+    /**
+     * Which java the next launch would use, without installing anything.
+     * @return the installed runtime the runtime policy picks, the launcher's JDK, or null if
+     *         that is not installed yet
+     */
+    public static Path findJavaExecutable() {
+        JavaRuntime runtime = RuntimeDiscovery.select(LauncherConfig.get().getRuntimePolicy());
+        if (runtime != null) {
+            return runtime.getExecutable();
         }
+        Path java = getBundledExecutable();
+        return Files.isRegularFile(java) ? java : null;
+    }
 
-        String archType = arch.contains("64") ? "x64" : "x32";
+    /**
+     * @return home directory of the runtime that launches VitaLite, see {@link #ensureJDK(ProgressListener)}
+     */
+    static Path getJavaHome() {
+        JavaRuntime runtime = systemRuntime;
+        if (runtime != null) {
+            return runtime.getHome();
+        }
+        return System.getProperty("os.name").toLowerCase().contains("mac") ? JDK_DIR_MAC : JDK_DIR;
+    }
 
-        return String.format(
-                "https://api.adoptium.net/v3/binary/version/%s/%s/%s/jdk/hotspot/normal/eclipse",
-                JDK_VERSION_URL, osType, archType
-        );
+    /**
+     * @return java executable of the runtime that launches VitaLite
+     */
+    static Path getJavaExecutable() {
+        JavaRuntime runtime = systemRuntime;
+        return runtime != null ? runtime.getExecutable() : getBundledExecutable();
     }
 
-    private static String getArchiveExtension() {
+    /**
+     * @return the launcher's own JDK's java executable
+     */
+    private static Path getBundledExecutable() {
         String os = System.getProperty("os.name").toLowerCase();
-        return os.contains("win") ? ".zip" : ".tar.gz";
+        String javaExe = os.contains("win") ? "java.exe" : "java";
+        if(os.contains("mac")) {
+            // On macOS, the java executable is located in Contents/Home/bin
+            return JDK_BIN_DIR_MAC.resolve(javaExe);
+        }
+        return JDK_BIN_DIR.resolve(javaExe);
     }
 
-    private static void downloadFile(String url, Path destination, SplashScreen splash) throws IOException {
-        System.out.println("Downloading from: " + url);
-
-        HttpURLConnection connection = null;
-        try {
-            connection = (HttpURLConnection) new URL(url).openConnection();
-            connection.setConnectTimeout(30000); // 30 seconds
-            connection.setReadTimeout(30000);    // 30 seconds
-            connection.setRequestProperty("User-Agent", "VitaLite-JDK-Downloader/1.0");
-
-            connection.connect();
-
-            if (connection.getResponseCode() != 200) {
-                throw new IOException("Download failed: HTTP " + connection.getResponseCode());
+    /**
+     * Installs the JDK into a staging directory next to JDK_DIR, verifies the archive against
+     * the checksum Adoptium publishes, and only then swaps the staging directory into place
+     * with the completion marker inside it. The archive is kept in the {@link ArtifactStore},
+     * so a reinstall of the same version does not download it again.
+     */
+    private static void downloadAndExtractJDK(JdkArtifact artifact, ProgressListener listener) throws IOException {
+        Path staging = StagedInstall.stagingDir(JDK_DIR);
+        // Leftovers of an interrupted install
+        StagedInstall.deleteRecursive(staging);
+        Files.createDirectories(staging);
+
+        ArtifactStore.Entry stored = ArtifactStore.find(getStoreKey(artifact));
+
+        String sha256;
+        boolean verified;
+        if (stored != null) {
+            System.out.println("Installing JDK " + JDK_VERSION + " from the artifact store");
+            try (LaunchTrace.Span ignored = LaunchTrace.begin("jdk.extract")) {
+                extractArchive(stored.getBlob(), staging, listener);
             }
+            sha256 = stored.getSha256();
+            verified = stored.isVerified();
+        } else {
+            sha256 = downloadAndExtract(artifact, staging, listener);
+            verified = artifact.getChecksum() != null;
+        }
 
-            long fileSize = connection.getContentLengthLong();
-            System.out.println("File size: " + (fileSize / (1024 * 1024)) + " MB");
-
-            try (InputStream in = connection.getInputStream();
-                 OutputStream out = Files.newOutputStream(destination)) {
-
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                long totalBytes = 0;
-                long lastUpdate = 0;
-                long startTime = System.currentTimeMillis();
-                long lastSpeedUpdate = startTime;
-                long bytesAtLastSpeedUpdate = 0;
-                String lastSpeedEta = ""; // Cache speed/ETA to prevent flickering
-
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, bytesRead);
-                    totalBytes += bytesRead;
-
-                    long currentTime = System.currentTimeMillis();
-
-                    // Update speed/ETA every 2 seconds to prevent flickering
-                    if (currentTime - lastSpeedUpdate >= 2000) {
-                        long bytesSinceLastUpdate = totalBytes - bytesAtLastSpeedUpdate;
-                        long timeDiff = currentTime - lastSpeedUpdate;
-                        double speedMBps = (bytesSinceLastUpdate / 1024.0 / 1024.0) / (timeDiff / 1000.0);
-
-                        // Calculate ETA
-                        String etaStr = "";
-                        if (speedMBps > 0.1 && fileSize > 0) {
-                            long bytesRemaining = fileSize - totalBytes;
-                            double secondsRemaining = (bytesRemaining / 1024.0 / 1024.0) / speedMBps;
-                            if (secondsRemaining < 60) {
-                                etaStr = String.format("%ds", (int) secondsRemaining);
-                            } else {
-                                etaStr = String.format("%dm", (int) (secondsRemaining / 60));
-                            }
-                        }
-
-                        lastSpeedEta = String.format(" • %.1f MB/s • %s left", speedMBps, etaStr);
-                        lastSpeedUpdate = currentTime;
-                        bytesAtLastSpeedUpdate = totalBytes;
-                    }
-
-                    // Update UI every 512KB
-                    if (splash != null && (totalBytes - lastUpdate) > (512 * 1024)) {
-                        // Stage progress: actual download percentage (0-100%)
-                        int stagePercent = fileSize > 0 ? (int) ((totalBytes * 100) / fileSize) : 0;
-
-                        // Overall progress: JDK download is 0-25% of total launcher process
-                        int overallPercent = (stagePercent * 25) / 100;
-
-                        String statusText = String.format("Downloading JDK 11: %d/%d MB (%d%%)%s",
-                                totalBytes / (1024 * 1024),
-                                fileSize > 0 ? fileSize / (1024 * 1024) : 0,
-                                stagePercent,
-                                lastSpeedEta);
+        Path stagedJava = staging.resolve(JDK_DIR.relativize(getBundledExecutable()));
+        if (!Files.exists(stagedJava)) {
+            throw new IOException("JDK installation failed - Java executable not found after extraction");
+        }
 
-                        splash.setProgress(stagePercent, overallPercent, statusText);
-                        lastUpdate = totalBytes;
-                    }
+        try (LaunchTrace.Span ignored = LaunchTrace.begin("jdk.commit")) {
+            StagedInstall.writeMarker(staging.resolve(StagedInstall.MARKER_FILE),
+                    new StagedInstall.Marker("jdk-" + artifact.getPlatform(), JDK_VERSION, sha256, verified));
+            StagedInstall.commitDirectory(staging, JDK_DIR);
+        }
+    }
 
-                    // Console progress every 10MB
-                    if (totalBytes % (10 * 1024 * 1024) < 8192) {
-                        System.out.println("Downloaded " + (totalBytes / (1024 * 1024)) + " MB...");
-                    }
-                }
+    /**
+     * Downloads the archive into the staging directory and hands it to the artifact store.
+     * @return SHA-256 of the archive
+     */
+    private static String downloadAndExtract(JdkArtifact artifact, Path staging, ProgressListener listener) throws IOException {
+        String downloadUrl = artifact.getLink();
+        String expectedSha256 = artifact.getChecksum();
+        // Kept outside JDK_DIR so the partial download survives the directory swap
+        Path tempFile = VITA_DIR.resolve("jdk-temp" + getArchiveExtension());
+
+        String sha256 = null;
+        if (!isWindows()) {
+            try (LaunchTrace.Span ignored = LaunchTrace.begin("jdk.download-extract")) {
+                // Extract while the archive is still downloading
+                sha256 = downloadAndExtractTarGz(downloadUrl, tempFile, staging, listener);
+            } catch (IOException e) {
+                // The exception's class says what failed when it has no message
+                System.out.println("Pipelined JDK install failed (" + e + "), extracting after the download instead");
+                StagedInstall.deleteRecursive(staging);
+                Files.createDirectories(staging);
+            }
+        }
 
-                System.out.println("Download complete: " + (totalBytes / (1024 * 1024)) + " MB total");
+        if (sha256 == null) {
+            // Download with progress updates
+            try (LaunchTrace.Span ignored = LaunchTrace.begin("jdk.download")) {
+                downloadFile(downloadUrl, tempFile, listener);
+            }
 
-                if (splash != null) {
-                    splash.setProgress(100, 25, "Download complete!");
-                    try {
-                        Thread.sleep(500);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
+            // Verify before spending time on the extraction
+            try (LaunchTrace.Span ignored = LaunchTrace.begin("jdk.verify")) {
+                sha256 = StagedInstall.sha256(tempFile);
+                verify(expectedSha256, sha256, tempFile);
             }
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
+
+            // Extract
+            try (LaunchTrace.Span ignored = LaunchTrace.begin("jdk.extract")) {
+                extractArchive(tempFile, staging, listener);
             }
+        } else {
+            verify(expectedSha256, sha256, tempFile);
         }
-    }
 
-    private static void extractArchive(Path archivePath, SplashScreen splash) throws IOException {
-        System.out.println("Extracting JDK...");
-
-        String os = System.getProperty("os.name").toLowerCase();
-        if (os.contains("win")) {
-            extractZip(archivePath, splash);
-        } else {
-            extractTarGz(archivePath, splash);
+        try {
+            ArtifactStore.put(getStoreKey(artifact), tempFile, sha256, expectedSha256 != null, true);
+        } catch (IOException e) {
+            System.err.println("Could not keep the JDK archive in the artifact store: " + e.getMessage());
+        } finally {
+            // Clean up
+            Files.deleteIfExists(tempFile);
         }
+        return sha256;
     }
 
-    private static void extractZip(Path zipPath, SplashScreen splash) throws IOException {
-        Path tempDir = JDK_DIR.resolve("temp");
-
-        // First pass: count total files
-        int totalFiles = 0;
-        try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(zipPath))) {
-            while (zis.getNextEntry() != null) {
-                totalFiles++;
-                zis.closeEntry();
-            }
+    private static void verify(String expectedSha256, String sha256, Path archive) throws IOException {
+        try {
+            StagedInstall.verify("JDK " + JDK_VERSION, expectedSha256, sha256);
+        } catch (IOException e) {
+            // A corrupt archive must not be reused by the next attempt
+            Files.deleteIfExists(archive);
+            throw e;
         }
+    }
 
-        System.out.println("Extracting " + totalFiles + " files...");
-
-        // Second pass: extract with progress
-        try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(zipPath))) {
-            ZipEntry entry;
-            int fileCount = 0;
-            int lastPercent = -1;
-            long lastUpdate = System.currentTimeMillis();
+    private static String getStoreKey(JdkArtifact artifact) {
+        return "jdk/" + JDK_VERSION + "/" + artifact.getPlatform();
+    }
 
-            while ((entry = zis.getNextEntry()) != null) {
-                Path destPath = tempDir.resolve(entry.getName());
+    private static String getArchiveExtension() {
+        return isWindows() ? ".zip" : ".tar.gz";
+    }
 
-                if (entry.isDirectory()) {
-                    Files.createDirectories(destPath);
-                } else {
-                    Files.createDirectories(destPath.getParent());
-                    Files.copy(zis, destPath, StandardCopyOption.REPLACE_EXISTING);
-                }
-                zis.closeEntry();
+    private static boolean isWindows() {
+        return System.getProperty("os.name").toLowerCase().contains("win");
+    }
 
-                fileCount++;
+    private static boolean isMac() {
+        return System.getProperty("os.name").toLowerCase().contains("mac");
+    }
 
-                // Update UI every 500ms to avoid spam
-                long currentTime = System.currentTimeMillis();
-                if (splash != null && totalFiles > 0 && (currentTime - lastUpdate > 500)) {
-                    int stagePercent = (fileCount * 100) / totalFiles;
+    private static void downloadFile(String url, Path destination, ProgressListener listener) throws IOException {
+        System.out.println("Downloading from: " + url);
 
-                    // Overall progress: Extraction is 25-40% of total
-                    int overallPercent = 25 + ((stagePercent * 15) / 100);
+        DownloadProgress progress = new DownloadProgress(listener);
+        Downloader.download(url, destination, "VitaLite-JDK-Downloader/1.0", progress);
 
-                    if (stagePercent != lastPercent) {
-                        splash.setProgress(stagePercent, overallPercent,
-                                String.format("Extracting JDK 11: %d/%d files (%d%%)",
-                                        fileCount, totalFiles, stagePercent));
-                        lastPercent = stagePercent;
-                        lastUpdate = currentTime;
-                    }
-                }
-            }
-        }
+        System.out.println("Download complete: " + (progress.totalBytes / (1024 * 1024)) + " MB total");
 
-        if (splash != null) {
-            splash.setProgress(100, 40, "Finalizing installation...");
+        if (listener != null) {
+            listener.setStageProgress(LaunchStage.JDK, 60, "Download complete!");
             try {
                 Thread.sleep(500);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
-
-        moveFromNestedFolder(tempDir);
     }
 
-    private static void extractTarGz(Path tarGzPath, SplashScreen splash) throws IOException {
-        Path tempDir = JDK_DIR.resolve("temp");
+    /**
+     * Turns downloader callbacks into progress updates with speed and ETA.
+     */
+    private static class DownloadProgress implements Downloader.Progress {
+        private final ProgressListener listener;
+        private volatile long totalBytes = 0;
+        private volatile long fileSize = -1;
+        private long lastUpdate = 0;
+        private long lastConsoleUpdate = 0;
+        private long lastSpeedUpdate = System.currentTimeMillis();
+        private long bytesAtLastSpeedUpdate = -1;
+        private volatile String lastSpeedEta = ""; // Cache speed/ETA to prevent flickering
+
+        /**
+         * @param listener listener to report the download to, or null when the extraction reports progress
+         */
+        DownloadProgress(ProgressListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void update(long downloaded, long fileSize) {
+            totalBytes = downloaded;
+            this.fileSize = fileSize;
+            if (bytesAtLastSpeedUpdate < 0) {
+                // First callback: bytes resumed from an earlier run don't count towards the speed
+                bytesAtLastSpeedUpdate = downloaded;
+                System.out.println("File size: " + (fileSize / (1024 * 1024)) + " MB");
+            }
 
-        int fileCount = 0;
-        int estimatedTotal = 3000;
-        int lastPercent = -1;
-        long lastUpdate = System.currentTimeMillis();
+            long currentTime = System.currentTimeMillis();
+
+            // Update speed/ETA every 2 seconds to prevent flickering
+            if (currentTime - lastSpeedUpdate >= 2000) {
+                long bytesSinceLastUpdate = totalBytes - bytesAtLastSpeedUpdate;
+                long timeDiff = currentTime - lastSpeedUpdate;
+                double speedMBps = (bytesSinceLastUpdate / 1024.0 / 1024.0) / (timeDiff / 1000.0);
+
+                // Calculate ETA
+                String etaStr = "";
+                if (speedMBps > 0.1 && fileSize > 0) {
+                    long bytesRemaining = fileSize - totalBytes;
+                    double secondsRemaining = (bytesRemaining / 1024.0 / 1024.0) / speedMBps;
+                    if (secondsRemaining < 60) {
+                        etaStr = String.format("%ds", (int) secondsRemaining);
+                    } else {
+                        etaStr = String.format("%dm", (int) (secondsRemaining / 60));
+                    }
+                }
 
-        try (InputStream fis = Files.newInputStream(tarGzPath);
-             GZIPInputStream gzis = new GZIPInputStream(fis);
-             TarArchiveInputStream tais = new TarArchiveInputStream(gzis)) {
+                lastSpeedEta = String.format(" • %.1f MB/s • %s left", speedMBps, etaStr);
+                lastSpeedUpdate = currentTime;
+                bytesAtLastSpeedUpdate = totalBytes;
+            }
 
-            TarArchiveEntry entry;
+            // Update UI every 512KB
+            if (listener != null && (totalBytes - lastUpdate) > (512 * 1024)) {
+                // Stage progress: actual download percentage (0-100%)
+                int stagePercent = fileSize > 0 ? (int) ((totalBytes * 100) / fileSize) : 0;
 
-            while ((entry = tais.getNextTarEntry()) != null) {
-                Path destPath = tempDir.resolve(entry.getName());
+                // JDK stage: download is 0-60%
+                int jdkStagePercent = (stagePercent * 60) / 100;
 
-                if (entry.isDirectory()) {
-                    Files.createDirectories(destPath);
-                } else {
-                    Files.createDirectories(destPath.getParent());
-                    Files.copy(tais, destPath, StandardCopyOption.REPLACE_EXISTING);
+                String statusText = String.format("Downloading JDK 11: %d/%d MB (%d%%)%s",
+                        totalBytes / (1024 * 1024),
+                        fileSize > 0 ? fileSize / (1024 * 1024) : 0,
+                        stagePercent,
+                        lastSpeedEta);
 
-                    if (!System.getProperty("os.name").toLowerCase().contains("win")) {
-                        if (entry.getMode() != 0) {
-                            destPath.toFile().setExecutable((entry.getMode() & 0100) != 0);
-                        }
-                    }
-                }
+                listener.setStageProgress(LaunchStage.JDK, jdkStagePercent, statusText);
+                lastUpdate = totalBytes;
+            }
 
-                fileCount++;
+            // Console progress every 10MB
+            if (totalBytes - lastConsoleUpdate >= 10 * 1024 * 1024) {
+                System.out.println("Downloaded " + (totalBytes / (1024 * 1024)) + " MB...");
+                lastConsoleUpdate = totalBytes;
+            }
+        }
+    }
 
-                // Update UI every 500ms
-                long currentTime = System.currentTimeMillis();
-                if (splash != null && (currentTime - lastUpdate > 500)) {
-                    int stagePercent = Math.min(99, (fileCount * 100) / estimatedTotal);
+    /**
+     * Downloads the tar.gz and untars it at the same time: the download feeds the archive
+     * through a bounded pipe to an extraction thread, so decompression overlaps the network
+     * instead of starting after it. The archive is still written to disk, so a failed
+     * attempt leaves a partial download that {@link #downloadFile} can resume.
+     * @return SHA-256 of the archive, hashed on its way into the pipe
+     */
+    static String downloadAndExtractTarGz(String url, Path archive, Path targetDir, ProgressListener listener) throws IOException {
+        System.out.println("Downloading and extracting from: " + url);
 
-                    // Overall progress: Extraction is 25-40% of total
-                    int overallPercent = 25 + ((stagePercent * 15) / 100);
+        PipedInputStream pipeIn = new PipedInputStream(PIPE_BUFFER_SIZE);
+        PipedOutputStream pipeOut = new PipedOutputStream(pipeIn);
+        DownloadProgress download = new DownloadProgress(null);
+        AtomicReference<IOException> extractError = new AtomicReference<>();
 
-                    if (stagePercent != lastPercent) {
-                        splash.setProgress(stagePercent, overallPercent,
-                                String.format("Extracting JDK 11: %d files (%d%%)",
-                                        fileCount, stagePercent));
-                        lastPercent = stagePercent;
-                        lastUpdate = currentTime;
-                    }
+        Thread extractor = new Thread(() -> {
+            try {
+                ExtractProgress progress = new ExtractProgress(listener, () -> download.fileSize, () -> download.lastSpeedEta);
+                extractTarGz(pipeIn, targetDir, progress);
+            } catch (IOException e) {
+                extractError.set(e);
+            } catch (RuntimeException e) {
+                extractError.set(new IOException("Extraction failed: " + e, e));
+            } finally {
+                try {
+                    pipeIn.close();
+                } catch (IOException ignored) {
                 }
             }
+        }, "JDK-Extractor");
+        extractor.setDaemon(true);
+        extractor.start();
+
+        // The downloader feeds the sink the whole file in order, including a resumed prefix
+        MessageDigest digest = StagedInstall.newSha256();
+        IOException downloadError = null;
+        try {
+            Downloader.download(url, archive, "VitaLite-JDK-Downloader/1.0", download, new DigestOutputStream(pipeOut, digest));
+        } catch (IOException e) {
+            downloadError = e;
+        } finally {
+            pipeOut.close();
         }
 
-        if (splash != null) {
-            splash.setProgress(100, 40, "Finalizing installation...");
-            try {
-                Thread.sleep(500);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+        try {
+            extractor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Extraction was interrupted", e);
         }
 
-        moveFromNestedFolder(tempDir);
+        // A failed extraction also fails the download (the pipe closes), report the root cause
+        if (extractError.get() != null) {
+            throw extractError.get();
+        }
+        if (downloadError != null) {
+            throw downloadError;
+        }
+
+        System.out.println("Download complete: " + (download.totalBytes / (1024 * 1024)) + " MB total");
+        finishExtraction(listener);
+        return StagedInstall.hex(digest.digest());
     }
 
-    private static void moveFromNestedFolder(Path tempDir) throws IOException {
-        // Find the actual JDK folder (usually jdk-11.0.19+7 or similar)
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(tempDir)) {
-            for (Path nestedDir : stream) {
-                if (Files.isDirectory(nestedDir)) {
-                    // Move all contents to JDK_DIR
-                    try (DirectoryStream<Path> nestedStream = Files.newDirectoryStream(nestedDir)) {
-                        for (Path item : nestedStream) {
-                            Path target = JDK_DIR.resolve(nestedDir.relativize(item));
-                            moveRecursive(item, target);
-                        }
-                    }
-                }
+    private static void extractArchive(Path archivePath, Path targetDir, ProgressListener listener) throws IOException {
+        System.out.println("Extracting JDK...");
+
+        long archiveSize = Files.size(archivePath);
+        ExtractProgress progress = new ExtractProgress(listener, () -> archiveSize, () -> "");
+        try (InputStream in = Files.newInputStream(archivePath)) {
+            if (isWindows()) {
+                extractZip(in, targetDir, progress);
+            } else {
+                extractTarGz(in, targetDir, progress);
             }
         }
+        finishExtraction(listener);
+    }
 
-        // Clean up temp directory
-        deleteRecursive(tempDir);
+    private static void extractZip(InputStream archive, Path targetDir, ExtractProgress progress) throws IOException {
+        // Entries go straight to the target without the archive's top-level jdk-<version> folder,
+        // and are on disk before the install is committed
+        int entries = new ArchiveExtractor(targetDir, 1, true).extractZip(archive, progress);
+        System.out.println("Extracted " + entries + " entries");
     }
 
-    private static void moveRecursive(Path source, Path target) throws IOException {
-        if (Files.isDirectory(source)) {
-            Files.createDirectories(target);
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(source)) {
-                for (Path child : stream) {
-                    moveRecursive(child, target.resolve(source.relativize(child)));
-                }
-            }
-        } else {
-            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    private static void extractTarGz(InputStream archive, Path targetDir, ExtractProgress progress) throws IOException {
+        int entries = new ArchiveExtractor(targetDir, 1, true).extractTarGz(archive, progress);
+        System.out.println("Extracted " + entries + " entries");
+    }
+
+    private static void finishExtraction(ProgressListener listener) {
+        if (listener != null) {
+            listener.setStageProgress(LaunchStage.JDK, 99, "Finalizing installation...");
         }
     }
 
-    private static void deleteRecursive(Path path) throws IOException {
-        if (Files.isDirectory(path)) {
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
-                for (Path child : stream) {
-                    deleteRecursive(child);
-                }
+    /**
+     * Reports extraction progress from the compressed bytes consumed so far.
+     */
+    private static class ExtractProgress implements ArchiveExtractor.Listener {
+        private final ProgressListener listener;
+        private final LongSupplier archiveSize;
+        private final Supplier<String> suffix;
+        private int lastPercent = -1;
+        private long lastUpdate = System.currentTimeMillis();
+
+        /**
+         * @param listener listener to report to (can be null)
+         * @param archiveSize compressed archive size, or -1 while unknown
+         * @param suffix extra status text, e.g. download speed
+         */
+        ExtractProgress(ProgressListener listener, LongSupplier archiveSize, Supplier<String> suffix) {
+            this.listener = listener;
+            this.archiveSize = archiveSize;
+            this.suffix = suffix;
+        }
+
+        @Override
+        public void update(long consumed, int fileCount) {
+            // Update UI every 500ms to avoid spam
+            long currentTime = System.currentTimeMillis();
+            if (listener == null || currentTime - lastUpdate <= 500) {
+                return;
+            }
+
+            long size = archiveSize.getAsLong();
+            int stagePercent = size > 0 ? (int) Math.min(99, (consumed * 100) / size) : 0;
+
+            // JDK stage: extraction is 60-99%
+            int jdkStagePercent = 60 + ((stagePercent * 39) / 100);
+
+            if (stagePercent != lastPercent) {
+                listener.setStageProgress(LaunchStage.JDK, jdkStagePercent,
+                        String.format("Extracting JDK 11: %d files, %d/%d MB (%d%%)%s",
+                                fileCount, consumed / (1024 * 1024), Math.max(0, size) / (1024 * 1024),
+                                stagePercent, suffix.get()));
+                lastPercent = stagePercent;
+                lastUpdate = currentTime;
             }
         }
-        Files.deleteIfExists(path);
     }
 }
\ No newline at end of file
@@ -2,78 +2,135 @@ package com.tonic.launcher.util;
 
 import com.tonic.launcher.LauncherMain;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 public class JVMLauncher {
+    // Generous, the first start of a new VitaLite version downloads the game
+    public static final long READY_TIMEOUT_MILLIS = 10 * 60 * 1000;
+
     /**
      * LauncheXmxs an external JAR file in a new JVM process and exits current JVM
      *
      * @param jvmArgs     JVM arguments to pass to the java process
      * @param programArgs Arguments to pass to the main method
      * @param callback    Callback to run after launching the new process (can be null)
+     * @return the client process
+     */
+    public static Process launchExternalJar(List<String> jvmArgs, List<String> programArgs, Runnable callback) throws IOException {
+        return launchExternalJar(jvmArgs, programArgs, callback, null, null);
+    }
+
+    /**
+     * Launches VitaLite, in a parked standby JVM if one is given, see {@link StandbyManager}.
+     * Falls back to a new JVM process if the standby does not take the launch.
+     *
+     * @param jvmArgs     JVM arguments to pass to the java process
+     * @param programArgs Arguments to pass to the main method
+     * @param callback    Callback to run after launching the new process (can be null)
+     * @param standby     Standby JVM to hand the launch to (can be null)
+     * @param telemetryId Instance name to stream metrics under, see {@link TelemetryHub} (can be null)
+     * @return the client process, or null if a standby took the launch
      */
-    public static void launchExternalJar(List<String> jvmArgs, List<String> programArgs, Runnable callback) throws IOException {
+    public static Process launchExternalJar(List<String> jvmArgs, List<String> programArgs, Runnable callback,
+                                         StandbyManager.Standby standby, String telemetryId) throws IOException {
 
         File jarFile = new File(LauncherMain.VITA_DIR  + File.separator + "VitaLite.jar");
         if (!jarFile.exists()) {
             throw new IOException("VitaLite JAR file not found");
         }
 
-        String os = System.getProperty("os.name").toLowerCase();
-        String javaBin = LauncherMain.JDK_BIN_DIR + File.separator + "java";
-        if(os.contains("mac"))
-        {
-            javaBin = LauncherMain.JDK_BIN_DIR_MAC + File.separator + "java";
-        }
-        if (System.getProperty("os.name").toLowerCase().contains("win")) {
-            javaBin += ".exe";
+        // The launcher's own JDK or an installed one, see RuntimeDiscovery
+        String javaBin = JDKManager.getJavaExecutable().toString();
+        if (jvmArgs != null) {
+            checkJvmArgs(jvmArgs, JDKManager.getJavaExecutable());
         }
 
+        // Closed when VitaLite reports it is up
+        LaunchTrace.Span[] ready = new LaunchTrace.Span[1];
+        LauncherChannel.Registration channel = LauncherChannel.get().register(() -> {
+            if (ready[0] != null) {
+                ready[0].close();
+            }
+            if (callback != null) {
+                callback.run();
+            }
+        }, READY_TIMEOUT_MILLIS);
+        int port = channel.getPort();
+
         List<String> command = new ArrayList<>();
         command.add(javaBin);
         if (jvmArgs != null && !jvmArgs.isEmpty()) {
             command.addAll(jvmArgs);
         }
+        if (telemetryId != null) {
+            // Not for a standby, it was started before this launch's channel existed
+            command.add("-javaagent:" + AgentJar.get() + "=" + port + ";" + TelemetryHub.INTERVAL_MILLIS + ";"
+                    + channel.getToken() + ";" + telemetryId);
+        }
         command.add("-jar");
         command.add(jarFile.getAbsolutePath());
-        command.add("-safeLaunch");
+
+        // Everything after the jar, also what a standby JVM gets handed
+        List<String> clientArgs = new ArrayList<>();
+        clientArgs.add("-safeLaunch");
         if (programArgs != null && !programArgs.isEmpty()) {
-            command.addAll(programArgs);
+            clientArgs.addAll(programArgs);
         }
 
-        ServerSocket serverSocket = new ServerSocket(0); // Random port
-        int port = serverSocket.getLocalPort();
-        command.add("--launcherCom");
-        command.add(String.valueOf(port));
-
-        ProcessBuilder processBuilder = new ProcessBuilder(command);
-        processBuilder.redirectOutput(ProcessBuilder.Redirect.INHERIT); // VitaLite can print to console
-        processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);  // VitaLite can print errors
-        processBuilder.start();
+        clientArgs.add("--launcherCom");
+        clientArgs.add(String.valueOf(port));
+        command.addAll(clientArgs);
 
-        Thread listenerThread = new Thread(() -> {
-            try (ServerSocket ss = serverSocket; // Close ServerSocket when done
-                 Socket socket = ss.accept();
-                 BufferedReader reader = new BufferedReader(
-                         new InputStreamReader(socket.getInputStream()))) {
+        boolean handedOff = false;
+        if (standby != null) {
+            try (LaunchTrace.Span ignored = LaunchTrace.begin("handoff")) {
+                standby.handoff(clientArgs);
+                handedOff = true;
+                System.out.println("Handed the launch to standby JVM (pid " + standby.getPid() + ")");
+            } catch (IOException e) {
+                System.err.println("Standby JVM did not take the launch, starting a new JVM: " + e.getMessage());
+                LaunchTrace.note("standby", "failed");
+            }
+        }
 
-                String message = reader.readLine();
-                if (message != null && message.equals("Done")) {
-                    callback.run();
-                }
+        Process process = null;
+        if (!handedOff) {
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.redirectOutput(ProcessBuilder.Redirect.INHERIT); // VitaLite can print to console
+            processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);  // VitaLite can print errors
+            try (LaunchTrace.Span ignored = LaunchTrace.begin("spawn")) {
+                process = processBuilder.start();
             } catch (IOException e) {
-                e.printStackTrace();
+                channel.close();
+                throw e;
             }
-        }, "LauncherComThread");
-        listenerThread.setDaemon(true); // Don't prevent JVM shutdown
-        listenerThread.start();
+            // A client that died will never report back
+            process.onExit().thenRun(channel::close);
+        }
+        ready[0] = LaunchTrace.begin("client-ready");
+        return process;
+    }
+
+    /**
+     * Fails the launch on arguments the JVM would refuse, before spending a JVM start on them.
+     * @throws IOException listing the errors
+     */
+    private static void checkJvmArgs(List<String> jvmArgs, Path javaExecutable) throws IOException {
+        List<String> errors = new ArrayList<>();
+        for (JvmArgValidator.Problem problem : JvmArgValidator.validate(jvmArgs, JvmFlagCatalog.get(javaExecutable))) {
+            if (problem.isError()) {
+                errors.add(problem.toString());
+            } else {
+                System.out.println("JVM argument " + problem);
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new IOException("Invalid JVM arguments, fix them in the settings: " + String.join("; ", errors));
+        }
     }
 }
\ No newline at end of file
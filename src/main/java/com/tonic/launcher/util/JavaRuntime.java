@@ -0,0 +1,188 @@
+package com.tonic.launcher.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * A Java installation on this host, described by its {@code release} file. Probing never
+ * starts the runtime, so scanning many candidates stays cheap.
+ */
+public class JavaRuntime {
+    private final String home;
+    private final String version;
+    private final int feature;
+    private final String arch;
+    private final String vendor;
+    private final long releaseModified;
+
+    private JavaRuntime(Path home, String version, int feature, String arch, String vendor, long releaseModified) {
+        this.home = home.toString();
+        this.version = version;
+        this.feature = feature;
+        this.arch = arch;
+        this.vendor = vendor;
+        this.releaseModified = releaseModified;
+    }
+
+    /**
+     * Reads a runtime's release file.
+     * @param home candidate home directory
+     * @return the runtime, or null if {@code home} is not a usable runtime for VitaLite:
+     *         no release file or java executable, or an image without java.desktop or
+     *         without the native AWT library
+     */
+    public static JavaRuntime probe(Path home) {
+        Path release = home.resolve("release");
+        if (!Files.isRegularFile(release) || !Files.isRegularFile(executable(home))) {
+            return null;
+        }
+
+        String version = null;
+        String arch = null;
+        String vendor = null;
+        String modules = null;
+        long modified;
+        try {
+            modified = Files.getLastModifiedTime(release).toMillis();
+            for (String line : Files.readAllLines(release, StandardCharsets.ISO_8859_1)) {
+                int equals = line.indexOf('=');
+                if (equals <= 0) {
+                    continue;
+                }
+                String value = line.substring(equals + 1).replace("\"", "").trim();
+                switch (line.substring(0, equals).trim()) {
+                    case "JAVA_VERSION":
+                        version = value;
+                        break;
+                    case "OS_ARCH":
+                        arch = value;
+                        break;
+                    case "IMPLEMENTOR":
+                        vendor = value;
+                        break;
+                    case "MODULES":
+                        modules = value;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        int feature = parseFeature(version);
+        // jlink images list their modules, the client needs AWT
+        if (feature == 0 || (modules != null && !(" " + modules + " ").contains(" java.desktop "))) {
+            return null;
+        }
+        // Headless distro packages keep java.desktop in MODULES but leave out the display library
+        if (!Files.isRegularFile(awtLibrary(home))) {
+            return null;
+        }
+        return new JavaRuntime(home, version, feature, arch != null ? arch : "", vendor != null ? vendor : "unknown", modified);
+    }
+
+    /**
+     * @return whether the release file is unchanged since this runtime was probed
+     */
+    public boolean isCurrent() {
+        try {
+            Path release = getHome().resolve("release");
+            return Files.getLastModifiedTime(release).toMillis() == releaseModified && Files.isRegularFile(getExecutable());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public Path getHome() {
+        return Path.of(home);
+    }
+
+    public Path getExecutable() {
+        return executable(getHome());
+    }
+
+    /**
+     * @return full version, e.g. {@code 17.0.8}
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return feature version, e.g. 17
+     */
+    public int getFeature() {
+        return feature;
+    }
+
+    /**
+     * @return OS_ARCH of the release file, empty if it has none
+     */
+    public String getArch() {
+        return arch;
+    }
+
+    public String getVendor() {
+        return vendor;
+    }
+
+    /**
+     * @return e.g. {@code JDK 17.0.8 (Eclipse Adoptium) at /usr/lib/jvm/temurin-17}
+     */
+    public String describe() {
+        return "JDK " + version + " (" + vendor + ") at " + home;
+    }
+
+    /**
+     * Orders versions by their numeric parts, {@code 11.0.20} after {@code 11.0.9}.
+     */
+    static int compareVersions(String a, String b) {
+        String[] left = a.split("[^0-9]+");
+        String[] right = b.split("[^0-9]+");
+        for (int i = 0; i < Math.max(left.length, right.length); i++) {
+            long l = i < left.length && !left[i].isEmpty() ? Long.parseLong(left[i]) : 0;
+            long r = i < right.length && !right[i].isEmpty() ? Long.parseLong(right[i]) : 0;
+            if (l != r) {
+                return Long.compare(l, r);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the feature version of a {@code JAVA_VERSION}, e.g. 8 for {@code 1.8.0_392}, or 0 if unknown
+     */
+    static int parseFeature(String version) {
+        if (version == null) {
+            return 0;
+        }
+        String feature = version.startsWith("1.") ? version.substring(2) : version;
+        int end = 0;
+        while (end < feature.length() && Character.isDigit(feature.charAt(end))) {
+            end++;
+        }
+        try {
+            return end > 0 ? Integer.parseInt(feature.substring(0, end)) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Path awtLibrary(Path home) {
+        String os = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+        if (os.contains("win")) {
+            return home.resolve("bin").resolve("awt.dll");
+        }
+        return home.resolve("lib").resolve(os.contains("mac") ? "libawt_lwawt.dylib" : "libawt_xawt.so");
+    }
+
+    private static Path executable(Path home) {
+        boolean windows = System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("win");
+        return home.resolve("bin").resolve(windows ? "java.exe" : "java");
+    }
+}
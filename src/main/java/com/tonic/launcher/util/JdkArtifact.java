@@ -0,0 +1,194 @@
+package com.tonic.launcher.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.tonic.launcher.LauncherMain;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The Adoptium JDK build for this host, see {@link Platform#getCandidates()}.
+ *
+ * Resolving asks Adoptium for each candidate in turn and takes the first that exists for the
+ * release, with its download link and published SHA-256. The result is kept in
+ * {@code VITA_DIR/jdk-artifact.json} for the release and host, so later installs and launches
+ * do not ask again. If Adoptium cannot be reached, the best candidate is used unverified
+ * and nothing is cached.
+ */
+public class JdkArtifact {
+    private static final Path CACHE_FILE = LauncherMain.VITA_DIR.resolve("jdk-artifact.json");
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final String os;
+    private final String arch;
+    private final String link;
+    private final String checksum;
+    // Whether Adoptium confirmed this build, false for the offline guess
+    private final transient boolean confirmed;
+
+    JdkArtifact(String os, String arch, String link, String checksum, boolean confirmed) {
+        this.os = os;
+        this.arch = arch;
+        this.link = link;
+        this.checksum = checksum;
+        this.confirmed = confirmed;
+    }
+
+    /**
+     * @param release Adoptium release name, e.g. {@code jdk-11.0.19+7}
+     */
+    public static JdkArtifact resolve(String release) {
+        Platform platform = Platform.get();
+        Cache cache = loadCache();
+        if (cache != null && release.equals(cache.release) && platform.toString().equals(cache.host) && cache.artifact != null) {
+            return new JdkArtifact(cache.artifact.os, cache.artifact.arch, cache.artifact.link, cache.artifact.checksum, true);
+        }
+
+        List<String> candidates = platform.getCandidates();
+        try {
+            for (String candidate : candidates) {
+                JdkArtifact artifact = query(release, candidate);
+                if (artifact != null) {
+                    Cache fresh = new Cache();
+                    fresh.release = release;
+                    fresh.host = platform.toString();
+                    fresh.artifact = artifact;
+                    saveCache(fresh);
+                    return artifact;
+                }
+                System.out.println("No " + release + " build for " + candidate + ", trying the next one");
+            }
+            System.err.println("Adoptium has no " + release + " build for " + platform + ", trying " + candidates.get(0) + " anyway");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not resolve the JDK build: " + e.getMessage());
+        }
+
+        String[] best = candidates.get(0).split("/");
+        String link = String.format("https://api.adoptium.net/v3/binary/version/%s/%s/%s/jdk/hotspot/normal/eclipse",
+                encode(release), best[0], best[1]);
+        return new JdkArtifact(best[0], best[1], link, null, false);
+    }
+
+    /**
+     * @return the build, or null if the release has none for {@code candidate}
+     * @throws IOException if Adoptium could not be reached
+     */
+    private static JdkArtifact query(String release, String candidate) throws IOException, InterruptedException {
+        String[] platform = candidate.split("/");
+        String url = String.format(
+                "https://api.adoptium.net/v3/assets/release_name/eclipse/%s?architecture=%s&heap_size=normal&image_type=jdk&jvm_impl=hotspot&os=%s&project=jdk",
+                encode(release), platform[1], platform[0]
+        );
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("User-Agent", "VitaLite-JDK-Downloader/1.0")
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        HttpResponse<String> response = VersionResolver.getClient().send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode());
+        }
+
+        JsonArray binaries = JsonParser.parseString(response.body()).getAsJsonObject().getAsJsonArray("binaries");
+        if (binaries == null || binaries.size() == 0) {
+            return null;
+        }
+        JsonObject binary = binaries.get(0).getAsJsonObject().getAsJsonObject("package");
+        return new JdkArtifact(platform[0], platform[1], binary.get("link").getAsString(), binary.get("checksum").getAsString(), true);
+    }
+
+    private static String encode(String release) {
+        return URLEncoder.encode(release, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Adoptium's OS name, e.g. {@code alpine-linux}
+     */
+    public String getOs() {
+        return os;
+    }
+
+    /**
+     * @return Adoptium's architecture name, e.g. {@code aarch64}
+     */
+    public String getArch() {
+        return arch;
+    }
+
+    /**
+     * @return e.g. {@code linux-aarch64}
+     */
+    public String getPlatform() {
+        return os + "-" + arch;
+    }
+
+    public String getLink() {
+        return link;
+    }
+
+    /**
+     * @return the SHA-256 Adoptium publishes for the archive, or null if unknown
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return whether Adoptium confirmed this build exists, false for the offline guess
+     */
+    public boolean isConfirmed() {
+        return confirmed;
+    }
+
+    public boolean isZip() {
+        return os.equals("windows");
+    }
+
+    private static Cache loadCache() {
+        try {
+            if (Files.isRegularFile(CACHE_FILE)) {
+                return GSON.fromJson(Files.readString(CACHE_FILE, StandardCharsets.UTF_8), Cache.class);
+            }
+        } catch (IOException | RuntimeException e) {
+            // A corrupt cache only means asking Adoptium again
+        }
+        return null;
+    }
+
+    private static void saveCache(Cache cache) {
+        try {
+            Files.createDirectories(CACHE_FILE.getParent());
+            Path temp = CACHE_FILE.resolveSibling("jdk-artifact.json.tmp");
+            Files.writeString(temp, GSON.toJson(cache), StandardCharsets.UTF_8);
+            StagedInstall.commitFile(temp, CACHE_FILE);
+        } catch (IOException e) {
+            System.err.println("Failed to save the JDK build: " + e.getMessage());
+        }
+    }
+
+    private static class Cache {
+        String release;
+        // Platform the build was picked for, a moved VitaLite directory resolves again
+        String host;
+        JdkArtifact artifact;
+    }
+}
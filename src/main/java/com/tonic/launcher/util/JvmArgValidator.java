@@ -0,0 +1,373 @@
+package com.tonic.launcher.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks JVM arguments before a JVM is spawned with them.
+ *
+ * Errors are what the JVM would certainly refuse to start with: an {@code -XX} flag the JDK
+ * does not have (see {@link JvmFlagCatalog}), a boolean flag given a value or the other way
+ * round, a diagnostic or experimental flag without its unlock option before it, a malformed
+ * size, two garbage collectors, an initial heap above the maximum, an option the launcher
+ * sets itself. Warnings are arguments that work but are most likely a mistake, like a
+ * duplicate, an {@code -Xmx} that the memory settings override, or a flag the JDK has
+ * removed and ignores, like {@code MaxPermSize} on JDK 11.
+ */
+public final class JvmArgValidator {
+    private static final Pattern XX_OPTION = Pattern.compile("^-XX:(?:([+-])(\\w+)|(\\w+)=(.*))$");
+    private static final Pattern INTEGER = Pattern.compile("^-?(?:0[xX][0-9a-fA-F]+|\\d+)[kKmMgGtT]?$");
+    private static final Pattern GC_FLAG = Pattern.compile("^Use\\w*GC$");
+    // Flags named Use...GC that do not pick a collector, UseParallelOldGC goes with UseParallelGC
+    private static final List<String> NOT_A_GC = List.of("UseParallelOldGC", "UseAdaptiveSizePolicyWithSystemGC",
+            "UseMaximumCompactionOnSystemGC", "UseGCOverheadLimit", "UseCondCardMark", "UseDynamicNumberOfGCThreads",
+            "UseAdaptiveGCBoundary");
+    // Standard and -X options with a value in the same argument
+    private static final List<String> KNOWN_PREFIXES = List.of("-D", "-javaagent:", "-agentlib:", "-agentpath:",
+            "-verbose", "-ea", "-enableassertions", "-da", "-disableassertions", "-esa", "-dsa", "-Xshare:", "-Xlog",
+            "-Xverify", "-Xcheck:", "-Xbootclasspath/a:", "-Xloggc:", "-Xrunjdwp:", "-splash:", "--add-opens=",
+            "--add-exports=", "--add-reads=", "--add-modules=", "--patch-module=", "--illegal-access=",
+            "--enable-preview", "--enable-native-access=");
+    private static final List<String> KNOWN_OPTIONS = List.of("-server", "-client", "-Xint", "-Xmixed", "-Xcomp",
+            "-Xbatch", "-Xrs", "-Xnoclassgc", "-Xincgc", "-Xdiag", "-Xfuture", "-Xdebug", "-Xinternalversion",
+            "-showversion");
+    // Set by the launcher for every client
+    private static final List<String> LAUNCHER_OPTIONS = List.of("-jar", "-cp", "-classpath", "--class-path",
+            "-p", "--module-path", "-m", "--module", "-version", "--version", "-help", "--help", "-?");
+    private static final String[] SIZE_OPTIONS = {"-Xmx", "-Xms", "-Xmn", "-Xss"};
+
+    public enum Severity {
+        ERROR,
+        WARNING
+    }
+
+    /**
+     * Something wrong with one argument.
+     */
+    public static class Problem {
+        private final int index;
+        private final String arg;
+        private final Severity severity;
+        private final String message;
+
+        Problem(int index, String arg, Severity severity, String message) {
+            this.index = index;
+            this.arg = arg;
+            this.severity = severity;
+            this.message = message;
+        }
+
+        /**
+         * @return position of the argument in the checked list
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public String getArg() {
+            return arg;
+        }
+
+        public Severity getSeverity() {
+            return severity;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public boolean isError() {
+            return severity == Severity.ERROR;
+        }
+
+        @Override
+        public String toString() {
+            return arg + ": " + message;
+        }
+    }
+
+    private JvmArgValidator() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Checks the JVM arguments of a launch.
+     * @param catalog the launch JDK's flags, or null to skip checking flag names and types
+     * @return the problems, in argument order
+     */
+    public static List<Problem> validate(List<String> args, JvmFlagCatalog catalog) {
+        List<Problem> problems = new ArrayList<>();
+        boolean ignoreUnrecognized = args.contains("-XX:+IgnoreUnrecognizedVMOptions");
+        boolean diagnosticUnlocked = false;
+        boolean experimentalUnlocked = false;
+        Map<String, Integer> seen = new LinkedHashMap<>();
+        // Collector flags in effect, the last setting of a flag wins
+        Map<String, Integer> collectors = new LinkedHashMap<>();
+
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            String key = dedupKey(arg);
+            Integer previous = seen.put(key, i);
+            if (previous != null) {
+                problems.add(new Problem(i, arg, Severity.WARNING, arg.equals(args.get(previous))
+                        ? "Duplicate argument" : "Overrides " + args.get(previous)));
+            }
+
+            Matcher xx = XX_OPTION.matcher(arg);
+            if (xx.matches()) {
+                String name = xx.group(2) != null ? xx.group(2) : xx.group(3);
+                boolean enable = "+".equals(xx.group(1));
+                if (name.equals("UnlockDiagnosticVMOptions")) {
+                    diagnosticUnlocked = enable;
+                } else if (name.equals("UnlockExperimentalVMOptions")) {
+                    experimentalUnlocked = enable;
+                }
+                // An unknown name is reported as such, not as a second collector
+                boolean known = catalog == null || catalog.find(name) != null;
+                if (GC_FLAG.matcher(name).matches() && !NOT_A_GC.contains(name) && xx.group(1) != null && known) {
+                    if (enable) {
+                        collectors.put(name, i);
+                    } else {
+                        collectors.remove(name);
+                    }
+                }
+
+                if (catalog == null) {
+                    continue;
+                }
+                JvmFlagCatalog.Flag flag = catalog.find(name);
+                if (flag == null) {
+                    if (ignoreUnrecognized) {
+                        continue;
+                    }
+                    if (catalog.isObsolete(name, arg)) {
+                        problems.add(new Problem(i, arg, Severity.WARNING, "Removed from this JDK, the JVM ignores it"));
+                    } else {
+                        String suggestion = suggest(catalog, name);
+                        problems.add(new Problem(i, arg, Severity.ERROR, "Unknown flag for this JDK"
+                                + (suggestion != null ? ", did you mean " + suggestion + "?" : "")));
+                    }
+                    continue;
+                }
+                String error = checkFlag(flag, name, xx.group(1), xx.group(4), diagnosticUnlocked, experimentalUnlocked);
+                if (error != null) {
+                    problems.add(new Problem(i, arg, Severity.ERROR, error));
+                }
+                continue;
+            }
+
+            Problem problem = checkOther(i, arg);
+            if (problem != null) {
+                problems.add(problem);
+            }
+        }
+
+        if (collectors.size() > 1) {
+            List<String> names = new ArrayList<>(collectors.keySet());
+            for (Map.Entry<String, Integer> collector : collectors.entrySet()) {
+                List<String> others = new ArrayList<>(names);
+                others.remove(collector.getKey());
+                problems.add(new Problem(collector.getValue(), args.get(collector.getValue()), Severity.ERROR,
+                        "Conflicts with -XX:+" + String.join(", -XX:+", others) + ", a JVM runs one garbage collector"));
+            }
+        }
+
+        long maxHeap = lastSize(args, "-Xmx", "-XX:MaxHeapSize=");
+        long initialHeap = lastSize(args, "-Xms", "-XX:InitialHeapSize=");
+        if (maxHeap > 0 && initialHeap > maxHeap) {
+            int index = lastIndex(args, "-Xms", "-XX:InitialHeapSize=");
+            problems.add(new Problem(index, args.get(index), Severity.ERROR, "Initial heap is larger than the maximum heap"));
+        }
+
+        problems.sort((a, b) -> Integer.compare(a.getIndex(), b.getIndex()));
+        return problems;
+    }
+
+    /**
+     * Also checks the arguments against the memory settings, for the settings panel.
+     * @param args the JVM arguments list of the settings
+     */
+    public static List<Problem> validate(LauncherConfig config, List<String> args, JvmFlagCatalog catalog) {
+        List<Problem> problems = validate(args, catalog);
+        int index = lastIndex(args, "-Xmx", "-XX:MaxHeapSize=");
+        if (index >= 0) {
+            if (config.isAutoMemory()) {
+                problems.add(new Problem(index, args.get(index), Severity.WARNING,
+                        "Replaces the automatic memory plan's heap"));
+            } else if (config.isMaxMemoryEnabled()) {
+                problems.add(new Problem(index, args.get(index), Severity.WARNING,
+                        "Max Memory is also set (" + config.getMaxMemoryValue() + " MB) and wins over this"));
+            }
+            problems.sort((a, b) -> Integer.compare(a.getIndex(), b.getIndex()));
+        }
+        return problems;
+    }
+
+    /**
+     * @return an error for one {@code -XX} flag the JDK has, or null if the JVM accepts it
+     */
+    private static String checkFlag(JvmFlagCatalog.Flag flag, String name, String sign, String value,
+                                    boolean diagnosticUnlocked, boolean experimentalUnlocked) {
+        if (flag.isBoolean() && sign == null) {
+            return "On/off flag, use -XX:+" + name + " or -XX:-" + name;
+        }
+        if (!flag.isBoolean() && sign != null) {
+            return "Needs a value, -XX:" + name + "=<" + flag.getType() + ">";
+        }
+        if (value != null && !isValidValue(flag.getType(), value)) {
+            return "Not a valid " + flag.getType() + " value";
+        }
+        if (flag.getKind() == JvmFlagCatalog.Kind.DIAGNOSTIC && !diagnosticUnlocked) {
+            return "Diagnostic flag, needs -XX:+UnlockDiagnosticVMOptions before it";
+        }
+        if (flag.getKind() == JvmFlagCatalog.Kind.EXPERIMENTAL && !experimentalUnlocked) {
+            return "Experimental flag, needs -XX:+UnlockExperimentalVMOptions before it";
+        }
+        return null;
+    }
+
+    private static boolean isValidValue(String type, String value) {
+        switch (type) {
+            case "double":
+                try {
+                    Double.parseDouble(value);
+                    return true;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            case "ccstr":
+            case "ccstrlist":
+                return true;
+            default:
+                // int, uint, intx, uintx, uint64_t, size_t
+                return INTEGER.matcher(value).matches();
+        }
+    }
+
+    /**
+     * @return a problem with a non-{@code -XX} argument, or null
+     */
+    private static Problem checkOther(int index, String arg) {
+        if (!arg.startsWith("-")) {
+            return new Problem(index, arg, Severity.ERROR, "Not a JVM option, they start with '-'");
+        }
+        if (LAUNCHER_OPTIONS.contains(arg)) {
+            return new Problem(index, arg, Severity.ERROR, "Set by the launcher, this would break the client's start");
+        }
+        for (String option : SIZE_OPTIONS) {
+            if (arg.startsWith(option)) {
+                return JvmProfile.parseSize(arg.substring(option.length())) > 0 ? null
+                        : new Problem(index, arg, Severity.ERROR, "Not a valid size, e.g. " + option + "512m or " + option + "2g");
+            }
+        }
+        if (arg.startsWith("-XX:")) {
+            return new Problem(index, arg, Severity.ERROR, "Malformed, use -XX:+Flag, -XX:-Flag or -XX:Flag=value");
+        }
+        if (arg.equals("-D") || arg.startsWith("-D=")) {
+            return new Problem(index, arg, Severity.ERROR, "Missing the property name, -Dname=value");
+        }
+        if (KNOWN_OPTIONS.contains(arg)) {
+            return null;
+        }
+        for (String prefix : KNOWN_PREFIXES) {
+            if (arg.startsWith(prefix)) {
+                return null;
+            }
+        }
+        return new Problem(index, arg, Severity.WARNING, "Not a known java option");
+    }
+
+    /**
+     * Identifies what an argument sets, so a later argument for the same setting replaces it.
+     * @return e.g. {@code MaxHeapSize} for both {@code -Xmx2g} and {@code -XX:MaxHeapSize=1g},
+     *         {@code -Dname} for system properties, the argument itself for repeatable options
+     */
+    public static String dedupKey(String arg) {
+        if (arg.startsWith("-XX:") || arg.startsWith("-Xmx") || arg.startsWith("-Xms") || arg.startsWith("-Xss")) {
+            return JvmProfile.optionName(arg);
+        }
+        if (arg.startsWith("-Xmn")) {
+            return "NewSize";
+        }
+        if (arg.startsWith("-D")) {
+            int equals = arg.indexOf('=');
+            return equals > 0 ? arg.substring(0, equals) : arg;
+        }
+        return arg;
+    }
+
+    /**
+     * @return the closest flag name within a few typos, or null
+     */
+    private static String suggest(JvmFlagCatalog catalog, String name) {
+        String wanted = name.toLowerCase(Locale.ROOT);
+        String best = null;
+        int bestDistance = Math.max(2, name.length() / 5) + 1;
+        for (String candidate : catalog.getNames()) {
+            if (Math.abs(candidate.length() - name.length()) >= bestDistance) {
+                continue;
+            }
+            int distance = distance(wanted, candidate.toLowerCase(Locale.ROOT));
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Levenshtein distance.
+     */
+    private static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static int lastIndex(List<String> args, String... prefixes) {
+        for (int i = args.size() - 1; i >= 0; i--) {
+            for (String prefix : prefixes) {
+                if (args.get(i).startsWith(prefix)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the last size set with one of {@code prefixes} in bytes, or -1
+     */
+    private static long lastSize(List<String> args, String... prefixes) {
+        int index = lastIndex(args, prefixes);
+        if (index < 0) {
+            return -1;
+        }
+        String arg = args.get(index);
+        for (String prefix : prefixes) {
+            if (arg.startsWith(prefix)) {
+                return JvmProfile.parseSize(arg.substring(prefix.length()));
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,339 @@
+package com.tonic.launcher.util;
+
+import com.tonic.launcher.LauncherMain;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The {@code -XX} flags a JDK build supports, so launch arguments can be checked without
+ * starting the client JVM just to have it fail.
+ *
+ * The catalog is read from {@code java -XX:+PrintFlagsFinal -version} with diagnostic and
+ * experimental flags unlocked, once per JDK build: the flag lines are kept in
+ * {@code VITA_DIR/jvm-flags} under a key of the executable and its release file, so a JDK
+ * update reads it again. A JDK does not print the flags it has removed but still accepts
+ * with a warning, see {@link #isObsolete(String, String)}; those are asked for one at a
+ * time and the answers are kept next to the flags.
+ */
+public class JvmFlagCatalog {
+    private static final Path CACHE_DIR = LauncherMain.VITA_DIR.resolve("jvm-flags");
+    private static final long PRINT_TIMEOUT_SECONDS = 30;
+    // "     bool UseSerialGC    = false    {product} {default}", ":=" for ergonomic values, the value can be empty
+    private static final Pattern FLAG_LINE = Pattern.compile("^\\s*(\\S+)\\s+(\\w+)\\s+:?=\\s*(.*?)\\s*\\{([^}]*)}.*$");
+    private static final Pattern XX_OPTION = Pattern.compile("^-XX:([+-]?)(\\w+)(=.*)?$");
+    // One catalog per executable for the launcher's lifetime
+    private static final Map<Path, JvmFlagCatalog> LOADED = new ConcurrentHashMap<>();
+
+    /**
+     * How a flag is unlocked.
+     */
+    public enum Kind {
+        PRODUCT,
+        /** Needs -XX:+UnlockDiagnosticVMOptions before it */
+        DIAGNOSTIC,
+        /** Needs -XX:+UnlockExperimentalVMOptions before it */
+        EXPERIMENTAL
+    }
+
+    /**
+     * One flag of the catalog.
+     */
+    public static class Flag {
+        private final String name;
+        private final String type;
+        private final String value;
+        private final Kind kind;
+
+        Flag(String name, String type, String value, Kind kind) {
+            this.name = name;
+            this.type = type;
+            this.value = value;
+            this.kind = kind;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return HotSpot's type, e.g. {@code bool}, {@code intx}, {@code size_t} or {@code ccstr}
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return the final value the JDK printed with no other options
+         */
+        public String getValue() {
+            return value;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public boolean isBoolean() {
+            return "bool".equals(type);
+        }
+    }
+
+    private final String java;
+    private final Map<String, Flag> flags;
+    // Flags the catalog does not list, whether the JDK accepts them as removed
+    private final Map<String, Boolean> obsolete = new ConcurrentHashMap<>();
+    private final Path obsoleteFile;
+
+    private JvmFlagCatalog(String java, Map<String, Flag> flags, Path obsoleteFile) {
+        this.java = java;
+        this.flags = flags;
+        this.obsoleteFile = obsoleteFile;
+        try {
+            if (Files.isRegularFile(obsoleteFile)) {
+                for (String line : Files.readAllLines(obsoleteFile, StandardCharsets.UTF_8)) {
+                    String[] answer = line.split(" ");
+                    if (answer.length == 2) {
+                        obsolete.put(answer[0], Boolean.parseBoolean(answer[1]));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Only means asking the JDK again
+        }
+    }
+
+    /**
+     * @param javaExecutable the JDK's java executable
+     * @return the JDK's catalog, or null if it could not be read
+     */
+    public static JvmFlagCatalog get(Path javaExecutable) {
+        Path java = javaExecutable.toAbsolutePath();
+        JvmFlagCatalog catalog = LOADED.get(java);
+        if (catalog != null) {
+            return catalog;
+        }
+        try {
+            catalog = load(java);
+        } catch (IOException e) {
+            System.err.println("Could not read the JVM flags of " + java + ": " + e.getMessage());
+            return null;
+        }
+        JvmFlagCatalog previous = LOADED.putIfAbsent(java, catalog);
+        return previous != null ? previous : catalog;
+    }
+
+    private static JvmFlagCatalog load(Path java) throws IOException {
+        // The flag lines as the JDK printed them, parsing is cheaper than a JSON mapping
+        String key = computeKey(java);
+        Path cacheFile = CACHE_DIR.resolve(key + ".txt");
+        Path obsoleteFile = CACHE_DIR.resolve(key + "-obsolete.txt");
+        try {
+            if (Files.isRegularFile(cacheFile)) {
+                Map<String, Flag> flags = index(Files.readAllLines(cacheFile, StandardCharsets.UTF_8));
+                if (!flags.isEmpty()) {
+                    return new JvmFlagCatalog(java.toString(), flags, obsoleteFile);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // A corrupt cache only means asking the JDK again
+        }
+
+        List<String> lines;
+        try (LaunchTrace.Span ignored = LaunchTrace.begin("jvm-flags")) {
+            lines = printFlags(java);
+        }
+        Map<String, Flag> flags = index(lines);
+        if (flags.isEmpty()) {
+            throw new IOException("java -XX:+PrintFlagsFinal printed no flags");
+        }
+        try {
+            Path temp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            StagedInstall.commitFile(temp, cacheFile);
+        } catch (IOException e) {
+            System.err.println("Failed to save the JVM flags: " + e.getMessage());
+        }
+        return new JvmFlagCatalog(java.toString(), flags, obsoleteFile);
+    }
+
+    /**
+     * @return the output lines of {@code java -XX:+PrintFlagsFinal -version}
+     */
+    private static List<String> printFlags(Path java) throws IOException {
+        Files.createDirectories(CACHE_DIR);
+        Path output = Files.createTempFile(CACHE_DIR, "flags", ".txt");
+        try {
+            Process process = new ProcessBuilder(java.toString(), "-XX:+UnlockDiagnosticVMOptions",
+                    "-XX:+UnlockExperimentalVMOptions", "-XX:+PrintFlagsFinal", "-version")
+                    .redirectErrorStream(true)
+                    .redirectOutput(output.toFile())
+                    .start();
+            if (!process.waitFor(PRINT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("java -XX:+PrintFlagsFinal timed out");
+            }
+            if (process.exitValue() != 0) {
+                throw new IOException("java -XX:+PrintFlagsFinal failed with exit code " + process.exitValue());
+            }
+            return Files.readAllLines(output, StandardCharsets.UTF_8);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("java -XX:+PrintFlagsFinal was interrupted", e);
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    /**
+     * @param line a line of -XX:+PrintFlagsFinal
+     * @return the flag, or null for headers and other output
+     */
+    static Flag parse(String line) {
+        Matcher matcher = FLAG_LINE.matcher(line);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String kind = matcher.group(4);
+        Kind parsed = kind.contains("diagnostic") ? Kind.DIAGNOSTIC
+                : kind.contains("experimental") ? Kind.EXPERIMENTAL : Kind.PRODUCT;
+        return new Flag(matcher.group(2), matcher.group(1), matcher.group(3), parsed);
+    }
+
+    private static Map<String, Flag> index(List<String> lines) {
+        Map<String, Flag> byName = new HashMap<>();
+        for (String line : lines) {
+            Flag flag = parse(line);
+            if (flag != null) {
+                byName.put(flag.getName(), flag);
+            }
+        }
+        return byName;
+    }
+
+    /**
+     * Identifies the JDK build: the executable, its size and the release file.
+     */
+    private static String computeKey(Path java) throws IOException {
+        StringBuilder identity = new StringBuilder(java.toString());
+        identity.append('|').append(Files.size(java)).append('|').append(Files.getLastModifiedTime(java).toMillis());
+        Path release = java.getParent().resolveSibling("release");
+        if (Files.isRegularFile(release)) {
+            identity.append('|').append(Files.readString(release, StandardCharsets.ISO_8859_1));
+        }
+        byte[] digest = StagedInstall.newSha256().digest(identity.toString().getBytes(StandardCharsets.UTF_8));
+        return StagedInstall.hex(digest).substring(0, 16);
+    }
+
+    /**
+     * @param name flag name without {@code -XX:}, e.g. {@code UseG1GC}
+     * @return the flag, or null if this JDK does not have it
+     */
+    public Flag find(String name) {
+        return flags.get(name);
+    }
+
+    /**
+     * Whether the JDK still accepts a flag it does not list, because it was removed rather
+     * than never existed: {@code java <option> -version} then starts with a warning instead
+     * of failing. Asked once per flag and JDK build, typos included.
+     * @param name   flag name {@link #find(String)} does not know
+     * @param option the option naming it, e.g. {@code -XX:MaxPermSize=256m}
+     * @return true if the JVM ignores the option, false if it refuses it or could not be asked
+     */
+    public boolean isObsolete(String name, String option) {
+        Boolean known = obsolete.get(name);
+        if (known != null) {
+            return known;
+        }
+
+        boolean accepted;
+        try (LaunchTrace.Span ignored = LaunchTrace.begin("jvm-flags.probe")) {
+            Process process = new ProcessBuilder(java, option, "-version")
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(PRINT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+            accepted = process.exitValue() == 0;
+        } catch (IOException e) {
+            System.err.println("Could not check " + option + " with " + java + ": " + e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        obsolete.put(name, accepted);
+        try {
+            Files.createDirectories(CACHE_DIR);
+            Files.write(obsoleteFile, List.of(name + " " + accepted), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Failed to save the JVM flags: " + e.getMessage());
+        }
+        return accepted;
+    }
+
+    /**
+     * @param option a JVM option, e.g. {@code -XX:+UseG1GC} or {@code -XX:CICompilerCount=2}
+     * @return false if it is an {@code -XX} option this JDK does not have; true for everything else
+     */
+    public boolean supports(String option) {
+        Matcher matcher = XX_OPTION.matcher(option);
+        return !matcher.matches() || flags.containsKey(matcher.group(2));
+    }
+
+    /**
+     * Drops the {@code -XX} options this JDK does not have.
+     * @param options options the launcher chose itself, not the user's
+     * @return the supported options, in order
+     */
+    public List<String> retainSupported(List<String> options) {
+        List<String> supported = new ArrayList<>();
+        for (String option : options) {
+            if (supports(option)) {
+                supported.add(option);
+            } else {
+                System.out.println("Skipping " + option + ", not supported by " + java);
+            }
+        }
+        return supported;
+    }
+
+    /**
+     * @return every flag name, diagnostic and experimental ones included
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(flags.keySet());
+    }
+
+    /**
+     * @return the java executable this catalog belongs to
+     */
+    public String getJava() {
+        return java;
+    }
+
+    /**
+     * @return number of flags, diagnostic and experimental ones included
+     */
+    public int size() {
+        return flags.size();
+    }
+}
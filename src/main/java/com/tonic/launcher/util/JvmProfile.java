@@ -0,0 +1,249 @@
+package com.tonic.launcher.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * GC and JIT presets for the client JVM, sized from the host's cores, the client's heap and
+ * how many clients the launch starts.
+ *
+ * A preset only fills in what the JVM arguments leave open: a GC the user picked keeps its
+ * own tuning, and any option already on the command line wins. The options are checked
+ * against the JDK's {@link JvmFlagCatalog} before launch, so an older or newer JDK never
+ * gets a flag it does not have.
+ */
+public enum JvmProfile {
+    /** Picks a preset from the host and the number of clients */
+    AUTO("Automatic"),
+    /** Many clients on one host: serial GC, C1 only and a small share of the cores each */
+    LOW_FOOTPRINT("Low footprint multi-box"),
+    /** One client with the host to itself: G1 with a pause goal, full tiered JIT */
+    LOW_LATENCY("Single client low latency"),
+    /** Quickest to the login screen: serial GC and C1 only */
+    FAST_STARTUP("Fast startup"),
+    /** Only the JVM arguments from the settings */
+    NONE("None (JVM arguments only)");
+
+    private static final Pattern GC_OPTION = Pattern.compile("^-XX:\\+Use\\w*GC$");
+
+    private final String label;
+
+    JvmProfile(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the profile named {@code name}, or {@link #AUTO} if there is none
+     */
+    public static JvmProfile parse(String name) {
+        for (JvmProfile profile : values()) {
+            if (profile.name().equalsIgnoreCase(name)) {
+                return profile;
+            }
+        }
+        return AUTO;
+    }
+
+    /**
+     * @param cores     the host's processors
+     * @param instances clients started by this launch
+     * @return the preset {@link #AUTO} stands for, the profile itself otherwise
+     */
+    public JvmProfile resolve(int cores, int instances) {
+        if (this != AUTO) {
+            return this;
+        }
+        // A single client keeps every core, however few the host has
+        return instances > 1 ? LOW_FOOTPRINT : LOW_LATENCY;
+    }
+
+    /**
+     * @param instances clients started by this launch
+     * @param heapMb    the client's -Xmx in MB, or 0 if the JVM picks it
+     * @param userArgs  JVM arguments already on the command line
+     * @return the preset's options the user did not set themselves, checked against the launch's JDK
+     */
+    public List<String> toJvmArgs(int instances, long heapMb, List<String> userArgs) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<String> args = resolve(cores, instances).buildArgs(cores, instances, heapMb, userArgs);
+        if (args.isEmpty()) {
+            return args;
+        }
+        JvmFlagCatalog catalog = JvmFlagCatalog.get(JDKManager.getJavaExecutable());
+        return catalog != null ? catalog.retainSupported(args) : args;
+    }
+
+    List<String> buildArgs(int cores, int instances, long heapMb, List<String> userArgs) {
+        List<String> args = new ArrayList<>();
+        if (this == NONE || this == AUTO) {
+            return args;
+        }
+        boolean userGc = userArgs.stream().anyMatch(arg -> GC_OPTION.matcher(arg).matches());
+        boolean tiered = !userArgs.contains("-XX:-TieredCompilation");
+        int feature = CdsManager.getFeatureVersion(JDKManager.getJavaHome());
+
+        switch (this) {
+            case LOW_FOOTPRINT: {
+                int active = Math.max(1, cores / Math.max(1, instances));
+                if (!userGc) {
+                    args.add("-XX:+UseSerialGC");
+                    // Give memory back to the OS soon after a collection
+                    args.add("-XX:MinHeapFreeRatio=10");
+                    args.add("-XX:MaxHeapFreeRatio=30");
+                    if (feature >= 18) {
+                        // Serial GC deduplicates strings since JDK 18, earlier only G1 does
+                        args.add("-XX:+UseStringDeduplication");
+                    }
+                }
+                if (tiered) {
+                    args.add("-XX:TieredStopAtLevel=1");
+                    // The minimum with tiered compilation
+                    args.add("-XX:CICompilerCount=2");
+                }
+                if (instances > 1) {
+                    args.add("-XX:ActiveProcessorCount=" + active);
+                }
+                args.add("-XX:ReservedCodeCacheSize=48m");
+                if (heapMb > 0) {
+                    args.add("-Xms" + Math.min(heapMb, 64) + "m");
+                }
+                break;
+            }
+            case LOW_LATENCY: {
+                int active = Math.max(2, cores / Math.max(1, instances));
+                if (!userGc) {
+                    args.add("-XX:+UseG1GC");
+                    args.add("-XX:MaxGCPauseMillis=50");
+                }
+                if (tiered) {
+                    args.add("-XX:CICompilerCount=" + Math.max(2, Math.min(6, active / 2)));
+                }
+                if (instances > 1) {
+                    args.add("-XX:ActiveProcessorCount=" + active);
+                }
+                args.add("-XX:ReservedCodeCacheSize=256m");
+                if (heapMb > 0) {
+                    // A fixed heap never pauses to resize
+                    args.add("-Xms" + heapMb + "m");
+                }
+                break;
+            }
+            case FAST_STARTUP: {
+                int active = Math.max(2, cores / Math.max(1, instances));
+                if (!userGc) {
+                    args.add("-XX:+UseSerialGC");
+                }
+                if (tiered) {
+                    args.add("-XX:TieredStopAtLevel=1");
+                    args.add("-XX:CICompilerCount=" + Math.max(2, Math.min(4, active / 2)));
+                }
+                if (instances > 1) {
+                    args.add("-XX:ActiveProcessorCount=" + active);
+                }
+                args.add("-XX:ReservedCodeCacheSize=64m");
+                if (heapMb > 0) {
+                    // Startup allocates fast, skip the first few heap expansions
+                    args.add("-Xms" + Math.min(heapMb, Math.max(64, heapMb / 2)) + "m");
+                }
+                break;
+            }
+            default:
+                break;
+        }
+
+        args.removeIf(arg -> isSet(userArgs, arg));
+        return args;
+    }
+
+    /**
+     * @return whether the user set {@code option} themselves, whatever the value
+     */
+    private static boolean isSet(List<String> userArgs, String option) {
+        String name = optionName(option);
+        for (String arg : userArgs) {
+            if (optionName(arg).equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return e.g. {@code CICompilerCount} for {@code -XX:CICompilerCount=2}, {@code InitialHeapSize} for {@code -Xms256m}
+     */
+    static String optionName(String option) {
+        if (option.startsWith("-XX:")) {
+            String name = option.substring(4);
+            if (name.startsWith("+") || name.startsWith("-")) {
+                name = name.substring(1);
+            }
+            int equals = name.indexOf('=');
+            return equals >= 0 ? name.substring(0, equals) : name;
+        }
+        // Shorthands of -XX options
+        if (option.startsWith("-Xms")) {
+            return "InitialHeapSize";
+        } else if (option.startsWith("-Xmx")) {
+            return "MaxHeapSize";
+        } else if (option.startsWith("-Xss")) {
+            return "ThreadStackSize";
+        }
+        return option;
+    }
+
+    /**
+     * @return the last -Xmx or -XX:MaxHeapSize of {@code args} in MB, or 0 if there is none
+     */
+    static long parseHeapMb(List<String> args) {
+        long heapMb = 0;
+        for (String arg : args) {
+            String size = arg.startsWith("-Xmx") ? arg.substring(4)
+                    : arg.startsWith("-XX:MaxHeapSize=") ? arg.substring("-XX:MaxHeapSize=".length()) : null;
+            if (size != null) {
+                long bytes = parseSize(size);
+                if (bytes > 0) {
+                    heapMb = bytes / (1024 * 1024);
+                }
+            }
+        }
+        return heapMb;
+    }
+
+    /**
+     * @param size a JVM size, e.g. {@code 512m}, {@code 2G} or plain bytes
+     * @return the size in bytes, or -1 if it is not one
+     */
+    static long parseSize(String size) {
+        if (size.isEmpty()) {
+            return -1;
+        }
+        long unit = 1;
+        switch (Character.toLowerCase(size.charAt(size.length() - 1))) {
+            case 'k':
+                unit = 1024L;
+                break;
+            case 'm':
+                unit = 1024L * 1024;
+                break;
+            case 'g':
+                unit = 1024L * 1024 * 1024;
+                break;
+            case 't':
+                unit = 1024L * 1024 * 1024 * 1024;
+                break;
+            default:
+                break;
+        }
+        String digits = unit == 1 ? size : size.substring(0, size.length() - 1);
+        try {
+            return Long.parseLong(digits) * unit;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
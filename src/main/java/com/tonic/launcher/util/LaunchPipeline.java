@@ -0,0 +1,189 @@
+package com.tonic.launcher.util;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the pre-launch work as a small dependency graph instead of one stage after another.
+ *
+ * <pre>
+ *   JDK install ------------------------------------------+
+ *   RuneLite bootstrap lookup --+                         +--> launch
+ *   VitaLite release lookup ----+--> VitaLite download ---+
+ * </pre>
+ *
+ * The JDK install shares nothing with the VitaLite side, so a first-time JDK download
+ * no longer delays the release lookup and jar download.
+ */
+public class LaunchPipeline {
+    private final ProgressListener listener;
+    private final Stages stages;
+
+    /**
+     * The work behind each stage. The graph only decides what runs concurrently, so tests can
+     * drive it with stand-in stages.
+     */
+    interface Stages {
+        Path installJdk(ProgressListener listener) throws Exception;
+
+        String liveRuneliteVersion() throws Exception;
+
+        String liveVitaLiteVersion() throws Exception;
+
+        /**
+         * @return false if VitaLite has to target the previous RuneLite bootstrap
+         */
+        boolean updateVitaLite(ProgressListener listener, String liveRunelite, String liveVita) throws Exception;
+    }
+
+    /**
+     * @param listener The listener to report stage progress to (can be null)
+     */
+    public LaunchPipeline(ProgressListener listener) {
+        this(listener, new LiveStages());
+    }
+
+    LaunchPipeline(ProgressListener listener, Stages stages) {
+        this.listener = listener;
+        this.stages = stages;
+    }
+
+    /**
+     * Runs every stage and waits for the ones the launch depends on.
+     * @return the outcome of the update stages
+     * @throws Exception the first failure of any stage
+     */
+    public Result run() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4, new PipelineThreadFactory());
+        try {
+            CompletableFuture<Path> jdk = CompletableFuture.supplyAsync(() -> call(() -> stages.installJdk(listener)), executor);
+
+            CompletableFuture<String> liveRunelite = CompletableFuture.supplyAsync(() -> call(() -> {
+                try (LaunchTrace.Span ignored = LaunchTrace.begin("runelite-version")) {
+                    progress(LaunchStage.RUNELITE_VERSION, 0, "Checking RuneLite version...");
+                    String version = stages.liveRuneliteVersion();
+                    progress(LaunchStage.RUNELITE_VERSION, 100, "RuneLite " + version);
+                    return version;
+                }
+            }), executor);
+
+            CompletableFuture<String> liveVita = CompletableFuture.supplyAsync(() -> call(() -> {
+                try (LaunchTrace.Span ignored = LaunchTrace.begin("vitalite-version")) {
+                    progress(LaunchStage.VITALITE_VERSION, 0, "Checking for updates...");
+                    String version = stages.liveVitaLiteVersion();
+                    progress(LaunchStage.VITALITE_VERSION, 100, "Latest VitaLite release " + version);
+                    return version;
+                }
+            }), executor);
+
+            // The download is the only stage that needs both lookups
+            CompletableFuture<Result> vitalite = liveRunelite.thenCombineAsync(liveVita,
+                    (runelite, vita) -> call(() -> new Result(stages.updateVitaLite(listener, runelite, vita), vita)),
+                    executor);
+
+            CompletableFuture.allOf(jdk, vitalite).get();
+            return vitalite.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void progress(LaunchStage stage, int progress, String text) {
+        if (listener != null) {
+            listener.setStageProgress(stage, progress, text);
+        }
+    }
+
+    private static <T> T call(StageTask<T> task) {
+        try {
+            return task.call();
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static Exception unwrap(Throwable throwable) {
+        while (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        if (throwable instanceof Exception) {
+            return (Exception) throwable;
+        }
+        return new Exception(throwable);
+    }
+
+    /**
+     * The real stages of a launch.
+     */
+    private static class LiveStages implements Stages {
+        @Override
+        public Path installJdk(ProgressListener listener) throws Exception {
+            Path java = JDKManager.ensureJDK(listener);
+            // Read once per JDK build, the launch checks its JVM options against it
+            JvmFlagCatalog.get(java);
+            return java;
+        }
+
+        @Override
+        public String liveRuneliteVersion() {
+            return Versioning.getLiveRuneliteVersion();
+        }
+
+        @Override
+        public String liveVitaLiteVersion() throws Exception {
+            return Versioning.getLiveVitaLiteVersion();
+        }
+
+        @Override
+        public boolean updateVitaLite(ProgressListener listener, String liveRunelite, String liveVita) throws Exception {
+            return UpdateProcessor.process(listener, liveRunelite, liveVita);
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageTask<T> {
+        T call() throws Exception;
+    }
+
+    private static class PipelineThreadFactory implements java.util.concurrent.ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "LaunchPipeline-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Outcome of the update side of the pipeline.
+     */
+    public static class Result {
+        private final boolean upToDate;
+        private final String liveVitaLiteVersion;
+
+        Result(boolean upToDate, String liveVitaLiteVersion) {
+            this.upToDate = upToDate;
+            this.liveVitaLiteVersion = liveVitaLiteVersion;
+        }
+
+        /**
+         * @return false if VitaLite has to target the previous RuneLite bootstrap
+         */
+        public boolean isUpToDate() {
+            return upToDate;
+        }
+
+        public String getLiveVitaLiteVersion() {
+            return liveVitaLiteVersion;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.tonic.launcher.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.tonic.launcher.LauncherMain;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One client of a batch launch, read from {@code VITA_DIR/profiles.json}:
+ * <pre>
+ * [
+ *   { "name": "main", "loginType": "Jagex", "login": "...", "proxy": "1.2.3.4:1080", "maxMemory": 1024 },
+ *   { "name": "alt1", "loginType": "Legacy", "login": "...", "weight": 2, "jvmArgs": ["-XX:+UseSerialGC"] }
+ * ]
+ * </pre>
+ * Everything else (plugins, music, JVM arguments, ...) comes from the launcher settings.
+ * Without {@code maxMemory}, automatic memory planning gives a profile a heap share by
+ * {@code weight}, see {@link MemoryPlanner}.
+ */
+public class LaunchProfile {
+    public static final Path DEFAULT_FILE = LauncherMain.VITA_DIR.resolve("profiles.json");
+
+    private String name;
+    private String loginType;
+    private String login;
+    private String proxy;
+    // -Xmx in MB, 0 for the launcher setting
+    private int maxMemory;
+    // Share of the planned memory relative to other profiles
+    private double weight = 1;
+    private List<String> jvmArgs;
+
+    /**
+     * @return the profile of a single launch from the settings panel
+     */
+    public static LaunchProfile single() {
+        LaunchProfile profile = new LaunchProfile();
+        profile.name = "default";
+        return profile;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public String getProxy() {
+        return proxy;
+    }
+
+    public int getMaxMemory() {
+        return maxMemory;
+    }
+
+    public double getWeight() {
+        return weight > 0 ? weight : 1;
+    }
+
+    /**
+     * Reads the profiles of a batch.
+     * @param file profiles file
+     * @return the profiles, in launch order
+     * @throws IOException if the file is missing, malformed or empty
+     */
+    public static List<LaunchProfile> load(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            throw new IOException("Profiles file not found: " + file);
+        }
+
+        List<LaunchProfile> profiles;
+        try {
+            profiles = new Gson().fromJson(Files.readString(file), new TypeToken<List<LaunchProfile>>(){}.getType());
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid profiles file " + file + ": " + e.getMessage(), e);
+        }
+        if (profiles == null || profiles.isEmpty()) {
+            throw new IOException("No profiles in " + file);
+        }
+
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < profiles.size(); i++) {
+            LaunchProfile profile = profiles.get(i);
+            if (profile.name == null || profile.name.isBlank()) {
+                profile.name = "profile-" + (i + 1);
+            }
+            if (!names.add(profile.name)) {
+                throw new IOException("Duplicate profile name " + profile.name + " in " + file);
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * @return VitaLite's program arguments for this profile
+     */
+    public List<String> buildCliArgs(LauncherConfig config) {
+        List<String> args = CliArguments.buildShared(config);
+        CliArguments.addProxy(args, proxy);
+        CliArguments.addLogin(args, loginType, login);
+        return args;
+    }
+
+    /**
+     * @param allocation planned memory for this profile, or null for the -Xmx settings
+     * @param instances  clients started by this launch, see {@link JvmProfile}
+     * @return JVM arguments for this profile: the launcher's, the profile's own, memory, then the JVM preset
+     */
+    public List<String> buildJvmArgs(LauncherConfig config, MemoryPlanner.Allocation allocation, int instances) {
+        List<String> args = new ArrayList<>(config.getJvmArgs());
+        if (jvmArgs != null) {
+            args.addAll(jvmArgs);
+        }
+
+        // Before the preset, so the plan's heap and code cache sizes win over the preset's
+        if (allocation != null) {
+            args.addAll(allocation.toJvmArgs(args));
+        } else if (maxMemory > 0) {
+            args.add("-Xmx" + maxMemory + "m");
+        } else if (config.isMaxMemoryEnabled()) {
+            args.add("-Xmx" + config.getMaxMemoryValue() + "m");
+        }
+
+        // The preset sizes the initial heap from the heap the client ends up with
+        args.addAll(config.getJvmProfile().toJvmArgs(instances, JvmProfile.parseHeapMb(args), args));
+        return args;
+    }
+}
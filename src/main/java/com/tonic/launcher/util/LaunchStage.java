@@ -0,0 +1,31 @@
+package com.tonic.launcher.util;
+
+/**
+ * Stages of the launch pipeline. Each stage carries the share of the overall
+ * progress bar it accounts for; the weights add up to 100.
+ */
+public enum LaunchStage {
+    JDK("JDK", 50),
+    RUNELITE_VERSION("RuneLite", 5),
+    VITALITE_VERSION("Release", 5),
+    VITALITE("VitaLite", 39),
+    // Launch holds the last percent until VitaLite reports back over the launcher channel
+    LAUNCH("Launch", 1)
+    ;
+
+    private final String label;
+    private final int weight;
+
+    LaunchStage(String label, int weight) {
+        this.label = label;
+        this.weight = weight;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+}
@@ -0,0 +1,304 @@
+package com.tonic.launcher.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.tonic.launcher.LauncherMain;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records where launch time goes.
+ *
+ * Code marks stages with {@link #begin(String)} spans, which can nest and come from any
+ * thread. When the launch ends, {@link #finish(String)} writes every span to
+ * {@code VITA_DIR/traces/launch-<time>.json} in the Chrome trace event format (open it in
+ * chrome://tracing or https://ui.perfetto.dev) and appends a one-line summary to
+ * {@code traces/history.log}. Only the last {@link #KEEP_TRACES} trace files and
+ * {@link #KEEP_HISTORY} summary lines are kept. Time spent waiting for the user, spans
+ * from {@link #beginWait(String)}, is in the trace but not in the summary's total.
+ */
+public final class LaunchTrace
+{
+    private static final Path TRACE_DIR = LauncherMain.VITA_DIR.resolve("traces");
+    private static final Path HISTORY_FILE = TRACE_DIR.resolve("history.log");
+    private static final int KEEP_TRACES = 20;
+    private static final int KEEP_HISTORY = 500;
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    // Spans are timed against this, the JVM start is placed before it
+    private static final long ORIGIN_NANOS = System.nanoTime();
+    private static final long ORIGIN_MILLIS = System.currentTimeMillis();
+
+    private static final List<Span> SPANS = new ArrayList<>();
+    private static final Map<String, String> NOTES = new LinkedHashMap<>();
+    private static boolean finished = false;
+
+    private LaunchTrace() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * A timed section of the launch, closed with {@link #close()} or try-with-resources.
+     */
+    public static class Span implements AutoCloseable
+    {
+        private final String name;
+        private final String thread;
+        private final long start;
+        private final boolean waiting;
+        private long end = -1;
+
+        private Span(String name, String thread, long start, boolean waiting)
+        {
+            this.name = name;
+            this.thread = thread;
+            this.start = start;
+            this.waiting = waiting;
+        }
+
+        /**
+         * @return duration in milliseconds, up to now if the span is still open
+         */
+        public long getMillis()
+        {
+            return ((end >= 0 ? end : System.nanoTime()) - start) / 1_000_000;
+        }
+
+        @Override
+        public void close()
+        {
+            synchronized (SPANS)
+            {
+                if(end < 0)
+                {
+                    end = System.nanoTime();
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a span on the current thread.
+     * @param name stage name, dotted for sub-stages, e.g. {@code jdk.extract}
+     * @return the open span
+     */
+    public static Span begin(String name)
+    {
+        return add(new Span(name, Thread.currentThread().getName(), System.nanoTime(), false));
+    }
+
+    /**
+     * Starts a span that waits for the user, e.g. on the settings window, so the summary's
+     * total measures the launch rather than how long the user took.
+     * @param name stage name
+     * @return the open span
+     */
+    public static Span beginWait(String name)
+    {
+        return add(new Span(name, Thread.currentThread().getName(), System.nanoTime(), true));
+    }
+
+    private static Span add(Span span)
+    {
+        synchronized (SPANS)
+        {
+            if(!finished)
+            {
+                SPANS.add(span);
+            }
+        }
+        return span;
+    }
+
+    /**
+     * Attaches a value to this launch, e.g. which optimizations were active. Notes are
+     * listed in the summary line and the trace metadata.
+     * @param key short name without spaces
+     * @param value value, replaced if the key was noted before
+     */
+    public static void note(String key, String value)
+    {
+        synchronized (SPANS)
+        {
+            NOTES.put(key, value);
+        }
+    }
+
+    /**
+     * Ends the trace and writes the trace file and summary line. Later calls do nothing.
+     * @param outcome short result for the summary, e.g. {@code ok} or the error
+     */
+    public static void finish(String outcome)
+    {
+        List<Span> spans;
+        Map<String, String> notes;
+        long now = System.nanoTime();
+        synchronized (SPANS)
+        {
+            if(finished)
+            {
+                return;
+            }
+            finished = true;
+            for(Span span : SPANS)
+            {
+                if(span.end < 0)
+                {
+                    span.end = now;
+                }
+            }
+            spans = new ArrayList<>(SPANS);
+            notes = new LinkedHashMap<>(NOTES);
+        }
+
+        try
+        {
+            Files.createDirectories(TRACE_DIR);
+            String time = LocalDateTime.now().format(FILE_TIME);
+            Files.writeString(TRACE_DIR.resolve("launch-" + time + ".json"), toChromeTrace(spans, notes), StandardCharsets.UTF_8);
+            appendHistory(summary(spans, notes, outcome, now));
+            deleteOldTraces();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            System.err.println("Failed to write the launch trace: " + e.getMessage());
+        }
+    }
+
+    private static String toChromeTrace(List<Span> spans, Map<String, String> notes)
+    {
+        JsonArray events = new JsonArray();
+        Map<String, Integer> threads = new LinkedHashMap<>();
+
+        // The launcher JVM's own startup, before any launcher code ran
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        events.add(event("jvm.startup", "main", 0, ORIGIN_MILLIS - jvmStart, threads));
+
+        long jvmOffset = Math.max(0, ORIGIN_MILLIS - jvmStart) * 1000;
+        for(Span span : spans)
+        {
+            JsonObject event = event(span.name, span.thread, 0, 0, threads);
+            event.addProperty("ts", jvmOffset + (span.start - ORIGIN_NANOS) / 1000);
+            event.addProperty("dur", (span.end - span.start) / 1000);
+            events.add(event);
+        }
+
+        for(Map.Entry<String, Integer> thread : threads.entrySet())
+        {
+            JsonObject metadata = new JsonObject();
+            metadata.addProperty("name", "thread_name");
+            metadata.addProperty("ph", "M");
+            metadata.addProperty("pid", 1);
+            metadata.addProperty("tid", thread.getValue());
+            JsonObject args = new JsonObject();
+            args.addProperty("name", thread.getKey());
+            metadata.add("args", args);
+            events.add(metadata);
+        }
+
+        JsonObject trace = new JsonObject();
+        trace.add("traceEvents", events);
+        trace.addProperty("displayTimeUnit", "ms");
+        JsonObject metadata = new JsonObject();
+        metadata.addProperty("launcherVersion", getLauncherVersion());
+        metadata.addProperty("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        notes.forEach(metadata::addProperty);
+        trace.add("metadata", metadata);
+        return new Gson().toJson(trace);
+    }
+
+    private static JsonObject event(String name, String thread, long startMillis, long durationMillis, Map<String, Integer> threads)
+    {
+        JsonObject event = new JsonObject();
+        event.addProperty("name", name);
+        event.addProperty("cat", name.contains(".") ? name.substring(0, name.indexOf('.')) : name);
+        event.addProperty("ph", "X");
+        event.addProperty("ts", startMillis * 1000);
+        event.addProperty("dur", durationMillis * 1000);
+        event.addProperty("pid", 1);
+        event.addProperty("tid", threads.computeIfAbsent(thread, t -> threads.size() + 1));
+        return event;
+    }
+
+    /**
+     * One line per launch: time, launcher version, total without waiting for the user, then
+     * each top-level stage.
+     */
+    private static String summary(List<Span> spans, Map<String, String> notes, String outcome, long now)
+    {
+        long total = now - ORIGIN_NANOS;
+        for(Span span : spans)
+        {
+            if(span.waiting)
+            {
+                total -= span.end - span.start;
+            }
+        }
+
+        StringBuilder line = new StringBuilder();
+        line.append(LocalDateTime.now().withNano(0))
+                .append(" launcher=").append(getLauncherVersion())
+                .append(" total=").append(total / 1_000_000).append("ms")
+                .append(" jvm=").append(ORIGIN_MILLIS - ManagementFactory.getRuntimeMXBean().getStartTime()).append("ms");
+
+        // Sub-stages are in the trace file, the summary only lists top-level spans
+        for(Span span : spans)
+        {
+            if(!span.name.contains("."))
+            {
+                line.append(' ').append(span.name).append('=').append((span.end - span.start) / 1_000_000).append("ms");
+            }
+        }
+        notes.forEach((key, value) -> line.append(' ').append(key).append('=').append(value));
+        line.append(" result=").append(outcome.replace('\n', ' '));
+        return line.toString();
+    }
+
+    private static void appendHistory(String line) throws IOException
+    {
+        List<String> lines = Files.isRegularFile(HISTORY_FILE)
+                ? new ArrayList<>(Files.readAllLines(HISTORY_FILE, StandardCharsets.UTF_8))
+                : new ArrayList<>();
+        lines.add(line);
+        if(lines.size() > KEEP_HISTORY)
+        {
+            lines = lines.subList(lines.size() - KEEP_HISTORY, lines.size());
+        }
+        Files.write(HISTORY_FILE, lines, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void deleteOldTraces() throws IOException
+    {
+        List<Path> traces = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(TRACE_DIR, "launch-*.json"))
+        {
+            stream.forEach(traces::add);
+        }
+        // The timestamped names sort chronologically
+        traces.sort(null);
+        for(int i = 0; i < traces.size() - KEEP_TRACES; i++)
+        {
+            Files.deleteIfExists(traces.get(i));
+        }
+    }
+
+    private static String getLauncherVersion()
+    {
+        String version = LauncherMain.class.getPackage().getImplementationVersion();
+        return version != null ? version : "dev";
+    }
+}
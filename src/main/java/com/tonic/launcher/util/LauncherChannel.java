@@ -0,0 +1,315 @@
+package com.tonic.launcher.util;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The launcher side of {@code --launcherCom} for every client this launcher starts, served
+ * by one selector thread instead of a blocking thread per client.
+ *
+ * VitaLite only takes a port and answers with a bare "Done" line, so each launch still gets
+ * its own listening port: the port is what tells the clients apart. The selector waits on
+ * all of them at once. {@link com.tonic.launcher.agent.TelemetryAgent} connections prove
+ * they belong to the launch with a random per-launch token in their hello line.
+ *
+ * Nothing blocks forever: a launch that does not report "Done" in time, or whose process
+ * exits, is closed; a connection that does not identify itself within
+ * {@link #IDENTIFY_TIMEOUT_MILLIS}, or an agent that goes quiet for
+ * {@link #AGENT_IDLE_TIMEOUT_MILLIS}, is dropped.
+ */
+public final class LauncherChannel {
+    private static final long IDENTIFY_TIMEOUT_MILLIS = 10_000;
+    private static final long AGENT_IDLE_TIMEOUT_MILLIS = 60_000;
+    private static final int MAX_LINE = 64 * 1024;
+    private static final long SELECT_MILLIS = 1000;
+
+    private static LauncherChannel instance;
+
+    private final Selector selector;
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * One launch's listening port.
+     */
+    public final class Registration {
+        private final ServerSocketChannel server;
+        private final String token;
+        private final Runnable onDone;
+        private final long deadline;
+        private volatile boolean closed;
+
+        private Registration(ServerSocketChannel server, String token, Runnable onDone, long deadline) {
+            this.server = server;
+            this.token = token;
+            this.onDone = onDone;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return the port to pass with {@code --launcherCom}
+         */
+        public int getPort() {
+            return server.socket().getLocalPort();
+        }
+
+        /**
+         * @return the token the telemetry agent has to present
+         */
+        public String getToken() {
+            return token;
+        }
+
+        /**
+         * Stops listening. Telemetry connections that are already open stay open.
+         */
+        public void close() {
+            if (!closed) {
+                closed = true;
+                submit(() -> closeQuietly(server));
+            }
+        }
+    }
+
+    private static class Connection {
+        private final Registration registration;
+        private final long openedAt = System.currentTimeMillis();
+        private ByteBuffer buffer = ByteBuffer.allocate(256);
+        private long lastActivity = openedAt;
+        private TelemetryHub.Instance telemetry;
+
+        private Connection(Registration registration) {
+            this.registration = registration;
+        }
+    }
+
+    private LauncherChannel() throws IOException {
+        this.selector = Selector.open();
+        Thread thread = new Thread(this::run, "LauncherComThread");
+        thread.setDaemon(true); // Don't prevent JVM shutdown
+        thread.start();
+    }
+
+    /**
+     * @return the launcher's channel, started on first use
+     */
+    public static synchronized LauncherChannel get() throws IOException {
+        if (instance == null) {
+            instance = new LauncherChannel();
+        }
+        return instance;
+    }
+
+    /**
+     * Opens a port for one launch.
+     * @param onDone          run once when the client reports "Done", off the selector thread (can be null)
+     * @param readyTimeoutMillis time to wait for "Done" before giving up on the launch, 0 for no limit
+     * @return the registration
+     * @throws IOException if no port can be opened
+     */
+    public Registration register(Runnable onDone, long readyTimeoutMillis) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            // Any address, as before: VitaLite may resolve localhost to IPv4 or IPv6
+            server.bind(new InetSocketAddress(0));
+            server.configureBlocking(false);
+        } catch (IOException e) {
+            closeQuietly(server);
+            throw e;
+        }
+
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        long deadline = readyTimeoutMillis > 0 ? System.currentTimeMillis() + readyTimeoutMillis : Long.MAX_VALUE;
+        Registration registration = new Registration(server, StagedInstall.hex(bytes), onDone, deadline);
+        submit(() -> {
+            try {
+                server.register(selector, SelectionKey.OP_ACCEPT, registration);
+            } catch (ClosedChannelException e) {
+                // Closed before it was registered
+            }
+        });
+        return registration;
+    }
+
+    private void submit(Runnable task) {
+        pending.add(task);
+        selector.wakeup();
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                selector.select(SELECT_MILLIS);
+                Runnable task;
+                while ((task = pending.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept(key);
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+                checkTimeouts();
+            } catch (IOException | RuntimeException e) {
+                // One bad connection must not stop the channel for every client
+                System.err.println("Launcher channel error: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept(SelectionKey key) throws IOException {
+        Registration registration = (Registration) key.attachment();
+        SocketChannel channel = ((ServerSocketChannel) key.channel()).accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(registration));
+    }
+
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (!connection.buffer.hasRemaining()) {
+                if (connection.buffer.capacity() >= MAX_LINE) {
+                    throw new IOException("line too long");
+                }
+                ByteBuffer larger = ByteBuffer.allocate(connection.buffer.capacity() * 2);
+                connection.buffer.flip();
+                larger.put(connection.buffer);
+                connection.buffer = larger;
+            }
+
+            int read = channel.read(connection.buffer);
+            if (read < 0) {
+                // A last line may come without a newline
+                ByteBuffer buffer = connection.buffer;
+                if (buffer.position() > 0) {
+                    String line = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).trim();
+                    if (!onLine(key, connection, line)) {
+                        return;
+                    }
+                }
+                disconnect(key, connection);
+                return;
+            }
+            connection.lastActivity = System.currentTimeMillis();
+
+            ByteBuffer buffer = connection.buffer;
+            buffer.flip();
+            int start = 0;
+            for (int i = 0; i < buffer.limit(); i++) {
+                if (buffer.get(i) == '\n') {
+                    String line = new String(buffer.array(), start, i - start, StandardCharsets.UTF_8).trim();
+                    start = i + 1;
+                    if (!onLine(key, connection, line)) {
+                        return;
+                    }
+                }
+            }
+            buffer.position(start);
+            buffer.compact();
+        } catch (IOException e) {
+            disconnect(key, connection);
+        }
+    }
+
+    /**
+     * @return false if the connection was closed
+     */
+    private boolean onLine(SelectionKey key, Connection connection, String line) {
+        if (connection.telemetry != null) {
+            TelemetryHub.receive(connection.telemetry, line);
+            return true;
+        }
+
+        Registration registration = connection.registration;
+        if (line.equals("Done")) {
+            disconnect(key, connection);
+            if (!registration.closed) {
+                registration.close();
+                if (registration.onDone != null) {
+                    // The callback may block (and exits the launcher), keep it off this thread
+                    CompletableFuture.runAsync(registration.onDone).exceptionally(e -> {
+                        e.printStackTrace();
+                        return null;
+                    });
+                }
+            }
+            return false;
+        }
+
+        if (line.startsWith("{")) {
+            connection.telemetry = TelemetryHub.open(line, registration.token);
+            if (connection.telemetry != null) {
+                return true;
+            }
+        }
+        disconnect(key, connection);
+        return false;
+    }
+
+    private void checkTimeouts() {
+        long now = System.currentTimeMillis();
+        for (SelectionKey key : new ArrayList<>(selector.keys())) {
+            if (!key.isValid()) {
+                continue;
+            }
+            Object attachment = key.attachment();
+            if (attachment instanceof Registration) {
+                Registration registration = (Registration) attachment;
+                if (now > registration.deadline) {
+                    System.err.println("VitaLite did not report back on port " + registration.getPort() + " in time");
+                    registration.closed = true;
+                    closeQuietly(registration.server);
+                }
+            } else if (attachment instanceof Connection) {
+                Connection connection = (Connection) attachment;
+                if (connection.telemetry == null ? now - connection.openedAt > IDENTIFY_TIMEOUT_MILLIS
+                        : now - connection.lastActivity > AGENT_IDLE_TIMEOUT_MILLIS) {
+                    disconnect(key, connection);
+                }
+            }
+        }
+    }
+
+    private void disconnect(SelectionKey key, Connection connection) {
+        key.cancel();
+        closeQuietly(key.channel());
+        if (connection.telemetry != null) {
+            TelemetryHub.close(connection.telemetry);
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -1,14 +1,56 @@
 package com.tonic.launcher.util;
 
+import com.tonic.launcher.LauncherMain;
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.configuration2.io.FileHandler;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The launcher's saved settings, shared by the whole launcher through {@link #get()}.
+ *
+ * The file is read once into an immutable snapshot of typed values, so getters are
+ * plain field reads. Setters swap in a new snapshot and schedule a save: changes made within
+ * {@link #SAVE_DELAY_MILLIS} of each other are written together, to a temporary file that
+ * replaces the config in one rename. Pending changes are also saved when the launcher exits.
+ * The file stays in the Commons Configuration properties format it always had.
+ */
 public class LauncherConfig
 {
-    private ConfigManager config = new ConfigManager("LauncherConfig");
+    private static final Path CONFIG_FILE = LauncherMain.VITA_DIR.resolve("LauncherConfig");
+    private static final long SAVE_DELAY_MILLIS = 500;
+    private static LauncherConfig instance;
+
+    private final Path file;
+    // Held while a snapshot is taken and written, so saves land in order
+    private final Object saveLock = new Object();
+    private volatile Snapshot snapshot;
+    private ScheduledFuture<?> pendingSave;
 
-    // Default JVM arguments
+    // Default JVM arguments, GC and JIT come from the JVM profile
     private static final List<String> DEFAULT_JVM_ARGS = Arrays.asList(
+            "-XX:+DisableAttachMechanism",
+            "-Drunelite.launcher.blacklistedDlls=RTSSHooks.dll,RTSSHooks64.dll,NahimicOSD.dll,NahimicMSIOSD.dll,Nahimic2OSD.dll,Nahimic2DevProps.dll,k_fps32.dll,k_fps64.dll,SS2DevProps.dll,SS2OSD.dll,GTIII-OSD64-GL.dll,GTIII-OSD64-VK.dll,GTIII-OSD64.dll"
+    );
+    // Saved by earlier launchers as the defaults, replaced by the defaults above when read
+    private static final List<String> LEGACY_DEFAULT_JVM_ARGS = Arrays.asList(
             "-XX:+DisableAttachMechanism",
             "-Drunelite.launcher.blacklistedDlls=RTSSHooks.dll,RTSSHooks64.dll,NahimicOSD.dll,NahimicMSIOSD.dll,Nahimic2OSD.dll,Nahimic2DevProps.dll,k_fps32.dll,k_fps64.dll,SS2DevProps.dll,SS2OSD.dll,GTIII-OSD64-GL.dll,GTIII-OSD64-VK.dll,GTIII-OSD64.dll",
             "-XX:CompileThreshold=1500",
@@ -16,144 +58,283 @@ public class LauncherConfig
             "-XX:+UseStringDeduplication"
     );
 
+    /**
+     * @return the launcher's settings, read from disk on first use
+     */
+    public static synchronized LauncherConfig get()
+    {
+        if (instance == null) {
+            instance = new LauncherConfig(CONFIG_FILE);
+            Runtime.getRuntime().addShutdownHook(new Thread(instance::save, "LauncherConfigSave"));
+        }
+        return instance;
+    }
+
+    /**
+     * Reads a config file, see {@link #get()} for the launcher's own.
+     * @param file properties file, a missing one means defaults
+     */
+    LauncherConfig(Path file)
+    {
+        this.file = file;
+        this.snapshot = new Snapshot(load(file));
+    }
+
     public boolean isNoMusic()
     {
-        return config.getBooleanOrDefault("noMusic", false);
+        return snapshot.noMusic;
     }
 
     public void setNoMusic(boolean noMusic)
     {
-        config.setProperty("noMusic", noMusic);
+        set("noMusic", String.valueOf(noMusic));
     }
 
     public boolean isNoSound()
     {
-        return config.getBooleanOrDefault("noSound", false);
+        return snapshot.noSound;
     }
 
     public void setNoSound(boolean noSound)
     {
-        config.setProperty("noSound", noSound);
+        set("noSound", String.valueOf(noSound));
     }
 
     public boolean isMin()
     {
-        return config.getBooleanOrDefault("min", false);
+        return snapshot.min;
     }
 
     public void setMin(boolean min)
     {
-        config.setProperty("min", min);
+        set("min", String.valueOf(min));
     }
 
     public boolean isNoPlugins()
     {
-        return config.getBooleanOrDefault("noPlugins", false);
+        return snapshot.noPlugins;
     }
 
     public void setNoPlugins(boolean noPlugins)
     {
-        config.setProperty("noPlugins", noPlugins);
+        set("noPlugins", String.valueOf(noPlugins));
     }
 
     public boolean isRsDump()
     {
-        return config.getBooleanOrDefault("rsDump", false);
+        return snapshot.rsDump;
     }
 
     public void setRsDump(boolean rsDump)
     {
-        config.setProperty("rsDump", rsDump);
+        set("rsDump", String.valueOf(rsDump));
     }
 
     public String getRsDumpPath()
     {
-        return config.getStringOrDefault("rsDumpPath", "");
+        return snapshot.rsDumpPath;
     }
 
     public void setRsDumpPath(String path)
     {
-        config.setProperty("rsDumpPath", path);
+        set("rsDumpPath", path);
     }
 
     public boolean isIncognito()
     {
-        return config.getBooleanOrDefault("incognito", false);
+        return snapshot.incognito;
     }
 
     public void setIncognito(boolean incognito)
     {
-        config.setProperty("incognito", incognito);
+        set("incognito", String.valueOf(incognito));
     }
 
     public boolean isProxy()
     {
-        return config.getBooleanOrDefault("proxy", false);
+        return snapshot.proxy;
     }
 
     public void setProxy(boolean proxy)
     {
-        config.setProperty("proxy", proxy);
+        set("proxy", String.valueOf(proxy));
     }
 
     public String getProxyData()
     {
-        return config.getStringOrDefault("proxyData", "");
+        return snapshot.proxyData;
     }
 
     public void setProxyData(String proxyData)
     {
-        config.setProperty("proxyData", proxyData);
+        set("proxyData", proxyData);
     }
 
     public boolean isMouseHook()
     {
-        return config.getBooleanOrDefault("mouseHook", false);
+        return snapshot.mouseHook;
     }
 
     public void setMouseHook(boolean hook)
     {
-        config.setProperty("mouseHook", hook);
+        set("mouseHook", String.valueOf(hook));
     }
 
     public String getLoginString()
     {
-        return config.getStringOrDefault("loginString", "");
+        return snapshot.loginString;
     }
 
     public void setLoginString(String loginString)
     {
-        config.setProperty("loginString", loginString);
+        set("loginString", loginString);
     }
 
     public String getLoginType()
     {
-        return config.getStringOrDefault("loginType", "Legacy");
+        return snapshot.loginType;
     }
 
     public void setLoginType(String loginType)
     {
-        config.setProperty("loginType", loginType);
+        set("loginType", loginType);
     }
 
     public boolean isMaxMemoryEnabled()
     {
-        return config.getBooleanOrDefault("maxMemoryEnabled", false);
+        return snapshot.maxMemoryEnabled;
     }
 
     public void setMaxMemoryEnabled(boolean enabled)
     {
-        config.setProperty("maxMemoryEnabled", enabled);
+        set("maxMemoryEnabled", String.valueOf(enabled));
     }
 
     public int getMaxMemoryValue()
     {
-        return config.getIntOrDefault("maxMemoryValue", 768);
+        return snapshot.maxMemoryValue;
     }
 
     public void setMaxMemoryValue(int value)
     {
-        config.setProperty("maxMemoryValue", value);
+        set("maxMemoryValue", String.valueOf(value));
+    }
+
+    /**
+     * @return GC and JIT preset for the client JVM, see {@link JvmProfile}
+     */
+    public JvmProfile getJvmProfile()
+    {
+        return snapshot.jvmProfile;
+    }
+
+    public void setJvmProfile(JvmProfile profile)
+    {
+        set("jvmProfile", profile.name());
+    }
+
+    /**
+     * @return which runtime launches VitaLite, see {@link RuntimeDiscovery}
+     */
+    public RuntimeDiscovery.Policy getRuntimePolicy()
+    {
+        return snapshot.runtimePolicy;
+    }
+
+    public void setRuntimePolicy(RuntimeDiscovery.Policy policy)
+    {
+        set("runtimePolicy", policy.name());
+    }
+
+    /**
+     * @return whether memory options are planned from the host's memory instead of the Max Memory setting
+     */
+    public boolean isAutoMemory()
+    {
+        return snapshot.autoMemory;
+    }
+
+    public void setAutoMemory(boolean enabled)
+    {
+        set("autoMemory", String.valueOf(enabled));
+    }
+
+    /**
+     * @return whether the launched JVM uses an AppCDS archive, see {@link CdsManager}
+     */
+    public boolean isAppCdsEnabled()
+    {
+        return snapshot.appCds;
+    }
+
+    public void setAppCdsEnabled(boolean enabled)
+    {
+        set("appCds", String.valueOf(enabled));
+    }
+
+    /**
+     * @return whether a pre-started standby JVM is kept for the next launch, see {@link StandbyManager}
+     */
+    public boolean isStandbyEnabled()
+    {
+        return snapshot.standby;
+    }
+
+    public void setStandbyEnabled(boolean enabled)
+    {
+        set("standby", String.valueOf(enabled));
+    }
+
+    /**
+     * @return whether launched clients stream metrics to the launcher's monitor, see {@link TelemetryHub}
+     */
+    public boolean isTelemetryEnabled()
+    {
+        return snapshot.telemetry;
+    }
+
+    public void setTelemetryEnabled(boolean enabled)
+    {
+        set("telemetry", String.valueOf(enabled));
+    }
+
+    /**
+     * @return clients a batch launch lets boot at the same time, see {@link BatchLauncher}
+     */
+    public int getBatchMaxBoots()
+    {
+        return snapshot.batchMaxBoots;
+    }
+
+    public void setBatchMaxBoots(int value)
+    {
+        set("batchMaxBoots", String.valueOf(value));
+    }
+
+    /**
+     * @return minimum time between two client starts of a batch launch in ms
+     */
+    public int getBatchStagger()
+    {
+        return snapshot.batchStagger;
+    }
+
+    public void setBatchStagger(int value)
+    {
+        set("batchStagger", String.valueOf(value));
+    }
+
+    /**
+     * @return size cap of the local artifact store in MB, see {@link ArtifactStore}
+     */
+    public int getStoreMaxSize()
+    {
+        return snapshot.storeMaxSize;
+    }
+
+    public void setStoreMaxSize(int value)
+    {
+        set("storeMaxSize", String.valueOf(value));
     }
 
     /**
@@ -162,12 +343,7 @@ public class LauncherConfig
      */
     public List<String> getJvmArgs()
     {
-        List<String> args = config.getStringList("jvmArgs");
-        // If no args saved, return defaults
-        if (args.isEmpty()) {
-            return DEFAULT_JVM_ARGS;
-        }
-        return args;
+        return snapshot.jvmArgs;
     }
 
     /**
@@ -176,7 +352,7 @@ public class LauncherConfig
      */
     public void setJvmArgs(List<String> args)
     {
-        config.setList("jvmArgs", args);
+        set("jvmArgs", args != null ? args : Collections.emptyList());
     }
 
     /**
@@ -187,4 +363,196 @@ public class LauncherConfig
     {
         return DEFAULT_JVM_ARGS;
     }
+
+    /**
+     * Writes pending changes now instead of after the save delay.
+     */
+    public void save()
+    {
+        synchronized (saveLock) {
+            Snapshot saving;
+            synchronized (this) {
+                if (pendingSave == null) {
+                    return;
+                }
+                pendingSave.cancel(false);
+                pendingSave = null;
+                saving = snapshot;
+            }
+            try {
+                write(file, saving.values);
+            } catch (IOException e) {
+                System.err.println("Failed to save the launcher config: " + e.getMessage());
+            }
+        }
+    }
+
+    private void set(String key, String value)
+    {
+        set(key, value != null ? Collections.singletonList(value) : Collections.emptyList());
+    }
+
+    private synchronized void set(String key, List<String> values)
+    {
+        Map<String, List<String>> changed = new LinkedHashMap<>(snapshot.values);
+        if (values.isEmpty()) {
+            changed.remove(key);
+        } else {
+            changed.put(key, List.copyOf(values));
+        }
+        if (changed.equals(snapshot.values)) {
+            // Document listeners also fire for text that did not change
+            return;
+        }
+        snapshot = new Snapshot(changed);
+        if (pendingSave == null) {
+            pendingSave = Saver.EXECUTOR.schedule(this::save, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Reads every key of a properties file, the values of repeated keys in order.
+     */
+    private static Map<String, List<String>> load(Path file)
+    {
+        Map<String, List<String>> values = new LinkedHashMap<>();
+        if (!Files.isRegularFile(file)) {
+            return values;
+        }
+        PropertiesConfiguration properties = new PropertiesConfiguration();
+        // ISO-8859-1 as the configuration builder used to read and write it
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            new FileHandler(properties).load(reader);
+            for (Iterator<String> keys = properties.getKeys(); keys.hasNext(); ) {
+                String key = keys.next();
+                values.put(key, List.copyOf(properties.getList(String.class, key)));
+            }
+        } catch (IOException | ConfigurationException e) {
+            System.err.println("Failed to read the launcher config, using defaults: " + e.getMessage());
+        }
+        return values;
+    }
+
+    private static void write(Path file, Map<String, List<String>> values) throws IOException
+    {
+        PropertiesConfiguration properties = new PropertiesConfiguration();
+        values.forEach((key, list) -> list.forEach(value -> properties.addProperty(key, value)));
+
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.ISO_8859_1)) {
+            new FileHandler(properties).save(writer);
+        } catch (ConfigurationException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        StagedInstall.commitFile(temp, file);
+    }
+
+    /**
+     * Typed values of one version of the config, parsed when the file is read or a setting changes.
+     */
+    private static final class Snapshot
+    {
+        private final Map<String, List<String>> values;
+        private final boolean noMusic;
+        private final boolean noSound;
+        private final boolean min;
+        private final boolean noPlugins;
+        private final boolean rsDump;
+        private final String rsDumpPath;
+        private final boolean incognito;
+        private final boolean proxy;
+        private final String proxyData;
+        private final boolean mouseHook;
+        private final String loginString;
+        private final String loginType;
+        private final boolean maxMemoryEnabled;
+        private final int maxMemoryValue;
+        private final boolean autoMemory;
+        private final boolean appCds;
+        private final boolean standby;
+        private final boolean telemetry;
+        private final int batchMaxBoots;
+        private final int batchStagger;
+        private final int storeMaxSize;
+        private final RuntimeDiscovery.Policy runtimePolicy;
+        private final JvmProfile jvmProfile;
+        private final List<String> jvmArgs;
+
+        private Snapshot(Map<String, List<String>> values)
+        {
+            this.values = Collections.unmodifiableMap(values);
+            noMusic = getBoolean("noMusic", false);
+            noSound = getBoolean("noSound", false);
+            min = getBoolean("min", false);
+            noPlugins = getBoolean("noPlugins", false);
+            rsDump = getBoolean("rsDump", false);
+            rsDumpPath = getString("rsDumpPath", "");
+            incognito = getBoolean("incognito", false);
+            proxy = getBoolean("proxy", false);
+            proxyData = getString("proxyData", "");
+            mouseHook = getBoolean("mouseHook", false);
+            loginString = getString("loginString", "");
+            loginType = getString("loginType", "Legacy");
+            maxMemoryEnabled = getBoolean("maxMemoryEnabled", false);
+            maxMemoryValue = getInt("maxMemoryValue", 768);
+            autoMemory = getBoolean("autoMemory", false);
+            appCds = getBoolean("appCds", true);
+            standby = getBoolean("standby", false);
+            telemetry = getBoolean("telemetry", false);
+            batchMaxBoots = getInt("batchMaxBoots", 2);
+            batchStagger = getInt("batchStagger", 3000);
+            storeMaxSize = getInt("storeMaxSize", 1024);
+            runtimePolicy = RuntimeDiscovery.Policy.parse(getString("runtimePolicy", null));
+            jvmProfile = JvmProfile.parse(getString("jvmProfile", null));
+            List<String> args = values.get("jvmArgs");
+            // If no args saved, use defaults
+            jvmArgs = args != null && !args.equals(LEGACY_DEFAULT_JVM_ARGS) ? args : DEFAULT_JVM_ARGS;
+        }
+
+        private String getString(String key, String defaultValue)
+        {
+            List<String> list = values.get(key);
+            return list != null ? list.get(0) : defaultValue;
+        }
+
+        private boolean getBoolean(String key, boolean defaultValue)
+        {
+            String value = getString(key, null);
+            if (value == null) {
+                return defaultValue;
+            }
+            // The spellings Commons Configuration accepted
+            switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "true": case "yes": case "on": case "y": case "t":
+                    return true;
+                case "false": case "no": case "off": case "n": case "f":
+                    return false;
+                default:
+                    return defaultValue;
+            }
+        }
+
+        private int getInt(String key, int defaultValue)
+        {
+            String value = getString(key, null);
+            try {
+                return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+    }
+
+    /**
+     * Started with the first change, read-only launches never start it.
+     */
+    private static final class Saver
+    {
+        private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LauncherConfigSave");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 }
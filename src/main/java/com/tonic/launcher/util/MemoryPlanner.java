@@ -0,0 +1,227 @@
+package com.tonic.launcher.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the host's memory between the clients of a launch.
+ *
+ * The budget is the physical memory minus a reserve for the OS and everything else
+ * ({@link #RESERVE_FRACTION}, at least {@link #MIN_RESERVE_MB}), and never more than what
+ * is available right now, so clients that already run are accounted for. Every client is
+ * charged {@link #NON_HEAP_MB}, the metaspace and code cache caps the plan sets plus thread
+ * stacks and native memory; the rest is split as heap by profile weight. Profiles with a fixed {@code maxMemory} keep it.
+ * JVM options the user set themselves always win over the plan.
+ */
+public class MemoryPlanner {
+    private static final double RESERVE_FRACTION = 0.15;
+    private static final long MIN_RESERVE_MB = 1024;
+    private static final long MIN_HEAP_MB = 512;
+    private static final long MAX_HEAP_MB = 4096;
+    private static final long MIN_INITIAL_HEAP_MB = 128;
+    private static final long METASPACE_MB = 384;
+    private static final long CODE_CACHE_MB = 128;
+    // Thread stacks, GC structures and native buffers (AWT, OpenGL, direct buffers)
+    private static final long NATIVE_MB = 256;
+    private static final long NON_HEAP_MB = METASPACE_MB + CODE_CACHE_MB + NATIVE_MB;
+
+    /**
+     * Physical memory of this machine.
+     */
+    public static class Host {
+        private final long totalMb;
+        private final long availableMb;
+
+        public Host(long totalMb, long availableMb) {
+            this.totalMb = totalMb;
+            this.availableMb = availableMb;
+        }
+
+        /**
+         * Reads the host's memory. On Linux "available" is MemAvailable, which unlike the
+         * free memory includes reclaimable caches.
+         */
+        public static Host detect() {
+            com.sun.management.OperatingSystemMXBean os =
+                    (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+            long total = os.getTotalPhysicalMemorySize() / (1024 * 1024);
+            long available = os.getFreePhysicalMemorySize() / (1024 * 1024);
+
+            Path meminfo = Path.of("/proc/meminfo");
+            if (Files.isReadable(meminfo)) {
+                try {
+                    for (String line : Files.readAllLines(meminfo)) {
+                        if (line.startsWith("MemAvailable:")) {
+                            available = Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024;
+                            break;
+                        }
+                    }
+                } catch (IOException | NumberFormatException ignored) {
+                }
+            }
+            return new Host(total, available);
+        }
+
+        public long getTotalMb() {
+            return totalMb;
+        }
+
+        public long getAvailableMb() {
+            return availableMb;
+        }
+    }
+
+    /**
+     * Memory settings for one client.
+     */
+    public static class Allocation {
+        private final String profile;
+        private final long heapMb;
+
+        private Allocation(String profile, long heapMb) {
+            this.profile = profile;
+            this.heapMb = heapMb;
+        }
+
+        public String getProfile() {
+            return profile;
+        }
+
+        public long getHeapMb() {
+            return heapMb;
+        }
+
+        public long getInitialHeapMb() {
+            return Math.min(heapMb, Math.max(MIN_INITIAL_HEAP_MB, heapMb / 4));
+        }
+
+        /**
+         * @param userArgs JVM arguments already on the command line
+         * @return the options of this allocation the user did not set themselves
+         */
+        public List<String> toJvmArgs(List<String> userArgs) {
+            List<String> args = new ArrayList<>();
+            if (!hasOption(userArgs, "-Xmx", "-XX:MaxHeapSize=")) {
+                args.add("-Xmx" + heapMb + "m");
+            }
+            if (!hasOption(userArgs, "-Xms", "-XX:InitialHeapSize=")) {
+                args.add("-Xms" + getInitialHeapMb() + "m");
+            }
+            if (!hasOption(userArgs, "-XX:MaxMetaspaceSize=")) {
+                args.add("-XX:MaxMetaspaceSize=" + METASPACE_MB + "m");
+            }
+            if (!hasOption(userArgs, "-XX:ReservedCodeCacheSize=")) {
+                args.add("-XX:ReservedCodeCacheSize=" + CODE_CACHE_MB + "m");
+            }
+            return args;
+        }
+
+        private static boolean hasOption(List<String> args, String... prefixes) {
+            for (String arg : args) {
+                for (String prefix : prefixes) {
+                    if (arg.startsWith(prefix)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The allocations of a launch.
+     */
+    public static class Plan {
+        private final Host host;
+        private final long budgetMb;
+        private final List<Allocation> allocations;
+        private final boolean overcommitted;
+
+        private Plan(Host host, long budgetMb, List<Allocation> allocations, boolean overcommitted) {
+            this.host = host;
+            this.budgetMb = budgetMb;
+            this.allocations = allocations;
+            this.overcommitted = overcommitted;
+        }
+
+        public long getBudgetMb() {
+            return budgetMb;
+        }
+
+        public List<Allocation> getAllocations() {
+            return allocations;
+        }
+
+        /**
+         * @return true if the clients need more than the budget even at the minimum heap
+         */
+        public boolean isOvercommitted() {
+            return overcommitted;
+        }
+
+        /**
+         * @return one line for the settings panel and the log
+         */
+        public String describe() {
+            long min = Long.MAX_VALUE;
+            long max = 0;
+            for (Allocation allocation : allocations) {
+                min = Math.min(min, allocation.heapMb);
+                max = Math.max(max, allocation.heapMb);
+            }
+            String heap = min == max ? min + " MB" : min + "-" + max + " MB";
+            String clients = allocations.size() == 1 ? "1 client: " + heap + " heap" : allocations.size() + " clients: " + heap + " heap each";
+            String text = clients + String.format(", %.1f of %.1f GB available", host.availableMb / 1024.0, host.totalMb / 1024.0);
+            return overcommitted ? text + " (not enough memory)" : text;
+        }
+    }
+
+    private MemoryPlanner() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * @param host     the machine's memory
+     * @param profiles clients of the launch
+     * @return one allocation per profile, in order
+     */
+    public static Plan plan(Host host, List<LaunchProfile> profiles) {
+        long reserve = Math.max(MIN_RESERVE_MB, (long) (host.totalMb * RESERVE_FRACTION));
+        long budget = Math.max(0, Math.min(host.totalMb - reserve, host.availableMb));
+
+        long heapBudget = budget - profiles.size() * NON_HEAP_MB;
+        double weights = 0;
+        for (LaunchProfile profile : profiles) {
+            if (profile.getMaxMemory() > 0) {
+                heapBudget -= profile.getMaxMemory();
+            } else {
+                weights += profile.getWeight();
+            }
+        }
+
+        boolean overcommitted = false;
+        List<Allocation> allocations = new ArrayList<>();
+        for (LaunchProfile profile : profiles) {
+            long heap;
+            if (profile.getMaxMemory() > 0) {
+                heap = profile.getMaxMemory();
+            } else {
+                heap = (long) (Math.max(0, heapBudget) * profile.getWeight() / weights);
+                if (heap < MIN_HEAP_MB) {
+                    overcommitted = true;
+                }
+                // Rounded down to 64 MB like the settings spinner
+                heap = Math.max(MIN_HEAP_MB, Math.min(MAX_HEAP_MB, heap / 64 * 64));
+            }
+            allocations.add(new Allocation(profile.getName(), heap));
+        }
+        if (heapBudget < 0) {
+            overcommitted = true;
+        }
+        return new Plan(host, budget, allocations, overcommitted);
+    }
+}
@@ -0,0 +1,147 @@
+package com.tonic.launcher.util;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The host's OS, CPU architecture and C library, named the way Adoptium names its builds.
+ *
+ * The architecture is the JVM's own {@code os.arch}, except on Windows on ARM, where an
+ * emulated x64 launcher would otherwise pick an emulated JDK too. Linux hosts with musl
+ * (Alpine) are told apart by the musl loader, without starting a process.
+ */
+public final class Platform {
+    private static volatile Platform current;
+
+    private final String os;
+    private final String arch;
+    private final boolean musl;
+
+    Platform(String os, String arch, boolean musl) {
+        this.os = os;
+        this.arch = arch;
+        this.musl = musl;
+    }
+
+    /**
+     * @return this host's platform, detected once per launcher run
+     */
+    public static Platform get() {
+        Platform platform = current;
+        if (platform == null) {
+            platform = detect();
+            current = platform;
+        }
+        return platform;
+    }
+
+    private static Platform detect() {
+        String name = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+        String arch = normalizeArch(System.getProperty("os.arch"));
+        if (name.contains("win")) {
+            // Set by Windows for the machine, also seen by emulated processes
+            String processor = System.getenv("PROCESSOR_IDENTIFIER");
+            if (processor != null && processor.toUpperCase(Locale.ROOT).startsWith("ARM")) {
+                arch = processor.contains("64") ? "aarch64" : "arm";
+            }
+            return new Platform("windows", arch, false);
+        } else if (name.contains("mac")) {
+            return new Platform("mac", arch, false);
+        }
+        return new Platform("linux", arch, detectMusl());
+    }
+
+    private static boolean detectMusl() {
+        if (Files.exists(Path.of("/etc/alpine-release"))) {
+            return true;
+        }
+        for (String dir : new String[]{"/lib", "/usr/lib"}) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(Path.of(dir), "ld-musl-*")) {
+                if (stream.iterator().hasNext()) {
+                    return true;
+                }
+            } catch (IOException | RuntimeException ignored) {
+                // No such directory
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Maps an {@code os.arch} or release file {@code OS_ARCH} value to Adoptium's name for it.
+     */
+    static String normalizeArch(String arch) {
+        String value = arch.toLowerCase(Locale.ROOT);
+        switch (value) {
+            case "amd64":
+            case "x86_64":
+            case "x64":
+                return "x64";
+            case "arm64":
+            case "aarch64":
+                return "aarch64";
+            case "i386":
+            case "i486":
+            case "i586":
+            case "i686":
+            case "x86":
+            case "x32":
+                return "x32";
+            case "arm":
+            case "armv7l":
+            case "aarch32":
+                return "arm";
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Adoptium builds that run here, best first: the native build, then the ones that still
+     * work through the OS's own compatibility layer (Rosetta, x64 emulation on Windows on ARM,
+     * gcompat on Alpine). Older JDK releases do not have every native build.
+     * @return {@code os/arch} pairs, e.g. {@code alpine-linux/aarch64}
+     */
+    public List<String> getCandidates() {
+        List<String> candidates = new ArrayList<>();
+        if (musl) {
+            candidates.add("alpine-linux/" + arch);
+        }
+        candidates.add(os + "/" + arch);
+        if (arch.equals("aarch64") && (os.equals("mac") || os.equals("windows"))) {
+            candidates.add(os + "/x64");
+        }
+        return candidates;
+    }
+
+    /**
+     * @return {@code windows}, {@code mac} or {@code linux}
+     */
+    public String getOs() {
+        return os;
+    }
+
+    /**
+     * @return Adoptium's architecture name, e.g. {@code x64} or {@code aarch64}
+     */
+    public String getArch() {
+        return arch;
+    }
+
+    /**
+     * @return whether this is a Linux host with musl instead of glibc
+     */
+    public boolean isMusl() {
+        return musl;
+    }
+
+    @Override
+    public String toString() {
+        return os + "-" + arch + (musl ? "-musl" : "");
+    }
+}
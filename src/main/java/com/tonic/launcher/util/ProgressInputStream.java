@@ -0,0 +1,64 @@
+package com.tonic.launcher.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * Counts the bytes read through it and reports the running total, used to derive
+ * progress from the compressed bytes consumed instead of from decompressed entries.
+ */
+class ProgressInputStream extends FilterInputStream {
+    private final LongConsumer listener;
+    private long count;
+
+    ProgressInputStream(InputStream in, LongConsumer listener) {
+        super(in);
+        this.listener = listener;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            advance(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            advance(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0) {
+            advance(skipped);
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * @return bytes read so far
+     */
+    long getCount() {
+        return count;
+    }
+
+    private void advance(long bytes) {
+        count += bytes;
+        listener.accept(count);
+    }
+}
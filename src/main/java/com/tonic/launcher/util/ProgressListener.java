@@ -0,0 +1,23 @@
+package com.tonic.launcher.util;
+
+/**
+ * Receives launch progress. The splash screen shows it, {@link ConsoleProgress} prints it
+ * for headless launches.
+ */
+public interface ProgressListener {
+    /**
+     * Report progress (0-100) for one pipeline stage. Stages run concurrently, so the
+     * overall progress is derived from the weighted progress of every stage.
+     */
+    void setStageProgress(LaunchStage stage, int progress, String text);
+
+    /**
+     * Set both stage and overall progress
+     */
+    void setProgress(int stageProgress, int overallProgress, String text);
+
+    /**
+     * Reports that the launch failed.
+     */
+    void setError(String message);
+}
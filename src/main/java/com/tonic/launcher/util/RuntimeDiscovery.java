@@ -0,0 +1,255 @@
+package com.tonic.launcher.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.tonic.launcher.LauncherMain;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds Java runtimes that are already installed, so a provisioned host does not need the
+ * launcher's own JDK download.
+ *
+ * Candidates come from {@code JAVA_HOME}, the {@code java} executables on {@code PATH} and
+ * the usual install roots of each OS. Each one is probed with {@link JavaRuntime#probe}
+ * and must match this host's architecture. The {@link Policy} decides which runtime, if
+ * any, replaces the launcher's JDK.
+ *
+ * The scan and its pick are kept in {@code VITA_DIR/runtimes.json}. Later launches reuse the
+ * pick while its release file is unchanged, and scan again once a day to notice new installs.
+ */
+public final class RuntimeDiscovery {
+    private static final Path INDEX_FILE = LauncherMain.VITA_DIR.resolve("runtimes.json");
+    private static final long RESCAN_MILLIS = 24 * 60 * 60 * 1000L;
+    // The launcher's own JDK and the version VitaLite is built for
+    static final int BUNDLED_FEATURE = 11;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    /**
+     * Which runtime launches VitaLite.
+     */
+    public enum Policy {
+        /** Always the launcher's own JDK 11, downloaded on first launch */
+        BUNDLED("Launcher's JDK 11"),
+        /** An installed JDK 11, otherwise the launcher's own */
+        COMPATIBLE("Installed JDK 11"),
+        /** The newest installed LTS from 11 up, otherwise the launcher's own */
+        NEWEST_LTS("Newest installed LTS");
+
+        private final String label;
+
+        Policy(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * @return the policy named {@code name}, or {@link #COMPATIBLE} if there is none
+         */
+        public static Policy parse(String name) {
+            for (Policy policy : values()) {
+                if (policy.name().equalsIgnoreCase(name)) {
+                    return policy;
+                }
+            }
+            return COMPATIBLE;
+        }
+    }
+
+    private RuntimeDiscovery() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Picks the installed runtime for VitaLite under {@code policy}.
+     * @return the runtime, or null to use the launcher's own JDK
+     */
+    public static JavaRuntime select(Policy policy) {
+        if (policy == Policy.BUNDLED) {
+            return null;
+        }
+
+        Index index = loadIndex();
+        if (index != null && policy.name().equals(index.policy)
+                && System.currentTimeMillis() - index.scannedAt < RESCAN_MILLIS
+                && (index.selected == null || index.selected.isCurrent())) {
+            return index.selected;
+        }
+
+        try (LaunchTrace.Span ignored = LaunchTrace.begin("jdk.discover")) {
+            Index fresh = new Index();
+            fresh.policy = policy.name();
+            fresh.scannedAt = System.currentTimeMillis();
+            fresh.runtimes = scan();
+            fresh.selected = choose(fresh.runtimes, policy);
+            saveIndex(fresh);
+            return fresh.selected;
+        }
+    }
+
+    /**
+     * @return every usable runtime for this host's architecture, without the launcher's own JDK
+     */
+    public static List<JavaRuntime> scan() {
+        List<JavaRuntime> runtimes = new ArrayList<>();
+        Set<Path> seen = new LinkedHashSet<>();
+        Path bundled = LauncherMain.JDK_DIR.toAbsolutePath();
+        try {
+            bundled = bundled.toRealPath();
+        } catch (IOException ignored) {
+            // Not installed
+        }
+        for (Path candidate : candidates()) {
+            Path home;
+            try {
+                home = candidate.toRealPath();
+            } catch (IOException e) {
+                continue;
+            }
+            if (!seen.add(home) || home.startsWith(bundled)) {
+                continue;
+            }
+            JavaRuntime runtime = JavaRuntime.probe(home);
+            if (runtime != null && matchesHostArch(runtime.getArch())) {
+                runtimes.add(runtime);
+            }
+        }
+        return runtimes;
+    }
+
+    static JavaRuntime choose(List<JavaRuntime> runtimes, Policy policy) {
+        Comparator<JavaRuntime> newest = Comparator.comparingInt(JavaRuntime::getFeature)
+                .thenComparing(JavaRuntime::getVersion, JavaRuntime::compareVersions);
+        return runtimes.stream()
+                .filter(runtime -> policy == Policy.NEWEST_LTS ? isLts(runtime.getFeature()) : runtime.getFeature() == BUNDLED_FEATURE)
+                .max(newest)
+                .orElse(null);
+    }
+
+    /**
+     * @return whether {@code feature} is a long-term support release: 11, 17, then every fourth
+     */
+    static boolean isLts(int feature) {
+        return feature == 11 || (feature >= 17 && (feature - 17) % 4 == 0);
+    }
+
+    private static List<Path> candidates() {
+        List<Path> candidates = new ArrayList<>();
+        String javaHome = System.getenv("JAVA_HOME");
+        if (javaHome != null && !javaHome.isBlank()) {
+            candidates.add(Path.of(javaHome));
+        }
+
+        String path = System.getenv("PATH");
+        if (path != null) {
+            String os = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+            String exe = os.contains("win") ? "java.exe" : "java";
+            for (String dir : path.split(File.pathSeparator)) {
+                try {
+                    Path java = Path.of(dir, exe);
+                    if (Files.isRegularFile(java)) {
+                        // bin/java of a runtime, often through alternatives symlinks
+                        Path bin = java.toRealPath().getParent();
+                        if (bin != null && bin.getParent() != null) {
+                            candidates.add(bin.getParent());
+                        }
+                    }
+                } catch (IOException | RuntimeException ignored) {
+                    // Not a usable PATH entry
+                }
+            }
+        }
+
+        for (Path root : installRoots()) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, Files::isDirectory)) {
+                for (Path dir : stream) {
+                    candidates.add(dir);
+                    // macOS bundles
+                    candidates.add(dir.resolve("Contents").resolve("Home"));
+                }
+            } catch (IOException | RuntimeException ignored) {
+                // Root does not exist on this host
+            }
+        }
+        return candidates;
+    }
+
+    private static List<Path> installRoots() {
+        String os = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+        String userHome = System.getProperty("user.home");
+        List<Path> roots = new ArrayList<>();
+        if (os.contains("win")) {
+            for (String env : new String[]{"ProgramFiles", "ProgramW6432"}) {
+                String programFiles = System.getenv(env);
+                if (programFiles == null) {
+                    continue;
+                }
+                for (String vendor : new String[]{"Java", "Eclipse Adoptium", "Eclipse Foundation", "AdoptOpenJDK",
+                        "Microsoft", "Zulu", "Amazon Corretto", "BellSoft"}) {
+                    roots.add(Path.of(programFiles, vendor));
+                }
+            }
+        } else if (os.contains("mac")) {
+            roots.add(Path.of("/Library/Java/JavaVirtualMachines"));
+            roots.add(Path.of(userHome, "Library", "Java", "JavaVirtualMachines"));
+        } else {
+            roots.add(Path.of("/usr/lib/jvm"));
+            roots.add(Path.of("/usr/java"));
+            roots.add(Path.of("/opt/java"));
+        }
+        roots.add(Path.of(userHome, ".sdkman", "candidates", "java"));
+        roots.add(Path.of(userHome, ".jdks"));
+        return roots;
+    }
+
+    /**
+     * @param arch OS_ARCH of a release file, empty if unknown
+     */
+    private static boolean matchesHostArch(String arch) {
+        return arch.isEmpty() || Platform.normalizeArch(arch).equals(Platform.normalizeArch(System.getProperty("os.arch")));
+    }
+
+    private static Index loadIndex() {
+        try {
+            if (Files.isRegularFile(INDEX_FILE)) {
+                return GSON.fromJson(Files.readString(INDEX_FILE, StandardCharsets.UTF_8), Index.class);
+            }
+        } catch (IOException | RuntimeException e) {
+            // A corrupt index only means scanning again
+        }
+        return null;
+    }
+
+    private static void saveIndex(Index index) {
+        try {
+            Files.createDirectories(INDEX_FILE.getParent());
+            Path temp = INDEX_FILE.resolveSibling("runtimes.json.tmp");
+            Files.writeString(temp, GSON.toJson(index), StandardCharsets.UTF_8);
+            StagedInstall.commitFile(temp, INDEX_FILE);
+        } catch (IOException e) {
+            System.err.println("Failed to save the runtime index: " + e.getMessage());
+        }
+    }
+
+    private static class Index {
+        String policy;
+        long scannedAt;
+        List<JavaRuntime> runtimes = new ArrayList<>();
+        // Null when no installed runtime fits the policy
+        JavaRuntime selected;
+    }
+}
@@ -0,0 +1,260 @@
+package com.tonic.launcher.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Crash-safe installs: content is prepared next to its final location, verified, flushed to
+ * disk and only then renamed into place, with a completion marker written last. An install
+ * that was interrupted at any point has no marker and is simply redone.
+ */
+public final class StagedInstall {
+    /**
+     * Name of the completion marker inside an installed directory.
+     */
+    public static final String MARKER_FILE = ".install.json";
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private StagedInstall() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Completion marker of an install.
+     */
+    public static class Marker {
+        private String artifact;
+        private String version;
+        private String sha256;
+        private boolean verified;
+        private long installedAt;
+
+        public Marker(String artifact, String version, String sha256, boolean verified) {
+            this.artifact = artifact;
+            this.version = version;
+            this.sha256 = sha256;
+            this.verified = verified;
+            this.installedAt = System.currentTimeMillis();
+        }
+
+        public String getArtifact() {
+            return artifact;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * @return SHA-256 of the installed artifact (the downloaded archive for directories)
+         */
+        public String getSha256() {
+            return sha256;
+        }
+
+        /**
+         * @return whether the SHA-256 was checked against a published checksum
+         */
+        public boolean isVerified() {
+            return verified;
+        }
+
+        public long getInstalledAt() {
+            return installedAt;
+        }
+    }
+
+    /**
+     * @param target final install location
+     * @return the sibling directory an install of {@code target} is prepared in
+     */
+    public static Path stagingDir(Path target) {
+        return target.resolveSibling(target.getFileName() + ".staging");
+    }
+
+    /**
+     * @param markerFile marker file to read
+     * @return the marker, or null if there is none or it is unreadable
+     */
+    public static Marker readMarker(Path markerFile) {
+        if (!Files.isRegularFile(markerFile)) {
+            return null;
+        }
+        try {
+            return GSON.fromJson(Files.readString(markerFile), Marker.class);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a marker atomically and durably.
+     * @param markerFile marker file to write
+     * @param marker marker content
+     * @throws IOException if writing fails
+     */
+    public static void writeMarker(Path markerFile, Marker marker) throws IOException {
+        Path temp = markerFile.resolveSibling(markerFile.getFileName() + ".tmp");
+        Files.writeString(temp, GSON.toJson(marker), StandardCharsets.UTF_8);
+        commitFile(temp, markerFile);
+    }
+
+    /**
+     * Replaces {@code target} with a fully prepared {@code staging} directory. The previous
+     * directory is moved aside first and deleted once the new one is in place.
+     * @param staging prepared directory, a sibling of target
+     * @param target final location
+     * @throws IOException if a rename fails, e.g. because files in target are in use
+     */
+    public static void commitDirectory(Path staging, Path target) throws IOException {
+        fsyncDirectory(staging);
+
+        Path old = target.resolveSibling(target.getFileName() + ".old");
+        deleteRecursive(old);
+        if (Files.exists(target)) {
+            try {
+                move(target, old);
+            } catch (IOException e) {
+                throw new IOException("Could not replace " + target + ", is a client still running from it?", e);
+            }
+        }
+        move(staging, target);
+        fsyncDirectory(target.getParent());
+
+        deleteRecursive(old);
+    }
+
+    /**
+     * Flushes a staged file to disk and renames it over {@code target}.
+     * @param staged prepared file, on the same file system as target
+     * @param target final location
+     * @throws IOException if flushing or renaming fails
+     */
+    public static void commitFile(Path staged, Path target) throws IOException {
+        fsync(staged);
+        move(staged, target);
+        fsyncDirectory(target.getParent());
+    }
+
+    /**
+     * Forces a file's content to disk.
+     * @param file file to flush
+     * @throws IOException if flushing fails
+     */
+    public static void fsync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Forces a directory entry to disk where the platform allows it (not on Windows).
+     */
+    private static void fsyncDirectory(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | RuntimeException ignored) {
+            // Best effort, directories cannot be opened on every platform
+        }
+    }
+
+    /**
+     * @param file file to hash
+     * @return lower case hex SHA-256 of the file
+     * @throws IOException if reading fails
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * @return a new SHA-256 digest
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @param bytes bytes to encode
+     * @return lower case hex string
+     */
+    public static String hex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Checks a computed SHA-256 against the published one.
+     * @param what artifact name for the error message
+     * @param expected published checksum, or null if none is available
+     * @param actual computed checksum
+     * @throws IOException on mismatch
+     */
+    public static void verify(String what, String expected, String actual) throws IOException {
+        if (expected == null) {
+            System.out.println("No published checksum for " + what + ", skipping verification");
+            return;
+        }
+        if (!expected.equalsIgnoreCase(actual)) {
+            throw new IOException("Checksum mismatch for " + what + ": expected " + expected + ", got " + actual);
+        }
+        System.out.println("Verified SHA-256 of " + what);
+    }
+
+    /**
+     * Deletes a file or directory tree if it exists.
+     * @param path path to delete
+     * @throws IOException if deleting fails
+     */
+    public static void deleteRecursive(Path path) throws IOException {
+        if (Files.isDirectory(path, java.nio.file.LinkOption.NOFOLLOW_LINKS)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path child : stream) {
+                    deleteRecursive(child);
+                }
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.tonic.launcher.util;
+
+import com.tonic.launcher.LauncherMain;
+import com.tonic.launcher.agent.StandbyMain;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * Keeps one pre-started client JVM ("standby") on the managed JDK, so a launch only has to
+ * hand over VitaLite's program arguments instead of booting a JVM and loading VitaLite.
+ *
+ * The standby runs {@link StandbyMain} from the {@link AgentJar} with the configured JVM
+ * arguments, preloads a private copy of VitaLite.jar (so updates can replace the real jar
+ * while it runs) and parks on a loopback socket published in
+ * {@code VITA_DIR/standby/standby.properties}. A standby started with other JVM arguments,
+ * another JDK or another VitaLite.jar does not match the launch and is shut down.
+ * Standby output goes to {@code standby-<time>.log} in the same directory.
+ */
+public final class StandbyManager {
+    private static final Path STANDBY_DIR = LauncherMain.VITA_DIR.resolve("standby");
+    private static final Path STATE_FILE = STANDBY_DIR.resolve(StandbyMain.STATE_FILE);
+    private static final Path LOCK_FILE = STANDBY_DIR.resolve(StandbyMain.LOCK_FILE);
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final int REPLY_TIMEOUT_MILLIS = 5000;
+    private static final int KEEP_LOGS = 5;
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private StandbyManager() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * A parked standby JVM.
+     */
+    public static class Standby {
+        private final int port;
+        private final String token;
+        private final long pid;
+
+        private Standby(int port, String token, long pid) {
+            this.port = port;
+            this.token = token;
+            this.pid = pid;
+        }
+
+        public long getPid() {
+            return pid;
+        }
+
+        /**
+         * Hands the launch over; from here on the standby is the client.
+         * @param programArgs VitaLite's program arguments, as they follow {@code -jar VitaLite.jar}
+         * @throws IOException if the standby did not take the launch
+         */
+        public void handoff(List<String> programArgs) throws IOException {
+            request(StandbyMain.HANDOFF, programArgs);
+        }
+
+        private void shutdown() {
+            try {
+                request(StandbyMain.SHUTDOWN, null);
+            } catch (IOException e) {
+                // Already gone, or not answering
+                ProcessHandle.of(pid).ifPresent(ProcessHandle::destroy);
+            }
+        }
+
+        private void request(String command, List<String> programArgs) throws IOException {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+                socket.setSoTimeout(REPLY_TIMEOUT_MILLIS);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeUTF(command);
+                out.writeUTF(token);
+                if (programArgs != null) {
+                    out.writeInt(programArgs.size());
+                    for (String arg : programArgs) {
+                        out.writeUTF(arg);
+                    }
+                }
+                out.flush();
+
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                String reply = in.readUTF();
+                if (!reply.equals("OK")) {
+                    throw new IOException("Standby JVM refused " + command + ": " + reply);
+                }
+                in.readLong();
+            }
+        }
+    }
+
+    /**
+     * Finds a parked standby started for these JVM arguments. A standby that does not match
+     * is shut down.
+     * @param jvmArgs JVM arguments of this launch
+     * @return the standby, or null if there is none to use
+     */
+    public static Standby find(List<String> jvmArgs) {
+        Properties state = readState();
+        if (state == null) {
+            return null;
+        }
+
+        Standby standby;
+        try {
+            standby = new Standby(Integer.parseInt(state.getProperty("port")), state.getProperty("token"),
+                    Long.parseLong(state.getProperty("pid")));
+        } catch (RuntimeException e) {
+            deleteState();
+            return null;
+        }
+        if (!ProcessHandle.of(standby.pid).map(ProcessHandle::isAlive).orElse(false)) {
+            deleteState();
+            return null;
+        }
+
+        try {
+            if (computeKey(jvmArgs).equals(state.getProperty("key"))) {
+                return standby;
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to check the standby JVM: " + e.getMessage());
+        }
+        System.out.println("Standby JVM (pid " + standby.pid + ") is out of date, shutting it down");
+        standby.shutdown();
+        return null;
+    }
+
+    /**
+     * Shuts down a parked standby, if there is one.
+     */
+    public static void stop() {
+        Properties state = readState();
+        if (state == null) {
+            return;
+        }
+        try {
+            new Standby(Integer.parseInt(state.getProperty("port")), state.getProperty("token"),
+                    Long.parseLong(state.getProperty("pid"))).shutdown();
+        } catch (RuntimeException e) {
+            deleteState();
+        }
+    }
+
+    /**
+     * Starts a new standby in the background unless one is running already. The standby
+     * outlives the launcher.
+     * @param jvmArgs JVM arguments for the standby, the same that {@link #find(List)} gets
+     */
+    public static void start(List<String> jvmArgs) {
+        try {
+            Files.createDirectories(STANDBY_DIR);
+            if (isRunning()) {
+                return;
+            }
+
+            File jarFile = new File(LauncherMain.VITA_DIR + File.separator + "VitaLite.jar");
+            List<String> manifestArgs = getManifestArgs(jarFile);
+            if (manifestArgs == null) {
+                System.out.println("VitaLite.jar needs a launcher agent, standby mode is not supported");
+                return;
+            }
+
+            String key = computeKey(jvmArgs);
+            Path copy = STANDBY_DIR.resolve("VitaLite-" + key + ".jar");
+            if (!Files.isRegularFile(copy)) {
+                Path temp = STANDBY_DIR.resolve("VitaLite-" + key + ".jar.tmp");
+                Files.copy(jarFile.toPath(), temp, StandardCopyOption.REPLACE_EXISTING);
+                StagedInstall.commitFile(temp, copy);
+            }
+            cleanup(copy);
+
+            List<String> command = new ArrayList<>();
+            command.add(JDKManager.getJavaExecutable().toString());
+            command.addAll(jvmArgs);
+            command.addAll(manifestArgs);
+            command.add("-cp");
+            command.add(AgentJar.get() + File.pathSeparator + copy);
+            command.add(StandbyMain.class.getName());
+            command.add(STANDBY_DIR.toString());
+            command.add(key);
+            command.add(copy.toString());
+            command.add(jarFile.getAbsolutePath());
+
+            Path log = STANDBY_DIR.resolve("standby-" + LocalDateTime.now().format(FILE_TIME) + ".log");
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(log.toFile())
+                    .start();
+            System.out.println("Started a standby JVM (pid " + process.pid() + ")");
+        } catch (IOException e) {
+            System.err.println("Failed to start a standby JVM: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return true if a standby holds the lock, starting or parked
+     */
+    private static boolean isRunning() throws IOException {
+        try (FileChannel channel = FileChannel.open(LOCK_FILE, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return true;
+            }
+            lock.release();
+            return false;
+        }
+    }
+
+    /**
+     * Options {@code java -jar} takes from the manifest, which a class path launch has to
+     * pass explicitly.
+     * @return the options, or null if the manifest needs something a class path launch cannot do
+     */
+    private static List<String> getManifestArgs(File jarFile) throws IOException {
+        List<String> args = new ArrayList<>();
+        try (JarFile jar = new JarFile(jarFile)) {
+            Manifest manifest = jar.getManifest();
+            if (manifest == null) {
+                return args;
+            }
+            Attributes attributes = manifest.getMainAttributes();
+            if (attributes.getValue("Launcher-Agent-Class") != null) {
+                return null;
+            }
+            addPackages(args, "--add-opens=", attributes.getValue("Add-Opens"));
+            addPackages(args, "--add-exports=", attributes.getValue("Add-Exports"));
+        }
+        return args;
+    }
+
+    private static void addPackages(List<String> args, String option, String value) {
+        if (value == null) {
+            return;
+        }
+        for (String modulePackage : value.trim().split("\\s+")) {
+            if (!modulePackage.isEmpty()) {
+                args.add(option + modulePackage + "=ALL-UNNAMED");
+            }
+        }
+    }
+
+    /**
+     * Identifies what a standby was started with: JDK, VitaLite.jar, agent and JVM arguments.
+     */
+    private static String computeKey(List<String> jvmArgs) throws IOException {
+        File jar = new File(LauncherMain.VITA_DIR + File.separator + "VitaLite.jar");
+        Path java = JDKManager.getJavaExecutable();
+        StringBuilder identity = new StringBuilder();
+        identity.append(java.toAbsolutePath()).append('|').append(java.toFile().lastModified());
+        identity.append('|').append(jar.length()).append('|').append(jar.lastModified());
+        identity.append('|').append(AgentJar.get().getFileName());
+        for (String arg : jvmArgs) {
+            identity.append('\n').append(arg);
+        }
+        byte[] digest = StagedInstall.newSha256().digest(identity.toString().getBytes(StandardCharsets.UTF_8));
+        return StagedInstall.hex(digest).substring(0, 16);
+    }
+
+    private static Properties readState() {
+        if (!Files.isRegularFile(STATE_FILE)) {
+            return null;
+        }
+        Properties state = new Properties();
+        try (InputStream in = Files.newInputStream(STATE_FILE)) {
+            state.load(in);
+            return state;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void deleteState() {
+        try {
+            Files.deleteIfExists(STATE_FILE);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Deletes jar copies of earlier standbys and all but the newest logs. Files a running
+     * client still has open are left for a later launch.
+     */
+    private static void cleanup(Path keep) throws IOException {
+        List<Path> logs = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(STANDBY_DIR, "{VitaLite-*.jar,standby-*.log}")) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().endsWith(".log")) {
+                    logs.add(file);
+                } else if (!file.equals(keep)) {
+                    deleteQuietly(file);
+                }
+            }
+        }
+        // The timestamped names sort chronologically, one more log is about to be written
+        logs.sort(null);
+        for (int i = 0; i < logs.size() - (KEEP_LOGS - 1); i++) {
+            deleteQuietly(logs.get(i));
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.tonic.launcher.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.tonic.launcher.LauncherMain;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one client per {@link LaunchProfile} running, without a UI.
+ *
+ * Exits are seen through {@link Process#onExit()}, and one shared check every telemetry
+ * interval looks for hangs in the {@link TelemetryHub} heartbeats: no "Done" within
+ * {@link JVMLauncher#READY_TIMEOUT_MILLIS}, no sample for {@link #HEARTBEAT_TIMEOUT_MILLIS}, or an
+ * event dispatch thread stuck for {@link #EDT_HANG_MILLIS}. A hung client is killed.
+ * Crashed and killed clients are restarted after an exponential backoff, which resets once
+ * a client stayed up for {@link #STABLE_MILLIS}. A client that exits with code 0 was closed
+ * by the user and stays closed. Launches, crashes and hangs per profile are kept in
+ * {@code VITA_DIR/supervisor.json}.
+ *
+ * All state is only touched on the single scheduler thread.
+ */
+public class Supervisor {
+    private static final long HEARTBEAT_TIMEOUT_MILLIS = 30_000;
+    private static final long EDT_HANG_MILLIS = 60_000;
+    private static final long BACKOFF_BASE_MILLIS = 5_000;
+    private static final long BACKOFF_MAX_MILLIS = 300_000;
+    private static final long STABLE_MILLIS = 600_000;
+    private static final long KILL_GRACE_MILLIS = 10_000;
+    private static final Path STATS_FILE = LauncherMain.VITA_DIR.resolve("supervisor.json");
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final LauncherConfig config;
+    private final List<String> commonArgs;
+    private final List<String> cdsArgs;
+    private final List<Client> clients = new ArrayList<>();
+    private final Map<String, Stats> stats;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "Supervisor"));
+
+    private static class Client {
+        private final LaunchProfile profile;
+        private final MemoryPlanner.Allocation memory;
+        private Process process;
+        // Tells callbacks of an earlier process apart
+        private int generation;
+        private long startedAt;
+        private boolean ready;
+        private String killReason;
+        private int failures;
+
+        private Client(LaunchProfile profile, MemoryPlanner.Allocation memory) {
+            this.profile = profile;
+            this.memory = memory;
+        }
+    }
+
+    private static class Stats {
+        int launches;
+        int crashes;
+        int hangs;
+        Integer lastExitCode;
+        long lastFailure;
+    }
+
+    /**
+     * @param profiles   clients to keep running
+     * @param config     launcher settings the profiles build on
+     * @param commonArgs program arguments added for every client
+     * @param cds        AppCDS for the clients, only used if its archive exists already; or null
+     * @param memory     memory plan with one allocation per profile, or null for the -Xmx settings
+     */
+    public Supervisor(List<LaunchProfile> profiles, LauncherConfig config, List<String> commonArgs, CdsManager cds,
+                      MemoryPlanner.Plan memory) {
+        this.config = config;
+        this.commonArgs = commonArgs;
+        for (int i = 0; i < profiles.size(); i++) {
+            clients.add(new Client(profiles.get(i), memory != null ? memory.getAllocations().get(i) : null));
+        }
+
+        List<String> sharing = Collections.emptyList();
+        if (cds != null) {
+            sharing = cds.getJvmArgs(new ArrayList<>(config.getJvmArgs()));
+            if (cds.needsArchive()) {
+                // Training needs the launcher to dump after "Done", which the supervisor does not do
+                sharing = Collections.emptyList();
+            }
+        }
+        this.cdsArgs = sharing;
+        this.stats = loadStats();
+    }
+
+    /**
+     * Starts the clients, spaced by the batch stagger, and supervises them until the
+     * launcher is stopped. Returns right away; the scheduler thread keeps the JVM alive.
+     */
+    public void start() {
+        long stagger = config.getBatchStagger();
+        for (int i = 0; i < clients.size(); i++) {
+            Client client = clients.get(i);
+            scheduler.schedule(() -> launch(client), i * stagger, TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleWithFixedDelay(this::checkHangs, TelemetryHub.INTERVAL_MILLIS, TelemetryHub.INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+        System.out.println("Supervising " + clients.size() + " clients, crash counts in " + STATS_FILE);
+    }
+
+    private void launch(Client client) {
+        String name = client.profile.getName();
+        int generation = ++client.generation;
+        client.ready = false;
+        client.killReason = null;
+        client.startedAt = System.currentTimeMillis();
+        stats(name).launches++;
+        saveStats();
+
+        List<String> jvmArgs = client.profile.buildJvmArgs(config, client.memory, clients.size());
+        jvmArgs.addAll(cdsArgs);
+        List<String> cliArgs = client.profile.buildCliArgs(config);
+        cliArgs.addAll(commonArgs);
+
+        try {
+            Process process = JVMLauncher.launchExternalJar(jvmArgs, cliArgs,
+                    () -> scheduler.execute(() -> onReady(client, generation)), null, name);
+            client.process = process;
+            process.onExit().thenAccept(p -> scheduler.execute(() -> onExit(client, generation, p.exitValue())));
+            System.out.println("[" + name + "] started, pid " + process.pid());
+        } catch (IOException e) {
+            System.err.println("[" + name + "] failed to start: " + e.getMessage());
+            client.process = null;
+            onFailure(client, "start failed", null);
+        }
+    }
+
+    private void onReady(Client client, int generation) {
+        if (client.generation != generation) {
+            return;
+        }
+        client.ready = true;
+        System.out.println("[" + client.profile.getName() + "] ready in " + (System.currentTimeMillis() - client.startedAt) + " ms");
+    }
+
+    private void onExit(Client client, int generation, int exitCode) {
+        if (client.generation != generation) {
+            return;
+        }
+        String name = client.profile.getName();
+        client.process = null;
+        if (exitCode == 0 && client.killReason == null) {
+            System.out.println("[" + name + "] closed, not restarting");
+            return;
+        }
+
+        String reason = client.killReason != null ? client.killReason : "exited with code " + exitCode;
+        if (client.killReason == null) {
+            stats(name).crashes++;
+        }
+        onFailure(client, reason, exitCode);
+    }
+
+    /**
+     * Counts the failure and schedules the restart.
+     */
+    private void onFailure(Client client, String reason, Integer exitCode) {
+        String name = client.profile.getName();
+        long now = System.currentTimeMillis();
+        client.failures = now - client.startedAt > STABLE_MILLIS ? 1 : client.failures + 1;
+        long delay = Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << Math.min(16, client.failures - 1));
+
+        Stats stats = stats(name);
+        stats.lastExitCode = exitCode;
+        stats.lastFailure = now;
+        saveStats();
+
+        System.out.println("[" + name + "] " + reason + ", restarting in " + delay / 1000 + " s (crashes " + stats.crashes
+                + ", hangs " + stats.hangs + ")");
+        scheduler.schedule(() -> launch(client), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The one periodic check, over all clients.
+     */
+    private void checkHangs() {
+        long now = System.currentTimeMillis();
+        for (Client client : clients) {
+            Process process = client.process;
+            if (process == null || client.killReason != null) {
+                continue;
+            }
+
+            if (!client.ready) {
+                if (now - client.startedAt > JVMLauncher.READY_TIMEOUT_MILLIS) {
+                    kill(client, "not ready after " + JVMLauncher.READY_TIMEOUT_MILLIS / 1000 + " s");
+                }
+                continue;
+            }
+
+            TelemetryHub.Instance instance = TelemetryHub.find(process.pid());
+            if (instance == null) {
+                // The agent did not connect, only exits can be supervised
+                continue;
+            }
+            TelemetryHub.Sample latest = instance.getLatest();
+            if (now - instance.getLastSeen() > HEARTBEAT_TIMEOUT_MILLIS) {
+                kill(client, "no heartbeat for " + (now - instance.getLastSeen()) / 1000 + " s");
+            } else if (latest != null && latest.getEdtLag() > EDT_HANG_MILLIS) {
+                kill(client, "UI frozen for " + latest.getEdtLag() / 1000 + " s");
+            }
+        }
+    }
+
+    private void kill(Client client, String reason) {
+        Process process = client.process;
+        client.killReason = reason;
+        stats(client.profile.getName()).hangs++;
+        System.out.println("[" + client.profile.getName() + "] " + reason + ", killing pid " + process.pid());
+        process.destroy();
+        scheduler.schedule(() -> {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }, KILL_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private Stats stats(String profile) {
+        return stats.computeIfAbsent(profile, p -> new Stats());
+    }
+
+    private static Map<String, Stats> loadStats() {
+        try {
+            if (Files.isRegularFile(STATS_FILE)) {
+                Map<String, Stats> stats = GSON.fromJson(Files.readString(STATS_FILE), new TypeToken<Map<String, Stats>>(){}.getType());
+                if (stats != null) {
+                    return stats;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to read supervisor stats, starting over: " + e.getMessage());
+        }
+        return new HashMap<>();
+    }
+
+    private void saveStats() {
+        try {
+            Path temp = STATS_FILE.resolveSibling("supervisor.json.tmp");
+            Files.writeString(temp, GSON.toJson(stats), StandardCharsets.UTF_8);
+            StagedInstall.commitFile(temp, STATS_FILE);
+        } catch (IOException e) {
+            System.err.println("Failed to save supervisor stats: " + e.getMessage());
+        }
+    }
+}
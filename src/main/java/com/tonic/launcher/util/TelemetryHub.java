@@ -0,0 +1,356 @@
+package com.tonic.launcher.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.tonic.launcher.LauncherMain;
+import com.tonic.launcher.agent.TelemetryAgent;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Collects the metrics {@link TelemetryAgent} streams from launched clients over the
+ * launcher channel, see {@link LauncherChannel}.
+ *
+ * Each client is an {@link Instance} with a ring buffer of its last {@link #RING_SIZE}
+ * samples, read by the monitor window. Every line received is also appended as is to
+ * {@code VITA_DIR/telemetry/<instance>-<pid>.ndjson}; files older than
+ * {@link #KEEP_FILES_DAYS} days are deleted. The files are written on their own thread,
+ * the channel thread only queues lines to it and never waits for the disk.
+ */
+public final class TelemetryHub {
+    public static final long INTERVAL_MILLIS = 2000;
+    // 30 minutes at the default interval
+    private static final int RING_SIZE = 900;
+    private static final int KEEP_FILES_DAYS = 7;
+    private static final Path TELEMETRY_DIR = LauncherMain.VITA_DIR.resolve("telemetry");
+    private static final Gson GSON = new Gson();
+
+    private static final List<Instance> INSTANCES = new ArrayList<>();
+    // Only used on the writer thread
+    private static boolean cleaned = false;
+
+    private TelemetryHub() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * One metrics sample, as sent by the agent. Sizes are in bytes, times in ms.
+     */
+    public static class Sample {
+        private long time;
+        private long uptime;
+        private long heapUsed;
+        private long heapCommitted;
+        private long heapMax;
+        private long nonHeapUsed;
+        private long gcCount;
+        private long gcMillis;
+        private long cpuMillis;
+        private int threads;
+        private int classes;
+        private long edtLag = -1;
+
+        public long getTime() {
+            return time;
+        }
+
+        public long getUptime() {
+            return uptime;
+        }
+
+        public long getHeapUsed() {
+            return heapUsed;
+        }
+
+        public long getHeapCommitted() {
+            return heapCommitted;
+        }
+
+        public long getHeapMax() {
+            return heapMax;
+        }
+
+        public long getNonHeapUsed() {
+            return nonHeapUsed;
+        }
+
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        public long getGcMillis() {
+            return gcMillis;
+        }
+
+        public long getCpuMillis() {
+            return cpuMillis;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public int getClasses() {
+            return classes;
+        }
+
+        /**
+         * @return how long the client's event dispatch thread took to run a task, -1 before the UI started
+         */
+        public long getEdtLag() {
+            return edtLag;
+        }
+    }
+
+    /**
+     * A client that connected with the agent.
+     */
+    public static class Instance {
+        private final String id;
+        private final long pid;
+        private final Deque<Sample> samples = new ArrayDeque<>();
+        private volatile boolean connected = true;
+        private volatile long lastSeen = System.currentTimeMillis();
+        // Only used on the writer thread
+        private BufferedWriter file;
+
+        private Instance(String id, long pid) {
+            this.id = id;
+            this.pid = pid;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getPid() {
+            return pid;
+        }
+
+        /**
+         * @return false once the client closed the channel, usually because it exited
+         */
+        public boolean isConnected() {
+            return connected;
+        }
+
+        /**
+         * @return when the agent last sent anything, as {@link System#currentTimeMillis()}
+         */
+        public long getLastSeen() {
+            return lastSeen;
+        }
+
+        public synchronized List<Sample> getSamples() {
+            return new ArrayList<>(samples);
+        }
+
+        public synchronized Sample getLatest() {
+            return samples.peekLast();
+        }
+
+        /**
+         * @return CPU use between the last two samples in percent of one core, or -1
+         */
+        public synchronized double getCpuPercent() {
+            if (samples.size() < 2) {
+                return -1;
+            }
+            Iterator<Sample> newestFirst = samples.descendingIterator();
+            Sample last = newestFirst.next();
+            Sample previous = newestFirst.next();
+            long wall = last.uptime - previous.uptime;
+            if (wall <= 0 || last.cpuMillis < 0) {
+                return -1;
+            }
+            return (last.cpuMillis - previous.cpuMillis) * 100.0 / wall;
+        }
+
+        /**
+         * Least-squares slope of heap use over the buffer. The GC sawtooth averages out over
+         * a few minutes, a steady rise is a leak.
+         * @return heap growth in MB per minute, 0 with too few samples
+         */
+        public synchronized double getHeapTrend() {
+            if (samples.size() < 10) {
+                return 0;
+            }
+            double n = samples.size();
+            double sumX = 0, sumY = 0, sumXY = 0, sumXX = 0;
+            for (Sample sample : samples) {
+                double x = sample.uptime / 60_000.0;
+                double y = sample.heapUsed / (1024.0 * 1024.0);
+                sumX += x;
+                sumY += y;
+                sumXY += x * y;
+                sumXX += x * x;
+            }
+            double denominator = n * sumXX - sumX * sumX;
+            return denominator == 0 ? 0 : (n * sumXY - sumX * sumY) / denominator;
+        }
+
+        private synchronized void add(Sample sample) {
+            lastSeen = System.currentTimeMillis();
+            samples.addLast(sample);
+            if (samples.size() > RING_SIZE) {
+                samples.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * @return every instance that connected since the launcher started, in connect order
+     */
+    public static List<Instance> getInstances() {
+        synchronized (INSTANCES) {
+            return new ArrayList<>(INSTANCES);
+        }
+    }
+
+    /**
+     * @return the most recent instance of a process, or null if its agent never connected
+     */
+    public static Instance find(long pid) {
+        synchronized (INSTANCES) {
+            for (int i = INSTANCES.size() - 1; i >= 0; i--) {
+                if (INSTANCES.get(i).pid == pid) {
+                    return INSTANCES.get(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Starts an instance from the agent's first line.
+     * @param hello the {@code hello} line
+     * @param token token this launch gave the agent
+     * @return the instance, or null if the line is not a hello with the right token
+     */
+    static Instance open(String hello, String token) {
+        try {
+            JsonObject message = JsonParser.parseString(hello).getAsJsonObject();
+            if (!TelemetryAgent.HELLO.equals(message.get("type").getAsString())
+                    || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                            message.get("token").getAsString().getBytes(StandardCharsets.UTF_8))) {
+                return null;
+            }
+            Instance instance = new Instance(message.get("id").getAsString(), message.get("pid").getAsLong());
+            synchronized (INSTANCES) {
+                INSTANCES.add(instance);
+            }
+            Writer.EXECUTOR.execute(() -> {
+                instance.file = openFile(instance);
+                write(instance, hello);
+            });
+            return instance;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Takes one line the agent sent after its hello.
+     */
+    static void receive(Instance instance, String line) {
+        try {
+            JsonObject message = JsonParser.parseString(line).getAsJsonObject();
+            if (TelemetryAgent.METRICS.equals(message.get("type").getAsString())) {
+                instance.add(GSON.fromJson(message, Sample.class));
+            }
+            Writer.EXECUTOR.execute(() -> write(instance, line));
+        } catch (RuntimeException e) {
+            System.err.println("Bad telemetry from " + instance.id + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Marks the instance as gone once its agent connection closed.
+     */
+    static void close(Instance instance) {
+        instance.connected = false;
+        Writer.EXECUTOR.execute(() -> {
+            if (instance.file != null) {
+                try {
+                    instance.file.close();
+                } catch (IOException ignored) {
+                }
+                instance.file = null;
+            }
+        });
+    }
+
+    private static BufferedWriter openFile(Instance instance) {
+        try {
+            Files.createDirectories(TELEMETRY_DIR);
+            deleteOldFiles();
+            String name = instance.id.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + instance.pid + ".ndjson";
+            return Files.newBufferedWriter(TELEMETRY_DIR.resolve(name), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Failed to open the telemetry file: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void write(Instance instance, String line) {
+        if (instance.file == null) {
+            return;
+        }
+        try {
+            instance.file.write(line);
+            instance.file.newLine();
+            // Samples are seconds apart, a crash should not lose the last ones
+            instance.file.flush();
+        } catch (IOException e) {
+            // Keeps collecting in memory without the file
+            System.err.println("Failed to write telemetry for " + instance.id + ": " + e.getMessage());
+            try {
+                instance.file.close();
+            } catch (IOException ignored) {
+            }
+            instance.file = null;
+        }
+    }
+
+    private static void deleteOldFiles() throws IOException {
+        if (cleaned) {
+            return;
+        }
+        cleaned = true;
+        long cutoff = System.currentTimeMillis() - KEEP_FILES_DAYS * 24L * 60 * 60 * 1000;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(TELEMETRY_DIR, "*.ndjson")) {
+            for (Path file : stream) {
+                if (Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Started with the first instance, launches without telemetry never start it.
+     */
+    private static final class Writer {
+        private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TelemetryWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
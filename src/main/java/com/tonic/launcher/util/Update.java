@@ -30,8 +30,18 @@ public enum Update {
      */
     public static Update checkForUpdates() throws Exception
     {
-        String liveRunelite = Versioning.getLiveRuneliteVersion();
-        String liveVita = Versioning.getLiveVitaLiteVersion();
+        return checkForUpdates(Versioning.getLiveRuneliteVersion(), Versioning.getLiveVitaLiteVersion());
+    }
+
+    /**
+     * Checks for updates against live versions that were already looked up.
+     *
+     * @param liveRunelite the live RuneLite bootstrap version
+     * @param liveVita the latest VitaLite release tag
+     * @return Update status indicating if an update is available, waiting, or not needed.
+     */
+    public static Update checkForUpdates(String liveRunelite, String liveVita)
+    {
         String current = Versioning.getVitaLiteVersion();
 
         if(!current.startsWith(liveRunelite + "_"))
@@ -1,70 +1,100 @@
 package com.tonic.launcher.util;
 
 import com.tonic.launcher.LauncherMain;
-import com.tonic.launcher.ui.SplashScreen;
 
-import java.io.File;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 public class UpdateProcessor
 {
-    public static boolean process(SplashScreen splash) throws Exception
+    private static final String USER_AGENT = "VitaLite-Updater/1.0";
+    /**
+     * Completion marker of the installed VitaLite.jar, written after the jar is in place.
+     */
+    static final Path MARKER = LauncherMain.VITA_DIR.resolve("VitaLite.install.json");
+
+    public static boolean process(ProgressListener listener) throws Exception
+    {
+        return process(listener, Versioning.getLiveRuneliteVersion(), Versioning.getLiveVitaLiteVersion());
+    }
+
+    /**
+     * Brings the local VitaLite install in line with the live versions.
+     *
+     * @param listener listener to report progress to (can be null)
+     * @param liveRunelite the live RuneLite bootstrap version
+     * @param liveVita the latest VitaLite release tag
+     * @return false if VitaLite has to be launched against the previous RuneLite bootstrap
+     */
+    public static boolean process(ProgressListener listener, String liveRunelite, String liveVita) throws Exception
     {
-        Update response = Update.checkForUpdates();
+        try (LaunchTrace.Span ignored = LaunchTrace.begin("vitalite"))
+        {
+            return update(listener, liveRunelite, liveVita);
+        }
+    }
+
+    private static boolean update(ProgressListener listener, String liveRunelite, String liveVita) throws Exception
+    {
+        Update response = Update.checkForUpdates(liveRunelite, liveVita);
         if(response == Update.NO_UPDATE)
         {
-            if(splash != null) {
-                splash.setProgress(100, 70, "VitaLite is up to date");
+            if(listener != null) {
+                listener.setStageProgress(LaunchStage.VITALITE, 100, "VitaLite is up to date");
             }
             return true;
         }
 
         if(response == Update.UPDATE_WAITING)
         {
-            splash.setProgress(0, 40, "An update is required but not yet available. Falling back to previous version.");
-            String liveVita = Versioning.getLiveVitaLiteVersion();
+            if(listener != null) {
+                listener.setStageProgress(LaunchStage.VITALITE, 0, "An update is required but not yet available. Falling back to previous version.");
+            }
             String current = Versioning.getVitaLiteVersion();
             if(!liveVita.equals(current)) {
-                downloadLatestVitaLite(splash);
-                writeVersion();
+                downloadLatestVitaLite(listener, liveVita);
             }
             return false;
         }
 
-        if(splash != null) {
-            splash.setProgress(0, 40, "Downloading VitaLite " + Versioning.getLiveVitaLiteVersion() + "...");
+        if(listener != null) {
+            listener.setStageProgress(LaunchStage.VITALITE, 0, "Downloading VitaLite " + liveVita + "...");
         }
-        downloadLatestVitaLite(splash);
-        writeVersion();
+        downloadLatestVitaLite(listener, liveVita);
 
-        if(splash != null) {
-            splash.setProgress(100, 70, "VitaLite updated successfully!");
+        if(listener != null) {
+            listener.setStageProgress(LaunchStage.VITALITE, 100, "VitaLite updated successfully!");
         }
         return true;
     }
 
-    private static void writeVersion() throws IOException {
+    /**
+     * Records a committed jar: version.txt for VitaLite itself, then the marker the launcher trusts.
+     */
+    private static void writeVersion(String version, String jarSha256, boolean verified) throws IOException {
         Path filePath = Path.of(LauncherMain.VITA_DIR.toString(), "version.txt");
         Files.createDirectories(filePath.getParent());
-        Files.writeString(filePath, Versioning.getLiveVitaLiteVersion(), StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE,
-                StandardOpenOption.TRUNCATE_EXISTING);
+        Path tempFile = filePath.resolveSibling("version.txt.tmp");
+        Files.writeString(tempFile, version, StandardCharsets.UTF_8);
+        StagedInstall.commitFile(tempFile, filePath);
+
+        StagedInstall.writeMarker(MARKER, new StagedInstall.Marker("vitalite", version, jarSha256, verified));
     }
 
-    private static void downloadLatestVitaLite(SplashScreen splash) throws Exception {
-        String tag = Versioning.getLiveVitaLiteVersion();
+    private static void downloadLatestVitaLite(ProgressListener listener, String tag) throws Exception {
         String zipFileName = "VitaLite-" + tag + ".zip";
         String downloadUrl = String.format(
                 "https://github.com/Tonic-Box/VitaLite/releases/download/%s/%s",
@@ -72,61 +102,158 @@ public class UpdateProcessor
         );
 
         Files.createDirectories(LauncherMain.VITA_DIR);
-        Path tempZip = Files.createTempFile("vitalite-", ".zip");
 
-        try {
-            HttpClient client = HttpClient.newBuilder()
-                    .followRedirects(HttpClient.Redirect.NORMAL)
-                    .build();
+        // Switching back to a release that was installed before needs no download
+        String storeKey = "vitalite/" + tag;
+        ArtifactStore.Entry stored = ArtifactStore.find(storeKey);
+        if (stored != null) {
+            System.out.println("Installing VitaLite " + tag + " from the artifact store");
+            Path tempJar = LauncherMain.VITA_DIR.resolve("VitaLite.jar.tmp");
+            ArtifactStore.materialize(stored, tempJar);
+            StagedInstall.commitFile(tempJar, LauncherMain.VITA_DIR.resolve("VitaLite.jar"));
+            writeVersion(tag, stored.getSha256(), stored.isVerified());
+            return;
+        }
 
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(downloadUrl))
-                    .header("User-Agent", "VitaLite-Updater/1.0")
-                    .build();
+        // Checked against the zip, VitaLite.jar itself has no published digest
+        String expectedSha256 = VersionResolver.getVitaLiteAssetSha256(zipFileName);
 
-            // Download with progress tracking
-            HttpResponse<InputStream> response = client.send(request,
-                    HttpResponse.BodyHandlers.ofInputStream());
+        boolean verified = expectedSha256 != null;
+        String jarSha256 = null;
+        Path installedJar = LauncherMain.VITA_DIR.resolve("VitaLite.jar");
+        if (Files.isRegularFile(installedJar)) {
+            try (LaunchTrace.Span ignored = LaunchTrace.begin("vitalite.delta")) {
+                jarSha256 = deltaUpdate(downloadUrl, installedJar, listener);
+            }
+            // A delta is checked entry by entry, the zip digest cannot be checked without the whole zip
+            verified = verified && jarSha256 == null;
+        }
 
-            if (response.statusCode() != 200) {
-                throw new IOException("Download failed: HTTP " + response.statusCode());
+        if (jarSha256 == null) {
+            try (LaunchTrace.Span ignored = LaunchTrace.begin("vitalite.stream")) {
+                jarSha256 = streamVitaLite(downloadUrl, expectedSha256, listener);
+            } catch (ChecksumException e) {
+                throw e;
+            } catch (IOException e) {
+                System.out.println("Streaming extraction failed (" + e.getMessage() + "), downloading the full archive");
+                try (LaunchTrace.Span ignored = LaunchTrace.begin("vitalite.download")) {
+                    jarSha256 = downloadAndExtractVitaLite(downloadUrl, zipFileName, expectedSha256, listener);
+                }
             }
+        }
 
-            long fileSize = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        writeVersion(tag, jarSha256, verified);
 
-            try (InputStream in = response.body();
-                 var out = Files.newOutputStream(tempZip)) {
+        try {
+            ArtifactStore.put(storeKey, installedJar, jarSha256, verified, false);
+        } catch (IOException e) {
+            System.err.println("Could not keep VitaLite " + tag + " in the artifact store: " + e.getMessage());
+        }
+    }
 
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                long totalBytes = 0;
-                long lastUpdate = 0;
+    /**
+     * Rebuilds VitaLite.jar from the installed one and the release's changed entries, see {@link DeltaUpdater}.
+     * @return SHA-256 of the new jar, or null if the full archive has to be downloaded
+     */
+    private static String deltaUpdate(String downloadUrl, Path installedJar, ProgressListener listener) throws IOException {
+        Path tempJar = LauncherMain.VITA_DIR.resolve("VitaLite.jar.tmp");
+        try {
+            new DeltaUpdater(downloadUrl, USER_AGENT, new DownloadProgress(listener)).update(installedJar, tempJar);
+            String jarSha256 = StagedInstall.sha256(tempJar);
+            StagedInstall.commitFile(tempJar, installedJar);
 
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, bytesRead);
-                    totalBytes += bytesRead;
+            if (listener != null) {
+                listener.setStageProgress(LaunchStage.VITALITE, 90, "Updated VitaLite");
+            }
+            return jarSha256;
+        } catch (IOException e) {
+            System.out.println("Delta update not possible (" + e.getMessage() + "), downloading the full archive");
+            Files.deleteIfExists(tempJar);
+            return null;
+        }
+    }
 
-                    // Update UI every 256KB
-                    if (splash != null && (totalBytes - lastUpdate) > (256 * 1024)) {
-                        // Stage progress: actual download percentage (0-100%)
-                        int stagePercent = fileSize > 0 ? (int) ((totalBytes * 100) / fileSize) : 0;
+    /**
+     * Extracts VitaLite.jar straight off the HTTP body while the zip is still downloading,
+     * so the archive never touches the disk. Reading local headers only works when the
+     * entry sizes are known up front; archives that need the central directory make this
+     * throw, and the caller falls back to {@link #downloadAndExtractVitaLite}. The rest of
+     * the zip is still read so its SHA-256 can be checked before the jar is committed.
+     * @return SHA-256 of the installed jar
+     */
+    static String streamVitaLite(String downloadUrl, String expectedSha256, ProgressListener listener) throws IOException {
+        Path jarPath = LauncherMain.VITA_DIR.resolve("VitaLite.jar");
+        Path tempJar = LauncherMain.VITA_DIR.resolve("VitaLite.jar.tmp");
 
-                        // Overall progress: VitaLite download is 40-65% of total launcher process
-                        int overallPercent = 40 + ((stagePercent * 25) / 100);
+        Downloader.acquireConnection();
+        HttpURLConnection connection = null;
+        try {
+            connection = Downloader.open(downloadUrl, USER_AGENT, null);
+            if (connection.getResponseCode() != 200) {
+                throw new IOException("Download failed: HTTP " + connection.getResponseCode());
+            }
 
-                        String statusText = String.format("Downloading VitaLite: %d/%d MB (%d%%)",
-                                totalBytes / (1024 * 1024),
-                                fileSize > 0 ? fileSize / (1024 * 1024) : 0,
-                                stagePercent);
+            long fileSize = connection.getContentLengthLong();
+            DownloadProgress progress = new DownloadProgress(listener);
+            DigestInputStream body = new DigestInputStream(
+                    new ProgressInputStream(connection.getInputStream(), bytes -> progress.update(bytes, fileSize)),
+                    StagedInstall.newSha256());
 
-                        splash.setProgress(stagePercent, overallPercent, statusText);
-                        lastUpdate = totalBytes;
+            String jarSha256 = null;
+            try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(body, 64 * 1024))) {
+                ZipEntry entry;
+                while ((entry = zis.getNextEntry()) != null) {
+                    if (entry.isDirectory() || !entry.getName().endsWith("VitaLite.jar")) {
+                        continue;
                     }
+                    // Like downloadAndExtractVitaLite: the root entry, otherwise the first match
+                    boolean root = entry.getName().equals("VitaLite.jar");
+                    if (root || jarSha256 == null) {
+                        jarSha256 = copy(zis, tempJar);
+                    }
+                    if (root) {
+                        break;
+                    }
+                }
+                if (jarSha256 == null) {
+                    throw new ZipException("VitaLite.jar not found while streaming the zip");
                 }
+
+                // Everything the zip stream buffered was already hashed, hash the rest
+                body.transferTo(OutputStream.nullOutputStream());
+            }
+            verify(expectedSha256, StagedInstall.hex(body.getMessageDigest().digest()));
+            StagedInstall.commitFile(tempJar, jarPath);
+
+            if (listener != null) {
+                listener.setStageProgress(LaunchStage.VITALITE, 90, "Extracted VitaLite");
             }
+            return jarSha256;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            Downloader.releaseConnection();
+            Files.deleteIfExists(tempJar);
+        }
+    }
 
-            if (splash != null) {
-                splash.setProgress(100, 65, "Extracting VitaLite...");
+    /**
+     * Downloads the whole zip with the resumable {@link Downloader} and extracts
+     * VitaLite.jar through the central directory.
+     * @return SHA-256 of the installed jar
+     */
+    static String downloadAndExtractVitaLite(String downloadUrl, String zipFileName, String expectedSha256, ProgressListener listener) throws IOException {
+        // Fixed name so an interrupted download is resumed by the next launch
+        Path tempZip = LauncherMain.VITA_DIR.resolve(zipFileName);
+        Path tempJar = LauncherMain.VITA_DIR.resolve("VitaLite.jar.tmp");
+
+        try {
+            Downloader.download(downloadUrl, tempZip, USER_AGENT, new DownloadProgress(listener));
+            verify(expectedSha256, StagedInstall.sha256(tempZip));
+
+            if (listener != null) {
+                listener.setStageProgress(LaunchStage.VITALITE, 90, "Extracting VitaLite...");
             }
 
             // Extract VitaLite.jar from zip
@@ -139,17 +266,71 @@ public class UpdateProcessor
                             .orElseThrow(() -> new IOException("VitaLite.jar not found in zip"));
                 }
 
-                Path jarPath = LauncherMain.VITA_DIR.resolve("VitaLite.jar");
+                String jarSha256;
                 try (InputStream in = zipFile.getInputStream(jarEntry)) {
-                    Files.copy(in, jarPath, StandardCopyOption.REPLACE_EXISTING);
+                    jarSha256 = copy(in, tempJar);
                 }
+                StagedInstall.commitFile(tempJar, LauncherMain.VITA_DIR.resolve("VitaLite.jar"));
+                return jarSha256;
             }
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("Download was interrupted", e);
         } finally {
             Files.deleteIfExists(tempZip);
+            Files.deleteIfExists(tempJar);
+        }
+    }
+
+    /**
+     * Copies a stream to a file, hashing it on the way.
+     * @return SHA-256 of the copied bytes
+     */
+    private static String copy(InputStream in, Path target) throws IOException {
+        MessageDigest digest = StagedInstall.newSha256();
+        Files.copy(new DigestInputStream(in, digest), target, StandardCopyOption.REPLACE_EXISTING);
+        return StagedInstall.hex(digest.digest());
+    }
+
+    private static void verify(String expectedSha256, String sha256) throws IOException {
+        try {
+            StagedInstall.verify("VitaLite release", expectedSha256, sha256);
+        } catch (IOException e) {
+            throw new ChecksumException(e.getMessage());
+        }
+    }
+
+    /**
+     * A download that does not match its published checksum, retrying the other way would not help.
+     */
+    private static class ChecksumException extends IOException {
+        ChecksumException(String message) {
+            super(message);
+        }
+    }
+
+    private static class DownloadProgress implements Downloader.Progress {
+        private final ProgressListener listener;
+        private long lastUpdate = 0;
+
+        DownloadProgress(ProgressListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void update(long totalBytes, long fileSize) {
+            // Update UI every 256KB
+            if (listener != null && (totalBytes - lastUpdate) > (256 * 1024)) {
+                // Stage progress: actual download percentage (0-100%)
+                int stagePercent = fileSize > 0 ? (int) ((totalBytes * 100) / fileSize) : 0;
+
+                String statusText = String.format("Downloading VitaLite: %d/%d MB (%d%%)",
+                        totalBytes / (1024 * 1024),
+                        fileSize > 0 ? fileSize / (1024 * 1024) : 0,
+                        stagePercent);
+
+                // Download is the first 90% of the VitaLite stage, extraction the rest
+                listener.setStageProgress(LaunchStage.VITALITE, (stagePercent * 90) / 100, statusText);
+                lastUpdate = totalBytes;
+            }
         }
     }
-}
\ No newline at end of file
+}
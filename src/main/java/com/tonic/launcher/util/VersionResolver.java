@@ -0,0 +1,281 @@
+package com.tonic.launcher.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import com.tonic.launcher.LauncherMain;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Resolves the live RuneLite and VitaLite versions once per launch.
+ *
+ * Every lookup is memoized for the lifetime of the launcher, so all call sites share a
+ * single request. Results are also kept in {@code version-cache.json} under the VitaLite
+ * directory: inside the TTL no request is made at all, after it a conditional request
+ * with {@code If-None-Match} revalidates the cached value (a 304 from GitHub does not
+ * count against the rate limit). If the lookup fails, a stale cached value is used.
+ *
+ * The VitaLite lookup also keeps the SHA-256 digests GitHub publishes for the release
+ * assets, so a download can be verified without another request.
+ */
+public final class VersionResolver
+{
+    private static final String RUNELITE_BOOTSTRAP_URL = "https://static.runelite.net/bootstrap.json";
+    private static final String VITALITE_RELEASE_URL = "https://api.github.com/repos/Tonic-Box/VitaLite/releases/latest";
+    private static final Path CACHE_FILE = LauncherMain.VITA_DIR.resolve("version-cache.json");
+    private static final Duration CACHE_TTL = Duration.ofMinutes(5);
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(30))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    private static final Map<String, CompletableFuture<CacheEntry>> RESOLVED = new ConcurrentHashMap<>();
+
+    private VersionResolver() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * @return the shared HTTP client used for launcher requests
+     */
+    public static HttpClient getClient()
+    {
+        return CLIENT;
+    }
+
+    /**
+     * @return the version from RuneLite's bootstrap.json
+     * @throws IOException if the lookup fails and nothing is cached
+     */
+    public static String getRuneliteVersion() throws IOException
+    {
+        return resolve("runelite", RUNELITE_BOOTSTRAP_URL, "VitaLite-Versioning/1.0", null,
+                body -> new CacheEntry(JsonParser.parseString(body).getAsJsonObject().get("version").getAsString())).value;
+    }
+
+    /**
+     * @return the tag of the latest VitaLite release on GitHub
+     * @throws IOException if the lookup fails and nothing is cached
+     */
+    public static String getVitaLiteVersion() throws IOException
+    {
+        return resolveVitaLite().value;
+    }
+
+    /**
+     * @param assetName file name of a release asset, e.g. {@code VitaLite-1.2.3.zip}
+     * @return the asset's published SHA-256 from the latest release, or null if GitHub has none
+     * @throws IOException if the lookup fails and nothing is cached
+     */
+    public static String getVitaLiteAssetSha256(String assetName) throws IOException
+    {
+        Map<String, String> digests = resolveVitaLite().digests;
+        return digests != null ? digests.get(assetName) : null;
+    }
+
+    private static CacheEntry resolveVitaLite() throws IOException
+    {
+        // Own cache key, entries written before digests were kept would revalidate to a 304 without them
+        return resolve("vitalite-release", VITALITE_RELEASE_URL, "VitaLite-Versioning/1.0", "application/vnd.github.v3+json",
+                VersionResolver::parseRelease);
+    }
+
+    private static CacheEntry parseRelease(String body)
+    {
+        JsonObject release = JsonParser.parseString(body).getAsJsonObject();
+        CacheEntry entry = new CacheEntry(release.get("tag_name").getAsString());
+        entry.digests = new HashMap<>();
+        if(release.has("assets"))
+        {
+            for(JsonElement element : release.getAsJsonArray("assets"))
+            {
+                JsonObject asset = element.getAsJsonObject();
+                JsonElement digest = asset.get("digest");
+                if(digest != null && !digest.isJsonNull() && digest.getAsString().startsWith("sha256:"))
+                {
+                    entry.digests.put(asset.get("name").getAsString(), digest.getAsString().substring("sha256:".length()));
+                }
+            }
+        }
+        return entry;
+    }
+
+    private static CacheEntry resolve(String key, String url, String userAgent, String accept, Function<String, CacheEntry> parser) throws IOException
+    {
+        CompletableFuture<CacheEntry> future = new CompletableFuture<>();
+        CompletableFuture<CacheEntry> existing = RESOLVED.putIfAbsent(key, future);
+        if(existing == null)
+        {
+            try
+            {
+                future.complete(fetch(key, url, userAgent, accept, parser));
+            }
+            catch (IOException | RuntimeException e)
+            {
+                // Do not memoize failures, a later call site may retry
+                RESOLVED.remove(key, future);
+                future.completeExceptionally(e);
+            }
+            existing = future;
+        }
+
+        try
+        {
+            return existing.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Request was interrupted", e);
+        }
+        catch (ExecutionException e)
+        {
+            if(e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to resolve " + key + " version", e.getCause());
+        }
+    }
+
+    private static CacheEntry fetch(String key, String url, String userAgent, String accept, Function<String, CacheEntry> parser) throws IOException
+    {
+        CacheEntry cached = readCache().get(key);
+        long now = System.currentTimeMillis();
+        if(cached != null && cached.value != null && now - cached.fetchedAt < CACHE_TTL.toMillis())
+        {
+            return cached;
+        }
+
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("User-Agent", userAgent)
+                .timeout(Duration.ofSeconds(30))
+                .GET();
+        if(accept != null)
+        {
+            request.header("Accept", accept);
+        }
+        if(cached != null && cached.value != null && cached.etag != null)
+        {
+            request.header("If-None-Match", cached.etag);
+        }
+
+        try
+        {
+            HttpResponse<String> response = CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofString());
+
+            if(response.statusCode() == 304 && cached != null)
+            {
+                cached.fetchedAt = now;
+                writeCache(key, cached);
+                return cached;
+            }
+
+            if(response.statusCode() != 200)
+            {
+                throw new IOException("Version lookup failed for " + url + ": HTTP " + response.statusCode());
+            }
+
+            CacheEntry entry = parser.apply(response.body());
+            entry.etag = response.headers().firstValue("ETag").orElse(null);
+            entry.fetchedAt = now;
+            writeCache(key, entry);
+            return entry;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Request was interrupted", e);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            if(cached != null && cached.value != null)
+            {
+                System.err.println("Version lookup for " + key + " failed, using cached " + cached.value + ": " + e.getMessage());
+                return cached;
+            }
+            throw e instanceof IOException ? (IOException) e : new IOException("Invalid response from " + url, e);
+        }
+    }
+
+    private static synchronized Map<String, CacheEntry> readCache()
+    {
+        if(!Files.isRegularFile(CACHE_FILE))
+        {
+            return new HashMap<>();
+        }
+
+        try
+        {
+            Map<String, CacheEntry> cache = GSON.fromJson(Files.readString(CACHE_FILE),
+                    new TypeToken<Map<String, CacheEntry>>(){}.getType());
+            return cache != null ? cache : new HashMap<>();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // A corrupt cache is only a cache miss
+            return new HashMap<>();
+        }
+    }
+
+    private static synchronized void writeCache(String key, CacheEntry entry)
+    {
+        Map<String, CacheEntry> cache = readCache();
+        cache.put(key, entry);
+        try
+        {
+            Files.createDirectories(CACHE_FILE.getParent());
+            Path temp = CACHE_FILE.resolveSibling(CACHE_FILE.getFileName() + ".tmp");
+            Files.writeString(temp, GSON.toJson(cache), StandardCharsets.UTF_8);
+            try
+            {
+                Files.move(temp, CACHE_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp, CACHE_FILE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println("Failed to write version cache: " + e.getMessage());
+        }
+    }
+
+    private static class CacheEntry
+    {
+        String value;
+        String etag;
+        long fetchedAt;
+        // Release asset name -> SHA-256, only for VitaLite
+        Map<String, String> digests;
+
+        CacheEntry(String value)
+        {
+            this.value = value;
+        }
+    }
+}
@@ -1,17 +1,10 @@
 package com.tonic.launcher.util;
 
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.tonic.launcher.LauncherMain;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.file.Files;
-import java.time.Duration;
 
 
 public final class Versioning
@@ -20,8 +13,21 @@ public final class Versioning
         // Utility class - prevent instantiation
     }
 
+    /**
+     * @return the installed VitaLite version, or 0.0.0 if VitaLite.jar is not installed
+     */
     public static String getVitaLiteVersion()
     {
+        if (!Files.isRegularFile(LauncherMain.VITA_DIR.resolve("VitaLite.jar"))) {
+            return "0.0.0";
+        }
+
+        StagedInstall.Marker marker = StagedInstall.readMarker(UpdateProcessor.MARKER);
+        if (marker != null && marker.getVersion() != null) {
+            return marker.getVersion();
+        }
+
+        // Installs from before the marker existed
         File file = new File(LauncherMain.VITA_DIR.toString(), "version.txt");
         if (!file.exists() || !file.isFile()) {
             return "0.0.0";
@@ -41,38 +47,11 @@ public final class Versioning
 
     /**
      * Fetches the latest VitaLite release tag from GitHub API.
+     * The lookup is shared by every caller during a launch, see {@link VersionResolver}.
      * @return the latest release tag as a string
      * @throws IOException if the API request fails
      */
     public static String getLiveVitaLiteVersion() throws IOException {
-        final String apiUrl = "https://api.github.com/repos/Tonic-Box/VitaLite/releases/latest";
-        final HttpClient client = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(30))
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .build();
-
-        try {
-            final HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(apiUrl))
-                    .header("User-Agent", "VitaLite-Versioning/1.0")
-                    .header("Accept", "application/vnd.github.v3+json")
-                    .timeout(Duration.ofSeconds(30))
-                    .GET()
-                    .build();
-
-            final HttpResponse<String> response = client.send(request,
-                    HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() != 200) {
-                throw new IOException("GitHub API request failed: HTTP " + response.statusCode());
-            }
-
-            final JsonObject json = JsonParser.parseString(response.body()).getAsJsonObject();
-            return json.get("tag_name").getAsString();
-
-        } catch (final InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("Request was interrupted", e);
-        }
+        return VersionResolver.getVitaLiteVersion();
     }
-}
\ No newline at end of file
+}
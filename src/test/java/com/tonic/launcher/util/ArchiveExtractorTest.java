@@ -0,0 +1,145 @@
+package com.tonic.launcher.util;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Archives that try to write outside the target directory through symbolic links.
+ */
+class ArchiveExtractorTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void rejectsAbsoluteLink() throws IOException {
+        Path outside = Files.createDirectories(dir.resolve("outside"));
+        byte[] archive = tarGz(new Entry("jdk/lib", outside.toString()), new Entry("jdk/lib/evil", "x".getBytes(StandardCharsets.UTF_8)));
+
+        assertThrows(IOException.class, () -> extract(archive));
+        assertFalse(Files.exists(outside.resolve("evil")));
+    }
+
+    @Test
+    void rejectsRelativeLinkOutOfTheTarget() throws IOException {
+        byte[] archive = tarGz(new Entry("jdk/lib", "../../outside"), new Entry("jdk/lib/evil", "x".getBytes(StandardCharsets.UTF_8)));
+
+        assertThrows(IOException.class, () -> extract(archive));
+        assertFalse(Files.exists(dir.resolve("outside/evil")));
+    }
+
+    @Test
+    void rejectsWritesThroughAnExtractedLink() throws IOException {
+        byte[] archive = tarGz(new Entry("jdk/conf/", (byte[]) null), new Entry("jdk/lib", "conf"),
+                new Entry("jdk/lib/evil", "x".getBytes(StandardCharsets.UTF_8)));
+
+        assertThrows(IOException.class, () -> extract(archive));
+        assertFalse(Files.exists(dir.resolve("target/conf/evil")));
+    }
+
+    @Test
+    void rejectsLinksChainedOutOfTheTarget() throws IOException {
+        // Lexically l2 stays in the target, but the OS takes the .. from l1's target
+        byte[] archive = tarGz(new Entry("jdk/a/b/l1", "../.."), new Entry("jdk/l2", "a/b/l1/../.."),
+                new Entry("jdk/l2/evil", "x".getBytes(StandardCharsets.UTF_8)));
+
+        assertThrows(IOException.class, () -> extract(archive));
+        assertFalse(Files.exists(dir.getParent().resolve("evil")));
+        assertFalse(Files.exists(dir.resolve("target/l2")));
+    }
+
+    @Test
+    void rejectsALinkOnAnotherLinksPath() throws IOException {
+        // l2 is checked first, a/b/c becoming a link afterwards would move where it points
+        byte[] archive = tarGz(new Entry("jdk/l2", "a/b/c/../../.."), new Entry("jdk/a/b/c", "../.."),
+                new Entry("jdk/l2/evil", "x".getBytes(StandardCharsets.UTF_8)));
+
+        assertThrows(IOException.class, () -> extract(archive));
+        assertFalse(Files.exists(dir.resolve("target/a/b/c")));
+    }
+
+    @Test
+    void rejectsALinkOverAnExtractedFile() throws IOException {
+        // The file's write may still be pending on a writer thread, it would follow the link
+        byte[] archive = tarGz(new Entry("jdk/conf/java.security", "x".getBytes(StandardCharsets.UTF_8)),
+                new Entry("jdk/lib/", (byte[]) null), new Entry("jdk/conf/java.security", "../lib/evil"));
+
+        assertThrows(IOException.class, () -> extract(archive));
+        assertFalse(Files.exists(dir.resolve("target/lib/evil")));
+    }
+
+    @Test
+    void keepsLinksInsideTheTarget() throws IOException {
+        byte[] archive = tarGz(new Entry("jdk/lib/server/libjvm.so", "jvm".getBytes(StandardCharsets.UTF_8)),
+                new Entry("jdk/lib/libjvm.so", "server/libjvm.so"));
+
+        assertEquals(2, extract(archive));
+        Path link = dir.resolve("target/lib/libjvm.so");
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals("jvm", Files.readString(link));
+    }
+
+    private int extract(byte[] archive) throws IOException {
+        return new ArchiveExtractor(dir.resolve("target"), 1).extractTarGz(new ByteArrayInputStream(archive), null);
+    }
+
+    private static byte[] tarGz(Entry... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(bytes))) {
+            for (Entry entry : entries) {
+                TarArchiveEntry tarEntry;
+                if (entry.link != null) {
+                    tarEntry = new TarArchiveEntry(entry.name, TarArchiveEntry.LF_SYMLINK);
+                    tarEntry.setLinkName(entry.link);
+                } else {
+                    tarEntry = new TarArchiveEntry(entry.name);
+                    if (entry.data != null) {
+                        tarEntry.setSize(entry.data.length);
+                    }
+                }
+                tar.putArchiveEntry(tarEntry);
+                if (entry.data != null) {
+                    tar.write(entry.data);
+                }
+                tar.closeArchiveEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A file, a directory (name ending in /, no data) or a symbolic link.
+     */
+    private static class Entry {
+        final String name;
+        final byte[] data;
+        final String link;
+
+        Entry(String name, byte[] data) {
+            this.name = name;
+            this.data = data;
+            this.link = null;
+        }
+
+        Entry(String name, String link) {
+            this.name = name;
+            this.data = null;
+            this.link = link;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.tonic.launcher.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Delta updates between two synthetic VitaLite.jar versions served from a local release zip.
+ */
+class DeltaUpdaterTest {
+    private static final int CLASSES = 600;
+    private static final long TIME = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private TestServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = TestServer.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void rebuildsTheNewJarFromChangedEntries() throws IOException {
+        Map<String, byte[]> v1 = classes(CLASSES);
+        Map<String, byte[]> v2 = new LinkedHashMap<>(v1);
+        Random random = new Random(2);
+        for (int i = 0; i < CLASSES; i += 97) {
+            v2.put(className(i), classBytes(random));
+        }
+        v2.remove(className(CLASSES - 1));
+        v2.put("com/tonic/vitalite/Added.class", classBytes(random));
+
+        Path installed = dir.resolve("VitaLite.jar");
+        Files.write(installed, jar(v1));
+        byte[] v2Jar = jar(v2);
+        byte[] release = releaseZip(v2Jar);
+        TestServer.Resource file = server.serve("/VitaLite.zip", release);
+
+        Path target = dir.resolve("VitaLite.jar.new");
+        DeltaUpdater updater = new DeltaUpdater(file.getUrl(), "test", null);
+        updater.update(installed, target);
+
+        Path expected = dir.resolve("expected.jar");
+        Files.write(expected, v2Jar);
+        assertEquals(crcs(expected), crcs(target));
+        assertEquals(file.getBytesServed(), updater.getTransferred(), "bytes served");
+        // The zip's tail and a few changed classes, not the whole release
+        assertTrue(updater.getTransferred() < release.length / 5,
+                "fetched " + updater.getTransferred() + " of " + release.length + " bytes");
+    }
+
+    @Test
+    void refusesWhenMostEntriesChanged() throws IOException {
+        Path installed = dir.resolve("VitaLite.jar");
+        Files.write(installed, jar(classes(CLASSES)));
+        Map<String, byte[]> v2 = new LinkedHashMap<>();
+        Random random = new Random(3);
+        for (int i = 0; i < CLASSES; i++) {
+            v2.put(className(i), classBytes(random));
+        }
+        TestServer.Resource file = server.serve("/VitaLite.zip", releaseZip(jar(v2)));
+
+        DeltaUpdater updater = new DeltaUpdater(file.getUrl(), "test", null);
+        assertThrows(IOException.class, () -> updater.update(installed, dir.resolve("VitaLite.jar.new")));
+    }
+
+    private static Map<String, byte[]> classes(int count) {
+        Random random = new Random(1);
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            classes.put(className(i), classBytes(random));
+        }
+        return classes;
+    }
+
+    private static String className(int index) {
+        return "com/tonic/vitalite/C" + index + ".class";
+    }
+
+    /**
+     * Somewhat compressible bytes, so the entries are deflated to a few KB each.
+     */
+    private static byte[] classBytes(Random random) {
+        byte[] data = new byte[4096 + random.nextInt(4096)];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(16));
+        }
+        return data;
+    }
+
+    private static byte[] jar(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                ZipEntry zipEntry = new ZipEntry(entry.getKey());
+                zipEntry.setTime(TIME);
+                zip.putNextEntry(zipEntry);
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * The release layout: VitaLite.jar stored uncompressed next to a deflated file.
+     */
+    private static byte[] releaseZip(byte[] jar) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            ZipEntry readme = new ZipEntry("README.txt");
+            zip.putNextEntry(readme);
+            zip.write("VitaLite release".getBytes());
+            zip.closeEntry();
+
+            CRC32 crc = new CRC32();
+            crc.update(jar);
+            ZipEntry entry = new ZipEntry("VitaLite.jar");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(jar.length);
+            entry.setCompressedSize(jar.length);
+            entry.setCrc(crc.getValue());
+            zip.putNextEntry(entry);
+            zip.write(jar);
+            zip.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return every entry's name with the CRC of its uncompressed content
+     */
+    private static Map<String, Long> crcs(Path jar) throws IOException {
+        Map<String, Long> crcs = new TreeMap<>();
+        try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                CRC32 crc = new CRC32();
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    crc.update(in.readAllBytes());
+                }
+                crcs.put(entry.getName(), crc.getValue());
+            }
+        }
+        return crcs;
+    }
+}
@@ -0,0 +1,137 @@
+package com.tonic.launcher.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Downloads through connections that drop mid-segment and checks that no byte is fetched twice.
+ */
+class DownloaderTest {
+    // The probe asks for bytes=0-0 to learn the size and whether ranges work
+    private static final int PROBE_BYTES = 1;
+
+    @TempDir
+    Path dir;
+
+    private TestServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = TestServer.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void resumesDroppedSegmentsWithoutRefetching() throws IOException {
+        // Large enough to be split into parallel segments
+        byte[] data = randomBytes(24 * 1024 * 1024);
+        TestServer.Resource file = server.serve("/jdk.tar.gz", data).resetAfter(1024 * 1024, 3);
+
+        Path destination = dir.resolve("jdk.tar.gz");
+        Downloader.download(file.getUrl(), destination, "test", null);
+
+        assertEquals(sha256(data), StagedInstall.sha256(destination));
+        assertEquals(data.length + PROBE_BYTES, file.getBytesServed(), "bytes served");
+        // Probe, three segments, and one retry per dropped connection
+        assertEquals(1 + 3 + 3, file.getRequests(), "requests");
+        assertFalse(Files.exists(dir.resolve("jdk.tar.gz.part")));
+        assertFalse(Files.exists(dir.resolve("jdk.tar.gz.part.json")));
+    }
+
+    @Test
+    void feedsTheSinkInOrderAcrossDroppedConnections() throws IOException {
+        byte[] data = randomBytes(3 * 1024 * 1024);
+        TestServer.Resource file = server.serve("/VitaLite.zip", data).resetAfter(256 * 1024, 2);
+
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        Path destination = dir.resolve("VitaLite.zip");
+        Downloader.download(file.getUrl(), destination, "test", null, sink);
+
+        assertArrayEquals(data, sink.toByteArray());
+        assertEquals(sha256(data), StagedInstall.sha256(destination));
+        assertEquals(data.length + PROBE_BYTES, file.getBytesServed(), "bytes served");
+    }
+
+    @Test
+    void resumesThePartFileOfAnEarlierRun() throws IOException {
+        byte[] data = randomBytes(2 * 1024 * 1024);
+        TestServer.Resource file = server.serve("/VitaLite.zip", data);
+        Path destination = dir.resolve("VitaLite.zip");
+
+        // What an interrupted run leaves behind: the first half on disk and its state
+        int half = data.length / 2;
+        Files.write(dir.resolve("VitaLite.zip.part"), java.util.Arrays.copyOf(data, half));
+        Files.writeString(dir.resolve("VitaLite.zip.part.json"), "{\"url\":\"" + file.getUrl() + "\",\"total\":" + data.length
+                + ",\"validator\":\"\\\"" + data.length + "\\\"\",\"segments\":[{\"start\":0,\"end\":" + (data.length - 1)
+                + ",\"done\":" + half + "}]}");
+
+        Downloader.download(file.getUrl(), destination, "test", null);
+
+        assertEquals(sha256(data), StagedInstall.sha256(destination));
+        assertEquals(data.length - half + PROBE_BYTES, file.getBytesServed(), "bytes served");
+    }
+
+    @Test
+    void downloadsFromTheProbeWhenRangesAreIgnored() throws IOException {
+        byte[] data = randomBytes(2 * 1024 * 1024);
+        TestServer.Resource file = server.serve("/VitaLite.zip", data).ignoreRanges();
+
+        Path destination = dir.resolve("VitaLite.zip");
+        Downloader.download(file.getUrl(), destination, "test", null);
+
+        assertEquals(sha256(data), StagedInstall.sha256(destination));
+        // The probe's full response is the download, no second request
+        assertEquals(1, file.getRequests(), "requests");
+        assertEquals(data.length, file.getBytesServed(), "bytes served");
+    }
+
+    @Test
+    void concurrentDownloadsShareTheConnectionLimit() throws Exception {
+        // Each large enough for three parallel segments
+        byte[] jdk = randomBytes(24 * 1024 * 1024);
+        byte[] vitalite = randomBytes(24 * 1024 * 1024 + 1);
+        TestServer.Resource jdkFile = server.serve("/jdk.tar.gz", jdk).throttle(16 * 1024 * 1024);
+        TestServer.Resource vitaliteFile = server.serve("/VitaLite.zip", vitalite).throttle(16 * 1024 * 1024);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Path> first = executor.submit(() -> Downloader.download(jdkFile.getUrl(), dir.resolve("jdk.tar.gz"), "test", null));
+            Future<Path> second = executor.submit(() -> Downloader.download(vitaliteFile.getUrl(), dir.resolve("VitaLite.zip"), "test", null));
+            assertEquals(sha256(jdk), StagedInstall.sha256(first.get()));
+            assertEquals(sha256(vitalite), StagedInstall.sha256(second.get()));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(server.getMaxActiveRequests() <= 4, server.getMaxActiveRequests() + " connections at once");
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static String sha256(byte[] data) {
+        return StagedInstall.hex(StagedInstall.newSha256().digest(data));
+    }
+}
@@ -0,0 +1,66 @@
+package com.tonic.launcher.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Probing runtime homes laid out like full and headless JDK packages.
+ */
+class JavaRuntimeTest {
+    private static final String RELEASE = "JAVA_VERSION=\"17.0.9\"\nOS_ARCH=\"x86_64\"\nIMPLEMENTOR=\"Eclipse Adoptium\"\n"
+            + "MODULES=\"java.base java.datatransfer java.xml java.prefs java.desktop\"\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void acceptsAFullRuntime() throws IOException {
+        Path home = runtime(true);
+
+        JavaRuntime runtime = JavaRuntime.probe(home);
+
+        assertNotNull(runtime);
+        assertEquals(17, runtime.getFeature());
+        assertEquals("17.0.9", runtime.getVersion());
+    }
+
+    @Test
+    void rejectsAHeadlessRuntime() throws IOException {
+        // java.desktop is listed, but the native display library is not installed
+        assertNull(JavaRuntime.probe(runtime(false)));
+    }
+
+    @Test
+    void parsesFeatureVersions() {
+        assertEquals(8, JavaRuntime.parseFeature("1.8.0_392"));
+        assertEquals(11, JavaRuntime.parseFeature("11.0.21"));
+        assertEquals(21, JavaRuntime.parseFeature("21"));
+        assertEquals(0, JavaRuntime.parseFeature("unknown"));
+        assertEquals(0, JavaRuntime.parseFeature(null));
+    }
+
+    private Path runtime(boolean awt) throws IOException {
+        Path home = dir.resolve(awt ? "full" : "headless");
+        Files.createDirectories(home.resolve("bin"));
+        Files.createDirectories(home.resolve("lib"));
+        Files.writeString(home.resolve("release"), RELEASE);
+        Files.createFile(home.resolve("bin/java"));
+        Files.createFile(home.resolve("bin/java.exe"));
+        Files.createFile(home.resolve("lib/libawt_headless.so"));
+        if (awt) {
+            // Every OS's library, the probe looks for this host's
+            Files.createFile(home.resolve("lib/libawt_xawt.so"));
+            Files.createFile(home.resolve("lib/libawt_lwawt.dylib"));
+            Files.createFile(home.resolve("bin/awt.dll"));
+        }
+        return home;
+    }
+}
@@ -0,0 +1,202 @@
+package com.tonic.launcher.util;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The pipelined JDK install, download and extraction at once, against a locally served
+ * JDK-shaped archive whose connection drops mid-stream.
+ */
+class JdkInstallTest {
+    private static final String TOP = "jdk-11.0.99+1/";
+
+    @TempDir
+    Path dir;
+
+    private TestServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = TestServer.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void extractsWhileDownloadingAcrossDroppedConnections() throws IOException {
+        byte[] archive = jdkArchive();
+        TestServer.Resource file = server.serve("/jdk.tar.gz", archive).resetAfter(256 * 1024, 2);
+
+        Path installed = dir.resolve("jdk");
+        String sha256 = JDKManager.downloadAndExtractTarGz(file.getUrl(), dir.resolve("jdk-temp.tar.gz"), installed, null);
+
+        Path reference = dir.resolve("reference");
+        referenceExtract(archive, reference);
+
+        assertEquals(StagedInstall.hex(StagedInstall.newSha256().digest(archive)), sha256);
+        assertEquals(describe(reference), describe(installed));
+        assertTrue(Files.isExecutable(installed.resolve("bin/java")));
+        assertTrue(Files.isSymbolicLink(installed.resolve("lib/libjvm.so")));
+    }
+
+    @Test
+    void adoptsAnUnmarkedInstallOfTheBundledVersion() throws IOException {
+        Path jdk = fakeJdk(dir.resolve("jdk"), "11.0.19");
+
+        StagedInstall.Marker marker = JDKManager.adoptUnmarkedInstall(jdk);
+        assertNotNull(marker);
+        assertEquals(JDKManager.JDK_VERSION, marker.getVersion());
+        assertEquals(JDKManager.JDK_VERSION, StagedInstall.readMarker(jdk.resolve(StagedInstall.MARKER_FILE)).getVersion());
+    }
+
+    @Test
+    void reinstallsAnUnmarkedInstallOfAnotherVersion() throws IOException {
+        Path jdk = fakeJdk(dir.resolve("jdk"), "11.0.18");
+
+        assertNull(JDKManager.adoptUnmarkedInstall(jdk));
+        assertTrue(Files.notExists(jdk.resolve(StagedInstall.MARKER_FILE)));
+    }
+
+    /**
+     * A JDK as an earlier launcher left it: release file, AWT library and a java that runs, no marker.
+     */
+    private static Path fakeJdk(Path home, String version) throws IOException {
+        Files.createDirectories(home.resolve("bin"));
+        Files.createDirectories(home.resolve("lib"));
+        Files.write(home.resolve("release"), ("JAVA_VERSION=\"" + version + "\"\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(home.resolve("lib/libawt_xawt.so"), new byte[0]);
+        Path java = home.resolve("bin/java");
+        Files.write(java, "#!/bin/sh\nexit 0\n".getBytes(StandardCharsets.UTF_8));
+        java.toFile().setExecutable(true);
+        return home;
+    }
+
+    /**
+     * A small JDK: a top-level folder, nested directories, executables, a payload larger
+     * than the extractor's inline threshold and a relative symlink.
+     */
+    private static byte[] jdkArchive() throws IOException {
+        Random random = new Random(11);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(bytes))) {
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            directory(tar, TOP);
+            directory(tar, TOP + "bin/");
+            file(tar, TOP + "bin/java", randomBytes(random, 16 * 1024), 0755);
+            file(tar, TOP + "bin/keytool", randomBytes(random, 12 * 1024), 0755);
+            directory(tar, TOP + "lib/");
+            directory(tar, TOP + "lib/server/");
+            file(tar, TOP + "lib/server/libjvm.so", randomBytes(random, 1536 * 1024), 0755);
+            file(tar, TOP + "lib/modules", randomBytes(random, 768 * 1024), 0644);
+            TarArchiveEntry link = new TarArchiveEntry(TOP + "lib/libjvm.so", TarArchiveEntry.LF_SYMLINK);
+            link.setLinkName("server/libjvm.so");
+            tar.putArchiveEntry(link);
+            tar.closeArchiveEntry();
+            // A file whose directories have no entries of their own
+            file(tar, TOP + "conf/security/java.security",
+                    "securerandom.source=file:/dev/random\n".getBytes(StandardCharsets.UTF_8), 0644);
+            file(tar, TOP + "release", "JAVA_VERSION=\"11.0.99\"\n".getBytes(StandardCharsets.UTF_8), 0644);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void directory(TarArchiveOutputStream tar, String name) throws IOException {
+        tar.putArchiveEntry(new TarArchiveEntry(name));
+        tar.closeArchiveEntry();
+    }
+
+    private static void file(TarArchiveOutputStream tar, String name, byte[] data, int mode) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(data.length);
+        entry.setMode(mode);
+        tar.putArchiveEntry(entry);
+        tar.write(data);
+        tar.closeArchiveEntry();
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Plain sequential extraction with the top-level folder stripped, what the install must match.
+     */
+    private static void referenceExtract(byte[] archive, Path target) throws IOException {
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(new GZIPInputStream(new ByteArrayInputStream(archive)))) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextTarEntry()) != null) {
+                String name = entry.getName().substring(TOP.length());
+                if (name.isEmpty()) {
+                    continue;
+                }
+                Path path = target.resolve(name);
+                if (entry.isDirectory()) {
+                    Files.createDirectories(path);
+                } else if (entry.isSymbolicLink()) {
+                    Files.createDirectories(path.getParent());
+                    Files.createSymbolicLink(path, Path.of(entry.getLinkName()));
+                } else {
+                    Files.createDirectories(path.getParent());
+                    Files.copy(tar, path);
+                    if ((entry.getMode() & 0100) != 0) {
+                        path.toFile().setExecutable(true);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return every path under {@code root} with its type, content hash, execute bit or link target
+     */
+    private static Map<String, String> describe(Path root) throws IOException {
+        Map<String, String> tree = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                String name = root.relativize(path).toString().replace('\\', '/');
+                if (Files.isSymbolicLink(path)) {
+                    tree.put(name, "link " + Files.readSymbolicLink(path));
+                } else if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    tree.put(name, "dir");
+                } else {
+                    try (InputStream in = Files.newInputStream(path)) {
+                        tree.put(name, "file " + StagedInstall.hex(StagedInstall.newSha256().digest(in.readAllBytes()))
+                                + (Files.isExecutable(path) ? " +x" : ""));
+                    }
+                }
+            }
+        }
+        return tree;
+    }
+}
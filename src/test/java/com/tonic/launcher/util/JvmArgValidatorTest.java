@@ -0,0 +1,67 @@
+package com.tonic.launcher.util;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Which JVM arguments block a launch, checked against the flags of the JDK running the tests.
+ */
+class JvmArgValidatorTest {
+    private static JvmFlagCatalog catalog;
+
+    @BeforeAll
+    static void loadCatalog() {
+        catalog = JvmFlagCatalog.get(Path.of(System.getProperty("java.home"), "bin", "java"));
+        assertNotNull(catalog);
+    }
+
+    @Test
+    void removedFlagIsOnlyAWarning() {
+        List<JvmArgValidator.Problem> problems = JvmArgValidator.validate(List.of(removedFlag()), catalog);
+        assertEquals(1, problems.size(), problems.toString());
+        assertFalse(problems.get(0).isError(), problems.toString());
+
+        assertError("-XX:+UseG1CG");
+        assertError("-XX:MaxGCPauseMilis=50");
+    }
+
+    @Test
+    void conflictingCollectorsAreErrors() {
+        List<JvmArgValidator.Problem> problems = JvmArgValidator.validate(List.of("-XX:+UseG1GC", "-XX:+UseSerialGC"), catalog);
+
+        assertEquals(2, problems.stream().filter(JvmArgValidator.Problem::isError).count(), problems.toString());
+    }
+
+    @Test
+    void definiteMistakesAreErrors() {
+        assertError("-Xmx512m", "-Xms1g");
+        assertError("-Xmx2gb");
+        assertError("-jar");
+        assertError("-XX:+MaxGCPauseMillis");
+    }
+
+    /**
+     * A flag the test's JDK no longer lists but starts with a warning about, until a later
+     * release rejects it as unknown.
+     */
+    private static String removedFlag() {
+        int feature = Runtime.version().feature();
+        if (feature < 17) {
+            return "-XX:MaxPermSize=256m";
+        }
+        return feature < 19 ? "-XX:SuspendRetryCount=50" : "-XX:+UseSharedSpaces";
+    }
+
+    private static void assertError(String... args) {
+        List<JvmArgValidator.Problem> problems = JvmArgValidator.validate(List.of(args), catalog);
+        assertTrue(problems.stream().anyMatch(JvmArgValidator.Problem::isError), List.of(args) + ": " + problems);
+    }
+}
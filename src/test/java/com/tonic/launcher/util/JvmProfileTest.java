@@ -0,0 +1,36 @@
+package com.tonic.launcher.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * How the presets share the host's cores between the clients of a launch.
+ */
+class JvmProfileTest {
+    @Test
+    void autoKeepsASingleClientOffTheMultiBoxPreset() {
+        assertEquals(JvmProfile.LOW_LATENCY, JvmProfile.AUTO.resolve(2, 1));
+        assertEquals(JvmProfile.LOW_LATENCY, JvmProfile.AUTO.resolve(8, 1));
+        assertEquals(JvmProfile.LOW_FOOTPRINT, JvmProfile.AUTO.resolve(2, 2));
+        assertEquals(JvmProfile.LOW_FOOTPRINT, JvmProfile.AUTO.resolve(8, 3));
+    }
+
+    @Test
+    void lowFootprintSplitsTheCoresBetweenTheClients() {
+        List<String> args = JvmProfile.LOW_FOOTPRINT.buildArgs(8, 2, 768, List.of());
+
+        assertTrue(args.contains("-XX:ActiveProcessorCount=4"), args.toString());
+    }
+
+    @Test
+    void lowFootprintLeavesASingleClientEveryCore() {
+        List<String> args = JvmProfile.LOW_FOOTPRINT.buildArgs(2, 1, 768, List.of());
+
+        assertFalse(args.stream().anyMatch(arg -> arg.startsWith("-XX:ActiveProcessorCount=")), args.toString());
+    }
+}
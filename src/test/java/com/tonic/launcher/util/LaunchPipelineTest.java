@@ -0,0 +1,169 @@
+package com.tonic.launcher.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the launch pipeline against throttled local endpoints and checks which stages overlap.
+ */
+class LaunchPipelineTest {
+    // A first install, scaled down: the JDK download dominates, the lookups are slow API calls
+    private static final int BYTES_PER_SECOND = 320 * 1024;
+    private static final int JDK_BYTES = 192 * 1024;         // ~600 ms
+    private static final int VITALITE_BYTES = 112 * 1024;    // ~350 ms
+    private static final long LOOKUP_MILLIS = 250;
+
+    private TestServer server;
+    private HttpStages stages;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = TestServer.start();
+        stages = new HttpStages(
+                server.serve("/jdk.tar.gz", new byte[JDK_BYTES]).throttle(BYTES_PER_SECOND),
+                server.serve("/bootstrap.json", "1.10.40".getBytes(StandardCharsets.UTF_8)).latency(LOOKUP_MILLIS),
+                server.serve("/releases/latest", "1.10.40_3".getBytes(StandardCharsets.UTF_8)).latency(LOOKUP_MILLIS),
+                server.serve("/VitaLite.zip", new byte[VITALITE_BYTES]).throttle(BYTES_PER_SECOND));
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void runsIndependentStagesConcurrently() throws Exception {
+        LaunchPipeline.Result result = new LaunchPipeline(null, stages).run();
+
+        assertEquals("1.10.40_3", result.getLiveVitaLiteVersion());
+        assertTrue(result.isUpToDate());
+        // The JDK download does not wait for the lookups, nor they for it
+        assertTrue(stages.jdkTimes.overlaps(stages.bootstrapTimes), "JDK " + stages.jdkTimes + ", bootstrap " + stages.bootstrapTimes);
+        assertTrue(stages.jdkTimes.overlaps(stages.releaseTimes), "JDK " + stages.jdkTimes + ", release " + stages.releaseTimes);
+    }
+
+    @Test
+    void downloadWaitsForBothLookups() throws Exception {
+        new LaunchPipeline(null, stages).run();
+
+        assertTrue(stages.downloadStartedAfterLookups, "VitaLite download started before a lookup finished");
+    }
+
+    @Test
+    void failingStageFailsTheRun() {
+        HttpStages failing = new HttpStages(stages.jdk, stages.bootstrap, stages.release, stages.vitalite) {
+            @Override
+            public boolean updateVitaLite(ProgressListener listener, String liveRunelite, String liveVita) throws Exception {
+                throw new IOException("VitaLite download failed");
+            }
+        };
+
+        IOException error = assertThrows(IOException.class, () -> new LaunchPipeline(null, failing).run());
+        assertEquals("VitaLite download failed", error.getMessage());
+    }
+
+    /**
+     * Stages that fetch the local endpoints instead of doing the real work.
+     */
+    private static class HttpStages implements LaunchPipeline.Stages {
+        final TestServer.Resource jdk;
+        final TestServer.Resource bootstrap;
+        final TestServer.Resource release;
+        final TestServer.Resource vitalite;
+        final Times jdkTimes = new Times();
+        final Times bootstrapTimes = new Times();
+        final Times releaseTimes = new Times();
+        private volatile int lookupsDone;
+        volatile boolean downloadStartedAfterLookups;
+
+        HttpStages(TestServer.Resource jdk, TestServer.Resource bootstrap, TestServer.Resource release, TestServer.Resource vitalite) {
+            this.jdk = jdk;
+            this.bootstrap = bootstrap;
+            this.release = release;
+            this.vitalite = vitalite;
+        }
+
+        @Override
+        public Path installJdk(ProgressListener listener) throws Exception {
+            jdkTimes.start();
+            fetch(jdk);
+            jdkTimes.end();
+            return Path.of("java");
+        }
+
+        @Override
+        public String liveRuneliteVersion() throws Exception {
+            bootstrapTimes.start();
+            String version = new String(fetch(bootstrap), StandardCharsets.UTF_8);
+            bootstrapTimes.end();
+            lookupDone();
+            return version;
+        }
+
+        @Override
+        public String liveVitaLiteVersion() throws Exception {
+            releaseTimes.start();
+            String version = new String(fetch(release), StandardCharsets.UTF_8);
+            releaseTimes.end();
+            lookupDone();
+            return version;
+        }
+
+        @Override
+        public boolean updateVitaLite(ProgressListener listener, String liveRunelite, String liveVita) throws Exception {
+            downloadStartedAfterLookups = lookupsDone == 2;
+            fetch(vitalite);
+            return liveVita.startsWith(liveRunelite);
+        }
+
+        private synchronized void lookupDone() {
+            lookupsDone++;
+        }
+
+        private static byte[] fetch(TestServer.Resource resource) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) new URL(resource.getUrl()).openConnection();
+            try (InputStream in = connection.getInputStream()) {
+                return in.readAllBytes();
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * When one stage ran, in {@link System#nanoTime()}.
+     */
+    private static class Times {
+        private volatile long start = -1;
+        private volatile long end = -1;
+
+        void start() {
+            start = System.nanoTime();
+        }
+
+        void end() {
+            end = System.nanoTime();
+        }
+
+        boolean overlaps(Times other) {
+            return start >= 0 && other.start >= 0 && start < other.end && other.start < end;
+        }
+
+        @Override
+        public String toString() {
+            return start < 0 ? "not run" : (end - start) / 1_000_000 + " ms";
+        }
+    }
+}
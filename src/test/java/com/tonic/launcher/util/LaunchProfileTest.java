@@ -0,0 +1,49 @@
+package com.tonic.launcher.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * How a client's JVM arguments combine the memory plan with the JVM preset.
+ */
+class LaunchProfileTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void theMemoryPlanWinsOverThePreset() {
+        LauncherConfig config = new LauncherConfig(dir.resolve("launcher.properties"));
+        config.setJvmProfile(JvmProfile.LOW_LATENCY);
+        MemoryPlanner.Allocation allocation = MemoryPlanner.plan(new MemoryPlanner.Host(8192, 8192),
+                List.of(LaunchProfile.single())).getAllocations().get(0);
+
+        List<String> args = LaunchProfile.single().buildJvmArgs(config, allocation, 1);
+
+        assertEquals(List.of("-Xms" + allocation.getInitialHeapMb() + "m"), options(args, "-Xms"));
+        assertEquals(List.of("-XX:ReservedCodeCacheSize=128m"), options(args, "-XX:ReservedCodeCacheSize="));
+    }
+
+    @Test
+    void theUsersOptionsWinOverBoth() {
+        LauncherConfig config = new LauncherConfig(dir.resolve("launcher.properties"));
+        config.setJvmProfile(JvmProfile.LOW_LATENCY);
+        config.setJvmArgs(List.of("-Xms2g", "-XX:ReservedCodeCacheSize=200m"));
+        MemoryPlanner.Allocation allocation = MemoryPlanner.plan(new MemoryPlanner.Host(8192, 8192),
+                List.of(LaunchProfile.single())).getAllocations().get(0);
+
+        List<String> args = LaunchProfile.single().buildJvmArgs(config, allocation, 1);
+
+        assertEquals(List.of("-Xms2g"), options(args, "-Xms"));
+        assertEquals(List.of("-XX:ReservedCodeCacheSize=200m"), options(args, "-XX:ReservedCodeCacheSize="));
+    }
+
+    private static List<String> options(List<String> args, String prefix) {
+        return args.stream().filter(arg -> arg.startsWith(prefix)).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,107 @@
+package com.tonic.launcher.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The memory budget, its split between clients and the plan's one-line summary.
+ */
+class MemoryPlannerTest {
+    private static final MemoryPlanner.Host HOST = new MemoryPlanner.Host(16 * 1024, 8 * 1024);
+    // Formatted in the default locale like the plan does
+    private static final String AVAILABLE = String.format(", %.1f of %.1f GB available", 8.0, 16.0);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reservesMemoryForTheSystem() {
+        // 15% of the memory, at least 1 GB, and never more than is available
+        assertEquals(16384 - 2457, budget(new MemoryPlanner.Host(16384, 16384)));
+        assertEquals(4096 - 1024, budget(new MemoryPlanner.Host(4096, 4096)));
+        assertEquals(2048, budget(new MemoryPlanner.Host(16384, 2048)));
+    }
+
+    @Test
+    void splitsTheHeapByWeight() throws IOException {
+        // 6964 MB budget, 768 MB non-heap per client, 5428 MB heap split 1:3, rounded to 64 MB
+        MemoryPlanner.Plan plan = MemoryPlanner.plan(new MemoryPlanner.Host(8192, 8192),
+                profiles("[{\"name\": \"a\"}, {\"name\": \"b\", \"weight\": 3}]"));
+
+        assertEquals(1344, plan.getAllocations().get(0).getHeapMb());
+        assertEquals(4032, plan.getAllocations().get(1).getHeapMb());
+        assertFalse(plan.isOvercommitted());
+    }
+
+    @Test
+    void fixedHeapsComeOutOfTheBudget() throws IOException {
+        // 5120 MB budget, less 768 MB non-heap twice and the fixed 1024 MB heap
+        MemoryPlanner.Plan plan = MemoryPlanner.plan(new MemoryPlanner.Host(6144, 6144),
+                profiles("[{\"name\": \"a\", \"maxMemory\": 1024}, {\"name\": \"b\"}]"));
+
+        assertEquals(1024, plan.getAllocations().get(0).getHeapMb());
+        assertEquals(2560, plan.getAllocations().get(1).getHeapMb());
+    }
+
+    @Test
+    void clampsTheHeap() {
+        MemoryPlanner.Plan large = MemoryPlanner.plan(new MemoryPlanner.Host(16384, 16384), List.of(LaunchProfile.single()));
+        assertEquals(4096, large.getAllocations().get(0).getHeapMb());
+        assertFalse(large.isOvercommitted());
+
+        MemoryPlanner.Plan small = MemoryPlanner.plan(new MemoryPlanner.Host(4096, 4096),
+                List.of(LaunchProfile.single(), LaunchProfile.single(), LaunchProfile.single()));
+        for (MemoryPlanner.Allocation allocation : small.getAllocations()) {
+            assertEquals(512, allocation.getHeapMb());
+        }
+        assertTrue(small.isOvercommitted());
+    }
+
+    @Test
+    void chargesTheCapsItSetsAsNonHeap() {
+        // Two clients fit in 2048 MB of heap only if each is charged for metaspace, code cache and native memory
+        long budget = 2 * (512 + 384 + 128 + 256);
+        MemoryPlanner.Plan fits = MemoryPlanner.plan(new MemoryPlanner.Host(16384, budget),
+                List.of(LaunchProfile.single(), LaunchProfile.single()));
+        assertFalse(fits.isOvercommitted());
+
+        MemoryPlanner.Plan tooSmall = MemoryPlanner.plan(new MemoryPlanner.Host(16384, budget - 64),
+                List.of(LaunchProfile.single(), LaunchProfile.single()));
+        assertTrue(tooSmall.isOvercommitted());
+    }
+
+    @Test
+    void describesOneClient() {
+        MemoryPlanner.Plan plan = MemoryPlanner.plan(HOST, List.of(LaunchProfile.single()));
+
+        assertEquals("1 client: " + plan.getAllocations().get(0).getHeapMb() + " MB heap" + AVAILABLE,
+                plan.describe());
+    }
+
+    @Test
+    void describesSeveralClients() {
+        MemoryPlanner.Plan plan = MemoryPlanner.plan(HOST, List.of(LaunchProfile.single(), LaunchProfile.single()));
+
+        assertEquals("2 clients: " + plan.getAllocations().get(0).getHeapMb() + " MB heap each" + AVAILABLE,
+                plan.describe());
+    }
+
+    private static long budget(MemoryPlanner.Host host) {
+        return MemoryPlanner.plan(host, List.of(LaunchProfile.single())).getBudgetMb();
+    }
+
+    private List<LaunchProfile> profiles(String json) throws IOException {
+        Path file = dir.resolve("profiles.json");
+        Files.writeString(file, json);
+        return LaunchProfile.load(file);
+    }
+}
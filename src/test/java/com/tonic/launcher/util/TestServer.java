@@ -0,0 +1,209 @@
+package com.tonic.launcher.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local stand-in for the download and API hosts, with configurable latency and bandwidth.
+ * Resources answer {@code Range} requests like GitHub's and Adoptium's CDNs do, and can drop
+ * connections mid-response.
+ */
+final class TestServer implements AutoCloseable {
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger maxActiveRequests = new AtomicInteger();
+
+    private TestServer(HttpServer server) {
+        this.server = server;
+    }
+
+    static TestServer start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        TestServer testServer = new TestServer(server);
+        server.setExecutor(testServer.executor);
+        server.start();
+        return testServer;
+    }
+
+    /**
+     * Serves {@code body} at {@code path}.
+     * @return the resource, to slow it down and to read what was served
+     */
+    Resource serve(String path, byte[] body) {
+        Resource resource = new Resource(path, body);
+        server.createContext(path, resource::handle);
+        return resource;
+    }
+
+    /**
+     * @return the most requests any resources were answering at once
+     */
+    int getMaxActiveRequests() {
+        return maxActiveRequests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * One served file.
+     */
+    final class Resource {
+        private final String path;
+        private final byte[] body;
+        private volatile long latencyMillis;
+        private volatile long bytesPerSecond;
+        private volatile long resetAfterBytes;
+        private volatile boolean ignoreRanges;
+        private final AtomicInteger resetsLeft = new AtomicInteger();
+        private final AtomicLong bytesServed = new AtomicLong();
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private Resource(String path, byte[] body) {
+            this.path = path;
+            this.body = body;
+        }
+
+        /**
+         * Waits before every response, like a slow API.
+         */
+        Resource latency(long millis) {
+            latencyMillis = millis;
+            return this;
+        }
+
+        /**
+         * Caps each response's bandwidth, like a slow download.
+         */
+        Resource throttle(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Drops the connection after {@code bytes} body bytes, for the next {@code times}
+         * responses longer than that.
+         */
+        Resource resetAfter(long bytes, int times) {
+            resetAfterBytes = bytes;
+            resetsLeft.set(times);
+            return this;
+        }
+
+        /**
+         * Answers every request with the whole body, like a server without range support.
+         */
+        Resource ignoreRanges() {
+            ignoreRanges = true;
+            return this;
+        }
+
+        String getUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+        }
+
+        /**
+         * @return body bytes written to clients over every request
+         */
+        long getBytesServed() {
+            return bytesServed.get();
+        }
+
+        int getRequests() {
+            return requests.get();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            int active = activeRequests.incrementAndGet();
+            maxActiveRequests.accumulateAndGet(active, Math::max);
+            try {
+                respond(exchange);
+            } finally {
+                activeRequests.decrementAndGet();
+            }
+        }
+
+        private void respond(HttpExchange exchange) throws IOException {
+            sleep(latencyMillis);
+
+            int start = 0;
+            int end = body.length - 1;
+            String range = ignoreRanges ? null : exchange.getRequestHeaders().getFirst("Range");
+            if (range != null && range.startsWith("bytes=")) {
+                String[] bounds = range.substring("bytes=".length()).split("-", -1);
+                if (bounds[0].isEmpty()) {
+                    // Suffix range, the last n bytes
+                    start = Math.max(0, body.length - Integer.parseInt(bounds[1]));
+                } else {
+                    start = Integer.parseInt(bounds[0]);
+                    if (!bounds[1].isEmpty()) {
+                        end = Math.min(end, Integer.parseInt(bounds[1]));
+                    }
+                }
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + body.length);
+            }
+            if (!ignoreRanges) {
+                exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            }
+            exchange.getResponseHeaders().set("ETag", "\"" + body.length + "\"");
+            int length = end - start + 1;
+            exchange.sendResponseHeaders(range != null ? 206 : 200, length);
+
+            OutputStream out = exchange.getResponseBody();
+            if (length > resetAfterBytes && resetsLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                write(out, start, (int) resetAfterBytes);
+                // HttpServer closes the connection of a handler that fails mid-response
+                throw new IOException("Connection dropped by the test server");
+            }
+            try {
+                write(out, start, length);
+            } finally {
+                out.close();
+            }
+        }
+
+        private void write(OutputStream out, int offset, int length) throws IOException {
+            long started = System.nanoTime();
+            int sent = 0;
+            while (sent < length) {
+                int chunk = Math.min(CHUNK_SIZE, length - sent);
+                out.write(body, offset + sent, chunk);
+                out.flush();
+                sent += chunk;
+                bytesServed.addAndGet(chunk);
+                if (bytesPerSecond > 0) {
+                    long due = sent * 1000L / bytesPerSecond;
+                    sleep(due - (System.nanoTime() - started) / 1_000_000);
+                }
+            }
+        }
+    }
+
+    private static void sleep(long millis) throws IOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Server was stopped", e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.tonic.launcher.util;
+
+import com.tonic.launcher.LauncherMain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Both ways of installing VitaLite.jar from a release zip pick the same entry.
+ */
+class UpdateProcessorTest {
+    private static final Path JAR = LauncherMain.VITA_DIR.resolve("VitaLite.jar");
+
+    private TestServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = TestServer.start();
+        Files.createDirectories(LauncherMain.VITA_DIR);
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        server.close();
+        Files.deleteIfExists(JAR);
+    }
+
+    @Test
+    void streamingPrefersTheRootJar() throws IOException {
+        byte[] release = release();
+        TestServer.Resource file = server.serve("/VitaLite.zip", release);
+
+        UpdateProcessor.streamVitaLite(file.getUrl(), sha256(release), null);
+
+        assertEquals("root", Files.readString(JAR));
+    }
+
+    @Test
+    void downloadPrefersTheRootJar() throws IOException {
+        byte[] release = release();
+        TestServer.Resource file = server.serve("/VitaLite.zip", release);
+
+        UpdateProcessor.downloadAndExtractVitaLite(file.getUrl(), "VitaLite-test.zip", sha256(release), null);
+
+        assertEquals("root", Files.readString(JAR));
+    }
+
+    /**
+     * A release with an older jar of the same name ahead of the real one.
+     */
+    private static byte[] release() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("lib/OldVitaLite.jar"));
+            zip.write("old".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("VitaLite.jar"));
+            zip.write("root".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("README.txt"));
+            zip.write("VitaLite release".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String sha256(byte[] data) {
+        return StagedInstall.hex(StagedInstall.newSha256().digest(data));
+    }
+}